@@ -293,6 +293,7 @@ public class RecentsModel implements IconChangeListener, TaskStackChangeListener
     public void dump(String prefix, PrintWriter writer) {
         writer.println(prefix + "RecentsModel:");
         mTaskList.dump("  ", writer);
+        mThumbnailCache.dump("  ", writer);
     }
 
     /**
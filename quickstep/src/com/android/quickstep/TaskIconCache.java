@@ -16,8 +16,11 @@
 package com.android.quickstep;
 
 import static com.android.launcher3.Flags.enableOverviewIconMenu;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_CONCURRENT_TASK_CACHES;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_PERSISTENT_TASK_ICONS;
 import static com.android.launcher3.util.DisplayController.CHANGE_DENSITY;
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.ORDERED_BG_EXECUTOR;
 
 import android.annotation.Nullable;
 import android.app.ActivityManager;
@@ -29,6 +32,7 @@ import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
 import android.os.UserHandle;
 import android.text.TextUtils;
 import android.util.SparseArray;
@@ -48,6 +52,9 @@ import com.android.launcher3.util.DisplayController.DisplayInfoChangeListener;
 import com.android.launcher3.util.DisplayController.Info;
 import com.android.launcher3.util.FlagOp;
 import com.android.launcher3.util.Preconditions;
+import com.android.quickstep.util.TaskIconDiskCache;
+import com.android.quickstep.util.TaskKeyCache;
+import com.android.quickstep.util.TaskKeyClockCache;
 import com.android.quickstep.util.TaskKeyLruCache;
 import com.android.quickstep.util.TaskVisualsChangeListener;
 import com.android.systemui.shared.recents.model.Task;
@@ -65,13 +72,18 @@ public class TaskIconCache implements DisplayInfoChangeListener {
     private final Executor mBgExecutor;
 
     private final Context mContext;
-    private final TaskKeyLruCache<TaskCacheEntry> mIconCache;
+    private final TaskKeyCache<TaskCacheEntry> mIconCache;
+    // Rendered icons which survive process restarts, null if disabled
+    @Nullable
+    private final TaskIconDiskCache mDiskCache;
     private final SparseArray<BitmapInfo> mDefaultIcons = new SparseArray<>();
     private BitmapInfo mDefaultIconBase = null;
 
     private final IconProvider mIconProvider;
 
     private BaseIconFactory mIconFactory;
+    // Part of the disk cache keys which depends on the icon factory, reset with the factory
+    private String mIconConfig;
 
     @Nullable
     public TaskVisualsChangeListener mTaskVisualsChangeListener = null;
@@ -84,7 +96,9 @@ public class TaskIconCache implements DisplayInfoChangeListener {
         Resources res = context.getResources();
         int cacheSize = res.getInteger(R.integer.recentsIconCacheSize);
 
-        mIconCache = new TaskKeyLruCache<>(cacheSize);
+        mIconCache = ENABLE_CONCURRENT_TASK_CACHES.get()
+                ? new TaskKeyClockCache<>(cacheSize) : new TaskKeyLruCache<>(cacheSize);
+        mDiskCache = ENABLE_PERSISTENT_TASK_ICONS.get() ? new TaskIconDiskCache(context) : null;
 
         DisplayController.INSTANCE.get(mContext).addChangeListener(this);
     }
@@ -152,27 +166,47 @@ public class TaskIconCache implements DisplayInfoChangeListener {
         TaskKey key = task.key;
         ActivityInfo activityInfo = null;
 
-        // Create new cache entry
-        entry = new TaskCacheEntry();
+        String diskKey = null;
+        if (mDiskCache != null) {
+            // The activity info is needed for the content description anyway
+            activityInfo = PackageManagerWrapper.getInstance().getActivityInfo(
+                    key.getComponent(), key.userId);
+            diskKey = getDiskCacheKey(key, desc, activityInfo);
+            entry = diskKey != null ? loadFromDisk(diskKey, key.userId) : null;
+            if (entry != null) {
+                mIconCache.put(task.key, entry);
+                return entry;
+            }
+        }
 
         // Load icon
         // TODO: Load icon resource (b/143363444)
         Bitmap icon = getIcon(desc, key.userId);
+
+        // Create new cache entry
+        entry = new TaskCacheEntry();
+
+        BitmapInfo bitmapInfo = null;
+        boolean isInstantApp = false;
         if (icon != null) {
-            entry.icon = getBitmapInfo(
+            bitmapInfo = getBitmapInfo(
                     new BitmapDrawable(mContext.getResources(), icon),
                     key.userId,
                     desc.getPrimaryColor(),
-                    false /* isInstantApp */).newIcon(mContext);
+                    false /* isInstantApp */);
+            entry.icon = bitmapInfo.newIcon(mContext);
         } else {
-            activityInfo = PackageManagerWrapper.getInstance().getActivityInfo(
-                    key.getComponent(), key.userId);
+            if (activityInfo == null) {
+                activityInfo = PackageManagerWrapper.getInstance().getActivityInfo(
+                        key.getComponent(), key.userId);
+            }
             if (activityInfo != null) {
-                BitmapInfo bitmapInfo = getBitmapInfo(
+                isInstantApp = activityInfo.applicationInfo.isInstantApp();
+                bitmapInfo = getBitmapInfo(
                         mIconProvider.getIcon(activityInfo),
                         key.userId,
                         desc.getPrimaryColor(),
-                        activityInfo.applicationInfo.isInstantApp());
+                        isInstantApp);
                 entry.icon = bitmapInfo.newIcon(mContext);
             } else {
                 entry.icon = getDefaultIcon(key.userId);
@@ -193,9 +227,84 @@ public class TaskIconCache implements DisplayInfoChangeListener {
         }
 
         mIconCache.put(task.key, entry);
+        // Default icons are cheap to create and are not persisted
+        if (diskKey != null && bitmapInfo != null) {
+            saveToDisk(diskKey, new TaskIconDiskCache.Entry(bitmapInfo.icon, bitmapInfo.color,
+                    isInstantApp, entry.contentDescription, entry.title));
+        }
         return entry;
     }
 
+    /**
+     * Returns the key of the persisted entry of a task, made of the component, the user, the
+     * fields of the task description, the package source dir and the icon factory config, or
+     * null if the entry should not be persisted.
+     *
+     * The icon of the task description is identified by its file name. An icon set again by the
+     * same activity keeps its file name, so it is only picked up along with a new label or color.
+     */
+    @WorkerThread
+    @Nullable
+    private String getDiskCacheKey(TaskKey key, TaskDescription desc,
+            @Nullable ActivityInfo activityInfo) {
+        if (activityInfo == null
+                || (desc.getInMemoryIcon() != null && desc.getIconFilename() == null)) {
+            // Entries of removed activities are not persisted, and icons which are only in
+            // memory can not be identified
+            return null;
+        }
+        return key.getComponent().flattenToShortString()
+                + "|" + UserCache.INSTANCE.get(mContext).getSerialNumberForUser(
+                        UserHandle.of(key.userId))
+                + "|" + desc.getLabel()
+                + "|" + Integer.toHexString(desc.getPrimaryColor())
+                + "|" + desc.getIconFilename()
+                + "|" + activityInfo.applicationInfo.sourceDir
+                + "|" + getIconConfig();
+    }
+
+    /**
+     * Persists a newly rendered entry on a background thread, so that the icon is delivered
+     * without waiting for it to be compressed.
+     */
+    private void saveToDisk(String diskKey, TaskIconDiskCache.Entry diskEntry) {
+        ORDERED_BG_EXECUTOR.execute(() -> mDiskCache.put(diskKey, diskEntry));
+    }
+
+    @WorkerThread
+    @Nullable
+    private TaskCacheEntry loadFromDisk(String diskKey, int userId) {
+        TaskIconDiskCache.Entry diskEntry = mDiskCache.get(diskKey);
+        if (diskEntry == null) {
+            return null;
+        }
+        FlagOp flagOp = diskEntry.isInstantApp
+                ? FlagOp.NO_OP.addFlag(BitmapInfo.FLAG_INSTANT) : FlagOp.NO_OP;
+        TaskCacheEntry entry = new TaskCacheEntry();
+        entry.icon = BitmapInfo.of(diskEntry.icon, diskEntry.color)
+                .withFlags(UserCache.INSTANCE.get(mContext).getUserInfo(UserHandle.of(userId))
+                        .applyBitmapInfoFlags(flagOp))
+                .newIcon(mContext);
+        entry.contentDescription = diskEntry.contentDescription;
+        entry.title = diskEntry.title;
+        return entry;
+    }
+
+    @WorkerThread
+    private String getIconConfig() {
+        if (mIconConfig == null) {
+            // Labels are persisted along with the icons, so they also depend on the locale
+            mIconConfig = Build.FINGERPRINT
+                    + "|" + DisplayController.INSTANCE.get(mContext).getInfo().getDensityDpi()
+                    + "|" + mContext.getResources().getDimensionPixelSize(
+                            R.dimen.task_icon_cache_default_icon_size)
+                    + "|" + mIconProvider.getSystemIconState()
+                    + "|" + mContext.getResources().getConfiguration().getLocales()
+                            .toLanguageTags();
+        }
+        return mIconConfig;
+    }
+
     private Bitmap getIcon(ActivityManager.TaskDescription desc, int userId) {
         if (desc.getInMemoryIcon() != null) {
             return desc.getInMemoryIcon();
@@ -271,6 +380,7 @@ public class TaskIconCache implements DisplayInfoChangeListener {
     @WorkerThread
     private void resetFactory() {
         mIconFactory = null;
+        mIconConfig = null;
         mIconCache.evictAll();
     }
 
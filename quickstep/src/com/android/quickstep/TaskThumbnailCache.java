@@ -16,26 +16,38 @@
 package com.android.quickstep;
 
 import static com.android.launcher3.Flags.enableGridOnlyOverview;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_CONCURRENT_TASK_CACHES;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_PROGRESSIVE_THUMBNAILS;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_THUMBNAIL_PREFETCH;
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
 
 import android.content.Context;
 import android.content.res.Resources;
+import android.util.SparseArray;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
 
 import com.android.launcher3.R;
 import com.android.launcher3.util.CancellableTask;
+import com.android.launcher3.util.IntSet;
 import com.android.launcher3.util.Preconditions;
 import com.android.quickstep.util.TaskKeyByLastActiveTimeCache;
+import com.android.quickstep.util.TaskKeyByteSizeLruCache;
 import com.android.quickstep.util.TaskKeyCache;
+import com.android.quickstep.util.TaskKeyClockCache;
 import com.android.quickstep.util.TaskKeyLruCache;
 import com.android.systemui.shared.recents.model.Task;
 import com.android.systemui.shared.recents.model.Task.TaskKey;
 import com.android.systemui.shared.recents.model.ThumbnailData;
 import com.android.systemui.shared.system.ActivityManagerWrapper;
 
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 public class TaskThumbnailCache {
@@ -45,11 +57,19 @@ public class TaskThumbnailCache {
     private final HighResLoadingState mHighResLoadingState;
     private final boolean mEnableTaskSnapshotPreloading;
     private final Context mContext;
+    // Pending prefetch requests by task id, only accessed on the main thread
+    private final SparseArray<CancellableTask> mPrefetchRequests = new SparseArray<>();
+    // Thumbnails being fetched by batches by task id, only accessed on the main thread
+    private final SparseArray<BatchEntry> mBatchEntries = new SparseArray<>();
+    private final ArrayList<ThumbnailBatch> mPendingBatches = new ArrayList<>();
+    private int mBatchIpcCount;
+    private int mWastedBatchIpcCount;
 
     public static class HighResLoadingState {
         private boolean mForceHighResThumbnails;
         private boolean mVisible;
         private boolean mFlingingFast;
+        private boolean mScrolling;
         private boolean mHighResLoadingEnabled;
         private ArrayList<HighResLoadingStateChangedCallback> mCallbacks = new ArrayList<>();
 
@@ -81,13 +101,24 @@ public class TaskThumbnailCache {
             updateState();
         }
 
+        /**
+         * Sets whether the task list is scrolling or being dragged. With progressive thumbnails,
+         * high res loading is only enabled once scrolling settles, so that tasks which are only
+         * visible while scrolling past never fetch high res thumbnails.
+         */
+        public void setScrolling(boolean scrolling) {
+            mScrolling = scrolling;
+            updateState();
+        }
+
         public boolean isEnabled() {
             return mHighResLoadingEnabled;
         }
 
         private void updateState() {
             boolean prevState = mHighResLoadingEnabled;
-            mHighResLoadingEnabled = mForceHighResThumbnails || (mVisible && !mFlingingFast);
+            mHighResLoadingEnabled = mForceHighResThumbnails || (mVisible && !mFlingingFast
+                    && !(ENABLE_PROGRESSIVE_THUMBNAILS.get() && mScrolling));
             if (prevState != mHighResLoadingEnabled) {
                 for (int i = mCallbacks.size() - 1; i >= 0; i--) {
                     mCallbacks.get(i).onHighResLoadingStateChanged(mHighResLoadingEnabled);
@@ -96,15 +127,123 @@ public class TaskThumbnailCache {
         }
     }
 
+    /**
+     * Handle of the thumbnails fetched by {@link #updateThumbnailsInBackground}.
+     */
+    public static class ThumbnailBatch {
+
+        // Requests of the batch by task id
+        private final SparseArray<CancellableTask<ThumbnailData>> mRequests = new SparseArray<>();
+        // Only accessed on the main thread
+        private int mRemainingCount;
+        private int mIpcCount;
+        private int mWastedIpcCount;
+
+        /**
+         * Cancels the callbacks of the batch. Thumbnails which are not fetched yet are only
+         * fetched if they are also requested by other callers.
+         */
+        public void cancel() {
+            for (int i = 0; i < mRequests.size(); i++) {
+                mRequests.valueAt(i).cancel();
+            }
+        }
+
+        /**
+         * Cancels the callback of the batch for the given task, eg, when it is not visible
+         * anymore. The thumbnail is only fetched if it is also requested by other callers.
+         */
+        public void cancel(int taskId) {
+            CancellableTask<ThumbnailData> request = mRequests.get(taskId);
+            if (request != null) {
+                request.cancel();
+            }
+        }
+
+        /**
+         * @return Whether all the thumbnails of the batch were delivered or skipped.
+         */
+        public boolean isDone() {
+            return mRemainingCount == 0;
+        }
+
+        /**
+         * @return The number of thumbnail IPCs made by the batch so far.
+         */
+        public int getIpcCount() {
+            return mIpcCount;
+        }
+
+        /**
+         * @return The number of thumbnail IPCs made by the batch whose result was not used, eg,
+         * because the task was not visible anymore or a better thumbnail was already cached.
+         */
+        public int getWastedIpcCount() {
+            return mWastedIpcCount;
+        }
+    }
+
+    private static class BatchEntry {
+
+        final TaskKey mKey;
+        final boolean mLowResolution;
+        final ThumbnailBatch mBatch;
+        // Requests waiting for the thumbnail, only accessed on the main thread
+        final List<CancellableTask<ThumbnailData>> mRequests = new ArrayList<>();
+        // Number of requests which are neither delivered nor cancelled, only written on the main
+        // thread
+        volatile int mPendingRequestCount;
+        // Written on the background thread before the entry is posted to the main thread
+        ThumbnailData mResult;
+        int mIpcCount;
+
+        BatchEntry(TaskKey key, boolean lowResolution, ThumbnailBatch batch) {
+            mKey = key;
+            mLowResolution = lowResolution;
+            mBatch = batch;
+        }
+    }
+
     public TaskThumbnailCache(Context context, Executor bgExecutor) {
         this(context, bgExecutor,
                 context.getResources().getInteger(R.integer.recentsThumbnailCacheSize));
     }
 
     private TaskThumbnailCache(Context context, Executor bgExecutor, int cacheSize) {
-        this(context, bgExecutor,
-                enableGridOnlyOverview() ? new TaskKeyByLastActiveTimeCache<>(cacheSize)
-                        : new TaskKeyLruCache<>(cacheSize));
+        this(context, bgExecutor, createCache(context, cacheSize));
+    }
+
+    /**
+     * Creates the cache of the thumbnails:
+     * <ul>
+     *   <li>With grid only overview, the cache always evicts the least recently active task, as
+     *   {@link RecentsModel} preloads the thumbnails of the most recently active tasks. With
+     *   {@code ENABLE_THUMBNAIL_PREFETCH}, the cache is also bounded by bytes.</li>
+     *   <li>Otherwise with {@code ENABLE_THUMBNAIL_PREFETCH}, the cache is only bounded by bytes
+     *   and evicts the least recently used task. This takes precedence over
+     *   {@code ENABLE_CONCURRENT_TASK_CACHES}, as the byte size of the cache is kept under a
+     *   single lock.</li>
+     *   <li>Otherwise with {@code ENABLE_CONCURRENT_TASK_CACHES}, the cache is a lock free clock
+     *   cache, and a synchronized LRU cache without it.</li>
+     * </ul>
+     */
+    private static TaskKeyCache<ThumbnailData> createCache(Context context, int cacheSize) {
+        // Prefetched thumbnails need to fit in the cache along with the visible ones, so the
+        // cache is bounded by the size of the thumbnails instead of their number
+        long maxBytes = ENABLE_THUMBNAIL_PREFETCH.get()
+                ? context.getResources().getInteger(R.integer.recentsThumbnailCacheMaxMegabytes)
+                        * 1024L * 1024L
+                : Long.MAX_VALUE;
+        if (enableGridOnlyOverview()) {
+            return new TaskKeyByLastActiveTimeCache<>(cacheSize, maxBytes,
+                    TaskThumbnailCache::getSizeBytes);
+        }
+        if (ENABLE_THUMBNAIL_PREFETCH.get()) {
+            return new TaskKeyByteSizeLruCache<>(cacheSize, maxBytes,
+                    TaskThumbnailCache::getSizeBytes);
+        }
+        return ENABLE_CONCURRENT_TASK_CACHES.get()
+                ? new TaskKeyClockCache<>(cacheSize) : new TaskKeyLruCache<>(cacheSize);
     }
 
     @VisibleForTesting
@@ -167,6 +306,37 @@ public class TaskThumbnailCache {
         });
     }
 
+    /**
+     * Asynchronously fetches the low resolution thumbnails of the given {@param tasks} into the
+     * cache, without setting them on the tasks, so that they show up without delay once the tasks
+     * become visible. Pending prefetches of other tasks are cancelled.
+     */
+    public void prefetchThumbnails(List<Task> tasks) {
+        Preconditions.assertUIThread();
+        IntSet taskIds = new IntSet();
+        for (Task task : tasks) {
+            taskIds.add(task.key.id);
+        }
+        for (int i = mPrefetchRequests.size() - 1; i >= 0; i--) {
+            if (!taskIds.contains(mPrefetchRequests.keyAt(i))) {
+                mPrefetchRequests.valueAt(i).cancel();
+                mPrefetchRequests.removeAt(i);
+            }
+        }
+        for (Task task : tasks) {
+            int taskId = task.key.id;
+            if (mPrefetchRequests.get(taskId) != null
+                    || (task.thumbnail != null && task.thumbnail.thumbnail != null)) {
+                continue;
+            }
+            CancellableTask request = updateThumbnailInBackground(task.key,
+                    true /* lowResolution */, t -> mPrefetchRequests.remove(taskId));
+            if (request != null) {
+                mPrefetchRequests.put(taskId, request);
+            }
+        }
+    }
+
     /**
      * Updates cache size and remove excess entries if current size is more than new cache size.
      *
@@ -184,49 +354,248 @@ public class TaskThumbnailCache {
         return newSize > oldSize;
     }
 
+    /**
+     * Asynchronously fetches the thumbnails of the given {@param tasks}, which are not cached yet,
+     * in a single pass on the background executor, in the order of the list. Callers should pass
+     * the tasks in visibility order, so that the thumbnails are fetched and delivered in that
+     * order. Thumbnails requested by {@link #updateThumbnailInBackground} while the batch is
+     * pending are delivered from the batch instead of being fetched again.
+     *
+     * @param callback Optional callback to receive each task after its thumbnail has been set,
+     *                 in the order of the list for the thumbnails which were not cached
+     * @return A cancelable handle to the batch
+     */
+    public ThumbnailBatch updateThumbnailsInBackground(List<Task> tasks,
+            @Nullable BiConsumer<Task, ThumbnailData> callback) {
+        Preconditions.assertUIThread();
+        boolean lowResolution = !mHighResLoadingState.isEnabled();
+        ThumbnailBatch batch = new ThumbnailBatch();
+        List<BatchEntry> newEntries = new ArrayList<>();
+        for (Task task : tasks) {
+            Consumer<ThumbnailData> taskCallback = t -> {
+                task.thumbnail = t;
+                if (callback != null) {
+                    callback.accept(task, t);
+                }
+            };
+            if (isUpToDate(task.thumbnail, lowResolution)) {
+                taskCallback.accept(task.thumbnail);
+                continue;
+            }
+            ThumbnailData cachedThumbnail = mCache.getAndInvalidateIfModified(task.key);
+            if (isUpToDate(cachedThumbnail, lowResolution)) {
+                taskCallback.accept(cachedThumbnail);
+                continue;
+            }
+            BatchEntry entry = getBatchEntry(task.key, lowResolution);
+            if (entry == null) {
+                entry = new BatchEntry(task.key, lowResolution, batch);
+                mBatchEntries.put(task.key.id, entry);
+                newEntries.add(entry);
+            }
+            batch.mRequests.put(task.key.id, addBatchRequest(entry, taskCallback));
+        }
+        if (newEntries.isEmpty()) {
+            return batch;
+        }
+
+        batch.mRemainingCount = newEntries.size();
+        mPendingBatches.add(batch);
+        mBgExecutor.execute(() -> {
+            for (BatchEntry entry : newEntries) {
+                // Skip the thumbnails which are not needed anymore, eg, after leaving overview
+                if (entry.mPendingRequestCount > 0) {
+                    ThumbnailData thumbnailData =
+                            getTaskThumbnail(entry.mKey.id, entry.mLowResolution);
+                    entry.mIpcCount = 1;
+                    if (thumbnailData.thumbnail == null) {
+                        thumbnailData = takeTaskThumbnail(entry.mKey.id);
+                        entry.mIpcCount++;
+                    }
+                    entry.mResult = thumbnailData;
+                }
+                MAIN_EXECUTOR.execute(() -> onBatchEntryLoaded(entry));
+            }
+        });
+        return batch;
+    }
+
+    /**
+     * Cancels all the pending batches, see {@link #updateThumbnailsInBackground}.
+     */
+    public void cancelThumbnailBatches() {
+        Preconditions.assertUIThread();
+        for (ThumbnailBatch batch : mPendingBatches) {
+            batch.cancel();
+        }
+    }
+
+    /**
+     * Cancels the requests of the pending batches for the given task, eg, when it scrolls out of
+     * view, so that its thumbnail is only fetched if still requested by other callers.
+     */
+    public void cancelBatchedThumbnail(int taskId) {
+        Preconditions.assertUIThread();
+        for (ThumbnailBatch batch : mPendingBatches) {
+            batch.cancel(taskId);
+        }
+    }
+
     private CancellableTask updateThumbnailInBackground(TaskKey key, boolean lowResolution,
             Consumer<ThumbnailData> callback) {
         Preconditions.assertUIThread();
 
         ThumbnailData cachedThumbnail = mCache.getAndInvalidateIfModified(key);
-        if (cachedThumbnail != null &&  cachedThumbnail.thumbnail != null
-                && (!cachedThumbnail.reducedResolution || lowResolution)) {
+        if (isUpToDate(cachedThumbnail, lowResolution)) {
             // Already cached, lets use that thumbnail
             callback.accept(cachedThumbnail);
             return null;
         }
 
+        BatchEntry batchEntry = getBatchEntry(key, lowResolution);
+        if (batchEntry != null) {
+            // Already being fetched by a batch
+            return addBatchRequest(batchEntry, callback);
+        }
+
         CancellableTask<ThumbnailData> request = new CancellableTask<>(
-                () -> {
-                    ThumbnailData thumbnailData = ActivityManagerWrapper.getInstance()
-                            .getTaskThumbnail(key.id, lowResolution);
-                    return thumbnailData.thumbnail != null ? thumbnailData
-                            : ActivityManagerWrapper.getInstance().takeTaskThumbnail(key.id);
-                },
+                () -> fetchThumbnail(key.id, lowResolution),
                 MAIN_EXECUTOR,
                 result -> {
-                    // Avoid an async timing issue that a low res entry replaces an existing high
-                    // res entry in high res enabled state, so we check before putting it to cache
-                    if (enableGridOnlyOverview() && result.reducedResolution
-                            && getHighResLoadingState().isEnabled()) {
-                        ThumbnailData newCachedThumbnail = mCache.getAndInvalidateIfModified(key);
-                        if (newCachedThumbnail != null && newCachedThumbnail.thumbnail != null
-                                && !newCachedThumbnail.reducedResolution) {
-                            return;
-                        }
+                    if (putInCache(key, result)) {
+                        callback.accept(result);
                     }
-                    mCache.put(key, result);
-                    callback.accept(result);
                 }
         );
         mBgExecutor.execute(request);
         return request;
     }
 
+    /**
+     * Puts the {@param result} in the cache, unless it should be dropped for a better thumbnail
+     * which is already cached.
+     *
+     * @return whether the result was put in the cache
+     */
+    private boolean putInCache(TaskKey key, ThumbnailData result) {
+        // Avoid an async timing issue that a low res entry replaces an existing high
+        // res entry in high res enabled state, so we check before putting it to cache
+        if (enableGridOnlyOverview() && result.reducedResolution
+                && getHighResLoadingState().isEnabled()) {
+            ThumbnailData newCachedThumbnail = mCache.getAndInvalidateIfModified(key);
+            if (newCachedThumbnail != null && newCachedThumbnail.thumbnail != null
+                    && !newCachedThumbnail.reducedResolution) {
+                return false;
+            }
+        }
+        mCache.put(key, result);
+        return true;
+    }
+
+    @Nullable
+    private BatchEntry getBatchEntry(TaskKey key, boolean lowResolution) {
+        BatchEntry entry = mBatchEntries.get(key.id);
+        if (entry == null || entry.mKey.lastActiveTime != key.lastActiveTime
+                || entry.mKey.windowingMode != key.windowingMode
+                || (entry.mLowResolution && !lowResolution)) {
+            return null;
+        }
+        return entry;
+    }
+
+    private CancellableTask<ThumbnailData> addBatchRequest(BatchEntry entry,
+            Consumer<ThumbnailData> callback) {
+        entry.mPendingRequestCount++;
+        CancellableTask<ThumbnailData> request = new CancellableTask<>(
+                // Only fetches the thumbnail if the batch skipped it, see onBatchEntryLoaded
+                () -> entry.mResult != null ? entry.mResult
+                        : fetchThumbnail(entry.mKey.id, entry.mLowResolution),
+                MAIN_EXECUTOR,
+                result -> {
+                    // Thumbnails fetched by the batch are already in the cache
+                    if (result == entry.mResult || putInCache(entry.mKey, result)) {
+                        callback.accept(result);
+                    }
+                },
+                () -> entry.mPendingRequestCount--);
+        entry.mRequests.add(request);
+        return request;
+    }
+
+    private void onBatchEntryLoaded(BatchEntry entry) {
+        if (mBatchEntries.get(entry.mKey.id) == entry) {
+            mBatchEntries.remove(entry.mKey.id);
+        }
+        ThumbnailBatch batch = entry.mBatch;
+        if (entry.mResult == null) {
+            // The batch skipped the thumbnail as all its requests were cancelled, fetch it for
+            // the requests made since then
+            for (CancellableTask<ThumbnailData> request : entry.mRequests) {
+                if (!request.getCanceled()) {
+                    mBgExecutor.execute(request);
+                }
+            }
+        } else {
+            batch.mIpcCount += entry.mIpcCount;
+            if (!putInCache(entry.mKey, entry.mResult)) {
+                batch.mWastedIpcCount += entry.mIpcCount;
+            } else {
+                if (entry.mPendingRequestCount == 0) {
+                    // Only useful if the thumbnail is requested again before being evicted
+                    batch.mWastedIpcCount += entry.mIpcCount;
+                }
+                for (CancellableTask<ThumbnailData> request : entry.mRequests) {
+                    request.run();
+                }
+            }
+        }
+
+        batch.mRemainingCount--;
+        if (batch.mRemainingCount == 0) {
+            mPendingBatches.remove(batch);
+            mBatchIpcCount += batch.mIpcCount;
+            mWastedBatchIpcCount += batch.mWastedIpcCount;
+        }
+    }
+
+    @WorkerThread
+    private ThumbnailData fetchThumbnail(int taskId, boolean lowResolution) {
+        ThumbnailData thumbnailData = getTaskThumbnail(taskId, lowResolution);
+        return thumbnailData.thumbnail != null ? thumbnailData : takeTaskThumbnail(taskId);
+    }
+
+    /**
+     * Returns the last snapshot of the task, the thumbnail is null if there is none.
+     */
+    @VisibleForTesting
+    @WorkerThread
+    ThumbnailData getTaskThumbnail(int taskId, boolean lowResolution) {
+        return ActivityManagerWrapper.getInstance().getTaskThumbnail(taskId, lowResolution);
+    }
+
+    /**
+     * Takes a new snapshot of the task.
+     */
+    @VisibleForTesting
+    @WorkerThread
+    ThumbnailData takeTaskThumbnail(int taskId) {
+        return ActivityManagerWrapper.getInstance().takeTaskThumbnail(taskId);
+    }
+
+    private static boolean isUpToDate(@Nullable ThumbnailData thumbnailData,
+            boolean lowResolution) {
+        return thumbnailData != null && thumbnailData.thumbnail != null
+                && (!thumbnailData.reducedResolution || lowResolution);
+    }
+
     /**
      * Clears the cache.
      */
     public void clear() {
+        for (int i = 0; i < mPrefetchRequests.size(); i++) {
+            mPrefetchRequests.valueAt(i).cancel();
+        }
+        mPrefetchRequests.clear();
         mCache.evictAll();
     }
 
@@ -258,6 +627,19 @@ public class TaskThumbnailCache {
         return mEnableTaskSnapshotPreloading && mHighResLoadingState.mVisible;
     }
 
+    private static long getSizeBytes(ThumbnailData thumbnailData) {
+        return thumbnailData.thumbnail != null
+                ? thumbnailData.thumbnail.getAllocationByteCount() : 0;
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "TaskThumbnailCache:");
+        writer.println(prefix + "  size=" + mCache.getSize() + " maxSize=" + mCache.getMaxSize());
+        writer.println(prefix + "  batchIpcCount=" + mBatchIpcCount
+                + " wastedBatchIpcCount=" + mWastedBatchIpcCount
+                + " pendingBatchCount=" + mPendingBatches.size());
+    }
+
     /**
      * @return Whether device supports low-res thumbnails. Low-res files are an optimization
      * for faster load times of snapshots. Devices can optionally disable low-res files so that
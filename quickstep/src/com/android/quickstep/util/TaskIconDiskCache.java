@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.util.DiskLruCache;
+
+import java.io.File;
+
+/**
+ * Directory of rendered task icons along with their labels, so that the icons of the recent
+ * tasks do not need to be rendered again after the process restarts or the icon cache is
+ * cleared. The files are bounded by their total size and trimmed by last use.
+ *
+ * Entries are identified by a key which callers build from everything the icon and the labels
+ * depend on, eg, the component, the user, the task description and the icon factory config, so
+ * a stale entry is never returned, it is only trimmed eventually.
+ *
+ * This class is thread safe, but all the accesses go to disk and should happen on a background
+ * thread.
+ */
+public class TaskIconDiskCache {
+
+    private static final String DIR_NAME = "task_icons";
+    private static final String FILE_PREFIX = "icon_";
+    // Incremented when the format of the files changes
+    private static final int FILE_VERSION = 1;
+
+    private static final long MAX_DISK_BYTES = 4 * 1024 * 1024;
+
+    private final DiskLruCache mDisk;
+
+    public TaskIconDiskCache(Context context) {
+        this(new File(context.getCacheDir(), DIR_NAME), MAX_DISK_BYTES);
+    }
+
+    @VisibleForTesting
+    TaskIconDiskCache(File dir, long maxDiskBytes) {
+        mDisk = new DiskLruCache(dir, FILE_PREFIX, FILE_VERSION, maxDiskBytes);
+    }
+
+    /**
+     * A rendered task icon and the labels of the task.
+     */
+    public static class Entry {
+        public final Bitmap icon;
+        public final int color;
+        public final boolean isInstantApp;
+        public final String contentDescription;
+        public final String title;
+
+        public Entry(@NonNull Bitmap icon, int color, boolean isInstantApp,
+                @NonNull String contentDescription, @NonNull String title) {
+            this.icon = icon;
+            this.color = color;
+            this.isInstantApp = isInstantApp;
+            this.contentDescription = contentDescription;
+            this.title = title;
+        }
+    }
+
+    /**
+     * Returns the entry for the provided key, or null if the icon needs to be rendered.
+     */
+    @WorkerThread
+    @Nullable
+    public Entry get(@NonNull String key) {
+        return mDisk.read(key, in -> {
+            int color = in.readInt();
+            boolean isInstantApp = in.readBoolean();
+            String contentDescription = in.readUTF();
+            String title = in.readUTF();
+            Bitmap icon = BitmapFactory.decodeStream(in);
+            return icon == null
+                    ? null : new Entry(icon, color, isInstantApp, contentDescription, title);
+        });
+    }
+
+    /**
+     * Adds a newly rendered entry, trimming the least recently used entries if needed.
+     */
+    @WorkerThread
+    public void put(@NonNull String key, @NonNull Entry entry) {
+        // Compress a software copy, the pixels of hardware bitmaps can not be read directly
+        Bitmap softwareIcon = entry.icon.getConfig() == Bitmap.Config.HARDWARE
+                ? entry.icon.copy(Bitmap.Config.ARGB_8888, false) : entry.icon;
+        if (softwareIcon == null) {
+            return;
+        }
+        mDisk.write(key, out -> {
+            out.writeInt(entry.color);
+            out.writeBoolean(entry.isInstantApp);
+            out.writeUTF(entry.contentDescription);
+            out.writeUTF(entry.title);
+            softwareIcon.compress(Bitmap.CompressFormat.PNG, 100, out);
+        });
+    }
+
+    @VisibleForTesting
+    long getDiskSizeBytes() {
+        return mDisk.getSizeBytes();
+    }
+}
@@ -28,12 +28,15 @@ import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
 
 /**
  * A class to cache task id and its corresponding object (e.g. thumbnail)
  *
  * <p>Maximum size of the cache should be provided when creating this class. When the number of
- * entries is larger than its max size, it would remove the entry with the smallest last active time
+ * entries is larger than its max size, it would remove the entry with the smallest last active time.
+ * A maximum byte size can also be provided, in which case entries with the smallest last active
+ * time are removed until the values fit in it as well.
  * @param <V> Type of object stored in the cache
  */
 public class TaskKeyByLastActiveTimeCache<V> implements TaskKeyCache<V> {
@@ -42,11 +45,20 @@ public class TaskKeyByLastActiveTimeCache<V> implements TaskKeyCache<V> {
     private final Map<Integer, Entry<V>> mMap;
     // To sort task id by last active time
     private final PriorityQueue<Task.TaskKey> mQueue;
+    private final long mMaxBytes;
+    private final ToLongFunction<V> mSizeOf;
+    private long mBytes;
 
     public TaskKeyByLastActiveTimeCache(int maxSize) {
+        this(maxSize, Long.MAX_VALUE, value -> 0);
+    }
+
+    public TaskKeyByLastActiveTimeCache(int maxSize, long maxBytes, ToLongFunction<V> sizeOf) {
         mMap = new HashMap(0);
         mQueue = new PriorityQueue<>(Comparator.comparingLong(t -> t.lastActiveTime));
         mMaxSize = new AtomicInteger(maxSize);
+        mMaxBytes = maxBytes;
+        mSizeOf = sizeOf;
     }
 
     /**
@@ -56,6 +68,7 @@ public class TaskKeyByLastActiveTimeCache<V> implements TaskKeyCache<V> {
     public synchronized void evictAll() {
         mMap.clear();
         mQueue.clear();
+        mBytes = 0;
     }
 
 
@@ -72,6 +85,7 @@ public class TaskKeyByLastActiveTimeCache<V> implements TaskKeyCache<V> {
         if (entry != null) {
             // Use real key in map entry to handle use case of using stub key for removal
             mQueue.remove(entry.mKey);
+            mBytes -= mSizeOf.applyAsLong(entry.mValue);
         }
     }
 
@@ -84,7 +98,7 @@ public class TaskKeyByLastActiveTimeCache<V> implements TaskKeyCache<V> {
         while (iterator.hasNext()) {
             Task.TaskKey key = iterator.next();
             if (keyCheck.test(key)) {
-                mMap.remove(key.id);
+                removeFromMap(key);
                 iterator.remove();
             }
         }
@@ -116,11 +130,14 @@ public class TaskKeyByLastActiveTimeCache<V> implements TaskKeyCache<V> {
             // If the same key already exist, remove item for existing key
             if (entry != null) {
                 mQueue.remove(entry.mKey);
+                mBytes -= mSizeOf.applyAsLong(entry.mValue);
             }
 
             removeExcessIfNeeded(mMaxSize.get() - 1);
             mMap.put(key.id, new Entry<>(key, value));
             mQueue.add(key);
+            mBytes += mSizeOf.applyAsLong(value);
+            removeExcessBytes(key);
         } else {
             Log.e(TAG, "Unexpected null key or value: " + key + ", " + value);
         }
@@ -133,7 +150,9 @@ public class TaskKeyByLastActiveTimeCache<V> implements TaskKeyCache<V> {
     public synchronized void updateIfAlreadyInCache(int taskId, V data) {
         Entry<V> entry = mMap.get(taskId);
         if (entry != null) {
+            mBytes += mSizeOf.applyAsLong(data) - mSizeOf.applyAsLong(entry.mValue);
             entry.mValue = data;
+            removeExcessBytes(entry.mKey);
         }
     }
 
@@ -149,8 +168,33 @@ public class TaskKeyByLastActiveTimeCache<V> implements TaskKeyCache<V> {
 
     private synchronized void removeExcessIfNeeded(int maxSize) {
         while (mQueue.size() > maxSize && !mQueue.isEmpty()) {
+            removeFromMap(mQueue.poll());
+        }
+    }
+
+    /**
+     * Removes the entries with the smallest last active time until the values fit in the maximum
+     * byte size, never removing the entry of {@param keptKey}
+     */
+    private void removeExcessBytes(Task.TaskKey keptKey) {
+        Task.TaskKey skippedKey = null;
+        while (mBytes > mMaxBytes && !mQueue.isEmpty()) {
             Task.TaskKey key = mQueue.poll();
-            mMap.remove(key.id);
+            if (key.id == keptKey.id) {
+                skippedKey = key;
+            } else {
+                removeFromMap(key);
+            }
+        }
+        if (skippedKey != null) {
+            mQueue.add(skippedKey);
+        }
+    }
+
+    private void removeFromMap(Task.TaskKey key) {
+        Entry<V> entry = mMap.remove(key.id);
+        if (entry != null) {
+            mBytes -= mSizeOf.applyAsLong(entry.mValue);
         }
     }
 
@@ -170,6 +214,14 @@ public class TaskKeyByLastActiveTimeCache<V> implements TaskKeyCache<V> {
         return mMap.size();
     }
 
+    /**
+     * Get the total byte size of the values in the cache
+     */
+    @VisibleForTesting
+    synchronized long getSizeBytes() {
+        return mBytes;
+    }
+
     @VisibleForTesting
     PriorityQueue<Task.TaskKey> getQueue() {
         return mQueue;
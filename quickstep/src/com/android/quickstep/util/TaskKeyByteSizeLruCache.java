@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.systemui.shared.recents.model.Task.TaskKey;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * An LRU cache for task key entries which evicts entries based on the total byte size of their
+ * values rather than on their number, so that the memory used by the cache does not depend on
+ * the size of the values, eg, on the display resolution for thumbnails.
+ *
+ * The max size of the cache is the number of entries expected to fit in the cache, which callers
+ * can use to decide how many entries to preload, but is not used for eviction. The most recently
+ * added entry is always kept, even if it is larger than the byte budget.
+ *
+ * @param <V> The type of the value
+ */
+public class TaskKeyByteSizeLruCache<V> implements TaskKeyCache<V> {
+
+    private static final String TAG = "TaskKeyByteSizeLruCache";
+
+    private final LinkedHashMap<Integer, Entry<V>> mMap =
+            new LinkedHashMap<>(0, 0.75f, true /* accessOrder */);
+    private final ToLongFunction<V> mSizeOf;
+    private final long mMaxBytes;
+    private int mMaxSize;
+    private long mBytes;
+
+    public TaskKeyByteSizeLruCache(int maxSize, long maxBytes, ToLongFunction<V> sizeOf) {
+        mMaxSize = maxSize;
+        mMaxBytes = maxBytes;
+        mSizeOf = sizeOf;
+    }
+
+    /**
+     * Removes all entries from the cache
+     */
+    @Override
+    public synchronized void evictAll() {
+        mMap.clear();
+        mBytes = 0;
+    }
+
+    /**
+     * Removes a particular entry from the cache
+     */
+    @Override
+    public synchronized void remove(TaskKey key) {
+        if (key == null) {
+            return;
+        }
+        Entry<V> entry = mMap.remove(key.id);
+        if (entry != null) {
+            mBytes -= mSizeOf.applyAsLong(entry.mValue);
+        }
+    }
+
+    /**
+     * Removes all entries matching keyCheck
+     */
+    @Override
+    public synchronized void removeAll(Predicate<TaskKey> keyCheck) {
+        Iterator<Entry<V>> iterator = mMap.values().iterator();
+        while (iterator.hasNext()) {
+            Entry<V> entry = iterator.next();
+            if (keyCheck.test(entry.mKey)) {
+                mBytes -= mSizeOf.applyAsLong(entry.mValue);
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Gets the entry if it is still valid
+     */
+    @Override
+    public synchronized V getAndInvalidateIfModified(TaskKey key) {
+        Entry<V> entry = mMap.get(key.id);
+        if (entry != null && entry.mKey.windowingMode == key.windowingMode
+                && entry.mKey.lastActiveTime == key.lastActiveTime) {
+            return entry.mValue;
+        } else {
+            remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * Adds an entry to the cache, evicting the least recently accessed entries which do not fit
+     * in the byte budget anymore
+     */
+    @Override
+    public final synchronized void put(TaskKey key, V value) {
+        if (key != null && value != null) {
+            Entry<V> previous = mMap.put(key.id, new Entry<>(key, value));
+            if (previous != null) {
+                mBytes -= mSizeOf.applyAsLong(previous.mValue);
+            }
+            mBytes += mSizeOf.applyAsLong(value);
+            trimToBytes(mMaxBytes, key.id);
+        } else {
+            Log.e(TAG, "Unexpected null key or value: " + key + ", " + value);
+        }
+    }
+
+    /**
+     * Updates the cache entry if it is already present in the cache
+     */
+    @Override
+    public synchronized void updateIfAlreadyInCache(int taskId, V data) {
+        Entry<V> entry = mMap.get(taskId);
+        if (entry != null && data != null) {
+            mBytes += mSizeOf.applyAsLong(data) - mSizeOf.applyAsLong(entry.mValue);
+            entry.mValue = data;
+            trimToBytes(mMaxBytes, taskId);
+        }
+    }
+
+    /**
+     * Updates the number of entries expected to fit in the cache, entries are only evicted based
+     * on their byte size
+     */
+    @Override
+    public synchronized void updateCacheSizeAndRemoveExcess(int cacheSize) {
+        mMaxSize = cacheSize;
+    }
+
+    @Override
+    public synchronized int getMaxSize() {
+        return mMaxSize;
+    }
+
+    @Override
+    public synchronized int getSize() {
+        return mMap.size();
+    }
+
+    /**
+     * Gets the total byte size of the values in the cache
+     */
+    @VisibleForTesting
+    public synchronized long getSizeBytes() {
+        return mBytes;
+    }
+
+    private void trimToBytes(long maxBytes, int keptTaskId) {
+        Iterator<Map.Entry<Integer, Entry<V>>> iterator = mMap.entrySet().iterator();
+        while (mBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<Integer, Entry<V>> eldest = iterator.next();
+            if (eldest.getKey() == keptTaskId) {
+                continue;
+            }
+            mBytes -= mSizeOf.applyAsLong(eldest.getValue().mValue);
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.systemui.shared.recents.model.Task.TaskKey;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * A task key cache which can be read from any thread without blocking, eg, from the UI thread
+ * while a background thread adds entries or removes the entries of a changed task stack.
+ *
+ * Entries are kept in a {@link ConcurrentHashMap}, whose writes only lock the bin of the written
+ * key. Eviction approximates LRU with the clock, or second chance, policy: reads only mark their
+ * entry as referenced, and when the cache is full a hand sweeps the entries in insertion order,
+ * evicting the first one which was not referenced since the hand last passed it. Only writes
+ * which may evict an entry take the lock of the clock.
+ *
+ * @param <V> The type of the value
+ */
+public class TaskKeyClockCache<V> implements TaskKeyCache<V> {
+
+    private static final String TAG = "TaskKeyClockCache";
+
+    private final ConcurrentHashMap<Integer, Node<V>> mMap = new ConcurrentHashMap<>();
+    private volatile int mMaxSize;
+
+    // Entries in insertion order, including entries removed from the map since the last sweep.
+    // Guarded by the clock lock.
+    private final ArrayList<Node<V>> mClock = new ArrayList<>();
+    private int mHand;
+    private final Object mClockLock = new Object();
+
+    public TaskKeyClockCache(int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Removes all entries from the cache
+     */
+    @Override
+    public void evictAll() {
+        synchronized (mClockLock) {
+            mMap.clear();
+            mClock.clear();
+            mHand = 0;
+        }
+    }
+
+    /**
+     * Removes a particular entry from the cache
+     */
+    @Override
+    public void remove(TaskKey key) {
+        if (key != null) {
+            // Removed entries are dropped from the clock when the hand passes them
+            mMap.remove(key.id);
+        }
+    }
+
+    /**
+     * Removes all entries matching keyCheck
+     */
+    @Override
+    public void removeAll(Predicate<TaskKey> keyCheck) {
+        mMap.values().removeIf(node -> keyCheck.test(node.mKey));
+    }
+
+    /**
+     * Gets the entry if it is still valid
+     */
+    @Override
+    public V getAndInvalidateIfModified(TaskKey key) {
+        Node<V> node = mMap.get(key.id);
+        if (node == null) {
+            return null;
+        }
+        if (node.mKey.windowingMode == key.windowingMode
+                && node.mKey.lastActiveTime == key.lastActiveTime) {
+            // Avoid writing shared memory when the entry is already referenced
+            if (!node.mReferenced) {
+                node.mReferenced = true;
+            }
+            return node.mValue;
+        }
+        // Only remove the entry which was found, it may have been replaced concurrently
+        mMap.remove(key.id, node);
+        return null;
+    }
+
+    /**
+     * Adds an entry to the cache, evicting entries which were not recently accessed if the cache
+     * is full
+     */
+    @Override
+    public final void put(TaskKey key, V value) {
+        if (key == null || value == null) {
+            Log.e(TAG, "Unexpected null key or value: " + key + ", " + value);
+            return;
+        }
+        Node<V> node = new Node<>(key, value);
+        synchronized (mClockLock) {
+            mMap.put(key.id, node);
+            mClock.add(node);
+            removeExcessLocked(mMaxSize, node);
+        }
+    }
+
+    /**
+     * Updates the cache entry if it is already present in the cache
+     */
+    @Override
+    public void updateIfAlreadyInCache(int taskId, V data) {
+        Node<V> node = mMap.get(taskId);
+        if (node != null) {
+            node.mValue = data;
+        }
+    }
+
+    /**
+     * Updates cache size and remove excess if the number of existing entries is larger than new
+     * cache size
+     */
+    @Override
+    public void updateCacheSizeAndRemoveExcess(int cacheSize) {
+        synchronized (mClockLock) {
+            mMaxSize = cacheSize;
+            removeExcessLocked(cacheSize, null);
+        }
+    }
+
+    @Override
+    public int getMaxSize() {
+        return mMaxSize;
+    }
+
+    @Override
+    public int getSize() {
+        return mMap.size();
+    }
+
+    @VisibleForTesting
+    int getClockSize() {
+        synchronized (mClockLock) {
+            return mClock.size();
+        }
+    }
+
+    /**
+     * Sweeps the clock until the cache has at most {@param maxSize} entries, never evicting
+     * {@param newNode}. Entries removed from the map are dropped from the clock on the way.
+     */
+    private void removeExcessLocked(int maxSize, Node<V> newNode) {
+        // Bound the clock when entries are removed faster than the cache fills up
+        if (mClock.size() > 2 * maxSize) {
+            mClock.removeIf(node -> !isInMap(node));
+            mHand = 0;
+        }
+        // Every entry is passed at most twice, once to clear its reference bit, once to evict it
+        int maxSteps = 2 * mClock.size();
+        for (int step = 0; step < maxSteps && mMap.size() > maxSize && !mClock.isEmpty(); step++) {
+            if (mHand >= mClock.size()) {
+                mHand = 0;
+            }
+            Node<V> node = mClock.get(mHand);
+            if (!isInMap(node)) {
+                mClock.remove(mHand);
+            } else if (node.mReferenced || node == newNode) {
+                node.mReferenced = false;
+                mHand++;
+            } else if (mMap.remove(node.mKey.id, node)) {
+                mClock.remove(mHand);
+            } else {
+                mHand++;
+            }
+        }
+    }
+
+    private boolean isInMap(Node<V> node) {
+        return mMap.get(node.mKey.id) == node;
+    }
+
+    private static class Node<V> {
+
+        final TaskKey mKey;
+        volatile V mValue;
+        volatile boolean mReferenced;
+
+        Node(TaskKey key, V value) {
+            mKey = key;
+            mValue = value;
+        }
+    }
+}
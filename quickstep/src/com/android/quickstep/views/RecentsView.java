@@ -43,6 +43,9 @@ import static com.android.launcher3.Utilities.EDGE_NAV_BAR;
 import static com.android.launcher3.Utilities.mapToRange;
 import static com.android.launcher3.Utilities.squaredHypot;
 import static com.android.launcher3.Utilities.squaredTouchSlop;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_BATCHED_THUMBNAIL_LOADING;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_PROGRESSIVE_THUMBNAILS;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_THUMBNAIL_PREFETCH;
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_OVERVIEW_ACTIONS_SPLIT;
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_TASK_CLEAR_ALL;
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_TASK_DISMISS_SWIPE_UP;
@@ -218,6 +221,7 @@ import com.android.wm.shell.common.pip.IPipAnimationListener;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -433,6 +437,10 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
 
     private static final int DEFAULT_ACTIONS_VIEW_ALPHA_ANIMATION_DURATION = 300;
 
+    // Number of not yet visible tasks whose thumbnails are prefetched in the scroll direction
+    private static final int PREFETCH_TASK_COUNT = 2;
+    private static final int PREFETCH_TASK_COUNT_FAST_FLING = 8;
+
     private static final int DISMISS_TASK_DURATION = 300;
     private static final int ADDITION_TASK_DURATION = 200;
     private static final float INITIAL_DISMISS_TRANSLATION_INTERPOLATION_OFFSET = 0.55f;
@@ -500,6 +508,11 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
 
     // Keeps track of the previously known visible tasks for purposes of loading/unloading task data
     private final SparseBooleanArray mHasVisibleTaskData = new SparseBooleanArray();
+    // Pages the thumbnails were last prefetched for, they are prefetched again once the scroll
+    // reaches or heads to another page
+    private int mPrefetchPage = INVALID_PAGE;
+    private int mPrefetchTargetPage = INVALID_PAGE;
+    private boolean mPrefetchFlingingFast;
 
     private final InvariantDeviceProfile mIdp;
 
@@ -2252,13 +2265,22 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
 
             // After scrolling, update the visible task's data
             loadVisibleTaskData(TaskView.FLAG_UPDATE_ALL);
+            if (scrolling) {
+                prefetchThumbnailsAhead(isFlingingFast);
+            }
+        }
+        if (!scrolling) {
+            mPrefetchPage = INVALID_PAGE;
         }
 
         // Update ActionsView's visibility when scroll changes.
         updateActionsViewFocusedScroll();
 
         // Update the high res thumbnail loader state
-        mModel.getThumbnailCache().getHighResLoadingState().setFlingingFast(isFlingingFast);
+        TaskThumbnailCache.HighResLoadingState highResLoadingState =
+                mModel.getThumbnailCache().getHighResLoadingState();
+        highResLoadingState.setScrolling(scrolling || isHandlingTouch());
+        highResLoadingState.setFlingingFast(isFlingingFast);
         return scrolling;
     }
 
@@ -2357,6 +2379,11 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
             upper = Math.min(centerPageIndex + 2, numChildren - 1);
         }
 
+        // When batching, the thumbnails of the newly visible tasks are requested together before
+        // the task views request them, so that the task views get them from the batch
+        List<Task> batchedTasks = ENABLE_BATCHED_THUMBNAIL_LOADING.get() ? new ArrayList<>() : null;
+        List<Runnable> pendingVisibilityUpdates = new ArrayList<>();
+
         // Update the task data for the in/visible children
         for (int i = 0; i < getTaskViewCount(); i++) {
             TaskView taskView = requireTaskViewAt(i);
@@ -2394,7 +2421,16 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
                         if (taskView == getRunningTaskView() && isGestureActive()) {
                             changes &= ~TaskView.FLAG_UPDATE_THUMBNAIL;
                         }
-                        taskView.onTaskListVisibilityChanged(true /* visible */, changes);
+                        if (batchedTasks == null) {
+                            taskView.onTaskListVisibilityChanged(true /* visible */, changes);
+                        } else {
+                            if ((changes & TaskView.FLAG_UPDATE_THUMBNAIL) != 0) {
+                                batchedTasks.add(task);
+                            }
+                            int visibleChanges = changes;
+                            pendingVisibilityUpdates.add(() -> taskView.onTaskListVisibilityChanged(
+                                    true /* visible */, visibleChanges));
+                        }
                     }
                     mHasVisibleTaskData.put(task.key.id, visible);
                 }
@@ -2406,17 +2442,119 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
 
                     if (mHasVisibleTaskData.get(container.getTask().key.id)) {
                         taskView.onTaskListVisibilityChanged(false /* visible */, dataChanges);
+                        // Drop the pending thumbnail fetches of tasks which scrolled away
+                        mModel.getThumbnailCache().cancelBatchedThumbnail(
+                                container.getTask().key.id);
                     }
                     mHasVisibleTaskData.delete(container.getTask().key.id);
                 }
             }
         }
+
+        if (batchedTasks != null && !batchedTasks.isEmpty()) {
+            // Fetch the thumbnails closest to the current scroll first
+            int scroll = getPagedOrientationHandler().getPrimaryScroll(this);
+            batchedTasks.sort(Comparator.comparingInt(task -> Math.abs(
+                    getScrollForPage(indexOfChild(getTaskViewByTaskId(task.key.id))) - scroll)));
+            mModel.getThumbnailCache().updateThumbnailsInBackground(batchedTasks, null);
+        }
+        pendingVisibilityUpdates.forEach(Runnable::run);
+    }
+
+    /**
+     * Prefetches the thumbnails of the tasks the scroll is heading to, closest first, so that
+     * they are already cached when the tasks become visible. More tasks are prefetched during
+     * fast flings, when the thumbnails are the most likely to show up before being loaded. The
+     * tasks are only computed again when the scroll reaches or heads to another page.
+     */
+    private void prefetchThumbnailsAhead(boolean isFlingingFast) {
+        if (!ENABLE_THUMBNAIL_PREFETCH.get()) {
+            return;
+        }
+        int currentScroll = mScroller.getCurrX();
+        int direction = Integer.signum(mScroller.getFinalX() - currentScroll);
+        if (direction == 0) {
+            return;
+        }
+        int page = getPageNearestToCenterOfScreen();
+        int targetPage = getNextPage();
+        if (page == mPrefetchPage && targetPage == mPrefetchTargetPage
+                && isFlingingFast == mPrefetchFlingingFast) {
+            return;
+        }
+        mPrefetchPage = page;
+        mPrefetchTargetPage = targetPage;
+        mPrefetchFlingingFast = isFlingingFast;
+
+        List<TaskView> taskViewsAhead = new ArrayList<>();
+        for (int i = 0; i < getTaskViewCount(); i++) {
+            TaskView taskView = requireTaskViewAt(i);
+            if (getScrollDistanceAhead(taskView, currentScroll, direction) > 0) {
+                taskViewsAhead.add(taskView);
+            }
+        }
+        taskViewsAhead.sort(Comparator.comparingInt(
+                taskView -> getScrollDistanceAhead(taskView, currentScroll, direction)));
+
+        int maxCount = isFlingingFast ? PREFETCH_TASK_COUNT_FAST_FLING : PREFETCH_TASK_COUNT;
+        List<Task> tasks = new ArrayList<>();
+        for (TaskView taskView : taskViewsAhead) {
+            if (tasks.size() >= maxCount) {
+                break;
+            }
+            for (TaskIdAttributeContainer container : taskView.getTaskIdAttributeContainers()) {
+                // Visible tasks load their own thumbnails
+                if (container != null && !mHasVisibleTaskData.get(container.getTask().key.id)) {
+                    tasks.add(container.getTask());
+                }
+            }
+        }
+        mModel.getThumbnailCache().prefetchThumbnails(tasks);
+    }
+
+    /**
+     * Replaces the low res thumbnails of the visible tasks with high res ones once scrolling
+     * settles. The thumbnails are fetched in a single batch, starting with the task closest to
+     * the center, and the task views are then poked so that they get them from the batch.
+     */
+    private void upgradeVisibleThumbnails() {
+        List<TaskView> taskViews = new ArrayList<>();
+        for (int i = 0; i < mHasVisibleTaskData.size(); i++) {
+            if (mHasVisibleTaskData.valueAt(i)) {
+                TaskView taskView = getTaskViewByTaskId(mHasVisibleTaskData.keyAt(i));
+                if (taskView != null && !taskViews.contains(taskView)) {
+                    taskViews.add(taskView);
+                }
+            }
+        }
+        int scroll = getPagedOrientationHandler().getPrimaryScroll(this);
+        taskViews.sort(Comparator.comparingInt(
+                taskView -> Math.abs(getScrollForPage(indexOfChild(taskView)) - scroll)));
+
+        List<Task> tasks = new ArrayList<>();
+        for (TaskView taskView : taskViews) {
+            for (TaskIdAttributeContainer container : taskView.getTaskIdAttributeContainers()) {
+                if (container != null && mHasVisibleTaskData.get(container.getTask().key.id)) {
+                    tasks.add(container.getTask());
+                }
+            }
+        }
+        // Tasks which already have a high res thumbnail are skipped by the batch
+        mModel.getThumbnailCache().updateThumbnailsInBackground(tasks, null);
+        for (TaskView taskView : taskViews) {
+            taskView.onTaskListVisibilityChanged(true /* visible */);
+        }
+    }
+
+    private int getScrollDistanceAhead(TaskView taskView, int scroll, int direction) {
+        return (getScrollForPage(indexOfChild(taskView)) - scroll) * direction;
     }
 
     /**
      * Unloads any associated data from the currently visible tasks
      */
     private void unloadVisibleTaskData(@TaskView.TaskDataChanges int dataChanges) {
+        mModel.getThumbnailCache().cancelThumbnailBatches();
         for (int i = 0; i < mHasVisibleTaskData.size(); i++) {
             if (mHasVisibleTaskData.valueAt(i)) {
                 TaskView taskView = getTaskViewByTaskId(mHasVisibleTaskData.keyAt(i));
@@ -2436,6 +2574,11 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
             mModel.preloadCacheIfNeeded();
         }
 
+        if (enabled && ENABLE_PROGRESSIVE_THUMBNAILS.get()) {
+            upgradeVisibleThumbnails();
+            return;
+        }
+
         // Whenever the high res loading state changes, poke each of the visible tasks to see if
         // they want to updated their thumbnail state
         for (int i = 0; i < mHasVisibleTaskData.size(); i++) {
@@ -15,9 +15,14 @@
  */
 package com.android.quickstep;
 
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+
+import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertTrue;
 
+import static org.junit.Assume.assumeFalse;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -25,19 +30,27 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import android.content.ComponentName;
 import android.content.Context;
+import android.content.Intent;
 import android.content.res.Resources;
+import android.graphics.Bitmap;
 
 import androidx.test.filters.SmallTest;
 
 import com.android.launcher3.R;
+import com.android.quickstep.TaskThumbnailCache.ThumbnailBatch;
 import com.android.quickstep.util.TaskKeyCache;
+import com.android.systemui.shared.recents.model.Task;
+import com.android.systemui.shared.recents.model.ThumbnailData;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executor;
 
 @SmallTest
@@ -92,4 +105,134 @@ public class TaskThumbnailCacheTest {
         assertFalse(thumbnailCache.updateCacheSizeAndRemoveExcess());
         verify(mTaskKeyCache, never()).updateCacheSizeAndRemoveExcess(anyInt());
     }
+
+    @Test
+    public void updateThumbnailsInBackground_allCached_deliversInOrderWithoutFetching() {
+        ThumbnailData thumbnailData = new ThumbnailData();
+        thumbnailData.thumbnail = Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888);
+        when(mTaskKeyCache.getAndInvalidateIfModified(any())).thenReturn(thumbnailData);
+        Executor executor = mock(Executor.class);
+        TaskThumbnailCache thumbnailCache = new TaskThumbnailCache(mContext, executor,
+                mTaskKeyCache);
+        List<Integer> deliveredTaskIds = new ArrayList<>();
+
+        ThumbnailBatch batch = thumbnailCache.updateThumbnailsInBackground(
+                List.of(createTask(3), createTask(1), createTask(2)),
+                (task, thumbnail) -> deliveredTaskIds.add(task.key.id));
+
+        assertEquals(List.of(3, 1, 2), deliveredTaskIds);
+        assertTrue(batch.isDone());
+        assertEquals(0, batch.getIpcCount());
+        verify(executor, never()).execute(any());
+    }
+
+    @Test
+    public void updateThumbnailsInBackground_notCached_fetchesInSinglePass() {
+        Executor executor = mock(Executor.class);
+        TaskThumbnailCache thumbnailCache = new TaskThumbnailCache(mContext, executor,
+                mTaskKeyCache);
+        Task task = createTask(1);
+
+        ThumbnailBatch batch = thumbnailCache.updateThumbnailsInBackground(
+                List.of(task, createTask(2), createTask(3)), null);
+        // Requesting a thumbnail of the batch joins the batch instead of fetching it again
+        thumbnailCache.updateThumbnailInBackground(task, thumbnail -> { });
+
+        assertFalse(batch.isDone());
+        verify(executor, times(1)).execute(any());
+    }
+
+    @Test
+    public void cancelBatchedThumbnail_skipsFetchAndCallbackOfThatTaskOnly() throws Exception {
+        List<Runnable> bgTasks = new ArrayList<>();
+        List<String> fetches = new ArrayList<>();
+        TaskThumbnailCache thumbnailCache = createFakeFetchingCache(bgTasks::add, fetches);
+        List<Integer> deliveredTaskIds = new ArrayList<>();
+
+        ThumbnailBatch batch = MAIN_EXECUTOR.submit(() -> {
+            ThumbnailBatch b = thumbnailCache.updateThumbnailsInBackground(
+                    List.of(createTask(1), createTask(2), createTask(3)),
+                    (task, thumbnail) -> deliveredTaskIds.add(task.key.id));
+            thumbnailCache.cancelBatchedThumbnail(2);
+            return b;
+        }).get();
+        runTasks(bgTasks);
+
+        assertEquals(List.of("1:low", "3:low"), fetches);
+        assertEquals(List.of(1, 3), deliveredTaskIds);
+        assertTrue(batch.isDone());
+        assertEquals(2, batch.getIpcCount());
+    }
+
+    @Test
+    public void updateThumbnailsInBackground_highResEnabled_upgradesLowResCenterFirst()
+            throws Exception {
+        List<Runnable> bgTasks = new ArrayList<>();
+        List<String> fetches = new ArrayList<>();
+        TaskThumbnailCache thumbnailCache = createFakeFetchingCache(bgTasks::add, fetches);
+        // Only relevant if the device supports low res thumbnails
+        assumeFalse(thumbnailCache.getHighResLoadingState().isEnabled());
+        // Visible tasks, starting with the one closest to the center
+        List<Task> tasks = List.of(createTask(2), createTask(1), createTask(3));
+        MAIN_EXECUTOR.submit(() -> thumbnailCache.updateThumbnailsInBackground(tasks, null))
+                .get();
+        runTasks(bgTasks);
+        for (Task task : tasks) {
+            assertTrue(task.thumbnail.reducedResolution);
+        }
+        fetches.clear();
+        List<Integer> upgradedTaskIds = new ArrayList<>();
+
+        MAIN_EXECUTOR.submit(() -> {
+            thumbnailCache.getHighResLoadingState().setVisible(true);
+            thumbnailCache.updateThumbnailsInBackground(tasks,
+                    (task, thumbnail) -> upgradedTaskIds.add(task.key.id));
+        }).get();
+        runTasks(bgTasks);
+
+        assertEquals(List.of("2:high", "1:high", "3:high"), fetches);
+        assertEquals(List.of(2, 1, 3), upgradedTaskIds);
+        for (Task task : tasks) {
+            assertFalse(task.thumbnail.reducedResolution);
+        }
+    }
+
+    /**
+     * Returns a cache whose thumbnail fetches are recorded in {@param fetches} and return a
+     * thumbnail of the requested resolution.
+     */
+    private TaskThumbnailCache createFakeFetchingCache(Executor executor, List<String> fetches) {
+        return new TaskThumbnailCache(mContext, executor, mTaskKeyCache) {
+            @Override
+            ThumbnailData getTaskThumbnail(int taskId, boolean lowResolution) {
+                fetches.add(taskId + (lowResolution ? ":low" : ":high"));
+                ThumbnailData thumbnailData = new ThumbnailData();
+                thumbnailData.thumbnail = Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888);
+                thumbnailData.reducedResolution = lowResolution;
+                return thumbnailData;
+            }
+
+            @Override
+            ThumbnailData takeTaskThumbnail(int taskId) {
+                throw new AssertionError("Snapshots are always available");
+            }
+        };
+    }
+
+    /**
+     * Runs the pending main thread tasks, eg, the end of cancelled requests, then the background
+     * tasks, then the main thread tasks they posted, including the callbacks posted by those.
+     */
+    private static void runTasks(List<Runnable> bgTasks) throws Exception {
+        MAIN_EXECUTOR.submit(() -> { }).get();
+        while (!bgTasks.isEmpty()) {
+            bgTasks.remove(0).run();
+        }
+        MAIN_EXECUTOR.submit(() -> { }).get();
+        MAIN_EXECUTOR.submit(() -> { }).get();
+    }
+
+    private static Task createTask(int id) {
+        return new Task(new Task.TaskKey(id, 0, new Intent(), new ComponentName("", ""), 0, 0));
+    }
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import androidx.test.filters.SmallTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+@SmallTest
+public class TaskIconDiskCacheTest {
+
+    private static final long MAX_DISK_BYTES = 64 * 1024;
+
+    private File mDir;
+
+    @Before
+    public void setUp() {
+        mDir = new File(getApplicationContext().getCacheDir(), "task_icon_disk_cache_test");
+        deleteDir();
+    }
+
+    @After
+    public void tearDown() {
+        deleteDir();
+    }
+
+    @Test
+    public void get_newInstance_returnsPersistedEntry() {
+        newCache().put("key", newEntry(newIcon(Color.RED), "Description", "Title"));
+
+        TaskIconDiskCache.Entry entry = newCache().get("key");
+
+        assertNotNull(entry);
+        assertEquals(Color.RED, entry.icon.getPixel(0, 0));
+        assertEquals(Color.BLUE, entry.color);
+        assertTrue(entry.isInstantApp);
+        assertEquals("Description", entry.contentDescription);
+        assertEquals("Title", entry.title);
+    }
+
+    @Test
+    public void get_differentKey_returnsNull() {
+        TaskIconDiskCache cache = newCache();
+        cache.put("key", newEntry(newIcon(Color.RED), "", ""));
+
+        assertNull(cache.get("otherKey"));
+    }
+
+    @Test
+    public void put_sameKey_replacesEntry() {
+        TaskIconDiskCache cache = newCache();
+        cache.put("key", newEntry(newIcon(Color.RED), "", "Old"));
+        cache.put("key", newEntry(newIcon(Color.GREEN), "", "New"));
+
+        TaskIconDiskCache.Entry entry = cache.get("key");
+
+        assertEquals(Color.GREEN, entry.icon.getPixel(0, 0));
+        assertEquals("New", entry.title);
+    }
+
+    @Test
+    public void put_overDiskBudget_trimsFilesExceptNewest() {
+        TaskIconDiskCache cache = newCache();
+        for (int i = 0; i < 200; i++) {
+            cache.put("key" + i, newEntry(newNoisyIcon(i), "", ""));
+        }
+
+        assertTrue(cache.getDiskSizeBytes() <= MAX_DISK_BYTES);
+        assertNotNull(cache.get("key199"));
+    }
+
+    private TaskIconDiskCache newCache() {
+        return new TaskIconDiskCache(mDir, MAX_DISK_BYTES);
+    }
+
+    private static TaskIconDiskCache.Entry newEntry(Bitmap icon, String contentDescription,
+            String title) {
+        return new TaskIconDiskCache.Entry(icon, Color.BLUE, true /* isInstantApp */,
+                contentDescription, title);
+    }
+
+    private static Bitmap newIcon(int color) {
+        Bitmap icon = Bitmap.createBitmap(32, 32, Bitmap.Config.ARGB_8888);
+        icon.eraseColor(color);
+        return icon;
+    }
+
+    private static Bitmap newNoisyIcon(int seed) {
+        Bitmap icon = newIcon(Color.WHITE);
+        for (int x = 0; x < icon.getWidth(); x++) {
+            for (int y = 0; y < icon.getHeight(); y++) {
+                icon.setPixel(x, y, (x * 31 + y * 17 + seed) * 0x9E3779B1 | 0xFF000000);
+            }
+        }
+        return icon;
+    }
+
+    private void deleteDir() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+}
@@ -278,4 +278,31 @@ public class TaskKeyByLastActiveTimeCacheTest {
         assertNotNull(cache.getAndInvalidateIfModified(key3));
         assertNotNull(cache.getAndInvalidateIfModified(key4));
     }
+
+    @Test
+    public void removeByLastActiveTimeWhenOverMaxBytes() {
+        // Each entry takes 10 bytes, so only 2 entries fit
+        TaskKeyByLastActiveTimeCache<ThumbnailData> cache =
+                new TaskKeyByLastActiveTimeCache<>(4, 25, data -> 10);
+        Task.TaskKey key1 = new Task.TaskKey(1, 0, new Intent(),
+                new ComponentName("", ""), 0, 200);
+        cache.put(key1, new ThumbnailData());
+        Task.TaskKey key2 = new Task.TaskKey(2, 0, new Intent(),
+                new ComponentName("", ""), 0, 100);
+        cache.put(key2, new ThumbnailData());
+
+        // Add the 3rd entry with the smallest last active time, which is kept as it was just added
+        Task.TaskKey key3 = new Task.TaskKey(3, 0, new Intent(),
+                new ComponentName("", ""), 0, 50);
+        ThumbnailData task3 = new ThumbnailData();
+        cache.put(key3, task3);
+
+        // The entry with the smallest last active time other than the new one is removed
+        assertEquals(2, cache.getSize());
+        assertEquals(20, cache.getSizeBytes());
+        assertNotNull(cache.getAndInvalidateIfModified(key1));
+        assertNull(cache.getAndInvalidateIfModified(key2));
+        assertEquals(task3, cache.getAndInvalidateIfModified(key3));
+        assertEquals(2, cache.getQueue().size());
+    }
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+
+import android.content.ComponentName;
+import android.content.Intent;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.systemui.shared.recents.model.Task;
+
+import org.junit.Test;
+
+@SmallTest
+public class TaskKeyByteSizeLruCacheTest {
+
+    // Values are sized by their length
+    private final TaskKeyByteSizeLruCache<String> mCache =
+            new TaskKeyByteSizeLruCache<>(3, 10, String::length);
+
+    @Test
+    public void put_withinBudget_keepsAllEntries() {
+        mCache.put(createKey(1), "aaaa");
+        mCache.put(createKey(2), "bbbb");
+
+        assertEquals(2, mCache.getSize());
+        assertEquals(8, mCache.getSizeBytes());
+    }
+
+    @Test
+    public void put_overBudget_evictsLeastRecentlyUsed() {
+        mCache.put(createKey(1), "aaaa");
+        mCache.put(createKey(2), "bbbb");
+        // Access 1 so that 2 is the least recently used
+        assertEquals("aaaa", mCache.getAndInvalidateIfModified(createKey(1)));
+        mCache.put(createKey(3), "cccc");
+
+        assertEquals(2, mCache.getSize());
+        assertEquals(8, mCache.getSizeBytes());
+        assertNull(mCache.getAndInvalidateIfModified(createKey(2)));
+        assertEquals("cccc", mCache.getAndInvalidateIfModified(createKey(3)));
+    }
+
+    @Test
+    public void put_moreEntriesThanMaxSize_evictsNothing() {
+        for (int i = 0; i < 5; i++) {
+            mCache.put(createKey(i), "a");
+        }
+
+        assertEquals(5, mCache.getSize());
+        assertEquals(3, mCache.getMaxSize());
+    }
+
+    @Test
+    public void put_entryLargerThanBudget_keepsOnlyThatEntry() {
+        mCache.put(createKey(1), "aaaa");
+        mCache.put(createKey(2), "bbbbbbbbbbbb");
+
+        assertEquals(1, mCache.getSize());
+        assertEquals(12, mCache.getSizeBytes());
+    }
+
+    @Test
+    public void put_sameKey_replacesSize() {
+        mCache.put(createKey(1), "aaaa");
+        mCache.put(createKey(1), "aa");
+
+        assertEquals(1, mCache.getSize());
+        assertEquals(2, mCache.getSizeBytes());
+    }
+
+    @Test
+    public void updateIfAlreadyInCache_largerValue_evictsOtherEntries() {
+        mCache.put(createKey(1), "aaaa");
+        mCache.put(createKey(2), "bbbb");
+        mCache.updateIfAlreadyInCache(2, "bbbbbbbb");
+
+        assertEquals(1, mCache.getSize());
+        assertEquals("bbbbbbbb", mCache.getAndInvalidateIfModified(createKey(2)));
+    }
+
+    @Test
+    public void remove_updatesSize() {
+        mCache.put(createKey(1), "aaaa");
+        mCache.put(createKey(2), "bbbb");
+        mCache.remove(createKey(1));
+        mCache.removeAll(key -> key.id == 2);
+
+        assertEquals(0, mCache.getSize());
+        assertEquals(0, mCache.getSizeBytes());
+    }
+
+    private static Task.TaskKey createKey(int id) {
+        return new Task.TaskKey(id, 0, new Intent(), new ComponentName("", ""), 0, 0);
+    }
+}
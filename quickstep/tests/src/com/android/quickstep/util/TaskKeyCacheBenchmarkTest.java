@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static junit.framework.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.filters.LargeTest;
+
+import com.android.systemui.shared.recents.model.Task;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
+
+/**
+ * Microbenchmark of the {@link TaskKeyCache} implementations under a mixed load: reader threads
+ * look up task keys, as the UI thread does when binding task views, while a writer thread adds
+ * entries and removes the entries of packages, as the background executor does on task stack
+ * changes.
+ *
+ * Like a JMH benchmark, every implementation runs warmup iterations before the measured ones,
+ * and the throughput of each measured iteration is reported. The read latency percentiles show
+ * how long readers are blocked behind writers. Results are logged under the TAG of this class.
+ */
+@LargeTest
+public class TaskKeyCacheBenchmarkTest {
+
+    private static final String TAG = "TaskKeyCacheBenchmark";
+
+    private static final int CACHE_SIZE = 12;
+    private static final int TASK_COUNT = 50;
+    private static final int READER_COUNT = 3;
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final long ITERATION_MS = 500;
+    // One in this many writer operations removes all the tasks of a package
+    private static final int REMOVE_ALL_PERIOD = 8;
+    private static final int PACKAGE_COUNT = 5;
+
+    private final Task.TaskKey[] mKeys = new Task.TaskKey[TASK_COUNT];
+
+    public TaskKeyCacheBenchmarkTest() {
+        for (int i = 0; i < TASK_COUNT; i++) {
+            ComponentName component =
+                    new ComponentName("package" + (i % PACKAGE_COUNT), "Activity" + i);
+            mKeys[i] = new Task.TaskKey(i, 0, new Intent().setComponent(component), component,
+                    0, 0);
+        }
+    }
+
+    @Test
+    public void mixedReadWrite_allImplementations() throws Exception {
+        benchmark("TaskKeyLruCache", TaskKeyLruCache::new);
+        benchmark("TaskKeyByLastActiveTimeCache", TaskKeyByLastActiveTimeCache::new);
+        benchmark("TaskKeyClockCache", TaskKeyClockCache::new);
+    }
+
+    private void benchmark(String name, IntFunction<TaskKeyCache<Object>> cacheFactory)
+            throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            runIteration(cacheFactory.apply(CACHE_SIZE));
+        }
+        double totalReadsPerMs = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            TaskKeyCache<Object> cache = cacheFactory.apply(CACHE_SIZE);
+            Result result = runIteration(cache);
+            totalReadsPerMs += result.mReadsPerMs;
+            Log.d(TAG, String.format("%s iteration %d: %.1f reads/ms, %.1f writes/ms,"
+                            + " read latency p50=%dns p99=%dns max=%dns",
+                    name, i, result.mReadsPerMs, result.mWritesPerMs,
+                    result.mReadLatencyNs[50], result.mReadLatencyNs[99],
+                    result.mReadLatencyNs[100]));
+
+            assertTrue(result.mReadsPerMs > 0);
+            assertTrue(cache.getSize() <= CACHE_SIZE);
+        }
+        Log.d(TAG, String.format("%s average: %.1f reads/ms",
+                name, totalReadsPerMs / MEASURED_ITERATIONS));
+    }
+
+    private Result runIteration(TaskKeyCache<Object> cache) throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        long[] readCounts = new long[READER_COUNT];
+        long[][] readLatencies = new long[READER_COUNT][];
+        long[] writeCount = new long[1];
+        Object value = new Object();
+
+        for (int r = 0; r < READER_COUNT; r++) {
+            int reader = r;
+            threads.add(new Thread(() -> {
+                Random random = new Random(reader);
+                List<Long> latencies = new ArrayList<>();
+                awaitQuietly(start);
+                long count = 0;
+                while (running.get()) {
+                    Task.TaskKey key = mKeys[random.nextInt(TASK_COUNT)];
+                    long startNs = System.nanoTime();
+                    cache.getAndInvalidateIfModified(key);
+                    long latency = System.nanoTime() - startNs;
+                    // Sample the latencies to bound the memory used by the benchmark
+                    if ((count & 0xFF) == 0) {
+                        latencies.add(latency);
+                    }
+                    count++;
+                }
+                readCounts[reader] = count;
+                readLatencies[reader] = latencies.stream().mapToLong(Long::longValue).toArray();
+            }));
+        }
+        threads.add(new Thread(() -> {
+            Random random = new Random(READER_COUNT);
+            awaitQuietly(start);
+            long count = 0;
+            while (running.get()) {
+                if (count % REMOVE_ALL_PERIOD == 0) {
+                    String pkg = "package" + random.nextInt(PACKAGE_COUNT);
+                    cache.removeAll(key -> pkg.equals(key.getPackageName()));
+                } else {
+                    cache.put(mKeys[random.nextInt(TASK_COUNT)], value);
+                }
+                count++;
+            }
+            writeCount[0] = count;
+        }));
+
+        threads.forEach(Thread::start);
+        long startMs = SystemClock.elapsedRealtime();
+        start.countDown();
+        Thread.sleep(ITERATION_MS);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        long durationMs = Math.max(1, SystemClock.elapsedRealtime() - startMs);
+
+        long reads = 0;
+        List<Long> latencies = new ArrayList<>();
+        for (int r = 0; r < READER_COUNT; r++) {
+            reads += readCounts[r];
+            for (long latency : readLatencies[r]) {
+                latencies.add(latency);
+            }
+        }
+        return new Result((double) reads / durationMs, (double) writeCount[0] / durationMs,
+                latencies);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Result {
+
+        final double mReadsPerMs;
+        final double mWritesPerMs;
+        // Read latency at each percentile, from 0 to 100
+        final long[] mReadLatencyNs = new long[101];
+
+        Result(double readsPerMs, double writesPerMs, List<Long> readLatencies) {
+            mReadsPerMs = readsPerMs;
+            mWritesPerMs = writesPerMs;
+            readLatencies.sort(Long::compare);
+            if (!readLatencies.isEmpty()) {
+                for (int p = 0; p <= 100; p++) {
+                    int index = Math.min(readLatencies.size() - 1,
+                            p * readLatencies.size() / 100);
+                    mReadLatencyNs[p] = readLatencies.get(index);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.content.Intent;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.systemui.shared.recents.model.Task;
+
+import org.junit.Test;
+
+@SmallTest
+public class TaskKeyClockCacheTest {
+
+    private final TaskKeyClockCache<String> mCache = new TaskKeyClockCache<>(3);
+
+    @Test
+    public void put_full_evictsEntryNotAccessedSinceInsertion() {
+        mCache.put(createKey(1, 0), "1");
+        mCache.put(createKey(2, 0), "2");
+        mCache.put(createKey(3, 0), "3");
+        // 1 gets a second chance, 2 is the oldest entry which was not accessed
+        assertEquals("1", mCache.getAndInvalidateIfModified(createKey(1, 0)));
+        mCache.put(createKey(4, 0), "4");
+
+        assertEquals(3, mCache.getSize());
+        assertEquals("1", mCache.getAndInvalidateIfModified(createKey(1, 0)));
+        assertNull(mCache.getAndInvalidateIfModified(createKey(2, 0)));
+        assertEquals("3", mCache.getAndInvalidateIfModified(createKey(3, 0)));
+        assertEquals("4", mCache.getAndInvalidateIfModified(createKey(4, 0)));
+    }
+
+    @Test
+    public void put_allAccessed_keepsNewEntry() {
+        for (int i = 1; i <= 3; i++) {
+            mCache.put(createKey(i, 0), String.valueOf(i));
+            mCache.getAndInvalidateIfModified(createKey(i, 0));
+        }
+        mCache.put(createKey(4, 0), "4");
+
+        assertEquals(3, mCache.getSize());
+        assertEquals("4", mCache.getAndInvalidateIfModified(createKey(4, 0)));
+    }
+
+    @Test
+    public void get_modifiedKey_removesEntry() {
+        mCache.put(createKey(1, 0), "1");
+
+        assertNull(mCache.getAndInvalidateIfModified(createKey(1, 5)));
+        assertEquals(0, mCache.getSize());
+    }
+
+    @Test
+    public void put_sameTask_replacesEntry() {
+        mCache.put(createKey(1, 0), "1");
+        mCache.put(createKey(1, 5), "1b");
+
+        assertEquals(1, mCache.getSize());
+        assertEquals("1b", mCache.getAndInvalidateIfModified(createKey(1, 5)));
+    }
+
+    @Test
+    public void removeAll_removesMatchingEntries() {
+        mCache.put(createKey(1, 0), "1");
+        mCache.put(createKey(2, 0), "2");
+        mCache.removeAll(key -> key.id == 1);
+
+        assertEquals(1, mCache.getSize());
+        assertEquals("2", mCache.getAndInvalidateIfModified(createKey(2, 0)));
+    }
+
+    @Test
+    public void put_afterManyRemovals_boundsClock() {
+        for (int i = 0; i < 20; i++) {
+            mCache.put(createKey(i, 0), String.valueOf(i));
+            mCache.remove(createKey(i, 0));
+        }
+
+        assertEquals(0, mCache.getSize());
+        assertTrue(mCache.getClockSize() <= 2 * mCache.getMaxSize() + 1);
+    }
+
+    @Test
+    public void updateCacheSizeAndRemoveExcess_smallerSize_evictsExcess() {
+        mCache.put(createKey(1, 0), "1");
+        mCache.put(createKey(2, 0), "2");
+        mCache.put(createKey(3, 0), "3");
+        mCache.updateCacheSizeAndRemoveExcess(1);
+
+        assertEquals(1, mCache.getSize());
+        assertEquals(1, mCache.getMaxSize());
+    }
+
+    private static Task.TaskKey createKey(int id, long lastActiveTime) {
+        return new Task.TaskKey(id, 0, new Intent(), new ComponentName("", ""), 0,
+                lastActiveTime);
+    }
+}
@@ -2105,6 +2105,7 @@ public class Launcher extends StatefulActivity<LauncherState>
     @Override
     public void onTrimMemory(int level) {
         super.onTrimMemory(level);
+        mIconCache.onTrimMemory(level);
         if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
             // The widget preview db can result in holding onto over
             // 3MB of memory for caching which isn't necessary.
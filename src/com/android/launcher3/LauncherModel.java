@@ -55,6 +55,8 @@ import com.android.launcher3.model.LoaderTask;
 import com.android.launcher3.model.ModelDbController;
 import com.android.launcher3.model.ModelDelegate;
 import com.android.launcher3.model.ModelLauncherCallbacks;
+import com.android.launcher3.model.ModelUpdateCoalescer;
+import com.android.launcher3.model.ModelUpdateCoalescer.CoalescibleTask;
 import com.android.launcher3.model.ModelWriter;
 import com.android.launcher3.model.PackageInstallStateChangedTask;
 import com.android.launcher3.model.PackageUpdatedTask;
@@ -78,7 +80,9 @@ import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
@@ -148,6 +152,17 @@ public class LauncherModel implements InstallSessionTracker.Callback {
         }
     };
 
+    // Merges bursts of package updates, see FeatureFlags.ENABLE_COALESCED_MODEL_UPDATES. Tasks are
+    // posted rather than run inline so that flushing never blocks the calling thread.
+    @NonNull
+    private final ModelUpdateCoalescer mUpdateCoalescer = new ModelUpdateCoalescer(
+            MODEL_EXECUTOR.getHandler(), this::postModelUpdateTask);
+
+    // Writers with batched item updates waiting for their write window, which are flushed before
+    // any other model task is posted, see ModelWriter#flushPendingUpdates
+    @NonNull
+    private final Set<ModelWriter> mWritersWithPendingUpdates = ConcurrentHashMap.newKeySet();
+
     LauncherModel(@NonNull final Context context, @NonNull final LauncherAppState app,
             @NonNull final IconCache iconCache, @NonNull final AppFilter appFilter,
             final boolean isPrimaryInstance) {
@@ -219,6 +234,7 @@ public class LauncherModel implements InstallSessionTracker.Callback {
      */
     public void destroy() {
         mModelDestroyed = true;
+        mUpdateCoalescer.clear();
         MODEL_EXECUTOR.execute(mModelDelegate::destroy);
     }
 
@@ -379,6 +395,8 @@ public class LauncherModel implements InstallSessionTracker.Callback {
                     return true;
                 } else {
                     stopLoader();
+                    // The item updates requested before the reload must be in the database
+                    flushPendingWrites();
                     mLoaderTask = new LoaderTask(
                             mApp, mBgAllAppsList, mBgDataModel, mModelDelegate, launcherBinder);
 
@@ -585,10 +603,51 @@ public class LauncherModel implements InstallSessionTracker.Callback {
         if (mModelDestroyed) {
             return;
         }
+        flushPendingWrites();
+        if (FeatureFlags.ENABLE_COALESCED_MODEL_UPDATES.get()) {
+            if (task instanceof CoalescibleTask) {
+                mUpdateCoalescer.enqueue((CoalescibleTask) task);
+                return;
+            }
+            if (mUpdateCoalescer.flush()) {
+                // Post after the pending updates which were requested before this task
+                postModelUpdateTask(task);
+                return;
+            }
+        }
         task.init(mApp, this, mBgDataModel, mBgAllAppsList, MAIN_EXECUTOR);
         MODEL_EXECUTOR.execute(task);
     }
 
+    /**
+     * Called by {@param writer} when it starts or stops holding batched item updates.
+     */
+    public void setHasPendingWrites(@NonNull ModelWriter writer, boolean hasPendingWrites) {
+        if (hasPendingWrites) {
+            mWritersWithPendingUpdates.add(writer);
+        } else {
+            mWritersWithPendingUpdates.remove(writer);
+        }
+    }
+
+    /**
+     * Posts the batched item updates of all the writers to the model thread, so that they are
+     * written before the tasks posted afterwards.
+     */
+    private void flushPendingWrites() {
+        for (ModelWriter writer : mWritersWithPendingUpdates) {
+            writer.flushPendingUpdates();
+        }
+    }
+
+    private void postModelUpdateTask(@NonNull final ModelUpdateTask task) {
+        if (mModelDestroyed) {
+            return;
+        }
+        task.init(mApp, this, mBgDataModel, mBgAllAppsList, MAIN_EXECUTOR);
+        MODEL_EXECUTOR.post(task);
+    }
+
     /**
      * A task to be executed on the current callbacks on the UI thread.
      * If there is no current callbacks, the task is ignored.
@@ -662,6 +721,8 @@ public class LauncherModel implements InstallSessionTracker.Callback {
             writer.println();
         }
         mModelDelegate.dump(prefix, fd, writer, args);
+        mUpdateCoalescer.dump(prefix, writer);
+        mApp.getIconCache().dump(prefix, writer);
         mBgDataModel.dump(prefix, fd, writer, args);
     }
 
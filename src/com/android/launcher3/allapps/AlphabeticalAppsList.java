@@ -18,8 +18,11 @@ package com.android.launcher3.allapps;
 import static com.android.launcher3.allapps.SectionDecorationInfo.ROUND_BOTTOM_LEFT;
 import static com.android.launcher3.allapps.SectionDecorationInfo.ROUND_BOTTOM_RIGHT;
 import static com.android.launcher3.allapps.SectionDecorationInfo.ROUND_NOTHING;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_INCREMENTAL_APPS_LIST;
+import static com.android.launcher3.model.data.AppInfo.COMPONENT_KEY_COMPARATOR;
 
 import android.content.Context;
+import android.text.TextUtils;
 
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
@@ -27,12 +30,16 @@ import androidx.recyclerview.widget.DiffUtil;
 
 import com.android.launcher3.Flags;
 import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem;
+import com.android.launcher3.icons.BitmapInfo;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.util.LabelComparator;
+import com.android.launcher3.util.LabelComparator.SortKey;
 import com.android.launcher3.views.ActivityContext;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -52,6 +59,10 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
 
     public static final String TAG = "AlphabeticalAppsList";
 
+    // Above this many changed apps, rebuilding the lists is cheaper than editing them
+    @VisibleForTesting
+    static final int MAX_INCREMENTAL_CHANGES = 8;
+
     private final WorkProfileManager mWorkProviderManager;
 
     private final PrivateProfileManager mPrivateProviderManager;
@@ -96,6 +107,13 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
     private int mNumAppRowsInAdapter;
     private Predicate<ItemInfo> mItemFilter;
 
+    // The state of the apps of the store when the lists were last updated, sorted like the store
+    @Nullable
+    private AppState[] mLastAppStates;
+    // Index of the first app of mApps in mAdapterItems, if mApps are the only app items and are
+    // not decorated, -1 otherwise
+    private int mAppItemsStart = -1;
+
     public AlphabeticalAppsList(Context context, @Nullable AllAppsStore<T> appsStore,
             WorkProfileManager workProfileManager, PrivateProfileManager privateProfileManager) {
         mAllAppsStore = appsStore;
@@ -116,6 +134,7 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
 
     public void updateItemFilter(Predicate<ItemInfo> itemFilter) {
         this.mItemFilter = itemFilter;
+        mLastAppStates = null;
         onAppsUpdated();
     }
 
@@ -206,12 +225,18 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
         if (mAllAppsStore == null) {
             return;
         }
+        AppInfo[] apps = mAllAppsStore.getApps();
+        if (ENABLE_INCREMENTAL_APPS_LIST.get() && applyIncrementalUpdate(apps)) {
+            return;
+        }
+        mLastAppStates = AppState.of(apps);
+
         // Sort the list of apps
         mApps.clear();
         mPrivateApps.clear();
 
-        Stream<AppInfo> appSteam = Stream.of(mAllAppsStore.getApps());
-        Stream<AppInfo> privateAppStream = Stream.of(mAllAppsStore.getApps());
+        Stream<AppInfo> appSteam = Stream.of(apps);
+        Stream<AppInfo> privateAppStream = Stream.of(apps);
 
         if (!hasSearchResults() && mItemFilter != null) {
             appSteam = appSteam.filter(mItemFilter);
@@ -225,14 +250,17 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
 
         // As a special case for some languages (currently only Simplified Chinese), we may need to
         // coalesce sections
-        Locale curLocale = mActivityContext.getResources().getConfiguration().locale;
-        boolean localeRequiresSectionSorting = curLocale.equals(Locale.SIMPLIFIED_CHINESE);
-        if (localeRequiresSectionSorting) {
+        if (localeRequiresSectionSorting()) {
             // Compute the section headers. We use a TreeMap with the section name comparator to
-            // ensure that the sections are ordered when we iterate over it later
+            // ensure that the sections are ordered when we iterate over it later. Each section
+            // name is only collated once.
+            LabelComparator sectionComparator = new LabelComparator();
+            Map<String, SortKey> sectionKeys = new HashMap<>();
             appSteam = appSteam.collect(Collectors.groupingBy(
                     info -> info.sectionName,
-                    () -> new TreeMap<>(new LabelComparator()),
+                    () -> new TreeMap<>(Comparator.comparing((String section) ->
+                            sectionKeys.computeIfAbsent(section,
+                                    name -> sectionComparator.getSortKey(name, null)))),
                     Collectors.toCollection(ArrayList::new)))
                     .values()
                     .stream()
@@ -247,6 +275,166 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
         }
     }
 
+    private boolean localeRequiresSectionSorting() {
+        Locale curLocale = mActivityContext.getResources().getConfiguration().locale;
+        return curLocale.equals(Locale.SIMPLIFIED_CHINESE);
+    }
+
+    /**
+     * Applies the difference between the apps of the store when the lists were last updated and
+     * {@param apps} as positional edits to the sorted lists, notifying the adapter of each edit
+     * instead of diffing the whole list.
+     *
+     * Returns false if the lists need to be rebuilt, ie, if the lists were not built from the
+     * store, if the adapter shows more than the sorted apps, or if an app moved or too many apps
+     * changed. The edits applied so far are kept in that case, as rebuilding diffs against the
+     * current items.
+     *
+     * This is still O(n) in the number of apps: the store only provides the full list of apps, so
+     * finding the changes walks both lists, and the app states, fast scroller sections and item
+     * metadata are rebuilt for all the apps. Each edit is a binary search plus a list insertion
+     * or removal. What this saves is the diff of the adapter items, and the rebinding of the
+     * items which did not change.
+     */
+    @VisibleForTesting
+    boolean applyIncrementalUpdate(AppInfo[] apps) {
+        AppState[] oldStates = mLastAppStates;
+        if (oldStates == null || mAppItemsStart < 0 || hasSearchResults()
+                || localeRequiresSectionSorting()) {
+            return false;
+        }
+
+        // Both arrays are sorted by component key
+        AppState[] newStates = new AppState[apps.length];
+        List<AppInfo> removed = new ArrayList<>();
+        List<AppInfo> added = new ArrayList<>();
+        List<AppInfo> changed = new ArrayList<>();
+        int oldIndex = 0;
+        int newIndex = 0;
+        while (oldIndex < oldStates.length || newIndex < apps.length) {
+            int result = oldIndex == oldStates.length ? 1
+                    : newIndex == apps.length ? -1
+                    : COMPONENT_KEY_COMPARATOR.compare(oldStates[oldIndex].mApp, apps[newIndex]);
+            if (result < 0) {
+                removed.add(oldStates[oldIndex++].mApp);
+            } else if (result > 0) {
+                AppInfo app = apps[newIndex];
+                newStates[newIndex++] = new AppState(app);
+                added.add(app);
+            } else {
+                AppState oldState = oldStates[oldIndex++];
+                AppInfo app = apps[newIndex];
+                if (!oldState.hasSamePosition(app)) {
+                    return false;
+                }
+                if (oldState.mApp == app && oldState.hasSameContent(app)) {
+                    newStates[newIndex++] = oldState;
+                } else {
+                    newStates[newIndex++] = new AppState(app);
+                    changed.add(app);
+                }
+            }
+            if (removed.size() + added.size() + changed.size() > MAX_INCREMENTAL_CHANGES) {
+                return false;
+            }
+        }
+
+        Predicate<ItemInfo> privateMatcher = mPrivateProviderManager == null
+                ? null : mPrivateProviderManager.getItemInfoMatcher();
+        Predicate<ItemInfo> privateFilter = mItemFilter == null ? null : privateMatcher;
+
+        for (AppInfo app : removed) {
+            int index = indexOfApp(mApps, app);
+            if (index >= 0) {
+                mApps.remove(index);
+                mAdapterItems.remove(mAppItemsStart + index);
+                if (mAdapter != null) {
+                    mAdapter.notifyItemRemoved(mAppItemsStart + index);
+                }
+            } else if (isInApps(app)) {
+                return false;
+            }
+            index = indexOfApp(mPrivateApps, app);
+            if (index >= 0) {
+                mPrivateApps.remove(index);
+            }
+        }
+        for (AppInfo app : changed) {
+            int index = indexOfApp(mApps, app);
+            if (index >= 0) {
+                mApps.set(index, app);
+                mAdapterItems.set(mAppItemsStart + index, AdapterItem.asApp(app));
+                if (mAdapter != null) {
+                    mAdapter.notifyItemChanged(mAppItemsStart + index);
+                }
+            } else if (isInApps(app)) {
+                return false;
+            }
+            index = indexOfApp(mPrivateApps, app);
+            if (index >= 0) {
+                mPrivateApps.set(index, app);
+            }
+        }
+        for (AppInfo app : added) {
+            if (isInApps(app)) {
+                int index = -(indexOfApp(mApps, app) + 1);
+                mApps.add(index, app);
+                mAdapterItems.add(mAppItemsStart + index, AdapterItem.asApp(app));
+                if (mAdapter != null) {
+                    mAdapter.notifyItemInserted(mAppItemsStart + index);
+                }
+            }
+            if (privateFilter == null || privateFilter.test(app)) {
+                mPrivateApps.add(-(indexOfApp(mPrivateApps, app) + 1), app);
+            }
+        }
+
+        if (privateMatcher != null && !mApps.isEmpty() && mApps.stream().allMatch(privateMatcher)) {
+            // Private apps are decorated together
+            return false;
+        }
+
+        mLastAppStates = newStates;
+        mFastScrollerSections.clear();
+        String lastSectionName = null;
+        for (int i = 0; i < mApps.size(); i++) {
+            String sectionName = mApps.get(i).sectionName;
+            if (!sectionName.equals(lastSectionName)) {
+                lastSectionName = sectionName;
+                mFastScrollerSections.add(
+                        new FastScrollSectionInfo(sectionName, mAppItemsStart + i));
+            }
+        }
+        updateItemMetadata();
+        return true;
+    }
+
+    private boolean isInApps(AppInfo app) {
+        return mItemFilter == null || mItemFilter.test(app);
+    }
+
+    /**
+     * Returns the index of {@param app} in the sorted list, or {@code -(insertion point) - 1} if
+     * the list does not contain an app with the same component and user.
+     */
+    private int indexOfApp(List<AppInfo> apps, AppInfo app) {
+        int low = 0;
+        int high = apps.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            AppInfo midApp = apps.get(mid);
+            if (midApp.componentName.equals(app.componentName) && midApp.user.equals(app.user)) {
+                return mid;
+            }
+            if (mAppNameComparator.compare(midApp, app) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return -(low + 1);
+    }
+
     /**
      * Updates the set of filtered apps with the current filter. At this point, we expect
      * mCachedSectionNames to have been calculated for the set of all apps in mApps.
@@ -257,6 +445,7 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
         mFastScrollerSections.clear();
         mAdapterItems.clear();
         mAccessibilityResultsCount = 0;
+        mAppItemsStart = -1;
 
         // Recreate the filtered and sectioned apps (for convenience for the grid layout) from the
         // ordered set of sections
@@ -269,13 +458,34 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
                 position += mWorkProviderManager.addWorkItems(mAdapterItems);
                 addApps = mWorkProviderManager.shouldShowWorkApps();
             }
+            int appItemsStart = mAdapterItems.size();
             if (addApps) {
                 position = addAppsWithSections(mApps, position);
             }
             if (Flags.enablePrivateSpace()) {
                 position = addPrivateSpaceItems(position);
             }
+            if (addApps && mAdapterItems.size() == appItemsStart + mApps.size()
+                    && (mApps.isEmpty()
+                            || mAdapterItems.get(appItemsStart).getDecorationInfo() == null)) {
+                mAppItemsStart = appItemsStart;
+            }
+        }
+        updateItemMetadata();
+
+        if (mAdapter != null) {
+            // The diff stays on the main thread, as the items and their notifications must change
+            // together. Only app installs, updates and removals skip it, see
+            // applyIncrementalUpdate.
+            DiffUtil.calculateDiff(new MyDiffCallback(oldItems, mAdapterItems), false)
+                    .dispatchUpdatesTo(mAdapter);
         }
+    }
+
+    /**
+     * Updates the accessibility count and the row of each item after the items changed.
+     */
+    private void updateItemMetadata() {
         mAccessibilityResultsCount = (int) mAdapterItems.stream()
                 .filter(AdapterItem::isCountedForAccessibility).count();
 
@@ -304,11 +514,6 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
             }
             mNumAppRowsInAdapter = rowIndex + 1;
         }
-
-        if (mAdapter != null) {
-            DiffUtil.calculateDiff(new MyDiffCallback(oldItems, mAdapterItems), false)
-                    .dispatchUpdatesTo(mAdapter);
-        }
     }
 
     int addPrivateSpaceItems(int position) {
@@ -421,6 +626,58 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
         return roundRegion;
     }
 
+    /**
+     * The state of an app when the lists were last updated, as apps can be updated in place.
+     */
+    private static class AppState {
+
+        final AppInfo mApp;
+        final String mTitle;
+        final String mAppTitle;
+        final String mSectionName;
+        final CharSequence mContentDescription;
+        final int mRuntimeStatusFlags;
+        final int mProgressLevel;
+        final BitmapInfo mBitmap;
+
+        AppState(AppInfo app) {
+            mApp = app;
+            mTitle = app.title == null ? null : app.title.toString();
+            mAppTitle = app.appTitle == null ? null : app.appTitle.toString();
+            mSectionName = app.sectionName;
+            mContentDescription = app.contentDescription;
+            mRuntimeStatusFlags = app.runtimeStatusFlags;
+            mProgressLevel = app.getProgressLevel();
+            mBitmap = app.bitmap;
+        }
+
+        /**
+         * Returns true if the app sorts at the same position as when this state was recorded.
+         */
+        boolean hasSamePosition(AppInfo app) {
+            return TextUtils.equals(mTitle, app.title) && TextUtils.equals(mAppTitle, app.appTitle)
+                    && Objects.equals(mSectionName, app.sectionName);
+        }
+
+        /**
+         * Returns true if the app is displayed the same as when this state was recorded.
+         */
+        boolean hasSameContent(AppInfo app) {
+            return mRuntimeStatusFlags == app.runtimeStatusFlags
+                    && mProgressLevel == app.getProgressLevel()
+                    && mBitmap == app.bitmap
+                    && TextUtils.equals(mContentDescription, app.contentDescription);
+        }
+
+        static AppState[] of(AppInfo[] apps) {
+            AppState[] states = new AppState[apps.length];
+            for (int i = 0; i < apps.length; i++) {
+                states[i] = new AppState(apps[i]);
+            }
+            return states;
+        }
+    }
+
     private static class MyDiffCallback extends DiffUtil.Callback {
 
         private final List<AdapterItem> mOldList;
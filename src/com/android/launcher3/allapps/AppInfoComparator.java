@@ -22,6 +22,7 @@ import android.os.UserHandle;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.pm.UserCache;
 import com.android.launcher3.util.LabelComparator;
+import com.android.launcher3.util.LabelComparator.SortKey;
 
 import java.util.Comparator;
 
@@ -43,7 +44,7 @@ public class AppInfoComparator implements Comparator<AppInfo> {
     @Override
     public int compare(AppInfo a, AppInfo b) {
         // Order by the title in the current locale
-        int result = mLabelComparator.compare(getSortingTitle(a), getSortingTitle(b));
+        int result = getSortKey(a).compareTo(getSortKey(b));
         if (result != 0) {
             return result;
         }
@@ -63,6 +64,16 @@ public class AppInfoComparator implements Comparator<AppInfo> {
         }
     }
 
+    /**
+     * Returns the key of the sorting title of {@param info}, which is cached in the app as long as
+     * its title and the locale do not change.
+     */
+    public SortKey getSortKey(AppInfo info) {
+        SortKey key = mLabelComparator.getSortKey(getSortingTitle(info), info.sortKey);
+        info.sortKey = key;
+        return key;
+    }
+
     private String getSortingTitle(AppInfo info) {
         if (info.appTitle != null) {
             return info.appTitle.toString();
@@ -70,9 +70,21 @@ public class AllAppsSearchBarController
         mInput.setOnEditorActionListener(this);
         mInput.setOnBackKeyListener(this);
         mInput.addOnFocusChangeListener(this);
+        if (mSearchAlgorithm != null) {
+            mSearchAlgorithm.destroy();
+        }
         mSearchAlgorithm = searchAlgorithm;
     }
 
+    /**
+     * Cleans up after search is no longer needed.
+     */
+    public void onDestroy() {
+        if (mSearchAlgorithm != null) {
+            mSearchAlgorithm.destroy();
+        }
+    }
+
     @Override
     public void beforeTextChanged(CharSequence charSequence, int i, int i1, int i2) {
         // Do nothing
@@ -0,0 +1,507 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.allapps.search;
+
+import android.text.TextUtils;
+import android.util.SparseArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.search.StringMatcherUtility;
+import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+import com.android.launcher3.util.ComponentKey;
+import com.android.launcher3.util.IntArray;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index over the titles of all apps which returns the same results as running
+ * {@link StringMatcherUtility#matches} against every title, without looking at every title.
+ *
+ * Titles are normalized (lower case, accents removed) and every suffix of a title starting at a
+ * position where {@link StringMatcherUtility#matches} tries to match is added to a trie, up to
+ * {@link #MAX_INDEXED_PREFIX_LENGTH} characters. Each node of the trie holds the postings of the
+ * titles having a matching word-break prefix, in the order the apps were added. A query longer
+ * than the trie refines the postings of the previous query instead of starting over. The matches
+ * are returned in the order of the apps array, as each entry keeps the position of its app.
+ *
+ * Titles with characters which can not be normalized to ASCII are not indexed and are matched
+ * against every query with the collator, as are all the titles for queries containing characters
+ * other than ASCII letters, digits and spaces.
+ *
+ * The same trie answers approximate queries, allowing a few typos: it is walked depth first
+ * while computing the edit distance between the query and the path to each node one row at a
+ * time, which simulates a Levenshtein automaton, and a branch is pruned as soon as all the
+ * values of its row exceed the allowed number of edits.
+ *
+ * This class is not thread safe.
+ */
+public class AppSearchIndex {
+
+    @VisibleForTesting
+    static final int MAX_INDEXED_PREFIX_LENGTH = 6;
+
+    private final StringMatcher mMatcher = StringMatcher.getInstance();
+    private final Node mRoot = new Node();
+
+    // Entries by id, null once removed. Ids increase in the order entries are added.
+    private final ArrayList<Entry> mEntries = new ArrayList<>();
+    private final Map<ComponentKey, Entry> mEntriesByKey = new HashMap<>();
+    // Ids of the entries which are not in the trie
+    private final IntArray mUnindexedIds = new IntArray();
+
+    @Nullable
+    private AppInfo[] mApps;
+    private int mGeneration;
+
+    // State of the last query, used to refine the next one
+    @Nullable
+    private String mLastQuery;
+    @Nullable
+    private Node mLastNode;
+    @Nullable
+    private IntArray mLastMatches;
+
+    /**
+     * Updates the index to contain exactly the provided apps. Only the apps which were added,
+     * removed or renamed since the last call are re-indexed.
+     */
+    public void setApps(@NonNull AppInfo[] apps) {
+        if (apps == mApps) {
+            return;
+        }
+        mApps = apps;
+        mGeneration++;
+        clearLastQuery();
+
+        for (int i = 0; i < apps.length; i++) {
+            AppInfo app = apps[i];
+            ComponentKey key = new ComponentKey(app.componentName, app.user);
+            Entry entry = mEntriesByKey.get(key);
+            if (entry != null && TextUtils.equals(entry.mTitle, getTitle(app))) {
+                entry.mApp = app;
+                entry.mGeneration = mGeneration;
+            } else {
+                if (entry != null) {
+                    removeEntry(entry);
+                }
+                entry = addEntry(key, app);
+            }
+            entry.mPosition = i;
+        }
+
+        Iterator<Entry> it = mEntriesByKey.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.mGeneration != mGeneration) {
+                it.remove();
+                removeEntry(entry);
+            }
+        }
+
+        // Ids of removed entries are never reused, rebuild once they make up most of the index
+        if (mEntries.size() > 2 * mEntriesByKey.size() + MAX_INDEXED_PREFIX_LENGTH) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Returns the apps whose title matches the provided query, up to {@param maxResults}, in the
+     * order of the apps array.
+     */
+    @NonNull
+    public List<AppInfo> search(@NonNull String query, int maxResults) {
+        String queryLower = query.toLowerCase();
+        List<AppInfo> result = new ArrayList<>();
+        if (mApps == null) {
+            return result;
+        }
+        String normalized = StringMatcherUtility.normalizeQueryForIndex(queryLower);
+        if (normalized == null) {
+            clearLastQuery();
+            for (AppInfo app : mApps) {
+                if (result.size() >= maxResults) {
+                    break;
+                }
+                if (StringMatcherUtility.matches(queryLower, getTitle(app), mMatcher)) {
+                    result.add(app);
+                }
+            }
+            return result;
+        }
+
+        IntArray matches = findIndexedMatches(normalized);
+        mLastQuery = normalized;
+        mLastMatches = matches;
+
+        // Merge the indexed matches with the unindexed ones, in the order of the apps
+        int[] positions = new int[matches.size() + mUnindexedIds.size()];
+        int count = 0;
+        for (int i = 0; i < matches.size(); i++) {
+            positions[count++] = mEntries.get(matches.get(i)).mPosition;
+        }
+        for (int i = 0; i < mUnindexedIds.size(); i++) {
+            Entry entry = mEntries.get(mUnindexedIds.get(i));
+            if (matches(queryLower, entry)) {
+                positions[count++] = entry.mPosition;
+            }
+        }
+        Arrays.sort(positions, 0, count);
+        for (int i = 0; i < count && i < maxResults; i++) {
+            result.add(mApps[positions[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the ids of all the indexed entries matching {@param query}, in increasing order.
+     */
+    private IntArray findIndexedMatches(String query) {
+        boolean refines = mLastQuery != null && query.startsWith(mLastQuery);
+        if (query.length() <= MAX_INDEXED_PREFIX_LENGTH) {
+            // The postings of the node are exactly the matches
+            Node node = refines && mLastNode != null
+                    ? mLastNode.find(query, mLastQuery.length()) : mRoot.find(query, 0);
+            mLastNode = node;
+            return node == null ? new IntArray(0) : node.mPostings;
+        }
+
+        IntArray candidates;
+        if (refines && mLastMatches != null) {
+            candidates = mLastMatches;
+        } else {
+            Node node = mRoot.find(query.substring(0, MAX_INDEXED_PREFIX_LENGTH), 0);
+            candidates = node == null ? new IntArray(0) : node.mPostings;
+        }
+        mLastNode = null;
+        IntArray matches = new IntArray();
+        for (int i = 0; i < candidates.size(); i++) {
+            int id = candidates.get(i);
+            if (mEntries.get(id).startsWith(query)) {
+                matches.add(id);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the apps whose title has a word starting with {@param query} with at most
+     * {@param maxEdits} insertions, deletions or substitutions, up to {@param maxResults}. Apps
+     * are ranked by edit distance, then exact titles first, then titles starting with the query,
+     * then in the order of the apps array.
+     *
+     * Titles which are not indexed only match without edits.
+     */
+    @NonNull
+    public List<AppInfo> searchApproximate(@NonNull String query, int maxEdits, int maxResults) {
+        String normalized = StringMatcherUtility.normalizeQueryForIndex(query.toLowerCase());
+        if (normalized == null || maxEdits <= 0) {
+            return search(query, maxResults);
+        }
+        clearLastQuery();
+
+        int queryLength = normalized.length();
+        int[] distances = new int[mEntries.size()];
+        Arrays.fill(distances, Integer.MAX_VALUE);
+        int[][] rows = new int[MAX_INDEXED_PREFIX_LENGTH + 1][queryLength + 1];
+        for (int i = 0; i <= queryLength; i++) {
+            rows[0][i] = i;
+        }
+        collectApproximateMatches(mRoot, 0, normalized, maxEdits, rows,
+                new char[MAX_INDEXED_PREFIX_LENGTH], distances);
+
+        // Sort on the rank in the high bits and the position of the app in the low bits
+        long[] ranked = new long[distances.length];
+        int count = 0;
+        for (int id = 0; id < distances.length; id++) {
+            int distance = distances[id];
+            if (distance > maxEdits) {
+                continue;
+            }
+            String title = mEntries.get(id).mNormalizedTitle;
+            long rank;
+            if (distance == 0 && title.length() == queryLength) {
+                rank = 0;
+            } else {
+                boolean titlePrefix =
+                        getPrefixEditDistance(normalized, title, 0, distance) <= distance;
+                rank = 3L * distance + (titlePrefix ? 1 : 2);
+            }
+            ranked[count++] = (rank << 32) | mEntries.get(id).mPosition;
+        }
+        String queryLower = query.toLowerCase();
+        for (int i = 0; i < mUnindexedIds.size(); i++) {
+            int id = mUnindexedIds.get(i);
+            Entry entry = mEntries.get(id);
+            if (matches(queryLower, entry)) {
+                ranked[count++] = (2L << 32) | entry.mPosition;
+            }
+        }
+        Arrays.sort(ranked, 0, count);
+
+        List<AppInfo> result = new ArrayList<>();
+        for (int i = 0; i < count && i < maxResults; i++) {
+            result.add(mApps[(int) ranked[i]]);
+        }
+        return result;
+    }
+
+    private void collectApproximateMatches(Node node, int depth, String query, int maxEdits,
+            int[][] rows, char[] path, int[] outDistances) {
+        int queryLength = query.length();
+        int[] previousRow = rows[depth];
+        int[] row = rows[depth + 1];
+        for (int c = 0; c < node.mChildren.size(); c++) {
+            char ch = (char) node.mChildren.keyAt(c);
+            Node child = node.mChildren.valueAt(c);
+
+            row[0] = depth + 1;
+            int minDistance = row[0];
+            for (int i = 1; i <= queryLength; i++) {
+                int cost = query.charAt(i - 1) == ch ? 0 : 1;
+                row[i] = Math.min(Math.min(previousRow[i] + 1, row[i - 1] + 1),
+                        previousRow[i - 1] + cost);
+                minDistance = Math.min(minDistance, row[i]);
+            }
+            if (minDistance > maxEdits) {
+                // Appending characters can not bring the distance back within the limit
+                continue;
+            }
+            path[depth] = ch;
+
+            int distance = row[queryLength];
+            if (distance <= maxEdits) {
+                // All the titles below this node have a word starting with this path
+                IntArray postings = child.mPostings;
+                for (int i = 0; i < postings.size(); i++) {
+                    int id = postings.get(i);
+                    outDistances[id] = Math.min(outDistances[id], distance);
+                }
+            }
+
+            if (depth + 1 < MAX_INDEXED_PREFIX_LENGTH) {
+                collectApproximateMatches(child, depth + 1, query, maxEdits, rows, path,
+                        outDistances);
+            } else if (queryLength + maxEdits > MAX_INDEXED_PREFIX_LENGTH) {
+                // The trie is not deep enough, continue on the titles themselves
+                String prefix = new String(path);
+                IntArray postings = child.mPostings;
+                for (int i = 0; i < postings.size(); i++) {
+                    int id = postings.get(i);
+                    Entry entry = mEntries.get(id);
+                    for (int j = 0; j < entry.mStarts.size(); j++) {
+                        int start = entry.mStarts.get(j);
+                        if (entry.mNormalizedTitle.startsWith(prefix, start)) {
+                            outDistances[id] = Math.min(outDistances[id], getPrefixEditDistance(
+                                    query, entry.mNormalizedTitle, start, maxEdits));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the smallest edit distance between {@param query} and a prefix of {@param text}
+     * starting at {@param start}, or a value larger than {@param maxEdits} if there is none
+     * within it.
+     */
+    @VisibleForTesting
+    static int getPrefixEditDistance(String query, String text, int start, int maxEdits) {
+        int queryLength = query.length();
+        int[] previousRow = new int[queryLength + 1];
+        int[] row = new int[queryLength + 1];
+        for (int i = 0; i <= queryLength; i++) {
+            previousRow[i] = i;
+        }
+        int best = previousRow[queryLength];
+        int end = Math.min(text.length(), start + queryLength + maxEdits);
+        for (int j = start; j < end; j++) {
+            char ch = text.charAt(j);
+            row[0] = j - start + 1;
+            int minDistance = row[0];
+            for (int i = 1; i <= queryLength; i++) {
+                int cost = query.charAt(i - 1) == ch ? 0 : 1;
+                row[i] = Math.min(Math.min(previousRow[i] + 1, row[i - 1] + 1),
+                        previousRow[i - 1] + cost);
+                minDistance = Math.min(minDistance, row[i]);
+            }
+            best = Math.min(best, row[queryLength]);
+            if (minDistance > maxEdits) {
+                break;
+            }
+            int[] swap = previousRow;
+            previousRow = row;
+            row = swap;
+        }
+        return best;
+    }
+
+    private boolean matches(String queryLower, Entry entry) {
+        return StringMatcherUtility.matches(queryLower, entry.mTitle, mMatcher);
+    }
+
+    private Entry addEntry(ComponentKey key, AppInfo app) {
+        Entry entry = new Entry(mEntries.size(), app, mGeneration);
+        mEntries.add(entry);
+        mEntriesByKey.put(key, entry);
+
+        entry.mNormalizedTitle = StringMatcherUtility.normalizeForIndex(entry.mTitle);
+        if (entry.mNormalizedTitle == null) {
+            mUnindexedIds.add(entry.mId);
+            return entry;
+        }
+        entry.mStarts = StringMatcherUtility.getMatchStartPositions(entry.mTitle, mMatcher);
+        for (int i = 0; i < entry.mStarts.size(); i++) {
+            mRoot.add(entry.mNormalizedTitle, entry.mStarts.get(i), entry.mId);
+        }
+        return entry;
+    }
+
+    private void removeEntry(Entry entry) {
+        mEntries.set(entry.mId, null);
+        if (entry.mNormalizedTitle == null) {
+            mUnindexedIds.removeValue(entry.mId);
+            return;
+        }
+        for (int i = 0; i < entry.mStarts.size(); i++) {
+            mRoot.remove(entry.mNormalizedTitle, entry.mStarts.get(i), entry.mId);
+        }
+    }
+
+    private void rebuild() {
+        List<Entry> entries = new ArrayList<>(mEntries.size());
+        for (Entry entry : mEntries) {
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        mEntries.clear();
+        mEntriesByKey.clear();
+        mUnindexedIds.clear();
+        mRoot.mChildren.clear();
+        for (Entry entry : entries) {
+            addEntry(new ComponentKey(entry.mApp.componentName, entry.mApp.user), entry.mApp)
+                    .mPosition = entry.mPosition;
+        }
+    }
+
+    private void clearLastQuery() {
+        mLastQuery = null;
+        mLastNode = null;
+        mLastMatches = null;
+    }
+
+    @VisibleForTesting
+    int getIndexedCount() {
+        return mEntriesByKey.size() - mUnindexedIds.size();
+    }
+
+    private static String getTitle(AppInfo app) {
+        return app.title == null ? "" : app.title.toString();
+    }
+
+    private static class Entry {
+
+        final int mId;
+        final String mTitle;
+        AppInfo mApp;
+        int mGeneration;
+        // Position of the app in the apps array, updated on every setApps
+        int mPosition;
+
+        // Null if the title is not indexed
+        @Nullable
+        String mNormalizedTitle;
+        IntArray mStarts;
+
+        Entry(int id, AppInfo app, int generation) {
+            mId = id;
+            mTitle = getTitle(app);
+            mApp = app;
+            mGeneration = generation;
+        }
+
+        boolean startsWith(String query) {
+            for (int i = 0; i < mStarts.size(); i++) {
+                if (mNormalizedTitle.startsWith(query, mStarts.get(i))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class Node {
+
+        final SparseArray<Node> mChildren = new SparseArray<>(2);
+        // Sorted, as ids are added in increasing order
+        final IntArray mPostings = new IntArray(2);
+
+        @Nullable
+        Node find(String query, int start) {
+            Node node = this;
+            for (int i = start; i < query.length() && node != null; i++) {
+                node = node.mChildren.get(query.charAt(i));
+            }
+            return node;
+        }
+
+        void add(String title, int start, int id) {
+            Node node = this;
+            int end = Math.min(title.length(), start + MAX_INDEXED_PREFIX_LENGTH);
+            for (int i = start; i < end; i++) {
+                char c = title.charAt(i);
+                Node child = node.mChildren.get(c);
+                if (child == null) {
+                    child = new Node();
+                    node.mChildren.put(c, child);
+                }
+                node = child;
+                // A title can have several words with the same prefix
+                int size = node.mPostings.size();
+                if (size == 0 || node.mPostings.get(size - 1) != id) {
+                    node.mPostings.add(id);
+                }
+            }
+        }
+
+        void remove(String title, int start, int id) {
+            Node node = this;
+            int end = Math.min(title.length(), start + MAX_INDEXED_PREFIX_LENGTH);
+            for (int i = start; i < end && node != null; i++) {
+                Node child = node.mChildren.get(title.charAt(i));
+                if (child == null) {
+                    return;
+                }
+                child.mPostings.removeValue(id);
+                if (child.mPostings.isEmpty()) {
+                    node.mChildren.remove(title.charAt(i));
+                    return;
+                }
+                node = child;
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.allapps.search;
+
+import android.os.SystemClock;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.search.StringMatcherUtility;
+import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the searches of an all apps search bar, one at a time, on a background executor.
+ *
+ * Starting a search cancels the previous one: a running search stops at the end of its current
+ * batch of apps and its pending results are dropped. When a query extends the previous one, only
+ * the apps matching the previous query are searched again.
+ *
+ * Matches are ranked (exact title, then title prefix, then word prefix, then in the order of the
+ * apps), and the best ones found so far are delivered after each batch, so that the first
+ * results show up without waiting for the whole list to be searched.
+ */
+public class AppSearchSession {
+
+    @VisibleForTesting
+    static final int BATCH_SIZE = 256;
+    // Minimum time between two partial results, about one frame
+    private static final long MIN_PARTIAL_RESULT_INTERVAL_MS = 16;
+
+    private static final int RANK_EXACT = 0;
+    private static final int RANK_TITLE_PREFIX = 1;
+    private static final int RANK_WORD_PREFIX = 2;
+
+    /**
+     * Receives the results of a search.
+     */
+    public interface ResultCallback {
+
+        /**
+         * @param apps the best matches found so far, in rank order
+         * @param isFinal whether all the apps were searched, otherwise more results follow
+         */
+        void onResult(@NonNull String query, @NonNull List<AppInfo> apps, boolean isFinal);
+    }
+
+    private final Executor mSearchExecutor;
+    private final Executor mResultExecutor;
+    private final int mMaxResults;
+    private final AtomicInteger mGeneration = new AtomicInteger();
+
+    // Only accessed on the search executor
+    private final StringMatcher mMatcher = StringMatcher.getInstance();
+    @Nullable
+    private final AppSearchIndex mIndex;
+    // The query, apps and complete matches of the last search which was not cancelled
+    @Nullable
+    private String mLastQuery;
+    @Nullable
+    private AppInfo[] mLastApps;
+    @Nullable
+    private List<AppInfo> mLastMatches;
+
+    /**
+     * @param index if provided, queries are answered from this index, which is only accessed on
+     *              {@param searchExecutor}
+     */
+    public AppSearchSession(@NonNull Executor searchExecutor, @NonNull Executor resultExecutor,
+            int maxResults, @Nullable AppSearchIndex index) {
+        mSearchExecutor = searchExecutor;
+        mResultExecutor = resultExecutor;
+        mMaxResults = maxResults;
+        mIndex = index;
+    }
+
+    /**
+     * Searches {@param apps} for {@param query}, cancelling the active search.
+     */
+    @AnyThread
+    public void search(@NonNull String query, @NonNull AppInfo[] apps,
+            @NonNull ResultCallback callback) {
+        int generation = mGeneration.incrementAndGet();
+        mSearchExecutor.execute(() -> runSearch(generation, query, apps, callback));
+    }
+
+    /**
+     * Cancels the active search, if any.
+     */
+    @AnyThread
+    public void cancel() {
+        mGeneration.incrementAndGet();
+    }
+
+    /**
+     * Updates the index, if any, with the provided apps.
+     */
+    @AnyThread
+    public void updateIndex(@NonNull AppInfo[] apps) {
+        if (mIndex != null) {
+            mSearchExecutor.execute(() -> mIndex.setApps(apps));
+        }
+    }
+
+    private boolean isCancelled(int generation) {
+        return mGeneration.get() != generation;
+    }
+
+    @WorkerThread
+    private void runSearch(int generation, String query, AppInfo[] apps,
+            ResultCallback callback) {
+        if (isCancelled(generation)) {
+            return;
+        }
+        if (mIndex != null) {
+            mIndex.setApps(apps);
+            deliver(generation, query, mIndex.search(query, mMaxResults), true, callback);
+            return;
+        }
+
+        String queryLower = query.toLowerCase();
+        List<AppInfo> candidates = apps == mLastApps && mLastQuery != null
+                && StringMatcherUtility.isRefinement(mLastQuery, queryLower)
+                ? mLastMatches : Arrays.asList(apps);
+        mLastQuery = null;
+        mLastApps = null;
+        mLastMatches = null;
+
+        List<AppInfo> matches = new ArrayList<>();
+        RankedResults results = new RankedResults(mMaxResults);
+        long lastResultTime = SystemClock.uptimeMillis();
+        int total = candidates.size();
+        for (int start = 0; start < total; start += BATCH_SIZE) {
+            if (isCancelled(generation)) {
+                return;
+            }
+            boolean changed = false;
+            int end = Math.min(start + BATCH_SIZE, total);
+            for (int i = start; i < end; i++) {
+                AppInfo app = candidates.get(i);
+                String title = app.title == null ? "" : app.title.toString();
+                if (StringMatcherUtility.matches(queryLower, title, mMatcher)) {
+                    matches.add(app);
+                    changed |= results.offer(app, getRank(queryLower, title));
+                }
+            }
+            long now = SystemClock.uptimeMillis();
+            if (changed && end < total && now - lastResultTime >= MIN_PARTIAL_RESULT_INTERVAL_MS) {
+                deliver(generation, query, results.mApps, false, callback);
+                lastResultTime = now;
+            }
+        }
+
+        mLastQuery = queryLower;
+        mLastApps = apps;
+        mLastMatches = matches;
+        deliver(generation, query, results.mApps, true, callback);
+    }
+
+    private int getRank(String queryLower, String title) {
+        if (!mMatcher.matches(queryLower, title.substring(0, queryLower.length()))) {
+            return RANK_WORD_PREFIX;
+        }
+        return title.length() == queryLower.length() ? RANK_EXACT : RANK_TITLE_PREFIX;
+    }
+
+    private void deliver(int generation, String query, List<AppInfo> apps, boolean isFinal,
+            ResultCallback callback) {
+        List<AppInfo> result = new ArrayList<>(apps);
+        mResultExecutor.execute(() -> {
+            if (!isCancelled(generation)) {
+                callback.onResult(query, result, isFinal);
+            }
+        });
+    }
+
+    /**
+     * The best matches offered so far, ordered by rank and then by the order they were offered.
+     */
+    private static class RankedResults {
+
+        final int mMaxCount;
+        final List<AppInfo> mApps = new ArrayList<>();
+        final List<Integer> mRanks = new ArrayList<>();
+
+        RankedResults(int maxCount) {
+            mMaxCount = maxCount;
+        }
+
+        /**
+         * Returns true if the app was added to the results.
+         */
+        boolean offer(AppInfo app, int rank) {
+            int index = mApps.size();
+            while (index > 0 && mRanks.get(index - 1) > rank) {
+                index--;
+            }
+            if (index >= mMaxCount) {
+                return false;
+            }
+            mApps.add(index, app);
+            mRanks.add(index, rank);
+            if (mApps.size() > mMaxCount) {
+                mApps.remove(mMaxCount);
+                mRanks.remove(mMaxCount);
+            }
+            return true;
+        }
+    }
+}
@@ -20,6 +20,7 @@ import static android.view.View.MeasureSpec.getSize;
 import static android.view.View.MeasureSpec.makeMeasureSpec;
 
 import static com.android.launcher3.Utilities.prefixTextWithIcon;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_FUZZY_APP_SEARCH;
 import static com.android.launcher3.icons.IconNormalizer.ICON_VISIBLE_AREA_FACTOR;
 
 import android.content.Context;
@@ -40,6 +41,7 @@ import com.android.launcher3.allapps.ActivityAllAppsContainerView;
 import com.android.launcher3.allapps.AllAppsStore;
 import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem;
 import com.android.launcher3.allapps.SearchUiManager;
+import com.android.launcher3.search.SearchAlgorithm;
 import com.android.launcher3.search.SearchCallback;
 import com.android.launcher3.views.ActivityContext;
 
@@ -93,6 +95,7 @@ public class AppsSearchContainerLayout extends ExtendedEditText
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
         mAppsView.getAppsStore().removeUpdateListener(this);
+        mSearchBarController.onDestroy();
     }
 
     @Override
@@ -130,9 +133,10 @@ public class AppsSearchContainerLayout extends ExtendedEditText
     @Override
     public void initializeSearch(ActivityAllAppsContainerView<?> appsView) {
         mAppsView = appsView;
-        mSearchBarController.initialize(
-                new DefaultAppSearchAlgorithm(getContext(), true),
-                this, mLauncher, this);
+        SearchAlgorithm<AdapterItem> searchAlgorithm = ENABLE_FUZZY_APP_SEARCH.get()
+                ? new FuzzyAppSearchAlgorithm(appsView.getAppsStore(), true)
+                : new DefaultAppSearchAlgorithm(getContext(), true, appsView.getAppsStore());
+        mSearchBarController.initialize(searchAlgorithm, this, mLauncher, this);
     }
 
     @Override
@@ -16,15 +16,21 @@
 package com.android.launcher3.allapps.search;
 
 import static com.android.launcher3.allapps.BaseAllAppsAdapter.VIEW_TYPE_EMPTY_SEARCH;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_APP_SEARCH_INDEX;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_INCREMENTAL_APP_SEARCH;
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+import static com.android.launcher3.util.Executors.SEARCH_EXECUTOR;
 
 import android.content.Context;
 import android.os.Handler;
 
 import androidx.annotation.AnyThread;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.android.launcher3.LauncherAppState;
+import com.android.launcher3.allapps.AllAppsStore;
 import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem;
 import com.android.launcher3.model.AllAppsList;
 import com.android.launcher3.model.BaseModelUpdateTask;
@@ -48,30 +54,116 @@ public class DefaultAppSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
     private final Handler mResultHandler;
     private final boolean mAddNoResultsMessage;
 
+    // Only accessed on the model thread
+    @Nullable
+    private final AppSearchIndex mIndex;
+    @Nullable
+    private final AppSearchSession mSession;
+    @Nullable
+    private final AllAppsStore<?> mAppsStore;
+    @Nullable
+    private final AllAppsStore.OnUpdateListener mIndexUpdater;
+
     public DefaultAppSearchAlgorithm(Context context) {
         this(context, false);
     }
 
     public DefaultAppSearchAlgorithm(Context context, boolean addNoResultsMessage) {
+        this(context, addNoResultsMessage, null);
+    }
+
+    /**
+     * @param appsStore if provided, queries can be answered from the apps in this store, from an
+     *                  index of them or in a search session, instead of from the model
+     */
+    public DefaultAppSearchAlgorithm(Context context, boolean addNoResultsMessage,
+            @Nullable AllAppsStore<?> appsStore) {
         mAppState = LauncherAppState.getInstance(context);
         mResultHandler = new Handler(MAIN_EXECUTOR.getLooper());
         mAddNoResultsMessage = addNoResultsMessage;
+        mAppsStore = appsStore;
+
+        AppSearchIndex index = appsStore != null && ENABLE_APP_SEARCH_INDEX.get()
+                ? new AppSearchIndex() : null;
+        if (appsStore != null && ENABLE_INCREMENTAL_APP_SEARCH.get()) {
+            // The session owns the index, which is only accessed on the search executor
+            mSession = new AppSearchSession(SEARCH_EXECUTOR, MAIN_EXECUTOR, MAX_RESULTS_COUNT,
+                    index);
+            mIndex = null;
+        } else {
+            mSession = null;
+            mIndex = index;
+        }
+
+        if (index != null) {
+            mIndexUpdater = () -> {
+                AppInfo[] apps = appsStore.getApps();
+                if (mSession != null) {
+                    mSession.updateIndex(apps);
+                } else {
+                    MODEL_EXECUTOR.post(() -> mIndex.setApps(apps));
+                }
+            };
+            mIndexUpdater.onAppsUpdated();
+            appsStore.addUpdateListener(mIndexUpdater);
+        } else {
+            mIndexUpdater = null;
+        }
     }
 
     @Override
     public void cancel(boolean interruptActiveRequests) {
         if (interruptActiveRequests) {
             mResultHandler.removeCallbacksAndMessages(null);
+            if (mSession != null) {
+                mSession.cancel();
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (mIndexUpdater != null) {
+            mAppsStore.removeUpdateListener(mIndexUpdater);
+        }
+        if (mSession != null) {
+            mSession.cancel();
         }
     }
 
     @Override
     public void doSearch(String query, SearchCallback<AdapterItem> callback) {
+        if (mSession != null) {
+            mSession.search(query, mAppsStore.getApps(), (q, apps, isFinal) -> {
+                ArrayList<AdapterItem> result = new ArrayList<>();
+                for (AppInfo info : apps) {
+                    result.add(AdapterItem.asApp(info));
+                }
+                if (isFinal && mAddNoResultsMessage && result.isEmpty()) {
+                    result.add(getEmptyMessageAdapterItem(q));
+                }
+                callback.onSearchResult(q, result, isFinal ? SearchCallback.FINAL
+                        : SearchCallback.INTERMEDIATE);
+            });
+            return;
+        }
+
+        // The update listeners may run after a search is triggered for the same update
+        AppInfo[] storeApps = mAppsStore == null ? null : mAppsStore.getApps();
         mAppState.getModel().enqueueModelUpdateTask(new BaseModelUpdateTask() {
             @Override
             public void execute(@NonNull final LauncherAppState app,
                     @NonNull final BgDataModel dataModel, @NonNull final AllAppsList apps) {
-                ArrayList<AdapterItem> result = getTitleMatchResult(apps.data, query);
+                ArrayList<AdapterItem> result;
+                if (mIndex != null) {
+                    mIndex.setApps(storeApps);
+                    result = new ArrayList<>();
+                    for (AppInfo info : mIndex.search(query, MAX_RESULTS_COUNT)) {
+                        result.add(AdapterItem.asApp(info));
+                    }
+                } else {
+                    result = getTitleMatchResult(apps.data, query);
+                }
                 if (mAddNoResultsMessage && result.isEmpty()) {
                     result.add(getEmptyMessageAdapterItem(query));
                 }
@@ -80,7 +172,7 @@ public class DefaultAppSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
         });
     }
 
-    private static AdapterItem getEmptyMessageAdapterItem(String query) {
+    static AdapterItem getEmptyMessageAdapterItem(String query) {
         AdapterItem item = new AdapterItem(VIEW_TYPE_EMPTY_SEARCH);
         // Add a place holder info to propagate the query
         AppInfo placeHolder = new AppInfo();
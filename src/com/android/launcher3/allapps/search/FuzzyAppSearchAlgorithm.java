@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.allapps.search;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.SEARCH_EXECUTOR;
+
+import android.os.Handler;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.launcher3.allapps.AllAppsStore;
+import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem;
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.search.SearchAlgorithm;
+import com.android.launcher3.search.SearchCallback;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A search implementation which tolerates typos in the query, eg, "calcualtor" finds
+ * "Calculator". Apps matching without typos are always ranked first.
+ */
+public class FuzzyAppSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
+
+    private static final int MAX_RESULTS_COUNT = 5;
+
+    private final AllAppsStore<?> mAppsStore;
+    private final Handler mResultHandler;
+    private final boolean mAddNoResultsMessage;
+    private final AtomicInteger mGeneration = new AtomicInteger();
+    private final AllAppsStore.OnUpdateListener mIndexUpdater = this::updateIndex;
+
+    // Only accessed on the search executor
+    private final AppSearchIndex mIndex = new AppSearchIndex();
+
+    public FuzzyAppSearchAlgorithm(@NonNull AllAppsStore<?> appsStore,
+            boolean addNoResultsMessage) {
+        mAppsStore = appsStore;
+        mResultHandler = new Handler(MAIN_EXECUTOR.getLooper());
+        mAddNoResultsMessage = addNoResultsMessage;
+
+        updateIndex();
+        appsStore.addUpdateListener(mIndexUpdater);
+    }
+
+    private void updateIndex() {
+        AppInfo[] apps = mAppsStore.getApps();
+        SEARCH_EXECUTOR.execute(() -> mIndex.setApps(apps));
+    }
+
+    @Override
+    public void doSearch(String query, SearchCallback<AdapterItem> callback) {
+        int generation = mGeneration.incrementAndGet();
+        AppInfo[] apps = mAppsStore.getApps();
+        SEARCH_EXECUTOR.execute(() -> {
+            if (mGeneration.get() != generation) {
+                return;
+            }
+            mIndex.setApps(apps);
+            ArrayList<AdapterItem> result = new ArrayList<>();
+            for (AppInfo info : mIndex.searchApproximate(
+                    query, getMaxEdits(query.length()), MAX_RESULTS_COUNT)) {
+                result.add(AdapterItem.asApp(info));
+            }
+            if (mAddNoResultsMessage && result.isEmpty()) {
+                result.add(DefaultAppSearchAlgorithm.getEmptyMessageAdapterItem(query));
+            }
+            mResultHandler.post(() -> {
+                if (mGeneration.get() == generation) {
+                    callback.onSearchResult(query, result);
+                }
+            });
+        });
+    }
+
+    @Override
+    public void cancel(boolean interruptActiveRequests) {
+        if (interruptActiveRequests) {
+            mGeneration.incrementAndGet();
+            mResultHandler.removeCallbacksAndMessages(null);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        mAppsStore.removeUpdateListener(mIndexUpdater);
+        cancel(true);
+    }
+
+    /**
+     * Returns the number of typos allowed in a query of the provided length. Short queries match
+     * too many titles with a single typo to be useful.
+     */
+    @VisibleForTesting
+    static int getMaxEdits(int queryLength) {
+        if (queryLength <= 2) {
+            return 0;
+        }
+        return queryLength <= 5 ? 1 : 2;
+    }
+}
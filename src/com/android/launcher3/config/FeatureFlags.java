@@ -487,7 +487,111 @@ public final class FeatureFlags {
             "ALL_APPS_GONE_VISIBILITY", ENABLED,
             "Set all apps container view's hidden visibility to GONE instead of INVISIBLE.");
 
-    // TODO(Block 34): Empty block
+    // TODO(Block 34): Clean up flags
+    public static final BooleanFlag ENABLE_PARALLEL_WORKSPACE_LOADING = getDebugFlag(325200101,
+            "ENABLE_PARALLEL_WORKSPACE_LOADING", DISABLED,
+            "Resolve workspace icons in per-screen shards on a bounded worker pool while "
+                    + "loading the workspace.");
+
+    public static final BooleanFlag ENABLE_BATCHED_MODEL_WRITES = getDebugFlag(325200102,
+            "ENABLE_BATCHED_MODEL_WRITES", DISABLED,
+            "Merge item updates posted by ModelWriter within the same frame and write them to the "
+                    + "database in a single transaction.");
+
+    public static final BooleanFlag ENABLE_INCREMENTAL_GRID_MIGRATION = getDebugFlag(325200121,
+            "ENABLE_INCREMENTAL_GRID_MIGRATION", DISABLED,
+            "Keep the position of items which still fit in the new grid during grid migration and "
+                    + "only re-place the items which no longer fit.");
+
+    public static final BooleanFlag ENABLE_JOURNALED_RESTORE = getDebugFlag(325200103,
+            "ENABLE_JOURNALED_RESTORE", DISABLED,
+            "Run the restore steps in separate transactions tracked by a journal in the launcher "
+                    + "database, so that an interrupted restore can be resumed.");
+
+    public static final BooleanFlag ENABLE_MODEL_ITEM_INDEX = getDebugFlag(325200104,
+            "ENABLE_MODEL_ITEM_INDEX", DISABLED,
+            "Use the secondary indexes of the model to find the items affected by package and "
+                    + "shortcut updates instead of scanning all the items.");
+
+    public static final BooleanFlag ENABLE_LOCK_FREE_MODEL_READS = getDebugFlag(325200105,
+            "ENABLE_LOCK_FREE_MODEL_READS", DISABLED,
+            "Serve read-only queries on the workspace items from an immutable snapshot of the "
+                    + "model instead of locking the model.");
+
+    public static final BooleanFlag ENABLE_COALESCED_MODEL_UPDATES = getDebugFlag(325200106,
+            "ENABLE_COALESCED_MODEL_UPDATES", DISABLED,
+            "Merge package, shortcut and icon cache updates received within a short window into "
+                    + "a single model update.");
+
+    public static final BooleanFlag ENABLE_PARALLEL_ICON_WARMUP = getDebugFlag(325200107,
+            "ENABLE_PARALLEL_ICON_WARMUP", DISABLED,
+            "Load the icons missing from the icon cache on multiple threads when loading icons "
+                    + "in bulk.");
+
+    public static final BooleanFlag ENABLE_TIERED_ICON_STORE = getDebugFlag(325200108,
+            "ENABLE_TIERED_ICON_STORE", DISABLED,
+            "Keep high-res icons in memory in an LRU bounded by bitmap size, backed by low-res "
+                    + "entries which are never evicted.");
+
+    public static final BooleanFlag ENABLE_APP_SEARCH_INDEX = getDebugFlag(325200109,
+            "ENABLE_APP_SEARCH_INDEX", DISABLED,
+            "Answer all apps search queries from a prefix index instead of scanning all titles.");
+
+    public static final BooleanFlag ENABLE_INCREMENTAL_APP_SEARCH = getDebugFlag(325200110,
+            "ENABLE_INCREMENTAL_APP_SEARCH", DISABLED,
+            "Run all apps search on a dedicated thread, refining the previous matches as the "
+                    + "query is typed.");
+
+    public static final BooleanFlag ENABLE_FUZZY_APP_SEARCH = getDebugFlag(325200111,
+            "ENABLE_FUZZY_APP_SEARCH", DISABLED,
+            "Tolerate typos in all apps search queries.");
+
+    public static final BooleanFlag ENABLE_INCREMENTAL_APPS_LIST = getDebugFlag(325200112,
+            "ENABLE_INCREMENTAL_APPS_LIST", DISABLED,
+            "Apply app installs, updates and removals to the all apps list as positional edits. "
+                    + "Each update still takes linear time in the number of apps, but skips the "
+                    + "diff of the adapter items. Other updates still diff the whole list on the "
+                    + "main thread.");
+
+    public static final BooleanFlag ENABLE_WIDGET_PREVIEW_CACHE = getDebugFlag(325200113,
+            "ENABLE_WIDGET_PREVIEW_CACHE", DISABLED,
+            "Keep generated widget previews in memory and on disk across widget picker sessions.");
+
+    public static final BooleanFlag ENABLE_PRECOMPUTED_WIDGET_TABLES = getDebugFlag(325200114,
+            "ENABLE_PRECOMPUTED_WIDGET_TABLES", DISABLED,
+            "Group the widgets of the widget picker into table rows in the background.");
+
+    public static final BooleanFlag ENABLE_WIDGET_SEARCH_INDEX = getDebugFlag(325200115,
+            "ENABLE_WIDGET_SEARCH_INDEX", DISABLED,
+            "Search widgets with an index built in the background when the widgets are bound.");
+
+    public static final BooleanFlag ENABLE_THUMBNAIL_PREFETCH = getDebugFlag(325200116,
+            "ENABLE_THUMBNAIL_PREFETCH", DISABLED,
+            "Bound the task thumbnail cache by bytes and prefetch thumbnails ahead of scrolls. "
+                    + "With grid only overview, the cache keeps evicting the least recently "
+                    + "active task.");
+
+    public static final BooleanFlag ENABLE_CONCURRENT_TASK_CACHES = getDebugFlag(325200117,
+            "ENABLE_CONCURRENT_TASK_CACHES", DISABLED,
+            "Cache task icons and thumbnails in caches which can be read without locking. "
+                    + "Does not apply to the thumbnail cache with grid only overview or "
+                    + "ENABLE_THUMBNAIL_PREFETCH.");
+
+    public static final BooleanFlag ENABLE_BATCHED_THUMBNAIL_LOADING = getDebugFlag(325200118,
+            "ENABLE_BATCHED_THUMBNAIL_LOADING", DISABLED,
+            "Fetch the thumbnails of newly visible tasks in a single pass, in visibility order.");
+
+    public static final BooleanFlag ENABLE_PROGRESSIVE_THUMBNAILS = getDebugFlag(325200119,
+            "ENABLE_PROGRESSIVE_THUMBNAILS", DISABLED,
+            "Show low res thumbnails while scrolling overview and upgrade the visible ones to high"
+                    + " res once scrolling settles, centered task first.");
+
+    public static final BooleanFlag ENABLE_PERSISTENT_TASK_ICONS = getDebugFlag(325200120,
+            "ENABLE_PERSISTENT_TASK_ICONS", DISABLED,
+            "Persist rendered task icons and labels on disk so that they are not rendered again"
+                    + " after the launcher restarts.");
+
+    // TODO(Block 35): Empty block
     // Please only add flags to your assigned block. If you do not have a block:
     // 1. Assign yourself this block
     // 2. Add your flag to this block
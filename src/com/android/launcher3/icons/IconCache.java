@@ -17,6 +17,8 @@
 package com.android.launcher3.icons;
 
 import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_DEEP_SHORTCUT;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_PARALLEL_ICON_WARMUP;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_TIERED_ICON_STORE;
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
 import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
 import static com.android.launcher3.widget.WidgetSections.NO_CATEGORY;
@@ -36,6 +38,7 @@ import android.content.pm.PackageManager.NameNotFoundException;
 import android.content.pm.ShortcutInfo;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteException;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.Looper;
 import android.os.Process;
@@ -65,12 +68,16 @@ import com.android.launcher3.pm.InstallSessionHelper;
 import com.android.launcher3.pm.UserCache;
 import com.android.launcher3.shortcuts.ShortcutKey;
 import com.android.launcher3.util.CancellableTask;
+import com.android.launcher3.util.ComponentKey;
 import com.android.launcher3.util.InstantAppResolver;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.widget.WidgetSections;
 import com.android.launcher3.widget.WidgetSections.WidgetSection;
 
+import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -90,6 +97,9 @@ public class IconCache extends BaseIconCache {
 
     private static final String TAG = "Launcher.IconCache";
 
+    // Fraction of the heap which can be used by the high-res icons held in memory
+    private static final int HIGH_RES_ICONS_HEAP_FRACTION = 16;
+
     private final Predicate<ItemInfoWithIcon> mIsUsingFallbackOrNonDefaultIconCheck = w ->
             w.bitmap != null && (w.bitmap.isNullOrLowRes() || !isDefaultIcon(w.bitmap, w.user));
 
@@ -102,6 +112,13 @@ public class IconCache extends BaseIconCache {
     private final InstantAppResolver mInstantAppResolver;
     private final IconProvider mIconProvider;
     private final CancellableTask mCancelledTask;
+    private final ParallelIconLoader mParallelIconLoader;
+
+    // Replaces the unbounded in-memory cache of BaseIconCache, see ENABLE_TIERED_ICON_STORE
+    @Nullable
+    private final TieredIconStore mTieredStore;
+    // Entries for pending installs, which only exist in memory and can not be evicted
+    private final Map<ComponentKey, CacheEntry> mSessionEntries = new HashMap<>();
 
     private final SparseArray<BitmapInfo> mWidgetCategoryBitmapInfos;
 
@@ -110,7 +127,8 @@ public class IconCache extends BaseIconCache {
     public IconCache(Context context, InvariantDeviceProfile idp, String dbFileName,
             IconProvider iconProvider) {
         super(context, dbFileName, MODEL_EXECUTOR.getLooper(),
-                idp.fillResIconDpi, idp.iconBitmapSize, true /* inMemoryCache */);
+                idp.fillResIconDpi, idp.iconBitmapSize,
+                !ENABLE_TIERED_ICON_STORE.get() /* inMemoryCache */);
         mComponentWithLabelCachingLogic = new ComponentCachingLogic(context, false);
         mLauncherActivityInfoCachingLogic = LauncherActivityCachingLogic.newInstance(context);
         mShortcutCachingLogic = new ShortcutCachingLogic();
@@ -119,6 +137,11 @@ public class IconCache extends BaseIconCache {
         mInstantAppResolver = InstantAppResolver.newInstance(mContext);
         mIconProvider = iconProvider;
         mWidgetCategoryBitmapInfos = new SparseArray<>();
+        mParallelIconLoader = new ParallelIconLoader(mContext);
+        mTieredStore = ENABLE_TIERED_ICON_STORE.get()
+                ? new TieredIconStore((int) Math.min(Integer.MAX_VALUE,
+                        Runtime.getRuntime().maxMemory() / HIGH_RES_ICONS_HEAP_FRACTION))
+                : null;
 
         mCancelledTask = new CancellableTask(() -> null, MAIN_EXECUTOR, c -> { });
         mCancelledTask.cancel();
@@ -159,6 +182,56 @@ public class IconCache extends BaseIconCache {
         }
     }
 
+    @Override
+    public synchronized void removeIconsForPkg(@NonNull String packageName,
+            @NonNull UserHandle user) {
+        super.removeIconsForPkg(packageName, user);
+        if (mTieredStore != null) {
+            mTieredStore.removePackage(packageName, user);
+            mSessionEntries.remove(getPackageComponentKey(packageName, user));
+        }
+    }
+
+    @Override
+    public synchronized <T> void addIconToDBAndMemCache(T object, CachingLogic<T> cachingLogic,
+            PackageInfo info, long userSerial, boolean replaceExisting) {
+        super.addIconToDBAndMemCache(object, cachingLogic, info, userSerial, replaceExisting);
+        if (mTieredStore != null) {
+            // The next lookup reloads the entry from the DB
+            mTieredStore.remove(new ComponentKey(
+                    cachingLogic.getComponent(object), cachingLogic.getUser(object)));
+        }
+    }
+
+    @Override
+    public synchronized void updateIconParams(int iconDpi, int iconPixelSize) {
+        super.updateIconParams(iconDpi, iconPixelSize);
+        if (mTieredStore != null) {
+            // The icons are invalidated on the worker thread, clear the memory tiers after that
+            mWorkerHandler.post(this::clearMemoryTiers);
+        }
+    }
+
+    private synchronized void clearMemoryTiers() {
+        mTieredStore.clear();
+        mSessionEntries.clear();
+    }
+
+    /**
+     * Releases the high-res icons held in memory according to the provided trim level.
+     */
+    public void onTrimMemory(int level) {
+        if (mTieredStore != null) {
+            mTieredStore.onTrimMemory(level);
+        }
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        if (mTieredStore != null) {
+            mTieredStore.dump(prefix, writer);
+        }
+    }
+
     /**
      * Closes the cache DB. This will clear any in-memory cache.
      */
@@ -490,15 +563,16 @@ public class IconCache extends BaseIconCache {
         }
 
         Trace.beginSection("loadIconSubsectionWithFallback");
+        Map<ComponentName, CacheEntry> preloadedEntries = ENABLE_PARALLEL_ICON_WARMUP.get()
+                ? preloadFallbackEntries(duplicateIconRequestsMap)
+                : Collections.emptyMap();
         // Fallback title and icon loading
         for (ComponentName cn : duplicateIconRequestsMap.keySet()) {
             IconRequestInfo<T> iconRequestInfo = duplicateIconRequestsMap.get(cn).get(0);
             ItemInfoWithIcon itemInfo = iconRequestInfo.itemInfo;
             BitmapInfo icon = itemInfo.bitmap;
             boolean loadFallbackTitle = TextUtils.isEmpty(itemInfo.title);
-            boolean loadFallbackIcon = icon == null
-                    || isDefaultIcon(icon, itemInfo.user)
-                    || icon == BitmapInfo.LOW_RES_INFO;
+            boolean loadFallbackIcon = needsFallbackIcon(itemInfo);
 
             if (loadFallbackTitle || loadFallbackIcon) {
                 Log.i(TAG,
@@ -515,6 +589,18 @@ public class IconCache extends BaseIconCache {
                 }
                 entry.contentDescription = itemInfo.contentDescription;
 
+                CacheEntry preloadedEntry = preloadedEntries.get(cn);
+                if (preloadedEntry != null) {
+                    if (loadFallbackIcon) {
+                        entry.bitmap = preloadedEntry.bitmap;
+                        loadFallbackIcon = false;
+                    }
+                    if (loadFallbackTitle && !TextUtils.isEmpty(preloadedEntry.title)) {
+                        entry.title = preloadedEntry.title;
+                        entry.contentDescription =
+                                getUserBadgedLabel(entry.title, sectionKey.first);
+                    }
+                }
                 if (loadFallbackIcon) {
                     loadFallbackIcon(
                             lai,
@@ -541,6 +627,46 @@ public class IconCache extends BaseIconCache {
         Trace.endSection();
     }
 
+    /**
+     * Loads the entries of all the components which are missing from the DB on multiple threads,
+     * so that the serial fallback only needs to apply them.
+     */
+    private <T extends ItemInfoWithIcon> Map<ComponentName, CacheEntry> preloadFallbackEntries(
+            Map<ComponentName, List<IconRequestInfo<T>>> duplicateIconRequestsMap) {
+        List<ComponentName> components = new ArrayList<>();
+        List<LauncherActivityInfo> activityInfos = new ArrayList<>();
+        duplicateIconRequestsMap.forEach((cn, iconRequests) -> {
+            IconRequestInfo<T> iconRequestInfo = iconRequests.get(0);
+            ItemInfoWithIcon itemInfo = iconRequestInfo.itemInfo;
+            if (iconRequestInfo.launcherActivityInfo != null && (needsFallbackIcon(itemInfo)
+                    || TextUtils.isEmpty(itemInfo.title))) {
+                components.add(cn);
+                activityInfos.add(iconRequestInfo.launcherActivityInfo);
+            }
+        });
+        if (ParallelIconLoader.getWorkerCount(activityInfos.size()) < 2) {
+            // Not worth the hand off, leave it to the serial fallback
+            return Collections.emptyMap();
+        }
+
+        CacheEntry[] entries =
+                mParallelIconLoader.loadEntries(activityInfos, mLauncherActivityInfoCachingLogic);
+        Map<ComponentName, CacheEntry> result = new HashMap<>(entries.length);
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i] != null && entries[i].bitmap != null) {
+                result.put(components.get(i), entries[i]);
+            }
+        }
+        return result;
+    }
+
+    private boolean needsFallbackIcon(ItemInfoWithIcon itemInfo) {
+        BitmapInfo icon = itemInfo.bitmap;
+        return icon == null
+                || isDefaultIcon(icon, itemInfo.user)
+                || icon == BitmapInfo.LOW_RES_INFO;
+    }
+
     /**
      * Fill in {@param infoInOut} with the corresponding icon and label.
      */
@@ -613,8 +739,73 @@ public class IconCache extends BaseIconCache {
     }
 
     public void updateSessionCache(PackageUserKey key, PackageInstaller.SessionInfo info) {
-        cachePackageInstallInfo(key.mPackageName, key.mUser, info.getAppIcon(),
-                info.getAppLabel());
+        if (mTieredStore == null) {
+            cachePackageInstallInfo(key.mPackageName, key.mUser, info.getAppIcon(),
+                    info.getAppLabel());
+            return;
+        }
+        if (TextUtils.isEmpty(info.getAppLabel()) || info.getAppIcon() == null) {
+            return;
+        }
+        // Without the in-memory cache of BaseIconCache, the install info is kept here instead
+        CacheEntry entry = new CacheEntry();
+        entry.title = info.getAppLabel();
+        entry.contentDescription = getUserBadgedLabel(entry.title, key.mUser);
+        try (LauncherIcons li = LauncherIcons.obtain(mContext)) {
+            entry.bitmap = li.createBadgedIconBitmap(
+                    new BitmapDrawable(mContext.getResources(), info.getAppIcon()),
+                    new BaseIconFactory.IconOptions().setUser(key.mUser));
+        }
+        synchronized (this) {
+            ComponentKey packageKey = getPackageComponentKey(key.mPackageName, key.mUser);
+            mTieredStore.remove(packageKey);
+            mSessionEntries.put(packageKey, entry);
+        }
+    }
+
+    @Override
+    protected <T> CacheEntry cacheLocked(@NonNull ComponentName componentName,
+            @NonNull UserHandle user, @NonNull Supplier<T> infoProvider,
+            @NonNull CachingLogic<T> cachingLogic, @Nullable Cursor cursor,
+            boolean usePackageIcon, boolean useLowResIcon) {
+        if (mTieredStore == null || !cachingLogic.addToMemCache()) {
+            return super.cacheLocked(componentName, user, infoProvider, cachingLogic, cursor,
+                    usePackageIcon, useLowResIcon);
+        }
+        ComponentKey key = new ComponentKey(componentName, user);
+        CacheEntry entry = mSessionEntries.get(key);
+        if (entry == null) {
+            entry = mTieredStore.get(key, useLowResIcon);
+        }
+        if (entry == null) {
+            entry = super.cacheLocked(componentName, user, infoProvider, cachingLogic, cursor,
+                    usePackageIcon, useLowResIcon);
+            mTieredStore.put(key, entry);
+        }
+        return entry;
+    }
+
+    @Override
+    protected CacheEntry getEntryForPackageLocked(@NonNull String packageName,
+            @NonNull UserHandle user, boolean useLowResIcon) {
+        if (mTieredStore == null) {
+            return super.getEntryForPackageLocked(packageName, user, useLowResIcon);
+        }
+        ComponentKey key = getPackageComponentKey(packageName, user);
+        CacheEntry entry = mSessionEntries.get(key);
+        if (entry == null) {
+            entry = mTieredStore.get(key, useLowResIcon);
+        }
+        if (entry == null) {
+            entry = super.getEntryForPackageLocked(packageName, user, useLowResIcon);
+            mTieredStore.put(key, entry);
+        }
+        return entry;
+    }
+
+    private static ComponentKey getPackageComponentKey(String packageName, UserHandle user) {
+        return new ComponentKey(new ComponentName(packageName, packageName + EMPTY_CLASS_NAME),
+                user);
     }
 
     @Override
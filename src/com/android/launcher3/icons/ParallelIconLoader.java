@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons;
+
+import static android.os.Process.THREAD_PRIORITY_BACKGROUND;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.icons.cache.BaseIconCache.CacheEntry;
+import com.android.launcher3.icons.cache.CachingLogic;
+import com.android.launcher3.util.Executors.SimpleThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the icons and titles of components which are missing from the icon DB on a small pool of
+ * worker threads, eg, on first boot or after the icon shape or theme changes.
+ *
+ * Loading a missing entry is dominated by loading the drawable from the target package and
+ * rendering it, neither of which depends on the state of the cache. The objects are split in
+ * contiguous ranges, one per worker, and every worker renders its range through
+ * {@link CachingLogic#loadIcon}, which obtains a separate {@link LauncherIcons} for each
+ * concurrent caller. The calling thread loads the first range itself.
+ *
+ * This uses a dedicated pool, as callers may already be running on
+ * {@link com.android.launcher3.util.Executors#THREAD_POOL_EXECUTOR} while holding the icon cache
+ * lock.
+ */
+public class ParallelIconLoader {
+
+    private static final String TAG = "ParallelIconLoader";
+    private static final boolean DEBUG = false;
+
+    // Below this many entries per worker, handing off the work costs more than it saves
+    @VisibleForTesting
+    static final int MIN_ENTRIES_PER_WORKER = 8;
+    private static final int MAX_WORKERS =
+            Math.max(Runtime.getRuntime().availableProcessors(), 2);
+    private static final int KEEP_ALIVE_SECONDS = 1;
+
+    private final Context mContext;
+    private final ThreadPoolExecutor mExecutor;
+
+    public ParallelIconLoader(@NonNull Context context) {
+        mContext = context;
+        mExecutor = new ThreadPoolExecutor(MAX_WORKERS - 1, MAX_WORKERS - 1,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new SimpleThreadFactory("icon-loader-", THREAD_PRIORITY_BACKGROUND));
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Loads the icon and title for each of the provided objects, blocking until all of them are
+     * loaded. The returned array is in the same order as {@param objects}. Entries of a range
+     * which failed to load are left null, so that the caller can fall back to loading them
+     * serially.
+     */
+    @WorkerThread
+    @NonNull
+    public <T> CacheEntry[] loadEntries(@NonNull List<T> objects,
+            @NonNull CachingLogic<T> cachingLogic) {
+        CacheEntry[] entries = new CacheEntry[objects.size()];
+        int workerCount = getWorkerCount(objects.size());
+        if (workerCount == 0) {
+            return entries;
+        }
+
+        Trace.beginSection("loadIconsInParallel");
+        long startTime = SystemClock.uptimeMillis();
+        try {
+            int rangeSize = (objects.size() + workerCount - 1) / workerCount;
+            List<Future<?>> results = new ArrayList<>(workerCount - 1);
+            for (int start = rangeSize; start < objects.size(); start += rangeSize) {
+                int rangeStart = start;
+                int rangeEnd = Math.min(start + rangeSize, objects.size());
+                results.add(mExecutor.submit(
+                        () -> loadRange(objects, cachingLogic, entries, rangeStart, rangeEnd)));
+            }
+            loadRange(objects, cachingLogic, entries, 0, Math.min(rangeSize, objects.size()));
+
+            for (Future<?> result : results) {
+                try {
+                    result.get();
+                } catch (InterruptedException e) {
+                    results.forEach(f -> f.cancel(true));
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Interrupted while loading icons");
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "Failed to load icons", e.getCause());
+                }
+            }
+        } finally {
+            Trace.endSection();
+        }
+        if (DEBUG) {
+            Log.d(TAG, "Loaded " + objects.size() + " entries on " + workerCount + " threads in "
+                    + (SystemClock.uptimeMillis() - startTime) + "ms");
+        }
+        return entries;
+    }
+
+    private <T> void loadRange(List<T> objects, CachingLogic<T> cachingLogic,
+            CacheEntry[] outEntries, int start, int end) {
+        for (int i = start; i < end; i++) {
+            T object = objects.get(i);
+            CacheEntry entry = new CacheEntry();
+            entry.bitmap = cachingLogic.loadIcon(mContext, object);
+            entry.title = cachingLogic.getLabel(object);
+            // Each index is only written by one thread and read after the join
+            outEntries[i] = entry;
+        }
+    }
+
+    /**
+     * Returns the number of threads used to load the provided number of entries.
+     */
+    static int getWorkerCount(int entryCount) {
+        int workerCount = (entryCount + MIN_ENTRIES_PER_WORKER - 1) / MIN_ENTRIES_PER_WORKER;
+        return Math.min(workerCount, MAX_WORKERS);
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons;
+
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_MODERATE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN;
+
+import android.os.UserHandle;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.launcher3.icons.cache.BaseIconCache.CacheEntry;
+import com.android.launcher3.util.ComponentKey;
+
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * In-memory store for icon cache entries with two tiers:
+ *   - High-res entries are kept in an LRU bounded by the byte size of their bitmaps.
+ *   - Low-res entries, which only hold the title and the icon color, are small and are kept for
+ *     every component seen so far, including the ones whose high-res entry was evicted. A
+ *     low-res request never has to go back to the DB, and an icon never needs to be replaced by
+ *     the default icon while its high-res version is reloaded.
+ *
+ * This class is thread safe.
+ */
+public class TieredIconStore {
+
+    // Overhead accounted for entries without a bitmap of their own
+    private static final int MIN_ENTRY_SIZE_BYTES = 64;
+
+    private final HighResCache mHighRes;
+    private final Map<ComponentKey, CacheEntry> mLowRes = new HashMap<>();
+
+    private int mHitCount;
+    private int mLowResHitCount;
+    private int mMissCount;
+    private int mEvictionCount;
+
+    /**
+     * @param maxHighResBytes the maximum byte size of the bitmaps held by the high-res tier
+     */
+    public TieredIconStore(int maxHighResBytes) {
+        mHighRes = new HighResCache(maxHighResBytes);
+    }
+
+    /**
+     * Returns the entry for the provided key, or null if a new entry needs to be loaded.
+     *
+     * @param useLowResIcon whether a low-res entry is acceptable
+     */
+    @Nullable
+    public synchronized CacheEntry get(@NonNull ComponentKey key, boolean useLowResIcon) {
+        CacheEntry entry = mHighRes.get(key);
+        if (entry != null) {
+            mHitCount++;
+            return entry;
+        }
+        if (useLowResIcon) {
+            entry = mLowRes.get(key);
+            if (entry != null) {
+                mLowResHitCount++;
+                return entry;
+            }
+        }
+        mMissCount++;
+        return null;
+    }
+
+    /**
+     * Adds a newly loaded entry to the tier matching its resolution.
+     */
+    public synchronized void put(@NonNull ComponentKey key, @NonNull CacheEntry entry) {
+        if (entry.bitmap == null) {
+            return;
+        }
+        if (entry.bitmap.isLowRes()) {
+            mLowRes.put(key, entry);
+        } else {
+            mHighRes.put(key, entry);
+            mLowRes.put(key, toLowRes(entry));
+        }
+    }
+
+    /**
+     * Removes all the entries for the provided key.
+     */
+    public synchronized void remove(@NonNull ComponentKey key) {
+        mHighRes.remove(key);
+        mLowRes.remove(key);
+    }
+
+    /**
+     * Removes all the entries for the provided package.
+     */
+    public synchronized void removePackage(@NonNull String packageName,
+            @NonNull UserHandle user) {
+        removeIf(key -> key.user.equals(user)
+                && key.componentName.getPackageName().equals(packageName));
+    }
+
+    public synchronized void clear() {
+        mHighRes.evictAll();
+        mLowRes.clear();
+    }
+
+    /**
+     * Releases high-res entries according to the provided
+     * {@link android.content.ComponentCallbacks2} trim level. Low-res entries are always kept.
+     */
+    public synchronized void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            mHighRes.evictAll();
+        } else if (level >= TRIM_MEMORY_UI_HIDDEN || level == TRIM_MEMORY_RUNNING_LOW) {
+            mHighRes.trimToSize(mHighRes.maxSize() / 2);
+        }
+    }
+
+    @VisibleForTesting
+    synchronized int getHighResSizeBytes() {
+        return mHighRes.size();
+    }
+
+    @VisibleForTesting
+    synchronized int getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    public synchronized void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "TieredIconStore:");
+        writer.println(prefix + "  highRes: entries=" + mHighRes.snapshot().size()
+                + " bytes=" + mHighRes.size() + "/" + mHighRes.maxSize());
+        writer.println(prefix + "  lowRes: entries=" + mLowRes.size());
+        writer.println(prefix + "  hits=" + mHitCount + " lowResHits=" + mLowResHitCount
+                + " misses=" + mMissCount + " evictions=" + mEvictionCount);
+    }
+
+    private void removeIf(Predicate<ComponentKey> predicate) {
+        for (ComponentKey key : mHighRes.snapshot().keySet()) {
+            if (predicate.test(key)) {
+                mHighRes.remove(key);
+            }
+        }
+        mLowRes.keySet().removeIf(predicate);
+    }
+
+    private static CacheEntry toLowRes(CacheEntry entry) {
+        CacheEntry lowRes = new CacheEntry();
+        lowRes.bitmap = BitmapInfo.of(BitmapInfo.LOW_RES_ICON, entry.bitmap.color);
+        lowRes.title = entry.title;
+        lowRes.contentDescription = entry.contentDescription;
+        return lowRes;
+    }
+
+    private class HighResCache extends LruCache<ComponentKey, CacheEntry> {
+
+        HighResCache(int maxSizeBytes) {
+            super(maxSizeBytes);
+        }
+
+        @Override
+        protected int sizeOf(ComponentKey key, CacheEntry entry) {
+            return entry.bitmap.icon == null ? MIN_ENTRY_SIZE_BYTES
+                    : Math.max(entry.bitmap.icon.getAllocationByteCount(), MIN_ENTRY_SIZE_BYTES);
+        }
+
+        @Override
+        protected void entryRemoved(boolean evicted, ComponentKey key, CacheEntry oldValue,
+                CacheEntry newValue) {
+            if (evicted) {
+                // Called with the lock of the store held, from put or trim
+                mEvictionCount++;
+            }
+        }
+    }
+}
@@ -421,7 +421,11 @@ public abstract class BaseLauncherBinder {
         }
     }
 
-    private class DisjointWorkspaceBinder {
+    /**
+     * Binds the workspace in two steps: the pages bound synchronously along with whatever is
+     * already loaded in the model, followed by the remaining items.
+     */
+    class DisjointWorkspaceBinder {
         private final IntArray mOrderedScreenIds;
         private final IntSet mCurrentScreenIds = new IntSet();
         private final Set<Integer> mBoundItemIds = new HashSet<>();
@@ -437,6 +441,13 @@ public abstract class BaseLauncherBinder {
             }
         }
 
+        /**
+         * Returns the pages which are bound along with {@link #bindCurrentWorkspacePages}.
+         */
+        IntSet getCurrentScreenIds() {
+            return mCurrentScreenIds;
+        }
+
         /**
          * Binds the currently loaded items in the Data Model. Also signals to the Callbacks[]
          * that these items have been bound and their respective screens are ready to be shown.
@@ -490,6 +501,25 @@ public abstract class BaseLauncherBinder {
             }, mUiExecutor);
         }
 
+        /**
+         * Returns whether the pages and items bound by {@link #bindCurrentWorkspacePages} still
+         * match the model, eg, they do not if the loader removed some of them after they were
+         * bound. In that case the whole workspace needs to be bound again.
+         */
+        boolean isCurrentBindValid() {
+            synchronized (mBgDataModel) {
+                if (!mOrderedScreenIds.equals(mBgDataModel.collectWorkspaceScreens())) {
+                    return false;
+                }
+                for (int id : mBoundItemIds) {
+                    if (mBgDataModel.itemsIdMap.get(id) == null) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
         protected void bindOtherWorkspacePages() {
             // Save a copy of all the bg-thread collections
             ArrayList<ItemInfo> workspaceItems;
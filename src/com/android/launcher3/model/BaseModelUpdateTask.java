@@ -81,6 +81,7 @@ public abstract class BaseModelUpdateTask implements ModelUpdateTask {
             return;
         }
         execute(mApp, mDataModel, mAllAppsList);
+        mDataModel.publishSnapshot();
     }
 
     /**
@@ -106,6 +106,11 @@ public class BgDataModel {
      */
     public final IntSparseArrayMap<FolderInfo> folders = new IntSparseArrayMap<>();
 
+    /**
+     * Index of the items in {@link #itemsIdMap} by container, screen and package
+     */
+    public final ModelItemIndex itemIndex = new ModelItemIndex();
+
     /**
      * Extra container based items
      */
@@ -135,6 +140,16 @@ public class BgDataModel {
      * Load id for which the callbacks were successfully bound
      */
     public int lastLoadId = -1;
+    /**
+     * Incremented each time the items of the model change, see {@link #getGeneration()}
+     */
+    private volatile long mGeneration = 0;
+
+    /**
+     * Last snapshot of the items, see {@link #getSnapshot()}
+     */
+    private volatile Snapshot mSnapshot = new Snapshot(this, 0);
+
     public boolean isFirstPagePinnedItemEnabled = QSB_ON_FIRST_SCREEN
             && !ENABLE_SMARTSPACE_REMOVAL.get();
 
@@ -146,20 +161,92 @@ public class BgDataModel {
         appWidgets.clear();
         folders.clear();
         itemsIdMap.clear();
+        itemIndex.clear();
         deepShortcutMap.clear();
         extraItems.clear();
+        mGeneration++;
+    }
+
+    /**
+     * Returns a number which changes each time items are added, removed or moved in the model.
+     * Callers can compare it with a previously seen value to skip work when nothing changed.
+     */
+    public long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Notifies the model that items were modified outside of {@link #addItem} and
+     * {@link #removeItem}, eg. when an item is moved, so that a new snapshot is created.
+     */
+    public synchronized void notifyItemsChanged() {
+        mGeneration++;
+    }
+
+    /**
+     * Returns an immutable snapshot of the current items. Snapshots are published at the end of
+     * each model task, see {@link #publishSnapshot()}, so reading them does not lock the model
+     * unless it is read while a task is changing it.
+     */
+    @NonNull
+    public Snapshot getSnapshot() {
+        Snapshot snapshot = mSnapshot;
+        if (snapshot.generation == mGeneration) {
+            return snapshot;
+        }
+        synchronized (this) {
+            return getSnapshotLocked();
+        }
+    }
+
+    /**
+     * Creates the snapshot of the items if they changed since the last one, so that readers get
+     * it without locking the model. Called on the model thread at the end of each task, rather
+     * than after each change, so that a task changing many items only copies the model once.
+     */
+    public synchronized void publishSnapshot() {
+        if (FeatureFlags.ENABLE_LOCK_FREE_MODEL_READS.get()) {
+            getSnapshotLocked();
+        }
+    }
+
+    private Snapshot getSnapshotLocked() {
+        if (mSnapshot.generation != mGeneration) {
+            mSnapshot = new Snapshot(this, mGeneration);
+        }
+        return mSnapshot;
     }
 
     /**
      * Creates an array of valid workspace screens based on current items in the model.
      */
-    public synchronized IntArray collectWorkspaceScreens() {
+    public IntArray collectWorkspaceScreens() {
+        if (FeatureFlags.ENABLE_LOCK_FREE_MODEL_READS.get()) {
+            return getSnapshot().workspaceScreens.clone();
+        }
+        synchronized (this) {
+            return collectWorkspaceScreensLocked();
+        }
+    }
+
+    private IntArray collectWorkspaceScreensLocked() {
+        if (FeatureFlags.ENABLE_MODEL_ITEM_INDEX.get()) {
+            return addRequiredWorkspaceScreens(itemIndex.getScreenIds());
+        }
         IntSet screenSet = new IntSet();
         for (ItemInfo item: itemsIdMap) {
             if (item.container == LauncherSettings.Favorites.CONTAINER_DESKTOP) {
                 screenSet.add(item.screenId);
             }
         }
+        return addRequiredWorkspaceScreens(screenSet);
+    }
+
+    /**
+     * Adds the screens which are always present on the workspace to the provided set of screens
+     * containing items and returns them in ascending order.
+     */
+    public static IntArray addRequiredWorkspaceScreens(IntSet screenSet) {
         if ((FeatureFlags.QSB_ON_FIRST_SCREEN
                 && !shouldShowFirstPageWidget())
                 || screenSet.isEmpty()) {
@@ -170,7 +257,7 @@ public class BgDataModel {
 
     public synchronized void dump(String prefix, FileDescriptor fd, PrintWriter writer,
             String[] args) {
-        writer.println(prefix + "Data Model:");
+        writer.println(prefix + "Data Model: generation=" + mGeneration);
         writer.println(prefix + " ---- workspace items ");
         for (int i = 0; i < workspaceItems.size(); i++) {
             writer.println(prefix + '\t' + workspaceItems.get(i).toString());
@@ -238,7 +325,9 @@ public class BgDataModel {
                     break;
             }
             itemsIdMap.remove(item.id);
+            itemIndex.remove(item.id);
         }
+        mGeneration++;
         updatedDeepShortcuts.forEach(user -> updateShortcutPinnedState(context, user));
     }
 
@@ -256,6 +345,7 @@ public class BgDataModel {
                     /* stackTrace= */ null);
         }
         itemsIdMap.put(item.id, item);
+        itemIndex.add(item);
         switch (item.itemType) {
             case LauncherSettings.Favorites.ITEM_TYPE_FOLDER:
             case LauncherSettings.Favorites.ITEM_TYPE_APP_PAIR:
@@ -285,6 +375,7 @@ public class BgDataModel {
                 appWidgets.add((LauncherAppWidgetInfo) item);
                 break;
         }
+        mGeneration++;
         if (newItem && item.itemType == LauncherSettings.Favorites.ITEM_TYPE_DEEP_SHORTCUT) {
             updateShortcutPinnedState(context, item.user);
         }
@@ -416,7 +507,16 @@ public class BgDataModel {
     /**
      * Returns a list containing all workspace items including widgets.
      */
-    public synchronized ArrayList<ItemInfo> getAllWorkspaceItems() {
+    public ArrayList<ItemInfo> getAllWorkspaceItems() {
+        if (FeatureFlags.ENABLE_LOCK_FREE_MODEL_READS.get()) {
+            return new ArrayList<>(getSnapshot().getAllWorkspaceItems());
+        }
+        synchronized (this) {
+            return getAllWorkspaceItemsLocked();
+        }
+    }
+
+    private ArrayList<ItemInfo> getAllWorkspaceItemsLocked() {
         ArrayList<ItemInfo> items = new ArrayList<>(workspaceItems.size() + appWidgets.size());
         items.addAll(workspaceItems);
         items.addAll(appWidgets);
@@ -444,6 +544,125 @@ public class BgDataModel {
         }
     }
 
+    /**
+     * Same as {@link #forAllWorkspaceItemInfos(UserHandle, Consumer)} but only for the items
+     * targeting one of the provided {@code packages}, or all the items if {@code packages} is
+     * null. The persisted items are looked up in {@link #itemIndex} instead of iterating over all
+     * the items of the model.
+     * Note the call is not synchronized over the model, that should be handled by the called.
+     */
+    public void forAllWorkspaceItemInfos(UserHandle userHandle, @Nullable Set<String> packages,
+            Consumer<WorkspaceItemInfo> op) {
+        if (packages == null) {
+            forAllWorkspaceItemInfos(userHandle, op);
+            return;
+        }
+        if (!FeatureFlags.ENABLE_MODEL_ITEM_INDEX.get()) {
+            forAllWorkspaceItemInfos(userHandle, info -> {
+                if (packages.contains(info.getTargetPackage())) {
+                    op.accept(info);
+                }
+            });
+            return;
+        }
+        for (String packageName : packages) {
+            for (ItemInfo info : itemIndex.getItemsForPackage(
+                    new PackageUserKey(packageName, userHandle))) {
+                if (info instanceof WorkspaceItemInfo) {
+                    op.accept((WorkspaceItemInfo) info);
+                }
+            }
+        }
+
+        for (int i = extraItems.size() - 1; i >= 0; i--) {
+            for (ItemInfo info : extraItems.valueAt(i).items) {
+                if (info instanceof WorkspaceItemInfo && userHandle.equals(info.user)
+                        && packages.contains(info.getTargetPackage())) {
+                    op.accept((WorkspaceItemInfo) info);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the widgets of {@code userHandle} whose provider is in one of the provided
+     * {@code packages}.
+     * Note the call is not synchronized over the model, that should be handled by the called.
+     */
+    public List<LauncherAppWidgetInfo> getAppWidgetsForPackages(UserHandle userHandle,
+            Set<String> packages) {
+        List<LauncherAppWidgetInfo> result = new ArrayList<>();
+        if (FeatureFlags.ENABLE_MODEL_ITEM_INDEX.get()) {
+            for (String packageName : packages) {
+                for (ItemInfo info : itemIndex.getItemsForPackage(
+                        new PackageUserKey(packageName, userHandle))) {
+                    if (info instanceof LauncherAppWidgetInfo) {
+                        result.add((LauncherAppWidgetInfo) info);
+                    }
+                }
+            }
+        } else {
+            for (LauncherAppWidgetInfo widgetInfo : appWidgets) {
+                if (userHandle.equals(widgetInfo.user)
+                        && packages.contains(widgetInfo.providerName.getPackageName())) {
+                    result.add(widgetInfo);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * An immutable view of the items of the model at a given generation.
+     *
+     * The lists are copies, so they are not affected by later changes to the model. The items
+     * themselves are shared with the model and should be treated as read-only.
+     */
+    public static final class Snapshot {
+
+        public final long generation;
+        public final List<ItemInfo> workspaceItems;
+        public final List<LauncherAppWidgetInfo> appWidgets;
+        public final IntArray workspaceScreens;
+        private final IntSparseArrayMap<ItemInfo> mItemsIdMap;
+
+        private Snapshot(BgDataModel model, long generation) {
+            this.generation = generation;
+            this.workspaceItems = Collections.unmodifiableList(
+                    new ArrayList<>(model.workspaceItems));
+            this.appWidgets = Collections.unmodifiableList(new ArrayList<>(model.appWidgets));
+            this.workspaceScreens = model.collectWorkspaceScreensLocked();
+            this.mItemsIdMap = model.itemsIdMap.clone();
+        }
+
+        /**
+         * Returns the item with the provided id, including items in folders.
+         */
+        @Nullable
+        public ItemInfo getItem(int id) {
+            return mItemsIdMap.get(id);
+        }
+
+        /**
+         * Returns all the items, including items in folders.
+         */
+        public List<ItemInfo> getAllItems() {
+            List<ItemInfo> items = new ArrayList<>(mItemsIdMap.size());
+            mItemsIdMap.forEach(items::add);
+            return items;
+        }
+
+        /**
+         * Returns all the workspace items including widgets.
+         */
+        public List<ItemInfo> getAllWorkspaceItems() {
+            ArrayList<ItemInfo> items = new ArrayList<>(workspaceItems.size() + appWidgets.size());
+            items.addAll(workspaceItems);
+            items.addAll(appWidgets);
+            return items;
+        }
+    }
+
     /**
      * An object containing items corresponding to a fixed container
      */
@@ -19,19 +19,22 @@ import android.content.ComponentName;
 import android.os.UserHandle;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.android.launcher3.LauncherAppState;
 import com.android.launcher3.LauncherSettings;
 import com.android.launcher3.icons.IconCache;
+import com.android.launcher3.model.ModelUpdateCoalescer.CoalescibleTask;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
 
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Handles changes due to cache updates.
  */
-public class CacheDataUpdatedTask extends BaseModelUpdateTask {
+public class CacheDataUpdatedTask extends BaseModelUpdateTask implements CoalescibleTask {
 
     public static final int OP_CACHE_UPDATE = 1;
     public static final int OP_SESSION_UPDATE = 2;
@@ -51,6 +54,33 @@ public class CacheDataUpdatedTask extends BaseModelUpdateTask {
         mPackages = packages;
     }
 
+    @NonNull
+    @Override
+    public UserHandle getUser() {
+        return mUser;
+    }
+
+    @NonNull
+    @Override
+    public Set<String> getPackages() {
+        return mPackages;
+    }
+
+    @Nullable
+    @Override
+    public CoalescibleTask coalesceWith(@NonNull CoalescibleTask next) {
+        if (!(next instanceof CacheDataUpdatedTask)) {
+            return null;
+        }
+        CacheDataUpdatedTask other = (CacheDataUpdatedTask) next;
+        if (other.mOp != mOp || !other.mUser.equals(mUser)) {
+            return null;
+        }
+        HashSet<String> packages = new HashSet<>(mPackages);
+        packages.addAll(other.mPackages);
+        return new CacheDataUpdatedTask(mOp, mUser, packages);
+    }
+
     @Override
     public void execute(@NonNull final LauncherAppState app, @NonNull final BgDataModel dataModel,
             @NonNull final AllAppsList apps) {
@@ -58,7 +88,7 @@ public class CacheDataUpdatedTask extends BaseModelUpdateTask {
         ArrayList<WorkspaceItemInfo> updatedShortcuts = new ArrayList<>();
 
         synchronized (dataModel) {
-            dataModel.forAllWorkspaceItemInfos(mUser, si -> {
+            dataModel.forAllWorkspaceItemInfos(mUser, mPackages, si -> {
                 ComponentName cn = si.getTargetComponent();
                 if (si.itemType == LauncherSettings.Favorites.ITEM_TYPE_APPLICATION
                         && isValidShortcut(si) && cn != null
@@ -194,13 +194,18 @@ public class GridSizeMigrationUtil {
         Collections.sort(workspaceToBeAdded);
 
         // Migrate hotseat
+        if (FeatureFlags.ENABLE_INCREMENTAL_GRID_MIGRATION.get()) {
+            solveHotseatPlacementInPlace(helper, destHotseatSize,
+                    srcReader, destReader, dstHotseatItems, hotseatToBeAdded);
+        }
         solveHotseatPlacement(helper, destHotseatSize,
                 srcReader, destReader, dstHotseatItems, hotseatToBeAdded);
 
         // Migrate workspace.
         // First we create a collection of the screens
+        final int lastScreenId = destReader.mLastScreenId;
         List<Integer> screens = new ArrayList<>();
-        for (int screenId = 0; screenId <= destReader.mLastScreenId; screenId++) {
+        for (int screenId = 0; screenId <= lastScreenId; screenId++) {
             screens.add(screenId);
         }
 
@@ -210,6 +215,13 @@ public class GridSizeMigrationUtil {
                     && destDeviceState.getColumns() - srcDeviceState.getColumns() <= 2;
         }
 
+        // Items which still fit in the new grid keep their position, only the remaining items
+        // go through the placement below.
+        if (FeatureFlags.ENABLE_INCREMENTAL_GRID_MIGRATION.get()) {
+            solveGridPlacementInPlace(helper, srcReader, destReader, trgX, trgY,
+                    workspaceToBeAdded);
+        }
+
         // Then we place the items on the screens
         for (int screenId : screens) {
             if (DEBUG) {
@@ -224,7 +236,7 @@ public class GridSizeMigrationUtil {
 
         // In case the new grid is smaller, there might be some leftover items that don't fit on
         // any of the screens, in this case we add them to new screens until all of them are placed.
-        int screenId = destReader.mLastScreenId + 1;
+        int screenId = lastScreenId + 1;
         while (!workspaceToBeAdded.isEmpty()) {
             solveGridPlacement(helper, srcReader,
                     destReader, screenId, trgX, trgY, workspaceToBeAdded, preservePages);
@@ -243,13 +255,16 @@ public class GridSizeMigrationUtil {
     private static void calcDiff(@NonNull final List<DbEntry> src,
             @NonNull final List<DbEntry> dest, @NonNull final List<DbEntry> toBeAdded,
             @NonNull final IntArray toBeRemoved) {
+        // Entries are compared by their migration id, use sets to avoid quadratic lookups
+        final Set<DbEntry> srcSet = new HashSet<>(src);
+        final Set<DbEntry> destSet = new HashSet<>(dest);
         src.forEach(entry -> {
-            if (!dest.contains(entry)) {
+            if (!destSet.contains(entry)) {
                 toBeAdded.add(entry);
             }
         });
         dest.forEach(entry -> {
-            if (!src.contains(entry)) {
+            if (!srcSet.contains(entry)) {
                 toBeRemoved.add(entry.id);
                 if (entry.itemType == LauncherSettings.Favorites.ITEM_TYPE_FOLDER) {
                     entry.mFolderItems.values().forEach(ids -> ids.forEach(toBeRemoved::add));
@@ -326,18 +341,68 @@ public class GridSizeMigrationUtil {
         return validPackages;
     }
 
+    /**
+     * Places the items which fit in the target grid at their current position, as long as the
+     * position is not already occupied. Placed items are removed from {@param sortedItemsToPlace}
+     * and are taken into account by subsequent calls to {@link #solveGridPlacement}.
+     */
+    private static void solveGridPlacementInPlace(@NonNull final DatabaseHelper helper,
+            @NonNull final DbReader srcReader, @NonNull final DbReader destReader,
+            final int trgX, final int trgY, @NonNull final List<DbEntry> sortedItemsToPlace) {
+        final Map<Integer, GridOccupancy> occupancyByScreen = new HashMap<>();
+        Iterator<DbEntry> iterator = sortedItemsToPlace.iterator();
+        while (iterator.hasNext()) {
+            final DbEntry entry = iterator.next();
+            GridOccupancy occupied = occupancyByScreen.computeIfAbsent(entry.screenId,
+                    screenId -> createOccupancy(destReader, screenId, trgX, trgY));
+            if (!occupied.isRegionVacant(entry.cellX, entry.cellY, entry.spanX, entry.spanY)) {
+                continue;
+            }
+            occupied.markCells(entry, true);
+            insertEntryInDb(helper, entry, srcReader.mTableName, destReader.mTableName);
+            destReader.mWorkspaceEntriesByScreenId
+                    .computeIfAbsent(entry.screenId, screenId -> new ArrayList<>()).add(entry);
+            iterator.remove();
+        }
+        if (DEBUG) {
+            Log.d(TAG, "Items left to place after in place migration: "
+                    + sortedItemsToPlace.size());
+        }
+    }
+
+    private static GridOccupancy createOccupancy(DbReader destReader, int screenId,
+            int trgX, int trgY) {
+        GridOccupancy occupied = new GridOccupancy(trgX, trgY);
+        occupied.markCells(0, 0, trgX, getFirstAvailableRow(destReader.mContext, screenId), true);
+        List<DbEntry> existedEntries = destReader.mWorkspaceEntriesByScreenId.get(screenId);
+        if (existedEntries != null) {
+            for (DbEntry entry : existedEntries) {
+                occupied.markCells(entry, true);
+            }
+        }
+        return occupied;
+    }
+
+    /**
+     * Returns the first row where items can be placed, skipping the row used by smartspace on the
+     * first screen.
+     */
+    private static int getFirstAvailableRow(Context context, int screenId) {
+        return screenId == 0
+                && (FeatureFlags.QSB_ON_FIRST_SCREEN
+                && (!ENABLE_SMARTSPACE_REMOVAL.get() || LauncherPrefs.getPrefs(context)
+                .getBoolean(SMARTSPACE_ON_HOME_SCREEN, true))
+                && !shouldShowFirstPageWidget())
+                ? 1 /* smartspace */ : 0;
+    }
+
     private static void solveGridPlacement(@NonNull final DatabaseHelper helper,
             @NonNull final DbReader srcReader, @NonNull final DbReader destReader,
             final int screenId, final int trgX, final int trgY,
             @NonNull final List<DbEntry> sortedItemsToPlace, final boolean matchingScreenIdOnly) {
         final GridOccupancy occupied = new GridOccupancy(trgX, trgY);
         final Point trg = new Point(trgX, trgY);
-        final Point next = new Point(0, screenId == 0
-                && (FeatureFlags.QSB_ON_FIRST_SCREEN
-                && (!ENABLE_SMARTSPACE_REMOVAL.get() || LauncherPrefs.getPrefs(destReader.mContext)
-                .getBoolean(SMARTSPACE_ON_HOME_SCREEN, true))
-                && !shouldShowFirstPageWidget())
-                ? 1 /* smartspace */ : 0);
+        final Point next = new Point(0, getFirstAvailableRow(destReader.mContext, screenId));
         List<DbEntry> existedEntries = destReader.mWorkspaceEntriesByScreenId.get(screenId);
         if (existedEntries != null) {
             for (DbEntry entry : existedEntries) {
@@ -391,6 +456,36 @@ public class GridSizeMigrationUtil {
         return false;
     }
 
+    /**
+     * Places the hotseat items at their current rank if it exists in the target hotseat and is
+     * not already occupied. Placed items are removed from {@param itemsToPlace} and added to
+     * {@param placedHotseatItems}.
+     */
+    private static void solveHotseatPlacementInPlace(
+            @NonNull final DatabaseHelper helper, final int hotseatSize,
+            @NonNull final DbReader srcReader, @NonNull final DbReader destReader,
+            @NonNull final List<DbEntry> placedHotseatItems,
+            @NonNull final List<DbEntry> itemsToPlace) {
+        final boolean[] occupied = new boolean[hotseatSize];
+        for (DbEntry entry : placedHotseatItems) {
+            occupied[entry.screenId] = true;
+        }
+
+        Iterator<DbEntry> iterator = itemsToPlace.iterator();
+        while (iterator.hasNext()) {
+            DbEntry entry = iterator.next();
+            if (entry.screenId < 0 || entry.screenId >= hotseatSize || occupied[entry.screenId]) {
+                continue;
+            }
+            entry.cellX = entry.screenId;
+            entry.cellY = 0;
+            insertEntryInDb(helper, entry, srcReader.mTableName, destReader.mTableName);
+            occupied[entry.screenId] = true;
+            placedHotseatItems.add(entry);
+            iterator.remove();
+        }
+    }
+
     private static void solveHotseatPlacement(
             @NonNull final DatabaseHelper helper, final int hotseatSize,
             @NonNull final DbReader srcReader, @NonNull final DbReader destReader,
@@ -661,6 +756,8 @@ public class GridSizeMigrationUtil {
         private String mIntent;
         private String mProvider;
         private Map<String, Set<Integer>> mFolderItems = new HashMap<>();
+        // Cached as computing the id requires parsing intents, and it is used as the hash key
+        private String mMigrationId;
 
         /** Comparator according to the reading order */
         @Override
@@ -700,6 +797,13 @@ public class GridSizeMigrationUtil {
          * migration id even thought they have different database ids.
          */
         public String getEntryMigrationId() {
+            if (mMigrationId == null) {
+                mMigrationId = computeEntryMigrationId();
+            }
+            return mMigrationId;
+        }
+
+        private String computeEntryMigrationId() {
             switch (itemType) {
                 case LauncherSettings.Favorites.ITEM_TYPE_FOLDER:
                 case LauncherSettings.Favorites.ITEM_TYPE_APP_PAIR:
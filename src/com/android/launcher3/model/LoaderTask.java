@@ -32,6 +32,7 @@ import static com.android.launcher3.model.BgDataModel.Callbacks.FLAG_WORK_PROFIL
 import static com.android.launcher3.model.ModelUtils.filterCurrentWorkspaceItems;
 import static com.android.launcher3.model.data.ItemInfoWithIcon.FLAG_INSTALL_SESSION_ACTIVE;
 import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+import static com.android.launcher3.util.Executors.THREAD_POOL_EXECUTOR;
 import static com.android.launcher3.util.PackageManagerHelper.hasShortcutsPermission;
 
 import android.appwidget.AppWidgetProviderInfo;
@@ -76,6 +77,7 @@ import com.android.launcher3.icons.LauncherActivityCachingLogic;
 import com.android.launcher3.icons.ShortcutCachingLogic;
 import com.android.launcher3.icons.cache.IconCacheUpdateHandler;
 import com.android.launcher3.logging.FileLog;
+import com.android.launcher3.model.BaseLauncherBinder.DisjointWorkspaceBinder;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.FolderInfo;
 import com.android.launcher3.model.data.IconRequestInfo;
@@ -148,6 +150,8 @@ public class LoaderTask implements Runnable {
 
     private boolean mStopped;
 
+    private LongSparseArray<Boolean> mUnlockedUsers;
+
     private final Set<PackageUserKey> mPendingPackages = new HashSet<>();
     private boolean mItemsDeleted = false;
     private String mDbName;
@@ -225,22 +229,36 @@ public class LoaderTask implements Runnable {
         try (LauncherModel.LoaderTransaction transaction = mApp.getModel().beginLoader(this)) {
 
             List<ShortcutInfo> allShortcuts = new ArrayList<>();
-            loadWorkspace(allShortcuts, "", memoryLogger, restoreEventLogger);
+            DisjointWorkspaceBinder workspaceBinder = null;
+            if (FeatureFlags.ENABLE_WORKSPACE_LOADING_OPTIMIZATION.get()) {
+                workspaceBinder = loadAndBindWorkspaceInStages(
+                        allShortcuts, memoryLogger, restoreEventLogger);
+            } else {
+                loadWorkspace(allShortcuts, "", memoryLogger, restoreEventLogger);
+            }
 
             // Sanitize data re-syncs widgets/shortcuts based on the workspace loaded from db.
             // sanitizeData should not be invoked if the workspace is loaded from a db different
             // from the main db as defined in the invariant device profile.
             // (e.g. both grid preview and minimal device mode uses a different db)
-            if (Objects.equals(mApp.getInvariantDeviceProfile().dbFile, mDbName)) {
+            if (isLoadedFromMainDb()) {
                 verifyNotStopped();
                 sanitizeFolders(mItemsDeleted);
                 sanitizeWidgetsShortcutsAndPackages();
                 logASplit("sanitizeData");
             }
+            mBgDataModel.publishSnapshot();
 
             verifyNotStopped();
-            mLauncherBinder.bindWorkspace(true /* incrementBindId */, /* isBindSync= */ false);
-            logASplit("bindWorkspace");
+            if (workspaceBinder != null && workspaceBinder.isCurrentBindValid()) {
+                workspaceBinder.bindOtherWorkspacePages();
+                logASplit("bindOtherWorkspacePages");
+            } else {
+                // Sanitizing removed items or pages which were already bound with the current
+                // pages, so the whole workspace is bound again
+                mLauncherBinder.bindWorkspace(true /* incrementBindId */, /* isBindSync= */ false);
+                logASplit("bindWorkspace");
+            }
 
             mModelDelegate.workspaceLoadComplete();
             // Notify the installer packages of packages with active installs on the first screen.
@@ -386,7 +404,10 @@ public class LoaderTask implements Runnable {
             Trace.endSection();
         }
         logASplit("loadWorkspace");
+        onWorkspaceLoaded();
+    }
 
+    private void onWorkspaceLoaded() {
         if (FeatureFlags.CHANGE_MODEL_DELEGATE_LOADING_ORDER.get()) {
             verifyNotStopped();
             mModelDelegate.loadAndBindWorkspaceItems(mUserManagerState,
@@ -394,30 +415,138 @@ public class LoaderTask implements Runnable {
             mModelDelegate.markActive();
             logASplit("workspaceDelegateItems");
         }
+        updateFirstPagePinnedItemEnabled();
+    }
+
+    private void updateFirstPagePinnedItemEnabled() {
         mBgDataModel.isFirstPagePinnedItemEnabled = FeatureFlags.QSB_ON_FIRST_SCREEN
                 && (!ENABLE_SMARTSPACE_REMOVAL.get() || LauncherPrefs.getPrefs(
                 mApp.getContext()).getBoolean(SMARTSPACE_ON_HOME_SCREEN, true));
     }
 
-    private void loadWorkspaceImpl(
+    /**
+     * Loads and binds the hotseat and the pages which are bound synchronously before loading the
+     * rest of the workspace, so that the first frame only waits for the items that are visible.
+     * The remaining pages are bound by calling
+     * {@link DisjointWorkspaceBinder#bindOtherWorkspacePages()} on the returned binder.
+     */
+    private DisjointWorkspaceBinder loadAndBindWorkspaceInStages(
             List<ShortcutInfo> allDeepShortcuts,
-            String selection,
-            @Nullable LoaderMemoryLogger memoryLogger,
+            LoaderMemoryLogger memoryLogger,
             @Nullable LauncherRestoreEventLogger restoreEventLogger) {
-        final Context context = mApp.getContext();
-        final PackageManagerHelper pmHelper = new PackageManagerHelper(context);
-        final boolean isSdCardReady = Utilities.isBootCompleted();
-        final WidgetInflater widgetInflater = new WidgetInflater(context);
+        prepareDb(restoreEventLogger);
+
+        // The model is empty at this point, so the pages are collected from the DB instead.
+        IntArray orderedScreenIds = BgDataModel.addRequiredWorkspaceScreens(IntSet.wrap(
+                mApp.getModel().getModelDbController().queryWorkspaceScreenIds()));
+        DisjointWorkspaceBinder workspaceBinder =
+                mLauncherBinder.initWorkspaceBinder(true /* incrementBindId */, orderedScreenIds);
+        String currentPagesSelection =
+                getCurrentPagesSelection(workspaceBinder.getCurrentScreenIds().getArray());
+
+        Trace.beginSection("LoadCurrentWorkspacePages");
+        try {
+            synchronized (mBgDataModel) {
+                mBgDataModel.clear();
+                mPendingPackages.clear();
+                loadWorkspaceItems(allDeepShortcuts, currentPagesSelection, memoryLogger,
+                        restoreEventLogger, true /* isFirstStage */);
+            }
+        } finally {
+            Trace.endSection();
+        }
+        logASplit("loadCurrentWorkspacePages");
+        verifyNotStopped();
+        if (isLoadedFromMainDb()) {
+            // Remove the folders emptied by the items deleted so far before they are bound, the
+            // other pages are sanitized once they are loaded
+            sanitizeFolders(mItemsDeleted);
+            logASplit("sanitizeCurrentWorkspacePages");
+        }
+        updateFirstPagePinnedItemEnabled();
+        workspaceBinder.bindCurrentWorkspacePages(/* isBindSync= */ false);
+        logASplit("bindCurrentWorkspacePages");
 
+        Trace.beginSection("LoadOtherWorkspacePages");
+        try {
+            synchronized (mBgDataModel) {
+                loadWorkspaceItems(allDeepShortcuts,
+                        Favorites._ID + " NOT IN (SELECT " + Favorites._ID + " FROM "
+                                + TABLE_NAME + " WHERE " + currentPagesSelection + ")",
+                        memoryLogger, restoreEventLogger, false /* isFirstStage */);
+            }
+        } finally {
+            Trace.endSection();
+        }
+        logASplit("loadOtherWorkspacePages");
+        onWorkspaceLoaded();
+        return workspaceBinder;
+    }
+
+    /**
+     * Returns a selection matching the items in the hotseat, on the provided pages, and inside
+     * folders placed in either of them.
+     */
+    @VisibleForTesting
+    static String getCurrentPagesSelection(IntArray screenIds) {
+        String topLevelSelection = "(" + Favorites.CONTAINER + " = "
+                + Favorites.CONTAINER_HOTSEAT + " OR (" + Favorites.CONTAINER + " = "
+                + Favorites.CONTAINER_DESKTOP + " AND "
+                + Utilities.createDbSelectionQuery(Favorites.SCREEN, screenIds) + "))";
+        return "(" + topLevelSelection + " OR " + Favorites.CONTAINER + " IN (SELECT "
+                + Favorites._ID + " FROM " + TABLE_NAME + " WHERE " + topLevelSelection + "))";
+    }
+
+    /**
+     * Returns whether the workspace was loaded from the main db as defined in the invariant device
+     * profile, as opposed to, eg, the db of the grid preview or of minimal device mode.
+     */
+    private boolean isLoadedFromMainDb() {
+        return Objects.equals(mApp.getInvariantDeviceProfile().dbFile, mDbName);
+    }
+
+    private void prepareDb(@Nullable LauncherRestoreEventLogger restoreEventLogger) {
         ModelDbController dbController = mApp.getModel().getModelDbController();
         dbController.tryMigrateDB(restoreEventLogger);
         Log.d(TAG, "loadWorkspace: loading default favorites");
         dbController.loadDefaultFavoritesIfNecessary();
+    }
+
+    private void loadWorkspaceImpl(
+            List<ShortcutInfo> allDeepShortcuts,
+            String selection,
+            @Nullable LoaderMemoryLogger memoryLogger,
+            @Nullable LauncherRestoreEventLogger restoreEventLogger) {
+        prepareDb(restoreEventLogger);
 
         synchronized (mBgDataModel) {
             mBgDataModel.clear();
             mPendingPackages.clear();
+            loadWorkspaceItems(allDeepShortcuts, selection, memoryLogger, restoreEventLogger,
+                    true /* isFirstStage */);
+        }
+    }
 
+    /**
+     * Loads the items matching {@param selection} into the model, on top of the items which are
+     * already loaded.
+     *
+     * @param isFirstStage true if this is the first set of items loaded by this task. The pinned
+     *                     shortcuts are only queried and the delegate items only loaded once.
+     */
+    private void loadWorkspaceItems(
+            List<ShortcutInfo> allDeepShortcuts,
+            String selection,
+            @Nullable LoaderMemoryLogger memoryLogger,
+            @Nullable LauncherRestoreEventLogger restoreEventLogger,
+            boolean isFirstStage) {
+        final Context context = mApp.getContext();
+        final PackageManagerHelper pmHelper = new PackageManagerHelper(context);
+        final boolean isSdCardReady = Utilities.isBootCompleted();
+        final WidgetInflater widgetInflater = new WidgetInflater(context);
+        ModelDbController dbController = mApp.getModel().getModelDbController();
+
+        synchronized (mBgDataModel) {
             final HashMap<PackageUserKey, SessionInfo> installingPkgs =
                     mSessionHelper.getActiveSessions();
             if (Utilities.enableSupportForArchiving()) {
@@ -429,15 +558,28 @@ public class LoaderTask implements Runnable {
 
             mFirstScreenBroadcast = new FirstScreenBroadcast(installingPkgs);
 
-            mShortcutKeyToPinnedShortcuts = new HashMap<>();
+            // The items of a previous stage may already be bound, so only the folders and app
+            // pairs loaded by this stage are processed below
+            IntSet previousItemIds = new IntSet();
+            if (!isFirstStage) {
+                for (ItemInfo info : mBgDataModel.itemsIdMap) {
+                    previousItemIds.add(info.id);
+                }
+            }
+
+            if (isFirstStage) {
+                mShortcutKeyToPinnedShortcuts = new HashMap<>();
+                mUnlockedUsers = new LongSparseArray<>();
+            }
             final LoaderCursor c = new LoaderCursor(
                     dbController.query(TABLE_NAME, null, selection, null, null),
                     mApp, mUserManagerState, mIsRestoreFromBackup ? restoreEventLogger : null);
             final Bundle extras = c.getExtras();
             mDbName = extras == null ? null : extras.getString(ModelDbController.EXTRA_DB_NAME);
             try {
-                final LongSparseArray<Boolean> unlockedUsers = new LongSparseArray<>();
-                queryPinnedShortcutsForUnlockedUsers(context, unlockedUsers);
+                if (isFirstStage) {
+                    queryPinnedShortcutsForUnlockedUsers(context, mUnlockedUsers);
+                }
 
                 List<IconRequestInfo<WorkspaceItemInfo>> iconRequestInfos = new ArrayList<>();
 
@@ -445,18 +587,24 @@ public class LoaderTask implements Runnable {
                         mUserManagerState, mLauncherApps, mPendingPackages,
                         mShortcutKeyToPinnedShortcuts, mApp, mBgDataModel,
                         mWidgetProvidersMap, installingPkgs, isSdCardReady,
-                        widgetInflater, pmHelper, iconRequestInfos, unlockedUsers,
+                        widgetInflater, pmHelper, iconRequestInfos, mUnlockedUsers,
                         allDeepShortcuts);
 
                 while (!mStopped && c.moveToNext()) {
                     itemProcessor.processItem();
                 }
-                tryLoadWorkspaceIconsInBulk(iconRequestInfos);
+                if (FeatureFlags.ENABLE_PARALLEL_WORKSPACE_LOADING.get()) {
+                    new ShardedWorkspaceIconLoader(context, mIconCache, THREAD_POOL_EXECUTOR,
+                            memoryLogger).loadIcons(iconRequestInfos, mBgDataModel.folders);
+                    logASplit("loadWorkspaceIconsSharded");
+                } else {
+                    tryLoadWorkspaceIconsInBulk(iconRequestInfos);
+                }
             } finally {
                 IOUtils.closeSilently(c);
             }
 
-            if (!FeatureFlags.CHANGE_MODEL_DELEGATE_LOADING_ORDER.get()) {
+            if (isFirstStage && !FeatureFlags.CHANGE_MODEL_DELEGATE_LOADING_ORDER.get()) {
                 mModelDelegate.loadAndBindWorkspaceItems(mUserManagerState,
                         mLauncherBinder.mCallbacksList, mShortcutKeyToPinnedShortcuts);
                 mModelDelegate.loadAndBindAllAppsItems(mUserManagerState,
@@ -472,10 +620,10 @@ public class LoaderTask implements Runnable {
             }
 
             // Remove dead items
-            mItemsDeleted = c.commitDeleted();
+            mItemsDeleted |= c.commitDeleted();
 
-            processFolderItems();
-            processAppPairItems();
+            processFolderItems(previousItemIds);
+            processAppPairItems(previousItemIds);
 
             c.commitRestoredItems();
         }
@@ -484,10 +632,13 @@ public class LoaderTask implements Runnable {
     /**
      * After all items have been processed and added to the BgDataModel, this method requests
      * high-res icons for the items that are part of an app pair
+     *
+     * @param skippedIds ids of the app pairs which were processed by a previous stage
      */
-    private void processAppPairItems() {
+    private void processAppPairItems(IntSet skippedIds) {
         mBgDataModel.workspaceItems.stream()
-                .filter((itemInfo -> itemInfo.itemType == ITEM_TYPE_APP_PAIR))
+                .filter((itemInfo -> itemInfo.itemType == ITEM_TYPE_APP_PAIR
+                        && !skippedIds.contains(itemInfo.id)))
                 .forEach(fi -> ((FolderInfo) fi).contents.forEach(item ->
                         mIconCache.getTitleAndIcon(item, false /*useLowResIcon*/)));
     }
@@ -539,13 +690,18 @@ public class LoaderTask implements Runnable {
      * After all items have been processed and added to the BgDataModel, this method can correctly
      * rank items inside folders and load the correct miniature preview icons to be shown when the
      * folder is collapsed.
+     *
+     * @param skippedIds ids of the folders which were processed by a previous stage
      */
     @WorkerThread
-    private void processFolderItems() {
+    private void processFolderItems(IntSet skippedIds) {
         // Sort the folder items, update ranks, and make sure all preview items are high res.
         List<FolderGridOrganizer> verifiers = mApp.getInvariantDeviceProfile().supportedProfiles
                 .stream().map(FolderGridOrganizer::new).toList();
         for (FolderInfo folder : mBgDataModel.folders) {
+            if (skippedIds.contains(folder.id)) {
+                continue;
+            }
             Collections.sort(folder.contents, Folder.ITEM_POS_COMPARATOR);
             verifiers.forEach(verifier -> verifier.setFolderInfo(folder));
             int size = folder.contents.size();
@@ -614,7 +770,9 @@ public class LoaderTask implements Runnable {
                     mBgDataModel.workspaceItems.remove(mBgDataModel.folders.get(folderId));
                     mBgDataModel.folders.remove(folderId);
                     mBgDataModel.itemsIdMap.remove(folderId);
+                    mBgDataModel.itemIndex.remove(folderId);
                 }
+                mBgDataModel.notifyItemsChanged();
             }
         }
     }
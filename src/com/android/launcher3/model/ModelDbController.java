@@ -387,6 +387,24 @@ public class ModelDbController {
         }
     }
 
+    /**
+     * Returns the ids of all the workspace screens which have at least one item on them, in
+     * ascending order.
+     */
+    @WorkerThread
+    public IntArray queryWorkspaceScreenIds() {
+        createDbIfNotExists();
+        try {
+            return LauncherDbUtils.queryIntArray(true, mOpenHelper.getReadableDatabase(),
+                    Favorites.TABLE_NAME, Favorites.SCREEN,
+                    Favorites.CONTAINER + " = " + Favorites.CONTAINER_DESKTOP, null,
+                    Favorites.SCREEN);
+        } catch (SQLException ex) {
+            Log.e(TAG, ex.getMessage(), ex);
+            return new IntArray();
+        }
+    }
+
     private static void addModifiedTime(ContentValues values) {
         values.put(LauncherSettings.Favorites.MODIFIED, System.currentTimeMillis());
     }
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP;
+
+import android.util.ArraySet;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.util.IntSet;
+import com.android.launcher3.util.IntSparseArrayMap;
+import com.android.launcher3.util.PackageUserKey;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Secondary indexes over the items of {@link BgDataModel}: by container, by desktop screen and by
+ * target package and user.
+ *
+ * The keys an item was indexed with are remembered, so that the item can be re-indexed with
+ * {@link #add} after its position or target changes. Lookups only return the items whose current
+ * properties still match the requested key, so an item which was modified but not yet re-indexed
+ * is never returned for its previous key.
+ *
+ * This class is not thread safe, callers should synchronize on the owning {@link BgDataModel}.
+ */
+public class ModelItemIndex {
+
+    private final IntSparseArrayMap<ArraySet<ItemInfo>> mByContainer = new IntSparseArrayMap<>();
+    private final IntSparseArrayMap<ArraySet<ItemInfo>> mByScreen = new IntSparseArrayMap<>();
+    private final Map<PackageUserKey, ArraySet<ItemInfo>> mByPackage = new HashMap<>();
+    private final IntSparseArrayMap<IndexedKeys> mIndexedKeys = new IntSparseArrayMap<>();
+
+    /**
+     * Adds the item to the index, replacing any previous entry for the same item id.
+     */
+    public void add(@NonNull ItemInfo item) {
+        remove(item.id);
+        IndexedKeys keys = new IndexedKeys(item);
+        mIndexedKeys.put(item.id, keys);
+        addToSet(mByContainer, item.container, item);
+        if (item.container == CONTAINER_DESKTOP) {
+            addToSet(mByScreen, item.screenId, item);
+        }
+        if (keys.packageKey != null) {
+            mByPackage.computeIfAbsent(keys.packageKey, k -> new ArraySet<>()).add(item);
+        }
+    }
+
+    /**
+     * Removes the item with the provided id from the index.
+     */
+    public void remove(int itemId) {
+        IndexedKeys keys = mIndexedKeys.get(itemId);
+        if (keys == null) {
+            return;
+        }
+        mIndexedKeys.remove(itemId);
+        removeFromSet(mByContainer, keys.container, keys.item);
+        if (keys.container == CONTAINER_DESKTOP) {
+            removeFromSet(mByScreen, keys.screenId, keys.item);
+        }
+        if (keys.packageKey != null) {
+            ArraySet<ItemInfo> items = mByPackage.get(keys.packageKey);
+            if (items != null && items.remove(keys.item) && items.isEmpty()) {
+                mByPackage.remove(keys.packageKey);
+            }
+        }
+    }
+
+    public void clear() {
+        mByContainer.clear();
+        mByScreen.clear();
+        mByPackage.clear();
+        mIndexedKeys.clear();
+    }
+
+    /**
+     * Returns the items directly in the provided container.
+     */
+    @NonNull
+    public List<ItemInfo> getItemsInContainer(int container) {
+        return filter(mByContainer.get(container), item -> item.container == container);
+    }
+
+    /**
+     * Returns the items directly on the provided desktop screen.
+     */
+    @NonNull
+    public List<ItemInfo> getItemsOnScreen(int screenId) {
+        return filter(mByScreen.get(screenId),
+                item -> item.container == CONTAINER_DESKTOP && item.screenId == screenId);
+    }
+
+    /**
+     * Returns the items, including the ones in folders, targeting the provided package and user.
+     */
+    @NonNull
+    public List<ItemInfo> getItemsForPackage(@NonNull PackageUserKey key) {
+        return filter(mByPackage.get(key), item -> key.equals(getPackageKey(item)));
+    }
+
+    /**
+     * Returns the ids of the desktop screens which have at least one item.
+     */
+    @NonNull
+    public IntSet getScreenIds() {
+        IntSet screenIds = new IntSet();
+        for (int i = mByScreen.size() - 1; i >= 0; i--) {
+            int screenId = mByScreen.keyAt(i);
+            if (!getItemsOnScreen(screenId).isEmpty()) {
+                screenIds.add(screenId);
+            }
+        }
+        return screenIds;
+    }
+
+    @Nullable
+    private static PackageUserKey getPackageKey(ItemInfo item) {
+        String packageName = item.getTargetPackage();
+        return packageName == null || item.user == null
+                ? null : new PackageUserKey(packageName, item.user);
+    }
+
+    private static List<ItemInfo> filter(@Nullable ArraySet<ItemInfo> items,
+            Predicate<ItemInfo> stillMatches) {
+        if (items == null) {
+            return Collections.emptyList();
+        }
+        List<ItemInfo> result = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            ItemInfo item = items.valueAt(i);
+            if (stillMatches.test(item)) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    private static void addToSet(IntSparseArrayMap<ArraySet<ItemInfo>> map, int key,
+            ItemInfo item) {
+        ArraySet<ItemInfo> items = map.get(key);
+        if (items == null) {
+            items = new ArraySet<>();
+            map.put(key, items);
+        }
+        items.add(item);
+    }
+
+    private static void removeFromSet(IntSparseArrayMap<ArraySet<ItemInfo>> map, int key,
+            ItemInfo item) {
+        ArraySet<ItemInfo> items = map.get(key);
+        if (items != null && items.remove(item) && items.isEmpty()) {
+            map.remove(key);
+        }
+    }
+
+    /**
+     * The keys an item was indexed with, used to remove it even if it was modified since.
+     */
+    private static class IndexedKeys {
+        final ItemInfo item;
+        final int container;
+        final int screenId;
+        @Nullable final PackageUserKey packageKey;
+
+        IndexedKeys(ItemInfo item) {
+            this.item = item;
+            this.container = item.container;
+            this.screenId = item.screenId;
+            this.packageKey = getPackageKey(item);
+        }
+    }
+}
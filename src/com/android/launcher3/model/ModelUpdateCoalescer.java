@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import android.os.Handler;
+import android.os.UserHandle;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.launcher3.LauncherModel.ModelUpdateTask;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Holds package related model updates for a short window and merges the ones which target the
+ * same user and operation, so that a burst of package events results in a single pass over the
+ * model and a single bind.
+ *
+ * A pending update is only merged with a newer one if no other pending update in between affects
+ * the same packages, so the relative order of updates for a given package is preserved. Callers
+ * should {@link #flush} the pending updates before running any update which can not be coalesced.
+ */
+public class ModelUpdateCoalescer {
+
+    private static final String TAG = "ModelUpdateCoalescer";
+
+    @VisibleForTesting
+    static final long COALESCE_WINDOW_MS = 100;
+
+    /**
+     * A model update which can be merged with other updates.
+     */
+    public interface CoalescibleTask extends ModelUpdateTask {
+
+        @NonNull
+        UserHandle getUser();
+
+        /**
+         * Returns the packages affected by this update, or null if it affects all the packages of
+         * the user.
+         */
+        @Nullable
+        Set<String> getPackages();
+
+        /**
+         * Returns a single update equivalent to running this update followed by {@param next}, or
+         * null if the two updates can not be merged.
+         */
+        @Nullable
+        CoalescibleTask coalesceWith(@NonNull CoalescibleTask next);
+    }
+
+    private final Handler mHandler;
+    private final Consumer<ModelUpdateTask> mDispatcher;
+    private final Runnable mFlushRunnable = this::flush;
+
+    private final List<CoalescibleTask> mPendingTasks = new ArrayList<>();
+    private int mPendingCoalescedCount = 0;
+    private int mTotalCoalescedCount = 0;
+
+    /**
+     * @param handler handler used to schedule the end of a window
+     * @param dispatcher called with the tasks to run, in order
+     */
+    public ModelUpdateCoalescer(@NonNull Handler handler,
+            @NonNull Consumer<ModelUpdateTask> dispatcher) {
+        mHandler = handler;
+        mDispatcher = dispatcher;
+    }
+
+    /**
+     * Schedules the provided task, possibly merging it with pending tasks.
+     */
+    public synchronized void enqueue(@NonNull CoalescibleTask next) {
+        for (int i = mPendingTasks.size() - 1; i >= 0; i--) {
+            CoalescibleTask pending = mPendingTasks.get(i);
+            CoalescibleTask merged = pending.coalesceWith(next);
+            if (merged != null) {
+                mPendingTasks.set(i, merged);
+                mPendingCoalescedCount++;
+                return;
+            }
+            if (affectsSamePackages(pending, next)) {
+                // Moving next before pending would change the order of their updates
+                break;
+            }
+        }
+        if (mPendingTasks.isEmpty()) {
+            mHandler.postDelayed(mFlushRunnable, COALESCE_WINDOW_MS);
+        }
+        mPendingTasks.add(next);
+    }
+
+    /**
+     * Dispatches all the pending tasks immediately.
+     * @return true if any task was dispatched
+     */
+    public synchronized boolean flush() {
+        mHandler.removeCallbacks(mFlushRunnable);
+        if (mPendingTasks.isEmpty()) {
+            return false;
+        }
+        if (mPendingCoalescedCount > 0) {
+            Log.d(TAG, "Dispatching " + mPendingTasks.size() + " updates, coalesced "
+                    + mPendingCoalescedCount + " updates");
+        }
+        mTotalCoalescedCount += mPendingCoalescedCount;
+        mPendingCoalescedCount = 0;
+        List<CoalescibleTask> tasks = new ArrayList<>(mPendingTasks);
+        mPendingTasks.clear();
+        tasks.forEach(mDispatcher);
+        return true;
+    }
+
+    /**
+     * Drops all the pending tasks, eg, when the model is destroyed.
+     */
+    public synchronized void clear() {
+        mHandler.removeCallbacks(mFlushRunnable);
+        mPendingTasks.clear();
+        mPendingCoalescedCount = 0;
+    }
+
+    /**
+     * Returns the number of updates which were merged into other updates so far.
+     */
+    public synchronized int getCoalescedCount() {
+        return mTotalCoalescedCount + mPendingCoalescedCount;
+    }
+
+    public synchronized void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "ModelUpdateCoalescer: pending=" + mPendingTasks.size()
+                + " coalesced=" + getCoalescedCount());
+    }
+
+    private static boolean affectsSamePackages(CoalescibleTask a, CoalescibleTask b) {
+        if (!a.getUser().equals(b.getUser())) {
+            return false;
+        }
+        Set<String> packagesA = a.getPackages();
+        Set<String> packagesB = b.getPackages();
+        return packagesA == null || packagesB == null
+                || !Collections.disjoint(packagesA, packagesB);
+    }
+}
@@ -22,11 +22,13 @@ import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
 
 import android.content.ContentValues;
 import android.content.Context;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 import com.android.launcher3.LauncherModel;
 import com.android.launcher3.LauncherModel.CallbackTask;
@@ -52,7 +54,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -65,6 +69,11 @@ public class ModelWriter {
 
     private static final String TAG = "ModelWriter";
 
+    // Window in which item updates are merged before being written, about one frame, so that the
+    // updates of a drag or a folder change are written together
+    @VisibleForTesting
+    static final long BATCH_WINDOW_MS = 16;
+
     private final Context mContext;
     private final LauncherModel mModel;
     private final BgDataModel mBgDataModel;
@@ -80,6 +89,12 @@ public class ModelWriter {
     private boolean mPreparingToUndo;
     private final CellPosMapper mCellPosMapper;
 
+    // Item updates which are yet to be written on the model thread, see #executeUpdate
+    private final Object mPendingUpdatesLock = new Object();
+    @Nullable
+    private BatchedUpdateRunnable mPendingUpdates;
+    private final Runnable mWritePendingUpdates = this::writePendingUpdates;
+
     public ModelWriter(Context context, LauncherModel model, BgDataModel dataModel,
             boolean verifyChanges, CellPosMapper cellPosMapper, @Nullable Callbacks owner) {
         mContext = context;
@@ -162,13 +177,18 @@ public class ModelWriter {
         updateItemInfoProps(item, container, screenId, cellX, cellY);
         notifyItemModified(item);
 
-        enqueueDeleteRunnable(new UpdateItemRunnable(item, () ->
+        Supplier<ContentWriter> writer = () ->
                 new ContentWriter(mContext)
                         .put(Favorites.CONTAINER, item.container)
                         .put(Favorites.CELLX, item.cellX)
                         .put(Favorites.CELLY, item.cellY)
                         .put(Favorites.RANK, item.rank)
-                        .put(Favorites.SCREEN, item.screenId)));
+                        .put(Favorites.SCREEN, item.screenId);
+        if (mPreparingToUndo) {
+            enqueueDeleteRunnable(new UpdateItemRunnable(item, writer));
+        } else {
+            executeUpdate(item, writer);
+        }
     }
 
     /**
@@ -205,7 +225,7 @@ public class ModelWriter {
         item.spanX = spanX;
         item.spanY = spanY;
         notifyItemModified(item);
-        new UpdateItemRunnable(item, () ->
+        executeUpdate(item, () ->
                 new ContentWriter(mContext)
                         .put(Favorites.CONTAINER, item.container)
                         .put(Favorites.CELLX, item.cellX)
@@ -213,8 +233,7 @@ public class ModelWriter {
                         .put(Favorites.RANK, item.rank)
                         .put(Favorites.SPANX, item.spanX)
                         .put(Favorites.SPANY, item.spanY)
-                        .put(Favorites.SCREEN, item.screenId))
-                .executeOnModelThread();
+                        .put(Favorites.SCREEN, item.screenId));
     }
 
     /**
@@ -222,11 +241,68 @@ public class ModelWriter {
      */
     public void updateItemInDatabase(ItemInfo item) {
         notifyItemModified(item);
-        new UpdateItemRunnable(item, () -> {
+        executeUpdate(item, () -> {
             ContentWriter writer = new ContentWriter(mContext);
             item.onAddToDatabase(writer);
             return writer;
-        }).executeOnModelThread();
+        });
+    }
+
+    /**
+     * Writes the values provided by {@param writer} for the item to the database. When batching
+     * is enabled, the update is merged with any other pending update for the same item and written
+     * along with all the updates requested within {@link #BATCH_WINDOW_MS}, or before any other
+     * model task is posted.
+     */
+    private void executeUpdate(ItemInfo item, Supplier<ContentWriter> writer) {
+        if (!FeatureFlags.ENABLE_BATCHED_MODEL_WRITES.get()) {
+            new UpdateItemRunnable(item, writer).executeOnModelThread();
+            return;
+        }
+        synchronized (mPendingUpdatesLock) {
+            if (mPendingUpdates != null && !mPendingUpdates.isForCurrentLoad()) {
+                // The model was reloaded, the pending updates will be dropped
+                flushPendingUpdates();
+            }
+            if (mPendingUpdates == null) {
+                mPendingUpdates = new BatchedUpdateRunnable();
+                // The model flushes the batch before posting a loader or another update task
+                mModel.setHasPendingWrites(this, true);
+                MODEL_EXECUTOR.getHandler().postDelayed(mWritePendingUpdates, BATCH_WINDOW_MS);
+            }
+            mPendingUpdates.add(item, writer);
+        }
+    }
+
+    /**
+     * Posts all the pending batched updates to the model thread. This is called before posting
+     * any other task, so that the order of operations is preserved.
+     */
+    public void flushPendingUpdates() {
+        BatchedUpdateRunnable updates = takePendingUpdates();
+        if (updates != null) {
+            MODEL_EXECUTOR.execute(updates);
+        }
+    }
+
+    private void writePendingUpdates() {
+        BatchedUpdateRunnable updates = takePendingUpdates();
+        if (updates != null) {
+            updates.run();
+        }
+    }
+
+    @Nullable
+    private BatchedUpdateRunnable takePendingUpdates() {
+        synchronized (mPendingUpdatesLock) {
+            BatchedUpdateRunnable updates = mPendingUpdates;
+            if (updates != null) {
+                mPendingUpdates = null;
+                MODEL_EXECUTOR.getHandler().removeCallbacks(mWritePendingUpdates);
+                mModel.setHasPendingWrites(this, false);
+            }
+            return updates;
+        }
     }
 
     private void notifyItemModified(ItemInfo item) {
@@ -416,6 +492,58 @@ public class ModelWriter {
         }
     }
 
+    /**
+     * Writes a set of item updates in a single transaction. Updates for the same item are merged,
+     * with the values of the later update taking precedence.
+     */
+    private class BatchedUpdateRunnable extends UpdateItemBaseRunnable {
+        private final LinkedHashMap<Integer, PendingUpdate> mUpdates = new LinkedHashMap<>();
+        private final long mCreateTime = SystemClock.uptimeMillis();
+        private int mRequestCount;
+
+        void add(ItemInfo item, Supplier<ContentWriter> writer) {
+            mRequestCount++;
+            PendingUpdate update = mUpdates.get(item.id);
+            if (update == null) {
+                mUpdates.put(item.id, new PendingUpdate(item, writer));
+            } else {
+                update.mItem = item;
+                update.mWriters.add(writer);
+            }
+        }
+
+        @Override
+        public void runImpl() {
+            long startTime = SystemClock.uptimeMillis();
+            try (SQLiteTransaction t = mModel.getModelDbController().newTransaction()) {
+                for (Map.Entry<Integer, PendingUpdate> entry : mUpdates.entrySet()) {
+                    PendingUpdate update = entry.getValue();
+                    ContentValues values = new ContentValues();
+                    update.mWriters.forEach(w -> values.putAll(w.get().getValues(mContext)));
+                    mModel.getModelDbController().update(
+                            TABLE_NAME, values, itemIdMatch(entry.getKey()), null);
+                    updateItemArrays(update.mItem, entry.getKey());
+                }
+                t.commit();
+            }
+            long endTime = SystemClock.uptimeMillis();
+            FileLog.d(TAG, "Batched update: " + mUpdates.size() + " items, "
+                    + (mRequestCount - mUpdates.size()) + " coalesced, written in "
+                    + (endTime - startTime) + "ms, " + (endTime - mCreateTime)
+                    + "ms after first request");
+        }
+    }
+
+    private static class PendingUpdate {
+        private final List<Supplier<ContentWriter>> mWriters = new ArrayList<>();
+        private ItemInfo mItem;
+
+        PendingUpdate(ItemInfo item, Supplier<ContentWriter> writer) {
+            mItem = item;
+            mWriters.add(writer);
+        }
+    }
+
     private class UpdateItemsRunnable extends UpdateItemBaseRunnable {
         private final ArrayList<ContentValues> mValues;
         private final ArrayList<ItemInfo> mItems;
@@ -472,6 +600,10 @@ public class ModelWriter {
                 // as in Workspace.onDrop. Here, we just add/remove them from the list of items
                 // that are on the desktop, as appropriate
                 ItemInfo modelItem = mBgDataModel.itemsIdMap.get(itemId);
+                if (modelItem != null) {
+                    // The item might have moved or changed its target
+                    mBgDataModel.itemIndex.add(modelItem);
+                }
                 if (modelItem != null &&
                         (modelItem.container == Favorites.CONTAINER_DESKTOP ||
                                 modelItem.container == Favorites.CONTAINER_HOTSEAT)) {
@@ -490,6 +622,7 @@ public class ModelWriter {
                 } else {
                     mBgDataModel.workspaceItems.remove(modelItem);
                 }
+                mBgDataModel.notifyItemsChanged();
                 mVerifier.verifyModel();
             }
         }
@@ -506,9 +639,19 @@ public class ModelWriter {
                 return;
             }
             runImpl();
+            mBgDataModel.publishSnapshot();
+        }
+
+        /**
+         * Returns true if the model has not been reloaded since this task was created
+         */
+        final boolean isForCurrentLoad() {
+            return mLoadId == mModel.getLastLoadId();
         }
 
         public final void executeOnModelThread() {
+            // Any pending batched update was requested before this task
+            flushPendingUpdates();
             MODEL_EXECUTOR.execute(this);
         }
 
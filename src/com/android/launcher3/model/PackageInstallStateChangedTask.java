@@ -27,6 +27,7 @@ import com.android.launcher3.model.data.LauncherAppWidgetInfo;
 import com.android.launcher3.pm.PackageInstallInfo;
 import com.android.launcher3.util.InstantAppResolver;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 
@@ -74,7 +75,8 @@ public class PackageInstallStateChangedTask extends BaseModelUpdateTask {
 
         synchronized (dataModel) {
             final HashSet<ItemInfo> updates = new HashSet<>();
-            dataModel.forAllWorkspaceItemInfos(mInstallInfo.user, si -> {
+            dataModel.forAllWorkspaceItemInfos(mInstallInfo.user,
+                    Collections.singleton(mInstallInfo.packageName), si -> {
                 if (si.hasPromiseIconUi()
                         && mInstallInfo.packageName.equals(si.getTargetPackage())) {
                     si.setProgressLevel(mInstallInfo);
@@ -33,6 +33,7 @@ import android.os.UserManager;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.android.launcher3.Flags;
 import com.android.launcher3.LauncherAppState;
@@ -42,6 +43,7 @@ import com.android.launcher3.Utilities;
 import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.icons.IconCache;
 import com.android.launcher3.logging.FileLog;
+import com.android.launcher3.model.ModelUpdateCoalescer.CoalescibleTask;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.LauncherAppWidgetInfo;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
@@ -61,8 +63,10 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -71,7 +75,7 @@ import java.util.stream.Collectors;
  * or when a user availability changes.
  */
 @SuppressWarnings("NewApi")
-public class PackageUpdatedTask extends BaseModelUpdateTask {
+public class PackageUpdatedTask extends BaseModelUpdateTask implements CoalescibleTask {
 
     // TODO(b/290090023): Set to false after root causing is done.
     private static final boolean DEBUG = true;
@@ -101,6 +105,34 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
         mPackages = packages;
     }
 
+    @NonNull
+    @Override
+    public UserHandle getUser() {
+        return mUser;
+    }
+
+    @Nullable
+    @Override
+    public Set<String> getPackages() {
+        return mOp == OP_USER_AVAILABILITY_CHANGE
+                ? null : new HashSet<>(Arrays.asList(mPackages));
+    }
+
+    @Nullable
+    @Override
+    public CoalescibleTask coalesceWith(@NonNull CoalescibleTask next) {
+        if (!(next instanceof PackageUpdatedTask)) {
+            return null;
+        }
+        PackageUpdatedTask other = (PackageUpdatedTask) next;
+        if (other.mOp != mOp || !other.mUser.equals(mUser)) {
+            return null;
+        }
+        LinkedHashSet<String> packages = new LinkedHashSet<>(Arrays.asList(mPackages));
+        Collections.addAll(packages, other.mPackages);
+        return new PackageUpdatedTask(mOp, mUser, packages.toArray(new String[0]));
+    }
+
     @Override
     public void execute(@NonNull final LauncherAppState app, @NonNull final BgDataModel dataModel,
             @NonNull final AllAppsList appsList) {
@@ -206,7 +238,10 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
             // For system apps, package manager send OP_UPDATE when an app is enabled.
             final boolean isNewApkAvailable = mOp == OP_ADD || mOp == OP_UPDATE;
             synchronized (dataModel) {
-                dataModel.forAllWorkspaceItemInfos(mUser, si -> {
+                // All the packages of the user are affected by a user availability change
+                Set<String> affectedPackages =
+                        mOp == OP_USER_AVAILABILITY_CHANGE ? null : packageSet;
+                dataModel.forAllWorkspaceItemInfos(mUser, affectedPackages, si -> {
 
                     boolean infoUpdated = false;
                     boolean shortcutUpdated = false;
@@ -311,11 +346,9 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
                     }
                 });
 
-                for (LauncherAppWidgetInfo widgetInfo : dataModel.appWidgets) {
-                    if (mUser.equals(widgetInfo.user)
-                            && widgetInfo.hasRestoreFlag(
-                                    LauncherAppWidgetInfo.FLAG_PROVIDER_NOT_READY)
-                            && packageSet.contains(widgetInfo.providerName.getPackageName())) {
+                for (LauncherAppWidgetInfo widgetInfo
+                        : dataModel.getAppWidgetsForPackages(mUser, packageSet)) {
+                    if (widgetInfo.hasRestoreFlag(LauncherAppWidgetInfo.FLAG_PROVIDER_NOT_READY)) {
                         widgetInfo.restoreStatus &=
                                 ~LauncherAppWidgetInfo.FLAG_PROVIDER_NOT_READY
                                         & ~LauncherAppWidgetInfo.FLAG_RESTORE_STARTED;
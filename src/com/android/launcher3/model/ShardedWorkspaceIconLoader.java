@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.icons.IconCache;
+import com.android.launcher3.model.data.FolderInfo;
+import com.android.launcher3.model.data.IconRequestInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.IntSparseArrayMap;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Resolves the icons of loaded workspace items in shards, one per top level container (hotseat) or
+ * desktop screen, on a bounded worker pool.
+ *
+ * The icon cache lookup holds the lock of the {@link IconCache}, so lookups of different shards
+ * cannot run concurrently. Instead the calling thread looks up the shards one after the other, and
+ * as soon as a shard is looked up, the icons of that shard which fall back to the blob stored in
+ * the favorites table are decoded on the worker pool while the next shard is looked up. The
+ * calling thread decodes the last shard instead of waiting idle. This costs one icon database
+ * query per shard and user instead of one per user. Each shard only writes to the items it owns,
+ * so shards can be decoded concurrently. The shards decoded on the worker pool are joined in order
+ * (hotseat first, then screens in ascending order) so that failures and timings are reported
+ * deterministically.
+ *
+ * The items themselves are still processed sequentially before this runs, as they are read from
+ * a single database cursor and added to the model under its lock.
+ */
+public class ShardedWorkspaceIconLoader {
+
+    private static final String TAG = "ShardedWorkspaceIconLoader";
+    private static final boolean DEBUG = false;
+
+    @VisibleForTesting
+    static final int NO_SHARD = ItemInfo.NO_ID;
+
+    private final Context mContext;
+    private final IconCache mIconCache;
+    private final ExecutorService mExecutor;
+    @Nullable private final LoaderMemoryLogger mMemoryLogger;
+
+    public ShardedWorkspaceIconLoader(@NonNull Context context, @NonNull IconCache iconCache,
+            @NonNull ExecutorService executor, @Nullable LoaderMemoryLogger memoryLogger) {
+        mContext = context;
+        mIconCache = iconCache;
+        mExecutor = executor;
+        mMemoryLogger = memoryLogger;
+    }
+
+    /**
+     * Loads the titles and icons for all the provided requests, blocking until every shard
+     * completes.
+     *
+     * @param folders the folders loaded so far, used to map folder contents to the screen of their
+     *                parent folder
+     */
+    @WorkerThread
+    public void loadIcons(@NonNull List<IconRequestInfo<WorkspaceItemInfo>> iconRequestInfos,
+            @NonNull IntSparseArrayMap<FolderInfo> folders) {
+        Trace.beginSection("LoadWorkspaceIconsSharded");
+        try {
+            if (iconRequestInfos.isEmpty()) {
+                return;
+            }
+            Map<Integer, List<IconRequestInfo<WorkspaceItemInfo>>> shards =
+                    partition(iconRequestInfos, folders);
+            Iterator<Map.Entry<Integer, List<IconRequestInfo<WorkspaceItemInfo>>>> iterator =
+                    shards.entrySet().iterator();
+            Map<Integer, List<IconRequestInfo<WorkspaceItemInfo>>> blobShards = new TreeMap<>();
+            Map<Integer, Future<Long>> results = new TreeMap<>();
+            while (iterator.hasNext()) {
+                Map.Entry<Integer, List<IconRequestInfo<WorkspaceItemInfo>>> entry =
+                        iterator.next();
+                List<IconRequestInfo<WorkspaceItemInfo>> blobShard =
+                        lookUpShard(entry.getValue());
+                if (blobShard.isEmpty()) {
+                    continue;
+                }
+                if (iterator.hasNext()) {
+                    blobShards.put(entry.getKey(), blobShard);
+                    results.put(entry.getKey(), mExecutor.submit(() -> decodeShard(blobShard)));
+                } else {
+                    logShard(entry.getKey(), blobShard.size(), decodeShard(blobShard));
+                }
+            }
+
+            for (Map.Entry<Integer, Future<Long>> entry : results.entrySet()) {
+                int shardKey = entry.getKey();
+                List<IconRequestInfo<WorkspaceItemInfo>> blobShard = blobShards.get(shardKey);
+                long durationMs;
+                try {
+                    durationMs = entry.getValue().get();
+                } catch (InterruptedException e) {
+                    results.values().forEach(f -> f.cancel(true));
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Interrupted while loading icons");
+                } catch (ExecutionException e) {
+                    // Fallback to decoding the shard on the calling thread
+                    Log.e(TAG, "Failed to load icons for shard " + shardKey, e.getCause());
+                    durationMs = decodeShard(blobShard);
+                }
+                logShard(shardKey, blobShard.size(), durationMs);
+            }
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Looks up the titles and icons of the shard in the icon cache and returns the requests whose
+     * icon is not in the icon cache.
+     */
+    private List<IconRequestInfo<WorkspaceItemInfo>> lookUpShard(
+            List<IconRequestInfo<WorkspaceItemInfo>> shard) {
+        mIconCache.getTitlesAndIconsInBulk(shard);
+        List<IconRequestInfo<WorkspaceItemInfo>> blobRequestInfos = new ArrayList<>();
+        for (IconRequestInfo<WorkspaceItemInfo> iconRequestInfo : shard) {
+            WorkspaceItemInfo wai = iconRequestInfo.itemInfo;
+            if (mIconCache.isDefaultIcon(wai.bitmap, wai.user)) {
+                blobRequestInfos.add(iconRequestInfo);
+            }
+        }
+        return blobRequestInfos;
+    }
+
+    private long decodeShard(List<IconRequestInfo<WorkspaceItemInfo>> shard) {
+        long startTime = SystemClock.uptimeMillis();
+        for (IconRequestInfo<WorkspaceItemInfo> iconRequestInfo : shard) {
+            iconRequestInfo.loadWorkspaceIcon(mContext);
+        }
+        return SystemClock.uptimeMillis() - startTime;
+    }
+
+    private void logShard(int shardKey, int itemCount, long durationMs) {
+        String log = "loadIcons: shard=" + shardKey + " items=" + itemCount
+                + " took " + durationMs + "ms";
+        if (DEBUG) {
+            Log.d(TAG, log);
+        }
+        if (mMemoryLogger != null) {
+            mMemoryLogger.addLog(Log.DEBUG, TAG, log);
+        }
+    }
+
+    /**
+     * Groups the requests by shard key, preserving the relative order of requests within a shard.
+     */
+    @VisibleForTesting
+    static Map<Integer, List<IconRequestInfo<WorkspaceItemInfo>>> partition(
+            List<IconRequestInfo<WorkspaceItemInfo>> iconRequestInfos,
+            IntSparseArrayMap<FolderInfo> folders) {
+        Map<Integer, List<IconRequestInfo<WorkspaceItemInfo>>> shards = new TreeMap<>();
+        for (IconRequestInfo<WorkspaceItemInfo> iconRequestInfo : iconRequestInfos) {
+            shards.computeIfAbsent(getShardKey(iconRequestInfo.itemInfo, folders),
+                    k -> new ArrayList<>()).add(iconRequestInfo);
+        }
+        return shards;
+    }
+
+    /**
+     * Returns the screen id for items on the desktop and the container id for other top level
+     * containers. Screen ids are non-negative and container ids are negative, so the two never
+     * collide. Items inside a folder use the key of their parent folder.
+     */
+    @VisibleForTesting
+    static int getShardKey(ItemInfo info, IntSparseArrayMap<FolderInfo> folders) {
+        ItemInfo topLevelItem = info;
+        if (info.container >= 0) {
+            topLevelItem = folders.get(info.container);
+            if (topLevelItem == null) {
+                return NO_SHARD;
+            }
+        }
+        return topLevelItem.container == CONTAINER_DESKTOP
+                ? topLevelItem.screenId
+                : topLevelItem.container;
+    }
+}
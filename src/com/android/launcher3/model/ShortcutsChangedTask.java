@@ -20,9 +20,11 @@ import android.content.pm.ShortcutInfo;
 import android.os.UserHandle;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.android.launcher3.LauncherAppState;
 import com.android.launcher3.LauncherSettings;
+import com.android.launcher3.model.ModelUpdateCoalescer.CoalescibleTask;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.shortcuts.ShortcutKey;
 import com.android.launcher3.shortcuts.ShortcutRequest;
@@ -30,6 +32,7 @@ import com.android.launcher3.util.ItemInfoMatcher;
 import com.android.launcher3.util.PackageManagerHelper;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -38,7 +41,7 @@ import java.util.stream.Collectors;
 /**
  * Handles changes due to shortcut manager updates (deep shortcut changes)
  */
-public class ShortcutsChangedTask extends BaseModelUpdateTask {
+public class ShortcutsChangedTask extends BaseModelUpdateTask implements CoalescibleTask {
 
     @NonNull
     private final String mPackageName;
@@ -60,6 +63,34 @@ public class ShortcutsChangedTask extends BaseModelUpdateTask {
         mUpdateIdMap = updateIdMap;
     }
 
+    @NonNull
+    @Override
+    public UserHandle getUser() {
+        return mUser;
+    }
+
+    @NonNull
+    @Override
+    public Set<String> getPackages() {
+        return Collections.singleton(mPackageName);
+    }
+
+    @Nullable
+    @Override
+    public CoalescibleTask coalesceWith(@NonNull CoalescibleTask next) {
+        if (!(next instanceof ShortcutsChangedTask)) {
+            return null;
+        }
+        ShortcutsChangedTask other = (ShortcutsChangedTask) next;
+        // The newer list of shortcuts describes the current state of the package, but lists of
+        // all shortcuts and of pinned shortcuts only can not be exchanged
+        if (!other.mPackageName.equals(mPackageName) || !other.mUser.equals(mUser)
+                || other.mUpdateIdMap != mUpdateIdMap) {
+            return null;
+        }
+        return other;
+    }
+
     @Override
     public void execute(@NonNull final LauncherAppState app, @NonNull final BgDataModel dataModel,
             @NonNull final AllAppsList apps) {
@@ -67,8 +98,9 @@ public class ShortcutsChangedTask extends BaseModelUpdateTask {
         // Find WorkspaceItemInfo's that have changed on the workspace.
         ArrayList<WorkspaceItemInfo> matchingWorkspaceItems = new ArrayList<>();
 
+        Set<String> packages = Collections.singleton(mPackageName);
         synchronized (dataModel) {
-            dataModel.forAllWorkspaceItemInfos(mUser, si -> {
+            dataModel.forAllWorkspaceItemInfos(mUser, packages, si -> {
                 if ((si.itemType == LauncherSettings.Favorites.ITEM_TYPE_DEEP_SHORTCUT)
                         && mPackageName.equals(si.getIntent().getPackage())) {
                     matchingWorkspaceItems.add(si);
@@ -35,6 +35,7 @@ import com.android.launcher3.LauncherSettings;
 import com.android.launcher3.Utilities;
 import com.android.launcher3.pm.PackageInstallInfo;
 import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.util.LabelComparator;
 import com.android.launcher3.util.PackageManagerHelper;
 import com.android.launcher3.util.UserIconInfo;
 
@@ -67,6 +68,10 @@ public class AppInfo extends ItemInfoWithIcon implements WorkspaceItemFactory {
     // Section name used for indexing.
     public String sectionName = "";
 
+    // Key of the title used for sorting, cached by AppInfoComparator
+    @Nullable
+    public LabelComparator.SortKey sortKey;
+
     /**
      * The uid of the application.
      * The kernel user-ID that has been assigned to this application. Currently this is not a unique
@@ -16,6 +16,9 @@
 
 package com.android.launcher3.popup;
 
+import static com.android.launcher3.config.FeatureFlags.ENABLE_WIDGET_SEARCH_INDEX;
+import static com.android.launcher3.util.Executors.SEARCH_EXECUTOR;
+
 import android.content.ComponentName;
 import android.service.notification.StatusBarNotification;
 import android.util.Log;
@@ -35,6 +38,7 @@ import com.android.launcher3.widget.PendingAddWidgetInfo;
 import com.android.launcher3.widget.model.WidgetsListBaseEntry;
 import com.android.launcher3.widget.model.WidgetsListContentEntry;
 import com.android.launcher3.widget.picker.WidgetRecommendationCategory;
+import com.android.launcher3.widget.picker.search.WidgetsSearchIndex;
 
 import java.io.PrintWriter;
 import java.util.Arrays;
@@ -64,6 +68,9 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
 
     /** All installed widgets. */
     private List<WidgetsListBaseEntry> mAllWidgets = List.of();
+    /** Search index over {@link #mAllWidgets}, built on the search executor. */
+    @Nullable
+    private WidgetsSearchIndex mWidgetsSearchIndex;
     /** Widgets that can be recommended to the users. */
     private List<ItemInfo> mRecommendedWidgets = List.of();
 
@@ -194,9 +201,25 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
 
     public void setAllWidgets(List<WidgetsListBaseEntry> allWidgets) {
         mAllWidgets = allWidgets;
+        if (ENABLE_WIDGET_SEARCH_INDEX.get()) {
+            // Index the widgets as soon as the model binds them, so that the index is ready by
+            // the time the user searches
+            WidgetsSearchIndex index = new WidgetsSearchIndex(allWidgets);
+            SEARCH_EXECUTOR.execute(index::build);
+            mWidgetsSearchIndex = index;
+        }
         mChangeListener.onWidgetsBound();
     }
 
+    /**
+     * Returns the search index over the widgets returned by {@link #getAllWidgets()}, or null if
+     * widgets should not be searched with an index.
+     */
+    @Nullable
+    public WidgetsSearchIndex getWidgetsSearchIndex() {
+        return mWidgetsSearchIndex;
+    }
+
     public void setChangeListener(PopupDataChangeListener listener) {
         mChangeListener = listener == null ? PopupDataChangeListener.INSTANCE : listener;
     }
@@ -47,6 +47,7 @@ import android.util.LongSparseArray;
 import android.util.SparseLongArray;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 
@@ -58,6 +59,7 @@ import com.android.launcher3.LauncherSettings.Favorites;
 import com.android.launcher3.Utilities;
 import com.android.launcher3.backuprestore.LauncherRestoreEventLogger;
 import com.android.launcher3.backuprestore.LauncherRestoreEventLogger.RestoreError;
+import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.logging.FileLog;
 import com.android.launcher3.model.DeviceGridState;
 import com.android.launcher3.model.LoaderTask;
@@ -94,6 +96,8 @@ public class RestoreDbTask {
     private static final String INFO_COLUMN_NAME = "name";
     private static final String INFO_COLUMN_DEFAULT_VALUE = "dflt_value";
 
+    private static final String STEP_SANITIZE_DB = "sanitize_db";
+
     public static final String APPWIDGET_OLD_IDS = "appwidget_old_ids";
     public static final String APPWIDGET_IDS = "appwidget_ids";
     @VisibleForTesting
@@ -125,6 +129,9 @@ public class RestoreDbTask {
     }
 
     private static boolean performRestore(Context context, ModelDbController controller) {
+        if (FeatureFlags.ENABLE_JOURNALED_RESTORE.get()) {
+            return performJournaledRestore(context, controller);
+        }
         SQLiteDatabase db = controller.getDb();
         FileLog.d(TAG, "performRestore: starting restore from db");
         try (SQLiteTransaction t = new SQLiteTransaction(db)) {
@@ -142,6 +149,40 @@ public class RestoreDbTask {
         }
     }
 
+    /**
+     * Same as {@link #performRestore} but runs each step in its own transaction, recording its
+     * completion in a {@link RestoreJournal}. If the process is killed during the restore, the
+     * next attempt skips the steps which were already committed.
+     */
+    private static boolean performJournaledRestore(Context context,
+            ModelDbController controller) {
+        SQLiteDatabase db = controller.getDb();
+        RestoreJournal journal = new RestoreJournal(db);
+        try {
+            RestoreDbTask task = new RestoreDbTask();
+            LauncherRestoreEventLogger restoreEventLogger =
+                    LauncherRestoreEventLogger.Companion.newInstance(context);
+            if (journal.isStepDone(STEP_SANITIZE_DB)) {
+                FileLog.d(TAG, "performRestore: resuming restore, db already sanitized");
+            } else {
+                FileLog.d(TAG, "performRestore: starting restore from db");
+                try (SQLiteTransaction t = new SQLiteTransaction(db)) {
+                    task.sanitizeDB(context, controller, db, new BackupManager(context),
+                            restoreEventLogger);
+                    journal.markStepDone(STEP_SANITIZE_DB);
+                    t.commit();
+                }
+            }
+            task.restoreAppWidgetIdsIfExists(context, controller, restoreEventLogger);
+            return true;
+        } catch (Exception e) {
+            FileLog.e(TAG, "Failed to verify db", e);
+            return false;
+        } finally {
+            journal.clear();
+        }
+    }
+
     /**
      * Makes the following changes in the provider DB.
      *   1. Removes all entries belonging to any profiles that were not restored.
@@ -365,12 +406,18 @@ public class RestoreDbTask {
     void restoreAppWidgetIdsIfExists(Context context, ModelDbController controller,
             LauncherRestoreEventLogger restoreEventLogger) {
         LauncherPrefs lp = LauncherPrefs.get(context);
+        RestoreJournal journal = FeatureFlags.ENABLE_JOURNALED_RESTORE.get()
+                ? new RestoreJournal(controller.getDb()) : null;
         if (lp.has(APP_WIDGET_IDS, OLD_APP_WIDGET_IDS)) {
             AppWidgetHost host = new AppWidgetHost(context, APPWIDGET_HOST_ID);
             restoreAppWidgetIds(context, controller, restoreEventLogger,
                     IntArray.fromConcatString(lp.get(OLD_APP_WIDGET_IDS)).toArray(),
                     IntArray.fromConcatString(lp.get(APP_WIDGET_IDS)).toArray(),
-                    host);
+                    host, journal);
+        } else if (journal != null && journal.hasPendingWidgetIds()) {
+            FileLog.d(TAG, "Resuming widget id remap from restore journal");
+            applyJournaledWidgetIds(context, controller, restoreEventLogger, journal,
+                    new AppWidgetHost(context, APPWIDGET_HOST_ID));
         } else {
             FileLog.d(TAG, "Did not receive new app widget id map during Launcher restore");
         }
@@ -380,11 +427,13 @@ public class RestoreDbTask {
 
     /**
      * Updates the app widgets whose id has changed during the restore process.
+     *
+     * @param journal if not null, the remaps are staged in the journal and applied in batches
      */
     @WorkerThread
     private void restoreAppWidgetIds(Context context, ModelDbController controller,
             LauncherRestoreEventLogger launcherRestoreEventLogger, int[] oldWidgetIds,
-            int[] newWidgetIds, @NonNull AppWidgetHost host) {
+            int[] newWidgetIds, @NonNull AppWidgetHost host, @Nullable RestoreJournal journal) {
         if (WidgetsModel.GO_DISABLE_WIDGETS) {
             FileLog.e(TAG, "Skipping widget ID remap as widgets not supported");
             host.deleteHost();
@@ -412,6 +461,25 @@ public class RestoreDbTask {
         // TODO(b/234700507): Remove the logs after the bug is fixed
         logDatabaseWidgetInfo(controller);
 
+        if (journal != null) {
+            int[] states = new int[oldWidgetIds.length];
+            for (int i = 0; i < oldWidgetIds.length; i++) {
+                FileLog.i(TAG, "Widget state restore id " + oldWidgetIds[i] + " => "
+                        + newWidgetIds[i]);
+                states[i] = LoaderTask.isValidProvider(widgets.getAppWidgetInfo(newWidgetIds[i]))
+                        ? LauncherAppWidgetInfo.FLAG_UI_NOT_READY
+                        : LauncherAppWidgetInfo.FLAG_PROVIDER_NOT_READY;
+            }
+            journal.stageWidgetIds(oldWidgetIds, newWidgetIds, states);
+            // Once staged, the journal is the source of truth for the remaps. Clearing the
+            // preferences before applying them ensures that a resumed restore never stages and
+            // applies a remap twice.
+            LauncherPrefs.get(context).removeSync(APP_WIDGET_IDS, OLD_APP_WIDGET_IDS);
+            applyJournaledWidgetIds(context, controller, launcherRestoreEventLogger, journal,
+                    host);
+            return;
+        }
+
         for (int i = 0; i < oldWidgetIds.length; i++) {
             FileLog.i(TAG, "Widget state restore id " + oldWidgetIds[i] + " => " + newWidgetIds[i]);
 
@@ -469,6 +537,48 @@ public class RestoreDbTask {
         }
     }
 
+    /**
+     * Applies the widget id remaps staged in {@param journal} and deletes the new ids of the
+     * widgets which are no longer in the database.
+     */
+    @WorkerThread
+    private void applyJournaledWidgetIds(Context context, ModelDbController controller,
+            LauncherRestoreEventLogger launcherRestoreEventLogger, RestoreJournal journal,
+            @NonNull AppWidgetHost host) {
+        long mainProfileId = UserCache.INSTANCE.get(context)
+                .getSerialNumberForUser(myUserHandle());
+        IntArray missingOldIds = new IntArray();
+        IntArray missingNewIds = new IntArray();
+        int applied = journal.applyWidgetIds(mainProfileId, missingOldIds, missingNewIds);
+        FileLog.d(TAG, "applyJournaledWidgetIds: applied " + applied + " remaps, "
+                + missingOldIds.size() + " did not match any widget");
+
+        for (int i = 0; i < missingOldIds.size(); i++) {
+            String oldWidgetId = Integer.toString(missingOldIds.get(i));
+            try (Cursor cursor = controller.getDb().query(
+                    Favorites.TABLE_NAME,
+                    new String[]{Favorites.APPWIDGET_ID},
+                    "appWidgetId=?", new String[]{oldWidgetId}, null, null, null)) {
+                if (!cursor.moveToFirst()) {
+                    // The widget no long exists.
+                    FileLog.d(TAG, "Deleting widgetId: " + missingNewIds.get(i)
+                            + " with old id: " + oldWidgetId);
+                    host.deleteAppWidgetId(missingNewIds.get(i));
+                    launcherRestoreEventLogger.logSingleFavoritesItemRestoreFailed(
+                            ITEM_TYPE_APPWIDGET,
+                            RestoreError.WIDGET_REMOVED
+                    );
+                }
+            }
+        }
+
+        logFavoritesTable(controller.getDb(), "launcher db after remap widget ids", null, null);
+        LauncherAppState app = LauncherAppState.getInstanceNoCreate();
+        if (app != null) {
+            app.getModel().forceReload();
+        }
+    }
+
     private static void logDatabaseWidgetInfo(ModelDbController controller) {
         try (Cursor cursor = controller.getDb().query(Favorites.TABLE_NAME,
                 new String[]{Favorites.APPWIDGET_ID, Favorites.RESTORED, Favorites.PROFILE_ID},
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.provider;
+
+import static com.android.launcher3.provider.LauncherDbUtils.dropTable;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.LauncherSettings.Favorites;
+import com.android.launcher3.provider.LauncherDbUtils.SQLiteTransaction;
+import com.android.launcher3.util.IntArray;
+
+/**
+ * Write-ahead journal used by {@link RestoreDbTask}, stored in the launcher database.
+ *
+ * Each restore step records its completion in the same transaction as its changes, so that a
+ * restore interrupted by a process kill resumes after the last completed step instead of running
+ * non-idempotent steps again. Widget id remaps are staged in the journal before their source
+ * preferences are cleared, and are then applied in batches, each batch being removed from the
+ * journal in the same transaction in which it is applied.
+ */
+public class RestoreJournal {
+
+    @VisibleForTesting
+    static final String STEPS_TABLE = "restore_journal_steps";
+    @VisibleForTesting
+    static final String WIDGETS_TABLE = "restore_journal_widgets";
+
+    private static final String COLUMN_STEP = "step";
+    private static final String COLUMN_OLD_ID = "oldId";
+    private static final String COLUMN_NEW_ID = "newId";
+    private static final String COLUMN_RESTORED = "restored";
+
+    @VisibleForTesting
+    static final int BATCH_SIZE = 100;
+
+    private final SQLiteDatabase mDb;
+
+    @WorkerThread
+    public RestoreJournal(SQLiteDatabase db) {
+        mDb = db;
+        mDb.execSQL("CREATE TABLE IF NOT EXISTS " + STEPS_TABLE + " ("
+                + COLUMN_STEP + " TEXT PRIMARY KEY)");
+        mDb.execSQL("CREATE TABLE IF NOT EXISTS " + WIDGETS_TABLE + " ("
+                + COLUMN_OLD_ID + " INTEGER PRIMARY KEY, "
+                + COLUMN_NEW_ID + " INTEGER NOT NULL, "
+                + COLUMN_RESTORED + " INTEGER NOT NULL)");
+    }
+
+    /**
+     * Returns true if {@param step} was marked as done by a previous attempt of the restore.
+     */
+    public boolean isStepDone(String step) {
+        return DatabaseUtils.queryNumEntries(mDb, STEPS_TABLE, COLUMN_STEP + "=?",
+                new String[] {step}) > 0;
+    }
+
+    /**
+     * Marks {@param step} as done. This should be called within the transaction of the step.
+     */
+    public void markStepDone(String step) {
+        try (SQLiteStatement stmt = mDb.compileStatement("INSERT OR IGNORE INTO " + STEPS_TABLE
+                + " (" + COLUMN_STEP + ") VALUES (?)")) {
+            stmt.bindString(1, step);
+            stmt.executeInsert();
+        }
+    }
+
+    /**
+     * Stages the widget id remaps in a single transaction. Staging the same old id again replaces
+     * the previous entry, so an interrupted staging can simply be repeated.
+     */
+    public void stageWidgetIds(int[] oldWidgetIds, int[] newWidgetIds, int[] restoreStates) {
+        try (SQLiteTransaction t = new SQLiteTransaction(mDb);
+             SQLiteStatement stmt = mDb.compileStatement("INSERT OR REPLACE INTO " + WIDGETS_TABLE
+                     + " (" + COLUMN_OLD_ID + ", " + COLUMN_NEW_ID + ", " + COLUMN_RESTORED
+                     + ") VALUES (?, ?, ?)")) {
+            for (int i = 0; i < oldWidgetIds.length; i++) {
+                stmt.bindLong(1, oldWidgetIds[i]);
+                stmt.bindLong(2, newWidgetIds[i]);
+                stmt.bindLong(3, restoreStates[i]);
+                stmt.executeInsert();
+            }
+            t.commit();
+        }
+    }
+
+    /**
+     * Returns true if there are staged widget id remaps which were not applied yet.
+     */
+    public boolean hasPendingWidgetIds() {
+        return DatabaseUtils.queryNumEntries(mDb, WIDGETS_TABLE) > 0;
+    }
+
+    /**
+     * Applies all the staged widget id remaps to the favorites table, for restored widgets of
+     * {@param profileId}, in batches of {@link #BATCH_SIZE}.
+     *
+     * @param outMissingOldIds old ids of the remaps which did not match any widget
+     * @param outMissingNewIds new ids of the remaps which did not match any widget
+     * @return the number of remaps applied, including the ones which did not match
+     */
+    public int applyWidgetIds(long profileId, IntArray outMissingOldIds,
+            IntArray outMissingNewIds) {
+        int applied = 0;
+        IntArray oldIds = new IntArray(BATCH_SIZE);
+        IntArray newIds = new IntArray(BATCH_SIZE);
+        IntArray states = new IntArray(BATCH_SIZE);
+        try (SQLiteStatement updateStmt = mDb.compileStatement("UPDATE " + Favorites.TABLE_NAME
+                     + " SET " + Favorites.APPWIDGET_ID + "=?, " + Favorites.RESTORED + "=?"
+                     + " WHERE " + Favorites.APPWIDGET_ID + "=? AND (" + Favorites.RESTORED
+                     + " & 1) = 1 AND " + Favorites.PROFILE_ID + "=?");
+             SQLiteStatement deleteStmt = mDb.compileStatement("DELETE FROM " + WIDGETS_TABLE
+                     + " WHERE " + COLUMN_OLD_ID + "=?")) {
+            while (readBatch(oldIds, newIds, states)) {
+                try (SQLiteTransaction t = new SQLiteTransaction(mDb)) {
+                    for (int i = 0; i < oldIds.size(); i++) {
+                        updateStmt.bindLong(1, newIds.get(i));
+                        updateStmt.bindLong(2, states.get(i));
+                        updateStmt.bindLong(3, oldIds.get(i));
+                        updateStmt.bindLong(4, profileId);
+                        if (updateStmt.executeUpdateDelete() == 0) {
+                            outMissingOldIds.add(oldIds.get(i));
+                            outMissingNewIds.add(newIds.get(i));
+                        }
+                        deleteStmt.bindLong(1, oldIds.get(i));
+                        deleteStmt.executeUpdateDelete();
+                    }
+                    t.commit();
+                }
+                applied += oldIds.size();
+            }
+        }
+        return applied;
+    }
+
+    private boolean readBatch(IntArray outOldIds, IntArray outNewIds, IntArray outStates) {
+        outOldIds.clear();
+        outNewIds.clear();
+        outStates.clear();
+        try (Cursor c = mDb.query(WIDGETS_TABLE,
+                new String[] {COLUMN_OLD_ID, COLUMN_NEW_ID, COLUMN_RESTORED},
+                null, null, null, null, COLUMN_OLD_ID, Integer.toString(BATCH_SIZE))) {
+            while (c.moveToNext()) {
+                outOldIds.add(c.getInt(0));
+                outNewIds.add(c.getInt(1));
+                outStates.add(c.getInt(2));
+            }
+        }
+        return !outOldIds.isEmpty();
+    }
+
+    /**
+     * Removes the journal once the restore is complete or abandoned.
+     */
+    public void clear() {
+        dropTable(mDb, STEPS_TABLE);
+        dropTable(mDb, WIDGETS_TABLE);
+    }
+}
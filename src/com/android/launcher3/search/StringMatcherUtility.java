@@ -18,9 +18,12 @@ package com.android.launcher3.search;
 
 import android.text.TextUtils;
 
+import androidx.annotation.Nullable;
+
 import com.android.launcher3.util.IntArray;
 
 import java.text.Collator;
+import java.text.Normalizer;
 import java.util.stream.IntStream;
 
 /**
@@ -100,6 +103,99 @@ public class StringMatcherUtility {
         return listOfBreakPoints;
     }
 
+    /**
+     * Returns true if every target matching {@code query} also matches {@code previousQuery}, so
+     * that the targets matching {@code query} can be searched among the ones matching
+     * {@code previousQuery}.
+     */
+    public static boolean isRefinement(String previousQuery, String query) {
+        return query.startsWith(previousQuery)
+                && requestSimpleFuzzySearch(previousQuery) == requestSimpleFuzzySearch(query);
+    }
+
+    /**
+     * Returns the positions in {@code target} from which {@link #matches} tries to match a query,
+     * in increasing order. Unlike {@link #getListOfBreakpoints}, these are the positions of the
+     * first character of each substring.
+     */
+    public static IntArray getMatchStartPositions(String target, StringMatcher matcher) {
+        IntArray positions = new IntArray();
+        int targetLength = target.length();
+        if (targetLength == 0) {
+            return positions;
+        }
+
+        int lastType;
+        int thisType = Character.UNASSIGNED;
+        int nextType = Character.getType(target.codePointAt(0));
+        for (int i = 0; i < targetLength; i++) {
+            lastType = thisType;
+            thisType = nextType;
+            nextType = i < (targetLength - 1)
+                    ? Character.getType(target.codePointAt(i + 1)) : Character.UNASSIGNED;
+            if (matcher.isBreak(thisType, lastType, nextType)) {
+                positions.add(i);
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Returns {@code target} in lower case without accents, with the same length as
+     * {@code target}, or null if it can not be normalized to ASCII. Indexes can match a query
+     * normalized with {@link #normalizeQueryForIndex} against the normalized targets from the
+     * positions returned by {@link #getMatchStartPositions}, instead of calling {@link #matches}.
+     */
+    @Nullable
+    public static String normalizeForIndex(String target) {
+        char[] chars = new char[target.length()];
+        for (int i = 0; i < chars.length; i++) {
+            char c = normalizeChar(target.charAt(i));
+            if (c >= 0x80) {
+                return null;
+            }
+            chars[i] = c;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Returns the normalized lower case query, or null if the query can not be matched against
+     * targets normalized with {@link #normalizeForIndex}.
+     */
+    @Nullable
+    public static String normalizeQueryForIndex(String queryLower) {
+        if (queryLower.isEmpty()) {
+            return null;
+        }
+        char[] chars = new char[queryLower.length()];
+        for (int i = 0; i < chars.length; i++) {
+            char c = normalizeChar(queryLower.charAt(i));
+            if (!(c >= 'a' && c <= 'z') && !(c >= '0' && c <= '9') && c != ' ') {
+                return null;
+            }
+            chars[i] = c;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Returns the lower case base character of {@code c}, ie, without any accent, which has the
+     * same primary collation weight as {@code c}.
+     */
+    private static char normalizeChar(char c) {
+        if (c < 0x80) {
+            return Character.toLowerCase(c);
+        }
+        String decomposed = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+        for (int i = 1; i < decomposed.length(); i++) {
+            if (Character.getType(decomposed.charAt(i)) != Character.NON_SPACING_MARK) {
+                return c;
+            }
+        }
+        return Character.toLowerCase(decomposed.charAt(0));
+    }
+
     /**
      * Performs locale sensitive string comparison using {@link Collator}.
      */
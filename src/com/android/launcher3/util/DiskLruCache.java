@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Directory of files identified by a string key, bounded by their total size. When the files
+ * exceed the size, the least recently used ones are deleted.
+ *
+ * Each file starts with a format version and the key, followed by the content written by the
+ * caller. Files are written to a temporary file first, so that a partially written file is
+ * never read.
+ *
+ * This class is thread safe, but all the accesses go to disk and should happen on a background
+ * thread.
+ */
+public class DiskLruCache {
+
+    private static final String TAG = "DiskLruCache";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    /**
+     * Reads the content of a file, after its version and key.
+     */
+    public interface Reader<T> {
+        @Nullable
+        T read(@NonNull DataInputStream in) throws IOException;
+    }
+
+    /**
+     * Writes the content of a file, after its version and key.
+     */
+    public interface Writer {
+        void write(@NonNull DataOutputStream out) throws IOException;
+    }
+
+    private final File mDir;
+    private final String mFilePrefix;
+    private final int mFileVersion;
+    private final long mMaxBytes;
+
+    // Total size of the files, computed on first use. Guarded by this.
+    private long mBytes = -1;
+
+    /**
+     * @param filePrefix Prefix of the files in {@param dir}
+     * @param fileVersion Version of the format of the files, files of other versions are ignored
+     * @param maxBytes Maximum total size of the files
+     */
+    public DiskLruCache(@NonNull File dir, @NonNull String filePrefix, int fileVersion,
+            long maxBytes) {
+        mDir = dir;
+        mFilePrefix = filePrefix;
+        mFileVersion = fileVersion;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the content of the file of the provided key, or null if there is none or it can
+     * not be read.
+     */
+    @WorkerThread
+    @Nullable
+    public synchronized <T> T read(@NonNull String key, @NonNull Reader<T> reader) {
+        File file = getFile(key);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            // Files are named after the hash of the key, check that the key matches
+            if (in.readInt() != mFileVersion || !key.equals(in.readUTF())) {
+                return null;
+            }
+            T result = reader.read(in);
+            if (result != null) {
+                // Keep recently used files when trimming
+                file.setLastModified(System.currentTimeMillis());
+            }
+            return result;
+        } catch (IOException e) {
+            Log.w(TAG, "Error reading " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the file of the provided key, trimming the least recently used files if needed.
+     *
+     * @return whether the file was written
+     */
+    @WorkerThread
+    public synchronized boolean write(@NonNull String key, @NonNull Writer writer) {
+        long bytes = getBytesLocked();
+        if (!mDir.exists() && !mDir.mkdirs()) {
+            return false;
+        }
+        File file = getFile(key);
+        bytes -= file.length();
+        File tmpFile = new File(file.getPath() + TMP_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(mFileVersion);
+            out.writeUTF(key);
+            writer.write(out);
+        } catch (IOException e) {
+            Log.w(TAG, "Error writing " + tmpFile, e);
+            tmpFile.delete();
+            return false;
+        }
+        if (!tmpFile.renameTo(file)) {
+            tmpFile.delete();
+            return false;
+        }
+        mBytes = bytes + file.length();
+        if (mBytes > mMaxBytes) {
+            trimLocked(mMaxBytes * 3 / 4, file);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the total size of the files.
+     */
+    @VisibleForTesting
+    @WorkerThread
+    public synchronized long getSizeBytes() {
+        return getBytesLocked();
+    }
+
+    private File getFile(String key) {
+        return new File(mDir, mFilePrefix + Integer.toHexString(key.hashCode()));
+    }
+
+    private long getBytesLocked() {
+        if (mBytes < 0) {
+            mBytes = 0;
+            for (File file : listFiles()) {
+                mBytes += file.length();
+            }
+        }
+        return mBytes;
+    }
+
+    /**
+     * Deletes the least recently used files, except {@param newFile}, until the files take at
+     * most {@param maxBytes}.
+     */
+    private void trimLocked(long maxBytes, File newFile) {
+        File[] files = listFiles();
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (mBytes <= maxBytes) {
+                break;
+            }
+            if (file.equals(newFile)) {
+                continue;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                mBytes -= length;
+            }
+        }
+    }
+
+    private File[] listFiles() {
+        File[] files = mDir.listFiles(
+                (dir, name) -> name.startsWith(mFilePrefix) && !name.endsWith(TMP_SUFFIX));
+        return files == null ? new File[0] : files;
+    }
+}
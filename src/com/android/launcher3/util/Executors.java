@@ -68,6 +68,11 @@ public class Executors {
                     createAndStartNewLooper("UiThreadHelper", Process.THREAD_PRIORITY_FOREGROUND));
 
 
+    /** A background executor for search, where the user is waiting for results while typing. */
+    public static final ExecutorService SEARCH_EXECUTOR =
+            java.util.concurrent.Executors.newSingleThreadExecutor(
+                    new SimpleThreadFactory("search-", Process.THREAD_PRIORITY_FOREGROUND));
+
     /** A background executor to preinflate views. */
     public static final ExecutorService VIEW_PREINFLATION_EXECUTOR =
             java.util.concurrent.Executors.newSingleThreadExecutor(
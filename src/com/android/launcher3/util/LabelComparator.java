@@ -15,8 +15,13 @@
  */
 package com.android.launcher3.util;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.text.CollationKey;
 import java.text.Collator;
 import java.util.Comparator;
+import java.util.Locale;
 
 /**
  * Extension of {@link java.text.Collator} with special handling for digits. Used for comparing
@@ -24,16 +29,15 @@ import java.util.Comparator;
  */
 public class LabelComparator implements Comparator<String> {
 
-    private final Collator mCollator = Collator.getInstance();
+    private final Locale mLocale = Locale.getDefault();
+    private final Collator mCollator = Collator.getInstance(mLocale);
 
     @Override
     public int compare(String titleA, String titleB) {
         // Ensure that we de-prioritize any titles that don't start with a
         // linguistic letter or digit
-        boolean aStartsWithLetter = (titleA.length() > 0) &&
-                Character.isLetterOrDigit(titleA.codePointAt(0));
-        boolean bStartsWithLetter = (titleB.length() > 0) &&
-                Character.isLetterOrDigit(titleB.codePointAt(0));
+        boolean aStartsWithLetter = startsWithLetterOrDigit(titleA);
+        boolean bStartsWithLetter = startsWithLetterOrDigit(titleB);
         if (aStartsWithLetter && !bStartsWithLetter) {
             return -1;
         } else if (!aStartsWithLetter && bStartsWithLetter) {
@@ -43,4 +47,51 @@ public class LabelComparator implements Comparator<String> {
         // Order by the title in the current locale
         return mCollator.compare(titleA, titleB);
     }
+
+    /**
+     * Returns a key which sorts {@param label} like this comparator, reusing {@param cachedKey} if
+     * it was created for the same label in the same locale. Comparing keys only compares bytes,
+     * which is much faster than comparing labels when the same labels are compared many times.
+     */
+    @NonNull
+    public SortKey getSortKey(@NonNull String label, @Nullable SortKey cachedKey) {
+        if (cachedKey != null && cachedKey.mLabel.equals(label)
+                && cachedKey.mLocale.equals(mLocale)) {
+            return cachedKey;
+        }
+        return new SortKey(label, mLocale, startsWithLetterOrDigit(label),
+                mCollator.getCollationKey(label));
+    }
+
+    private static boolean startsWithLetterOrDigit(String label) {
+        return label.length() > 0 && Character.isLetterOrDigit(label.codePointAt(0));
+    }
+
+    /**
+     * A precomputed key of a label, which compares to other keys of the same locale like the
+     * labels compare with {@link LabelComparator}.
+     */
+    public static final class SortKey implements Comparable<SortKey> {
+
+        private final String mLabel;
+        private final Locale mLocale;
+        private final boolean mStartsWithLetterOrDigit;
+        private final CollationKey mCollationKey;
+
+        private SortKey(String label, Locale locale, boolean startsWithLetterOrDigit,
+                CollationKey collationKey) {
+            mLabel = label;
+            mLocale = locale;
+            mStartsWithLetterOrDigit = startsWithLetterOrDigit;
+            mCollationKey = collationKey;
+        }
+
+        @Override
+        public int compareTo(SortKey other) {
+            if (mStartsWithLetterOrDigit != other.mStartsWithLetterOrDigit) {
+                return mStartsWithLetterOrDigit ? -1 : 1;
+            }
+            return mCollationKey.compareTo(other.mCollationKey);
+        }
+    }
 }
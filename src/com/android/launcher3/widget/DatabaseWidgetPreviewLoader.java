@@ -15,7 +15,9 @@
  */
 package com.android.launcher3.widget;
 
+import static com.android.launcher3.config.FeatureFlags.ENABLE_WIDGET_PREVIEW_CACHE;
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.widget.util.WidgetSizes.getWidgetItemSizePx;
 
 import android.content.Context;
 import android.content.res.Resources;
@@ -33,6 +35,7 @@ import android.util.Log;
 import android.util.Size;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.android.launcher3.DeviceProfile;
 import com.android.launcher3.LauncherAppState;
@@ -48,6 +51,8 @@ import com.android.launcher3.util.Executors;
 import com.android.launcher3.views.ActivityContext;
 import com.android.launcher3.widget.util.WidgetSizes;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.function.Consumer;
 
@@ -79,14 +84,105 @@ public class DatabaseWidgetPreviewLoader {
             @NonNull Size previewSize,
             @NonNull Consumer<Bitmap> callback) {
         Handler handler = Executors.UI_HELPER_EXECUTOR.getHandler();
+        String memoryKey = getMemoryKey(item, previewSize);
         CancellableTask<Bitmap> request = new CancellableTask<>(
-                () -> generatePreview(item, previewSize.getWidth(), previewSize.getHeight()),
+                () -> getOrGeneratePreview(item, previewSize, memoryKey),
                 MAIN_EXECUTOR,
                 callback);
         Utilities.postAsyncCallback(handler, request);
         return request;
     }
 
+    /**
+     * Returns the preview of the provided size if it was generated before and is still in memory,
+     * so that it can be shown without waiting for {@link #loadPreview}. The preview is validated
+     * in the background, and removed from memory if it is stale, eg, if the package was updated.
+     */
+    @Nullable
+    public Bitmap getCachedPreview(@NonNull WidgetItem item, @NonNull Size previewSize) {
+        String memoryKey = getMemoryKey(item, previewSize);
+        if (memoryKey == null) {
+            return null;
+        }
+        WidgetPreviewCache cache = WidgetPreviewCache.INSTANCE.get(mContext);
+        Bitmap preview = cache.getFromMemory(memoryKey);
+        if (preview != null) {
+            Executors.UI_HELPER_EXECUTOR.execute(() -> {
+                String cacheKey = WidgetPreviewCache.getKey(mContext, item.widgetInfo, previewSize);
+                if (cacheKey != null) {
+                    cache.validateMemory(memoryKey, cacheKey);
+                }
+            });
+        }
+        return preview;
+    }
+
+    /**
+     * Loads the previews of {@param items} which were saved to disk in memory, in order, so that
+     * the widget cells bound to these items next can show them right away. Must be called on UI
+     * thread.
+     */
+    public void prefetchPreviews(@NonNull List<WidgetItem> items) {
+        if (!ENABLE_WIDGET_PREVIEW_CACHE.get()) {
+            return;
+        }
+        DeviceProfile dp = ActivityContext.lookupContext(mContext).getDeviceProfile();
+        List<WidgetItem> widgetItems = new ArrayList<>();
+        List<Size> previewSizes = new ArrayList<>();
+        for (WidgetItem item : items) {
+            if (item.widgetInfo != null) {
+                widgetItems.add(item);
+                previewSizes.add(getWidgetItemSizePx(mContext, dp, item));
+            }
+        }
+        if (widgetItems.isEmpty()) {
+            return;
+        }
+        WidgetPreviewCache cache = WidgetPreviewCache.INSTANCE.get(mContext);
+        Executors.UI_HELPER_EXECUTOR.execute(() -> {
+            for (int i = 0; i < widgetItems.size(); i++) {
+                LauncherAppWidgetProviderInfo info = widgetItems.get(i).widgetInfo;
+                Size previewSize = previewSizes.get(i);
+                String cacheKey = WidgetPreviewCache.getKey(mContext, info, previewSize);
+                if (cacheKey != null) {
+                    cache.get(WidgetPreviewCache.getMemoryKey(mContext, info, previewSize),
+                            cacheKey);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the key of the preview in the memory tier of {@link WidgetPreviewCache}, or null if
+     * the preview is not cached. Shortcut previews are only an icon and are cheap to generate.
+     */
+    @Nullable
+    private String getMemoryKey(WidgetItem item, Size previewSize) {
+        if (!ENABLE_WIDGET_PREVIEW_CACHE.get() || item.widgetInfo == null) {
+            return null;
+        }
+        return WidgetPreviewCache.getMemoryKey(mContext, item.widgetInfo, previewSize);
+    }
+
+    private Bitmap getOrGeneratePreview(WidgetItem item, Size previewSize,
+            @Nullable String memoryKey) {
+        // The full key needs a package manager query, so it is only computed in the background
+        String cacheKey = memoryKey == null
+                ? null : WidgetPreviewCache.getKey(mContext, item.widgetInfo, previewSize);
+        if (cacheKey == null) {
+            return generatePreview(item, previewSize.getWidth(), previewSize.getHeight());
+        }
+        WidgetPreviewCache cache = WidgetPreviewCache.INSTANCE.get(mContext);
+        Bitmap preview = cache.get(memoryKey, cacheKey);
+        if (preview == null) {
+            preview = generatePreview(item, previewSize.getWidth(), previewSize.getHeight());
+            if (preview != null) {
+                cache.put(memoryKey, cacheKey, preview);
+            }
+        }
+        return preview;
+    }
+
     /**
      * Returns a generated preview for a widget and if the preview should be saved in persistent
      * storage.
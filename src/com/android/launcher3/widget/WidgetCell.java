@@ -272,7 +272,10 @@ public class WidgetCell extends LinearLayout {
         } else if (cachedPreview != null) {
             applyPreview(cachedPreview);
         } else {
-            if (mActiveRequest == null) {
+            Bitmap preview = mWidgetPreviewLoader.getCachedPreview(mItem, mWidgetSize);
+            if (preview != null) {
+                applyPreview(preview);
+            } else if (mActiveRequest == null) {
                 mActiveRequest = mWidgetPreviewLoader.loadPreview(mItem, mWidgetSize, callback);
             }
         }
@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.PackageManager.NameNotFoundException;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.util.Log;
+import android.util.LruCache;
+import android.util.Size;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+import androidx.core.content.pm.PackageInfoCompat;
+
+import com.android.launcher3.LauncherAppState;
+import com.android.launcher3.Utilities;
+import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.util.DiskLruCache;
+import com.android.launcher3.util.MainThreadInitializedObject;
+import com.android.launcher3.util.SafeCloseable;
+import com.android.launcher3.util.WallpaperColorHints;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Cache of generated widget previews with two tiers:
+ *   - An in-memory LRU bounded by the byte size of the previews, shared by all the widget pickers
+ *     of the process, so that a picker shows the previews it already generated on its first
+ *     frame when it is opened again.
+ *   - A directory of compressed previews bounded by their total file size, so that previews do
+ *     not need to be rendered again after the process restarts.
+ *
+ * Previews are identified by a key made of the provider, the preview size, the package version
+ * and the configuration, theme and colors the preview depends on, so an updated package or a
+ * theme change never gets a stale preview. Computing that key needs a package manager query and
+ * resource lookups, so it is only computed on a background thread. The memory tier is looked up
+ * with a cheap key made of the provider, the preview size and the configuration instead, and each
+ * entry keeps the full key it was generated for, which the background thread validates.
+ *
+ * This class is thread safe, disk accesses should happen on a background thread.
+ */
+public class WidgetPreviewCache implements SafeCloseable {
+
+    public static final MainThreadInitializedObject<WidgetPreviewCache> INSTANCE =
+            new MainThreadInitializedObject<>(WidgetPreviewCache::new);
+
+    private static final String TAG = "WidgetPreviewCache";
+    private static final String DIR_NAME = "widget_previews";
+    private static final String FILE_PREFIX = "preview_";
+    // Incremented when the format of the files changes
+    private static final int FILE_VERSION = 1;
+
+    private static final long MAX_DISK_BYTES = 32 * 1024 * 1024;
+
+    // Palettes of the dynamic colors, which change with the wallpaper
+    private static final int[] DYNAMIC_COLORS = {
+            android.R.color.system_accent1_500,
+            android.R.color.system_accent2_500,
+            android.R.color.system_accent3_500,
+            android.R.color.system_neutral1_500,
+            android.R.color.system_neutral2_500
+    };
+
+    // Version of the package of each provider, the provider infos are reloaded when their
+    // package is updated
+    private static final Map<ApplicationInfo, String> sPackageVersions =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final DiskLruCache mDisk;
+    private final LruCache<String, Entry> mMemory;
+
+    public WidgetPreviewCache(Context context) {
+        this(new File(context.getCacheDir(), DIR_NAME),
+                (int) Math.min(Runtime.getRuntime().maxMemory() / 32, Integer.MAX_VALUE),
+                MAX_DISK_BYTES);
+    }
+
+    @VisibleForTesting
+    WidgetPreviewCache(File dir, int maxMemoryBytes, long maxDiskBytes) {
+        mDisk = new DiskLruCache(dir, FILE_PREFIX, FILE_VERSION, maxDiskBytes);
+        mMemory = new LruCache<>(maxMemoryBytes) {
+            @Override
+            protected int sizeOf(String memoryKey, Entry entry) {
+                return entry.mPreview.getAllocationByteCount();
+            }
+        };
+    }
+
+    /**
+     * Returns the key of the preview of {@param info} at the provided size in the memory tier.
+     * This is cheap to compute, but does not cover everything the preview depends on, see
+     * {@link #getKey}.
+     */
+    @AnyThread
+    @NonNull
+    public static String getMemoryKey(@NonNull Context context,
+            @NonNull LauncherAppWidgetProviderInfo info, @NonNull Size previewSize) {
+        Configuration config = context.getResources().getConfiguration();
+        return info.provider.flattenToShortString()
+                + '|' + UserCache.INSTANCE.get(context).getSerialNumberForUser(info.getProfile())
+                + '|' + previewSize.getWidth() + 'x' + previewSize.getHeight()
+                + '|' + (config.uiMode & Configuration.UI_MODE_NIGHT_MASK)
+                + '|' + config.densityDpi;
+    }
+
+    /**
+     * Returns the key identifying the preview of {@param info} at the provided size, or null if
+     * the version of its package is not known and the preview should not be cached.
+     */
+    @WorkerThread
+    @Nullable
+    public static String getKey(@NonNull Context context,
+            @NonNull LauncherAppWidgetProviderInfo info, @NonNull Size previewSize) {
+        String packageVersion = getPackageVersion(context, info.providerInfo.applicationInfo);
+        if (packageVersion == null) {
+            return null;
+        }
+        Configuration config = context.getResources().getConfiguration();
+        StringBuilder key = new StringBuilder()
+                .append(info.provider.flattenToShortString())
+                .append('|')
+                .append(UserCache.INSTANCE.get(context).getSerialNumberForUser(info.getProfile()))
+                .append('|').append(previewSize.getWidth()).append('x')
+                .append(previewSize.getHeight())
+                .append('|').append(packageVersion)
+                .append('|').append(Build.FINGERPRINT)
+                .append('|').append(config.uiMode & Configuration.UI_MODE_NIGHT_MASK)
+                .append('|').append(config.densityDpi)
+                .append('|').append(LauncherAppState.getInstance(context).getIconProvider()
+                        .getSystemIconState())
+                .append('|').append(WallpaperColorHints.get(context).getHints());
+        if (Utilities.ATLEAST_S) {
+            for (int color : DYNAMIC_COLORS) {
+                key.append('|').append(Integer.toHexString(context.getColor(color)));
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns the version code and last update time of the package, or null if the package is
+     * not found.
+     */
+    @Nullable
+    private static String getPackageVersion(Context context, ApplicationInfo appInfo) {
+        String version = sPackageVersions.get(appInfo);
+        if (version != null) {
+            return version;
+        }
+        try {
+            PackageInfo info = context.getPackageManager().getPackageInfo(appInfo.packageName,
+                    PackageManager.GET_UNINSTALLED_PACKAGES);
+            version = PackageInfoCompat.getLongVersionCode(info) + "-" + info.lastUpdateTime;
+        } catch (NameNotFoundException e) {
+            Log.w(TAG, "Package not found: " + appInfo.packageName, e);
+            return null;
+        }
+        sPackageVersions.put(appInfo, version);
+        return version;
+    }
+
+    /**
+     * Returns the preview for the provided memory key if it is in memory. The preview may be
+     * stale until it is validated with {@link #validateMemory} or {@link #get}.
+     */
+    @AnyThread
+    @Nullable
+    public Bitmap getFromMemory(@NonNull String memoryKey) {
+        Entry entry = mMemory.get(memoryKey);
+        return entry == null ? null : entry.mPreview;
+    }
+
+    /**
+     * Removes the preview for the provided memory key from memory if it was not generated for
+     * the provided key.
+     */
+    @WorkerThread
+    public void validateMemory(@NonNull String memoryKey, @NonNull String key) {
+        Entry entry = mMemory.get(memoryKey);
+        if (entry != null && !entry.mKey.equals(key)) {
+            mMemory.remove(memoryKey);
+        }
+    }
+
+    /**
+     * Returns the preview for the provided keys from memory or from disk, or null if it needs to
+     * be generated.
+     */
+    @WorkerThread
+    @Nullable
+    public Bitmap get(@NonNull String memoryKey, @NonNull String key) {
+        Entry entry = mMemory.get(memoryKey);
+        if (entry != null && entry.mKey.equals(key)) {
+            return entry.mPreview;
+        }
+        Bitmap preview = readFromDisk(key);
+        if (preview != null) {
+            mMemory.put(memoryKey, new Entry(key, preview));
+        } else if (entry != null) {
+            mMemory.remove(memoryKey);
+        }
+        return preview;
+    }
+
+    /**
+     * Adds a newly generated preview to both tiers.
+     */
+    @WorkerThread
+    public void put(@NonNull String memoryKey, @NonNull String key, @NonNull Bitmap preview) {
+        mMemory.put(memoryKey, new Entry(key, preview));
+        writeToDisk(key, preview);
+    }
+
+    /**
+     * Releases the previews held in memory, the previews on disk are kept.
+     */
+    public void clearMemory() {
+        mMemory.evictAll();
+    }
+
+    @Override
+    public void close() {
+        clearMemory();
+    }
+
+    @VisibleForTesting
+    long getDiskSizeBytes() {
+        return mDisk.getSizeBytes();
+    }
+
+    @Nullable
+    private Bitmap readFromDisk(String key) {
+        return mDisk.read(key, in -> {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = Bitmap.Config.HARDWARE;
+            return BitmapFactory.decodeStream(in, null, options);
+        });
+    }
+
+    private void writeToDisk(String key, Bitmap preview) {
+        // Compress a software copy, the pixels of hardware bitmaps can not be read directly
+        Bitmap softwarePreview = preview.getConfig() == Bitmap.Config.HARDWARE
+                ? preview.copy(Bitmap.Config.ARGB_8888, false) : preview;
+        if (softwarePreview != null) {
+            mDisk.write(key,
+                    out -> softwarePreview.compress(Bitmap.CompressFormat.PNG, 100, out));
+        }
+    }
+
+    private static class Entry {
+
+        final String mKey;
+        final Bitmap mPreview;
+
+        Entry(String key, Bitmap preview) {
+            mKey = key;
+            mPreview = preview;
+        }
+    }
+}
@@ -43,4 +43,11 @@ public abstract class WidgetsListBaseEntry {
         this.mWidgets =
                 items.stream().sorted(new WidgetItemComparator()).collect(Collectors.toList());
     }
+
+    /** Creates an entry sharing the package and the sorted widgets of {@param entry}. */
+    protected WidgetsListBaseEntry(WidgetsListBaseEntry entry) {
+        mPkgItem = entry.mPkgItem;
+        mTitleSectionName = entry.mTitleSectionName;
+        mWidgets = entry.mWidgets;
+    }
 }
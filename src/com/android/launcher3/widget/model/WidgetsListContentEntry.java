@@ -57,6 +57,11 @@ public final class WidgetsListContentEntry extends WidgetsListBaseEntry {
         mMaxSpanSize = maxSpanSize;
     }
 
+    private WidgetsListContentEntry(WidgetsListContentEntry entry, @Px int maxSpanSize) {
+        super(entry);
+        mMaxSpanSize = maxSpanSize;
+    }
+
     @Override
     public String toString() {
         return "Content:" + mPkgItem.packageName + ":" + mWidgets.size() + " maxSpanSize: "
@@ -65,17 +70,14 @@ public final class WidgetsListContentEntry extends WidgetsListBaseEntry {
 
     /**
      * Returns a copy of this {@link WidgetsListContentEntry} with updated {@code maxSpanSize}.
+     * The copy shares the widgets list of this entry.
      *
      * @param maxSpanSize the maximum horizontal span in pixels that is allowed for grouping
      *                           more than one widgets in a table row.
      */
     public WidgetsListContentEntry withMaxSpanSize(@Px int maxSpanSize) {
         if (mMaxSpanSize == maxSpanSize) return this;
-        return new WidgetsListContentEntry(
-                mPkgItem,
-                mTitleSectionName,
-                mWidgets,
-                /* maxSpanSize= */ maxSpanSize);
+        return new WidgetsListContentEntry(this, /* maxSpanSize= */ maxSpanSize);
     }
 
     /**
@@ -173,6 +173,7 @@ public class WidgetsListAdapter extends Adapter<ViewHolder> implements OnHeaderC
         mAllEntries.add(new WidgetListSpaceEntry());
         tempEntries.stream().sorted(mRowComparator).forEach(mAllEntries::add);
         updateVisibleEntries();
+        precomputeTables();
     }
 
     /** Updates the widget list based on {@code searchResults}. */
@@ -335,6 +336,7 @@ public class WidgetsListAdapter extends Adapter<ViewHolder> implements OnHeaderC
             mWidgetsContentVisiblePackageUserKey = packageUserKey;
             ActivityContext.lookupContext(mContext)
                     .getStatsLogManager().logger().log(LAUNCHER_WIDGETSTRAY_APP_EXPANDED);
+            prefetchPreviews(packageUserKey);
         } else {
             mWidgetsContentVisiblePackageUserKey = null;
         }
@@ -350,6 +352,23 @@ public class WidgetsListAdapter extends Adapter<ViewHolder> implements OnHeaderC
         }
     }
 
+    /**
+     * Starts loading the previews of the content entry of {@code key}, while the entry is laid out.
+     */
+    private void prefetchPreviews(PackageUserKey key) {
+        if (mHeaderChangeListener != null) {
+            // Content entries are shown in a separate pane
+            return;
+        }
+        for (WidgetsListBaseEntry entry : mAllEntries) {
+            if (entry instanceof WidgetsListContentEntry && matchesKey(entry, key)) {
+                getTableBinder().prefetchPreviews(((WidgetsListContentEntry) entry)
+                        .withMaxSpanSize(mMaxHorizontalSpan));
+                return;
+            }
+        }
+    }
+
     /**
      * Returns the position of {@code key} in {@link #mVisibleEntries}, or  empty if it's not
      * present.
@@ -419,6 +438,22 @@ public class WidgetsListAdapter extends Adapter<ViewHolder> implements OnHeaderC
     public void setMaxHorizontalSpansPxPerRow(@Px int maxHorizontalSpan) {
         mMaxHorizontalSpan = maxHorizontalSpan;
         updateVisibleEntries();
+        precomputeTables();
+    }
+
+    private void precomputeTables() {
+        if (mHeaderChangeListener != null) {
+            // Content entries are shown in a separate pane
+            return;
+        }
+        getTableBinder().precomputeTables(mAllEntries.stream()
+                .filter(entry -> entry instanceof WidgetsListContentEntry)
+                .map(entry -> ((WidgetsListContentEntry) entry).withMaxSpanSize(mMaxHorizontalSpan))
+                .collect(Collectors.toList()));
+    }
+
+    private WidgetsListTableViewHolderBinder getTableBinder() {
+        return (WidgetsListTableViewHolderBinder) mViewHolderBinders.get(VIEW_TYPE_WIDGETS_LIST);
     }
 
     /** Comparator for sorting WidgetListRowEntry based on package title. */
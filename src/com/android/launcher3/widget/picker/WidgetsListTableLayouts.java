@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget.picker;
+
+import static com.android.launcher3.config.FeatureFlags.ENABLE_PRECOMPUTED_WIDGET_TABLES;
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.THREAD_POOL_EXECUTOR;
+
+import android.content.Context;
+import android.util.Size;
+
+import androidx.annotation.Px;
+import androidx.annotation.UiThread;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.launcher3.DeviceProfile;
+import com.android.launcher3.model.WidgetItem;
+import com.android.launcher3.views.ActivityContext;
+import com.android.launcher3.widget.model.WidgetsListContentEntry;
+import com.android.launcher3.widget.util.WidgetSizes;
+import com.android.launcher3.widget.util.WidgetsTableUtils;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Groups the widgets of {@link WidgetsListContentEntry}s into table rows, as displayed by
+ * {@link WidgetsListTableViewHolderBinder}.
+ *
+ * The tables of all the entries of a widget list can be computed in the background when the list
+ * changes, so that expanding an entry only needs to attach its views. Tables are computed for a
+ * {@link DeviceProfile} and a max span size, and are computed again on the main thread when bound
+ * with another one.
+ *
+ * Scope:
+ *   - Rows are grouped by the sizes computed from the widget spans, the same as when they are
+ *     bound, not by the measured sizes of the loaded previews.
+ *   - The tables of a list are computed again whenever its widgets change, eg, for each search
+ *     query of {@link WidgetsFullSheet}, previous tables are not kept. Each user profile tab has
+ *     its own adapter and computes its own tables.
+ *   - Only the single pane picker uses precomputed tables. The right pane of the two pane picker
+ *     is bound by its own binder and computes its table when bound.
+ */
+public class WidgetsListTableLayouts {
+
+    private final Context mContext;
+    private final ActivityContext mActivityContext;
+    @Px private final int mCellPadding;
+    private final Executor mBgExecutor;
+    private final AtomicInteger mGeneration = new AtomicInteger();
+
+    // Tables by the widget list of their entry, only accessed on the main thread
+    private Map<List<WidgetItem>, Table> mTables = new IdentityHashMap<>();
+
+    public WidgetsListTableLayouts(Context context, @Px int cellPadding) {
+        this(context, cellPadding, THREAD_POOL_EXECUTOR);
+    }
+
+    @VisibleForTesting
+    WidgetsListTableLayouts(Context context, @Px int cellPadding, Executor bgExecutor) {
+        mContext = context;
+        mActivityContext = ActivityContext.lookupContext(context);
+        mCellPadding = cellPadding;
+        mBgExecutor = bgExecutor;
+    }
+
+    /**
+     * Computes the tables of {@param entries} in the background, replacing the tables computed
+     * so far.
+     */
+    @UiThread
+    public void precompute(List<WidgetsListContentEntry> entries) {
+        if (!ENABLE_PRECOMPUTED_WIDGET_TABLES.get()) {
+            return;
+        }
+        int generation = mGeneration.incrementAndGet();
+        DeviceProfile dp = mActivityContext.getDeviceProfile();
+        List<WidgetsListContentEntry> entriesCopy = new ArrayList<>(entries);
+        mBgExecutor.execute(() -> {
+            Map<List<WidgetItem>, Table> tables = new IdentityHashMap<>();
+            for (WidgetsListContentEntry entry : entriesCopy) {
+                if (mGeneration.get() != generation) {
+                    return;
+                }
+                tables.put(entry.mWidgets, computeTable(entry, dp));
+            }
+            MAIN_EXECUTOR.execute(() -> {
+                if (mGeneration.get() == generation) {
+                    mTables = tables;
+                }
+            });
+        });
+    }
+
+    /**
+     * Returns the rows of widgets of {@param entry}.
+     */
+    @UiThread
+    public List<ArrayList<WidgetItem>> getRows(WidgetsListContentEntry entry) {
+        DeviceProfile dp = mActivityContext.getDeviceProfile();
+        if (!ENABLE_PRECOMPUTED_WIDGET_TABLES.get()) {
+            return computeTable(entry, dp).mRows;
+        }
+        Table table = mTables.get(entry.mWidgets);
+        if (table == null || !table.matches(entry, dp)) {
+            table = computeTable(entry, dp);
+            mTables.put(entry.mWidgets, table);
+        }
+        return table.mRows;
+    }
+
+    @VisibleForTesting
+    boolean hasTable(WidgetsListContentEntry entry) {
+        Table table = mTables.get(entry.mWidgets);
+        return table != null && table.matches(entry, mActivityContext.getDeviceProfile());
+    }
+
+    private Table computeTable(WidgetsListContentEntry entry, DeviceProfile dp) {
+        // Each item size is used for every item grouped after it in its row
+        Map<WidgetItem, Size> sizes = new IdentityHashMap<>();
+        List<ArrayList<WidgetItem>> rows =
+                WidgetsTableUtils.groupWidgetItemsUsingRowPxWithReordering(entry.mWidgets,
+                        item -> sizes.computeIfAbsent(item,
+                                i -> WidgetSizes.getWidgetItemSizePx(mContext, dp, i)),
+                        entry.getMaxSpanSize(),
+                        mCellPadding);
+        return new Table(dp, entry.getMaxSpanSize(), rows);
+    }
+
+    private static class Table {
+
+        final DeviceProfile mDeviceProfile;
+        @Px final int mMaxSpanSize;
+        final List<ArrayList<WidgetItem>> mRows;
+
+        Table(DeviceProfile dp, @Px int maxSpanSize, List<ArrayList<WidgetItem>> rows) {
+            mDeviceProfile = dp;
+            mMaxSpanSize = maxSpanSize;
+            mRows = rows;
+        }
+
+        boolean matches(WidgetsListContentEntry entry, DeviceProfile dp) {
+            return mDeviceProfile == dp && mMaxSpanSize == entry.getMaxSpanSize();
+        }
+    }
+}
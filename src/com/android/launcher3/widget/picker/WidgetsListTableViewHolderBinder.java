@@ -37,9 +37,9 @@ import com.android.launcher3.R;
 import com.android.launcher3.model.WidgetItem;
 import com.android.launcher3.recyclerview.ViewHolderBinder;
 import com.android.launcher3.views.ActivityContext;
+import com.android.launcher3.widget.DatabaseWidgetPreviewLoader;
 import com.android.launcher3.widget.WidgetCell;
 import com.android.launcher3.widget.model.WidgetsListContentEntry;
-import com.android.launcher3.widget.util.WidgetsTableUtils;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -58,6 +58,8 @@ public final class WidgetsListTableViewHolderBinder
     private @NonNull final ActivityContext mActivityContext;
     @Px private final int mCellPadding;
     private final OnLongClickListener mIconLongClickListener;
+    private final DatabaseWidgetPreviewLoader mPreviewLoader;
+    private final WidgetsListTableLayouts mTableLayouts;
 
     public WidgetsListTableViewHolderBinder(
             @NonNull Context context,
@@ -71,6 +73,8 @@ public final class WidgetsListTableViewHolderBinder
                 R.dimen.widget_cell_horizontal_padding);
         mIconClickListener = iconClickListener;
         mIconLongClickListener = iconLongClickListener;
+        mPreviewLoader = new DatabaseWidgetPreviewLoader(context);
+        mTableLayouts = new WidgetsListTableLayouts(context, mCellPadding);
     }
 
     @Override
@@ -101,12 +105,7 @@ public final class WidgetsListTableViewHolderBinder
                         (position & POSITION_FIRST) != 0,
                         (position & POSITION_LAST) != 0));
 
-        List<ArrayList<WidgetItem>> widgetItemsTable =
-                WidgetsTableUtils.groupWidgetItemsUsingRowPxWithReordering(entry.mWidgets,
-                        mContext,
-                        mActivityContext.getDeviceProfile(),
-                        entry.getMaxSpanSize(),
-                        mCellPadding);
+        List<ArrayList<WidgetItem>> widgetItemsTable = getWidgetItemsTable(entry);
         recycleTableBeforeBinding(table, widgetItemsTable);
 
         // Bind the widget items.
@@ -129,6 +128,28 @@ public final class WidgetsListTableViewHolderBinder
         }
     }
 
+    /**
+     * Starts loading the previews of {@code entry} before it is bound, row by row, so that the
+     * rows which become visible first get their previews first.
+     */
+    public void prefetchPreviews(WidgetsListContentEntry entry) {
+        List<WidgetItem> items = new ArrayList<>();
+        getWidgetItemsTable(entry).forEach(items::addAll);
+        mPreviewLoader.prefetchPreviews(items);
+    }
+
+    /**
+     * Starts computing the tables of {@code entries} in the background, so that binding them only
+     * needs to attach views.
+     */
+    public void precomputeTables(List<WidgetsListContentEntry> entries) {
+        mTableLayouts.precompute(entries);
+    }
+
+    private List<ArrayList<WidgetItem>> getWidgetItemsTable(WidgetsListContentEntry entry) {
+        return mTableLayouts.getRows(entry);
+    }
+
     /**
      * Adds and hides table rows and columns from {@code table} to ensure there is sufficient room
      * to display {@code widgetItemsTable}.
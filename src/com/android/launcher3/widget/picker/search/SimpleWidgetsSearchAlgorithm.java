@@ -17,9 +17,12 @@
 package com.android.launcher3.widget.picker.search;
 
 import static com.android.launcher3.search.StringMatcherUtility.matches;
+import static com.android.launcher3.util.Executors.SEARCH_EXECUTOR;
 
 import android.os.Handler;
 
+import androidx.annotation.Nullable;
+
 import com.android.launcher3.model.WidgetItem;
 import com.android.launcher3.popup.PopupDataProvider;
 import com.android.launcher3.search.SearchAlgorithm;
@@ -31,15 +34,25 @@ import com.android.launcher3.widget.model.WidgetsListHeaderEntry;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
- * Implementation of {@link SearchAlgorithm} that posts a task to query on the main thread.
+ * Implementation of {@link SearchAlgorithm} that posts a task to query on the main thread, or
+ * queries the {@link WidgetsSearchIndex} of the widgets on the search executor when the widgets
+ * are indexed. If the widgets changed since they were indexed, they are indexed again on the
+ * search executor, so that all the searches match the same fields with the same ranking.
  */
 public final class SimpleWidgetsSearchAlgorithm implements SearchAlgorithm<WidgetsListBaseEntry> {
 
     private final Handler mResultHandler;
     private final PopupDataProvider mDataProvider;
+    private final AtomicInteger mGeneration = new AtomicInteger();
+
+    // Index of the widgets if they changed since the data provider indexed them, only accessed
+    // on the main thread
+    @Nullable
+    private WidgetsSearchIndex mReindexedWidgets;
 
     public SimpleWidgetsSearchAlgorithm(PopupDataProvider dataProvider) {
         mResultHandler = new Handler();
@@ -48,13 +61,47 @@ public final class SimpleWidgetsSearchAlgorithm implements SearchAlgorithm<Widge
 
     @Override
     public void doSearch(String query, SearchCallback<WidgetsListBaseEntry> callback) {
-        ArrayList<WidgetsListBaseEntry> result = getFilteredWidgets(mDataProvider, query);
-        mResultHandler.post(() -> callback.onSearchResult(query, result));
+        WidgetsSearchIndex index = getSearchIndex();
+        if (index == null) {
+            ArrayList<WidgetsListBaseEntry> result = getFilteredWidgets(mDataProvider, query);
+            mResultHandler.post(() -> callback.onSearchResult(query, result));
+            return;
+        }
+        int generation = mGeneration.incrementAndGet();
+        SEARCH_EXECUTOR.execute(() -> {
+            if (mGeneration.get() != generation) {
+                return;
+            }
+            ArrayList<WidgetsListBaseEntry> result = index.search(query);
+            mResultHandler.post(() -> {
+                if (mGeneration.get() == generation) {
+                    callback.onSearchResult(query, result);
+                }
+            });
+        });
+    }
+
+    /**
+     * Returns the index over the current widgets, or null if widgets should not be searched with
+     * an index. The returned index may not be built yet.
+     */
+    @Nullable
+    private WidgetsSearchIndex getSearchIndex() {
+        WidgetsSearchIndex index = mDataProvider.getWidgetsSearchIndex();
+        List<WidgetsListBaseEntry> allWidgets = mDataProvider.getAllWidgets();
+        if (index == null || index.getEntries() == allWidgets) {
+            return index;
+        }
+        if (mReindexedWidgets == null || mReindexedWidgets.getEntries() != allWidgets) {
+            mReindexedWidgets = new WidgetsSearchIndex(allWidgets);
+        }
+        return mReindexedWidgets;
     }
 
     @Override
     public void cancel(boolean interruptActiveRequests) {
         if (interruptActiveRequests) {
+            mGeneration.incrementAndGet();
             mResultHandler.removeCallbacksAndMessages(/*token= */null);
         }
     }
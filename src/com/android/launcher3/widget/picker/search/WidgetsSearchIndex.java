@@ -0,0 +1,367 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget.picker.search;
+
+import android.util.SparseArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.model.WidgetItem;
+import com.android.launcher3.search.StringMatcherUtility;
+import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+import com.android.launcher3.util.IntArray;
+import com.android.launcher3.widget.model.WidgetsListBaseEntry;
+import com.android.launcher3.widget.model.WidgetsListContentEntry;
+import com.android.launcher3.widget.model.WidgetsListHeaderEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Index over the app names, widget labels and widget descriptions of the widget picker.
+ *
+ * Texts are normalized (lower case, accents removed) and every suffix of a text starting at a
+ * position where {@link StringMatcherUtility#matches} tries to match a query is kept in a sorted
+ * array. The suffixes starting with a query are then a contiguous range of the array, found with
+ * two binary searches, so the cost of a search depends on the number of matches rather than on
+ * the number of widgets. When the query extends the previous query, which is the case while
+ * typing, the range is searched within the range of the previous query.
+ *
+ * Texts with characters which can not be normalized to ASCII are not indexed and are matched
+ * with {@link StringMatcherUtility#matches}, as are all the texts for queries which can not be
+ * normalized.
+ *
+ * The index is built once, possibly on another thread than the one searching it, and is then
+ * only accessed on the thread searching it.
+ */
+public class WidgetsSearchIndex {
+
+    // Ranks of the matches, lower is better
+    @VisibleForTesting
+    static final int RANK_APP_NAME_PREFIX = 0;
+    @VisibleForTesting
+    static final int RANK_APP_NAME_WORD = 1;
+    @VisibleForTesting
+    static final int RANK_LABEL_PREFIX = 2;
+    @VisibleForTesting
+    static final int RANK_LABEL_WORD = 3;
+    @VisibleForTesting
+    static final int RANK_DESCRIPTION = 4;
+
+    private static final int FIELD_APP_NAME = 0;
+    private static final int FIELD_LABEL = 1;
+    private static final int FIELD_DESCRIPTION = 2;
+
+    private final List<WidgetsListBaseEntry> mEntries;
+    private final StringMatcher mMatcher = StringMatcher.getInstance();
+
+    private boolean mIsBuilt;
+    private final List<WidgetsListHeaderEntry> mPackages = new ArrayList<>();
+    private final List<Text> mTexts = new ArrayList<>();
+    private final List<Text> mUnindexedTexts = new ArrayList<>();
+    private Suffix[] mSuffixes;
+
+    // Range of the suffixes matching the last indexed query
+    @Nullable
+    private String mLastQuery;
+    private int mLastStart;
+    private int mLastEnd;
+
+    public WidgetsSearchIndex(@NonNull List<WidgetsListBaseEntry> entries) {
+        mEntries = entries;
+    }
+
+    /**
+     * Returns the widget list this index was created for.
+     */
+    @NonNull
+    public List<WidgetsListBaseEntry> getEntries() {
+        return mEntries;
+    }
+
+    /**
+     * Builds the index if it is not built yet.
+     */
+    @WorkerThread
+    public void build() {
+        if (mIsBuilt) {
+            return;
+        }
+        mIsBuilt = true;
+        List<Suffix> suffixes = new ArrayList<>();
+        for (WidgetsListBaseEntry entry : mEntries) {
+            if (!(entry instanceof WidgetsListHeaderEntry)) {
+                continue;
+            }
+            int packageIndex = mPackages.size();
+            mPackages.add((WidgetsListHeaderEntry) entry);
+            addText(suffixes, packageIndex, -1, FIELD_APP_NAME, entry.mPkgItem.title);
+            for (int i = 0; i < entry.mWidgets.size(); i++) {
+                WidgetItem item = entry.mWidgets.get(i);
+                addText(suffixes, packageIndex, i, FIELD_LABEL, item.label);
+                addText(suffixes, packageIndex, i, FIELD_DESCRIPTION, item.description);
+            }
+        }
+        mSuffixes = suffixes.toArray(new Suffix[0]);
+        Arrays.sort(mSuffixes, SUFFIX_COMPARATOR);
+    }
+
+    /**
+     * Returns a header and a content entry for each app with matching widgets, apps with better
+     * matches first. An app whose name matches has all its widgets matching.
+     */
+    @WorkerThread
+    @NonNull
+    public ArrayList<WidgetsListBaseEntry> search(@NonNull String query) {
+        build();
+        String queryLower = query.toLowerCase();
+        SparseArray<PackageMatch> matches = new SparseArray<>();
+        String normalized = StringMatcherUtility.normalizeQueryForIndex(queryLower);
+        if (normalized == null) {
+            mLastQuery = null;
+            for (Text text : mTexts) {
+                addMatchIfMatches(matches, text, queryLower);
+            }
+        } else {
+            findIndexedMatches(matches, normalized);
+            for (Text text : mUnindexedTexts) {
+                addMatchIfMatches(matches, text, queryLower);
+            }
+        }
+
+        List<PackageMatch> sortedMatches = new ArrayList<>(matches.size());
+        for (int i = 0; i < matches.size(); i++) {
+            sortedMatches.add(matches.valueAt(i));
+        }
+        sortedMatches.sort(Comparator.comparingInt((PackageMatch m) -> m.mRank)
+                .thenComparingInt(m -> m.mPackageIndex));
+
+        ArrayList<WidgetsListBaseEntry> results = new ArrayList<>();
+        for (PackageMatch match : sortedMatches) {
+            WidgetsListHeaderEntry entry = mPackages.get(match.mPackageIndex);
+            List<WidgetItem> items = match.getItems(entry.mWidgets);
+            results.add(WidgetsListHeaderEntry.createForSearch(
+                    entry.mPkgItem, entry.mTitleSectionName, items));
+            results.add(new WidgetsListContentEntry(
+                    entry.mPkgItem, entry.mTitleSectionName, items));
+        }
+        return results;
+    }
+
+    @VisibleForTesting
+    int getIndexedSuffixCount() {
+        build();
+        return mSuffixes.length;
+    }
+
+    private void addText(List<Suffix> suffixes, int packageIndex, int itemIndex, int field,
+            @Nullable CharSequence value) {
+        if (value == null || value.length() == 0) {
+            return;
+        }
+        Text text = new Text(packageIndex, itemIndex, field, value.toString());
+        mTexts.add(text);
+        text.mNormalized = StringMatcherUtility.normalizeForIndex(text.mValue);
+        if (text.mNormalized == null) {
+            mUnindexedTexts.add(text);
+            return;
+        }
+        IntArray starts = StringMatcherUtility.getMatchStartPositions(text.mValue, mMatcher);
+        for (int i = 0; i < starts.size(); i++) {
+            suffixes.add(new Suffix(text, starts.get(i)));
+        }
+    }
+
+    private void findIndexedMatches(SparseArray<PackageMatch> matches, String query) {
+        int from = 0;
+        int to = mSuffixes.length;
+        if (mLastQuery != null && StringMatcherUtility.isRefinement(mLastQuery, query)) {
+            from = mLastStart;
+            to = mLastEnd;
+        }
+        int start = lowerBound(query, from, to);
+        int end = upperBound(query, start, to);
+        mLastQuery = query;
+        mLastStart = start;
+        mLastEnd = end;
+
+        for (int i = start; i < end; i++) {
+            Suffix suffix = mSuffixes[i];
+            addMatch(matches, suffix.mText, suffix.mStart == 0);
+        }
+    }
+
+    /** Returns the first suffix in [from, to) which is not smaller than {@param query}. */
+    private int lowerBound(String query, int from, int to) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (mSuffixes[mid].compareToPrefix(query) < 0) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
+        return from;
+    }
+
+    /** Returns the first suffix in [from, to) which is greater than {@param query}. */
+    private int upperBound(String query, int from, int to) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (mSuffixes[mid].compareToPrefix(query) <= 0) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
+        return from;
+    }
+
+    private void addMatchIfMatches(SparseArray<PackageMatch> matches, Text text,
+            String queryLower) {
+        if (StringMatcherUtility.matches(queryLower, text.mValue, mMatcher)) {
+            addMatch(matches, text, text.mValue.toLowerCase().startsWith(queryLower));
+        }
+    }
+
+    private static void addMatch(SparseArray<PackageMatch> matches, Text text,
+            boolean isPrefix) {
+        PackageMatch match = matches.get(text.mPackageIndex);
+        if (match == null) {
+            match = new PackageMatch(text.mPackageIndex);
+            matches.put(text.mPackageIndex, match);
+        }
+        match.add(text, isPrefix);
+    }
+
+    private static final Comparator<Suffix> SUFFIX_COMPARATOR = (a, b) -> {
+        String textA = a.mText.mNormalized;
+        String textB = b.mText.mNormalized;
+        int lengthA = textA.length() - a.mStart;
+        int lengthB = textB.length() - b.mStart;
+        int length = Math.min(lengthA, lengthB);
+        for (int i = 0; i < length; i++) {
+            int diff = textA.charAt(a.mStart + i) - textB.charAt(b.mStart + i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return lengthA - lengthB;
+    };
+
+    private static class Text {
+
+        final int mPackageIndex;
+        // Index of the widget in its package, or -1 for the app name
+        final int mItemIndex;
+        final int mField;
+        final String mValue;
+
+        // Null if the text is not indexed
+        @Nullable
+        String mNormalized;
+
+        Text(int packageIndex, int itemIndex, int field, String value) {
+            mPackageIndex = packageIndex;
+            mItemIndex = itemIndex;
+            mField = field;
+            mValue = value;
+        }
+
+        int getRank(boolean isPrefix) {
+            switch (mField) {
+                case FIELD_APP_NAME:
+                    return isPrefix ? RANK_APP_NAME_PREFIX : RANK_APP_NAME_WORD;
+                case FIELD_LABEL:
+                    return isPrefix ? RANK_LABEL_PREFIX : RANK_LABEL_WORD;
+                default:
+                    return RANK_DESCRIPTION;
+            }
+        }
+    }
+
+    private static class Suffix {
+
+        final Text mText;
+        final int mStart;
+
+        Suffix(Text text, int start) {
+            mText = text;
+            mStart = start;
+        }
+
+        /**
+         * Compares the first characters of this suffix with {@param query}, returning 0 if this
+         * suffix starts with {@param query}.
+         */
+        int compareToPrefix(String query) {
+            String text = mText.mNormalized;
+            int length = Math.min(text.length() - mStart, query.length());
+            for (int i = 0; i < length; i++) {
+                int diff = text.charAt(mStart + i) - query.charAt(i);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return length == query.length() ? 0 : -1;
+        }
+    }
+
+    private static class PackageMatch {
+
+        final int mPackageIndex;
+        int mRank = Integer.MAX_VALUE;
+        boolean mAllItems;
+        @Nullable
+        boolean[] mMatchedItems;
+
+        PackageMatch(int packageIndex) {
+            mPackageIndex = packageIndex;
+        }
+
+        void add(Text text, boolean isPrefix) {
+            mRank = Math.min(mRank, text.getRank(isPrefix));
+            if (text.mItemIndex < 0) {
+                mAllItems = true;
+                return;
+            }
+            if (mMatchedItems == null) {
+                mMatchedItems = new boolean[text.mItemIndex + 1];
+            } else if (mMatchedItems.length <= text.mItemIndex) {
+                mMatchedItems = Arrays.copyOf(mMatchedItems, text.mItemIndex + 1);
+            }
+            mMatchedItems[text.mItemIndex] = true;
+        }
+
+        List<WidgetItem> getItems(List<WidgetItem> widgets) {
+            if (mAllItems || mMatchedItems == null) {
+                return widgets;
+            }
+            List<WidgetItem> items = new ArrayList<>();
+            for (int i = 0; i < mMatchedItems.length; i++) {
+                if (mMatchedItems[i]) {
+                    items.add(widgets.get(i));
+                }
+            }
+            return items;
+        }
+    }
+}
@@ -16,6 +16,7 @@
 package com.android.launcher3.widget.util;
 
 import android.content.Context;
+import android.util.Size;
 
 import androidx.annotation.Px;
 
@@ -25,6 +26,7 @@ import com.android.launcher3.model.WidgetItem;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /** An utility class which groups {@link WidgetItem}s into a table. */
@@ -57,9 +59,20 @@ public final class WidgetsTableUtils {
     public static List<ArrayList<WidgetItem>> groupWidgetItemsUsingRowPxWithReordering(
             List<WidgetItem> widgetItems, Context context, final DeviceProfile dp,
             final @Px int rowPx, final @Px int cellPadding) {
+        return groupWidgetItemsUsingRowPxWithReordering(widgetItems,
+                item -> WidgetSizes.getWidgetItemSizePx(context, dp, item), rowPx, cellPadding);
+    }
+
+    /**
+     * Variant of {@link #groupWidgetItemsUsingRowPxWithReordering(List, Context, DeviceProfile,
+     * int, int)} which gets the size of the items from {@code sizeProvider}.
+     */
+    public static List<ArrayList<WidgetItem>> groupWidgetItemsUsingRowPxWithReordering(
+            List<WidgetItem> widgetItems, Function<WidgetItem, Size> sizeProvider,
+            final @Px int rowPx, final @Px int cellPadding) {
         List<WidgetItem> sortedWidgetItems = widgetItems.stream().sorted(WIDGET_SHORTCUT_COMPARATOR)
                 .collect(Collectors.toList());
-        return groupWidgetItemsUsingRowPxWithoutReordering(sortedWidgetItems, context, dp, rowPx,
+        return groupWidgetItemsUsingRowPxWithoutReordering(sortedWidgetItems, sizeProvider, rowPx,
                 cellPadding);
     }
 
@@ -89,6 +102,17 @@ public final class WidgetsTableUtils {
     public static List<ArrayList<WidgetItem>> groupWidgetItemsUsingRowPxWithoutReordering(
             List<WidgetItem> widgetItems, Context context, final DeviceProfile dp,
             final @Px int rowPx, final @Px int cellPadding) {
+        return groupWidgetItemsUsingRowPxWithoutReordering(widgetItems,
+                item -> WidgetSizes.getWidgetItemSizePx(context, dp, item), rowPx, cellPadding);
+    }
+
+    /**
+     * Variant of {@link #groupWidgetItemsUsingRowPxWithoutReordering(List, Context, DeviceProfile,
+     * int, int)} which gets the size of the items from {@code sizeProvider}.
+     */
+    public static List<ArrayList<WidgetItem>> groupWidgetItemsUsingRowPxWithoutReordering(
+            List<WidgetItem> widgetItems, Function<WidgetItem, Size> sizeProvider,
+            final @Px int rowPx, final @Px int cellPadding) {
 
         List<ArrayList<WidgetItem>> widgetItemsTable = new ArrayList<>();
         ArrayList<WidgetItem> widgetItemsAtRow = null;
@@ -107,10 +131,8 @@ public final class WidgetsTableUtils {
                     // show their contents.
                     widgetItem.hasSameType(widgetItemsAtRow.get(numOfWidgetItems - 1))
                     && widgetItemsAtRow.stream().allMatch(
-                            item -> WidgetSizes.getWidgetItemSizePx(context, dp, item)
-                                    .getWidth() <= individualSpan)
-                    && WidgetSizes.getWidgetItemSizePx(context, dp, widgetItem)
-                            .getWidth() <= individualSpan) {
+                            item -> sizeProvider.apply(item).getWidth() <= individualSpan)
+                    && sizeProvider.apply(widgetItem).getWidth() <= individualSpan) {
                 // Group items in the same row if
                 // 1. they are with the same type, i.e. a row can only have widgets or shortcuts but
                 //    never a mix of both.
@@ -4,6 +4,9 @@ import android.content.Context
 import android.database.Cursor
 import android.database.sqlite.SQLiteDatabase
 import androidx.test.platform.app.InstrumentationRegistry
+import com.android.launcher3.LauncherSettings.Favorites
+import com.android.launcher3.provider.LauncherDbUtils
+import com.android.launcher3.util.IntArray
 import java.io.BufferedReader
 import java.io.InputStreamReader
 
@@ -54,6 +57,18 @@ class FactitiousDbController(context: Context, insertFile: String) : ModelDbCont
         return inMemoryDb.query(table, All_COLUMNS, selection, selectionArgs, null, null, sortOrder)
     }
 
+    override fun queryWorkspaceScreenIds(): IntArray {
+        return LauncherDbUtils.queryIntArray(
+            true,
+            inMemoryDb,
+            Favorites.TABLE_NAME,
+            Favorites.SCREEN,
+            "${Favorites.CONTAINER} = ${Favorites.CONTAINER_DESKTOP}",
+            null,
+            Favorites.SCREEN
+        )
+    }
+
     override fun loadDefaultFavoritesIfNecessary() {
         // No-Op
     }
@@ -27,23 +27,36 @@ import static com.android.launcher3.allapps.UserProfileManager.STATE_DISABLED;
 import static com.android.launcher3.allapps.UserProfileManager.STATE_ENABLED;
 import static com.android.launcher3.allapps.UserProfileManager.STATE_TRANSITION;
 
+import static com.android.launcher3.config.FeatureFlags.ENABLE_INCREMENTAL_APPS_LIST;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.AdditionalAnswers.answer;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import android.content.ComponentName;
-import android.content.Context;
 import android.content.Intent;
 import android.os.Process;
 import android.os.UserHandle;
 import android.platform.test.flag.junit.SetFlagsRule;
+import android.view.LayoutInflater;
 
+import androidx.recyclerview.widget.RecyclerView.AdapterDataObserver;
 import androidx.test.runner.AndroidJUnit4;
 
 import com.android.launcher3.Flags;
+import com.android.launcher3.allapps.AlphabeticalAppsList.FastScrollSectionInfo;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.util.ActivityContextWrapper;
+import com.android.launcher3.util.SafeCloseable;
+import com.android.launcher3.util.TestUtil;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -69,12 +82,12 @@ public class AlphabeticalAppsListTest {
     private static final int NUM_APP_ROWS = 3;
     private static final int PRIVATE_SPACE_SYS_APP_SEPARATOR_ITEM_COUNT = 1;
 
-    private AlphabeticalAppsList<?> mAlphabeticalAppsList;
+    private AlphabeticalAppsList<ActivityContextWrapper> mAlphabeticalAppsList;
     @Mock
-    private AllAppsStore<?> mAllAppsStore;
+    private AllAppsStore<ActivityContextWrapper> mAllAppsStore;
     @Mock
     private PrivateProfileManager mPrivateProfileManager;
-    private Context mContext;
+    private ActivityContextWrapper mContext;
 
     @Rule
     public final SetFlagsRule mSetFlagsRule =
@@ -320,6 +333,158 @@ public class AlphabeticalAppsListTest {
         assertEquals(ROUND_BOTTOM_RIGHT | ROUND_BOTTOM_LEFT, roundRegions);
     }
 
+    @Test
+    public void appsUpdated_appInstalledAndRemoved_appsStaySortedByTitle() {
+        try (SafeCloseable c = TestUtil.overrideFlag(ENABLE_INCREMENTAL_APPS_LIST, true)) {
+            AppInfo[] apps = createAppInfoListForMainUser();
+            Arrays.sort(apps, AppInfo.COMPONENT_KEY_COMPARATOR);
+            when(mAllAppsStore.getApps()).thenReturn(apps);
+            mAlphabeticalAppsList.updateItemFilter(info -> info != null
+                    && info.user.equals(MAIN_HANDLE));
+
+            AppInfo[] updatedApps = sortedByComponent(apps[0], createAppInfo("Calendar"));
+            when(mAllAppsStore.getApps()).thenReturn(updatedApps);
+            mAlphabeticalAppsList.onAppsUpdated();
+
+            assertEquals(Stream.of("Calendar", apps[0].title.toString()).sorted().toList(),
+                    getAdapterItemTitles());
+        }
+    }
+
+    @Test
+    public void applyIncrementalUpdate_appInstalled_notifiesInsertAtSortedPosition() {
+        AppInfo[] apps = loadApps(createAppInfo("Drive"), createAppInfo("Gmail"));
+        AdapterDataObserver observer = attachAdapter();
+
+        assertTrue(mAlphabeticalAppsList.applyIncrementalUpdate(
+                sortedByComponent(apps[0], apps[1], createAppInfo("Calendar"))));
+
+        assertEquals(List.of("Calendar", "Drive", "Gmail"), getAdapterItemTitles());
+        verify(observer).onItemRangeInserted(0, 1);
+        verifyNoMoreInteractions(observer);
+    }
+
+    @Test
+    public void applyIncrementalUpdate_appRemoved_notifiesRemove() {
+        AppInfo drive = createAppInfo("Drive");
+        AppInfo gmail = createAppInfo("Gmail");
+        loadApps(drive, gmail);
+        AdapterDataObserver observer = attachAdapter();
+
+        assertTrue(mAlphabeticalAppsList.applyIncrementalUpdate(sortedByComponent(gmail)));
+
+        assertEquals(List.of("Gmail"), getAdapterItemTitles());
+        verify(observer).onItemRangeRemoved(0, 1);
+        verifyNoMoreInteractions(observer);
+    }
+
+    @Test
+    public void applyIncrementalUpdate_appChanged_notifiesChange() {
+        AppInfo drive = createAppInfo("Drive");
+        AppInfo gmail = createAppInfo("Gmail");
+        loadApps(drive, gmail);
+        AdapterDataObserver observer = attachAdapter();
+
+        AppInfo updatedGmail = createAppInfo("Gmail");
+        updatedGmail.runtimeStatusFlags |= AppInfo.FLAG_DISABLED_SUSPENDED;
+        assertTrue(mAlphabeticalAppsList.applyIncrementalUpdate(
+                sortedByComponent(drive, updatedGmail)));
+
+        assertEquals(updatedGmail, mAlphabeticalAppsList.getAdapterItems().get(1).itemInfo);
+        verify(observer).onItemRangeChanged(eq(1), eq(1), isNull());
+        verifyNoMoreInteractions(observer);
+    }
+
+    @Test
+    public void applyIncrementalUpdate_appInstalled_updatesFastScrollSections() {
+        AppInfo[] apps = loadApps(createAppInfo("Drive"), createAppInfo("Gmail"));
+
+        assertTrue(mAlphabeticalAppsList.applyIncrementalUpdate(
+                sortedByComponent(apps[0], apps[1], createAppInfo("Calendar"))));
+
+        List<FastScrollSectionInfo> sections = mAlphabeticalAppsList.getFastScrollerSections();
+        assertEquals(List.of("C", "D", "G"),
+                sections.stream().map(section -> section.sectionName).toList());
+        assertEquals(List.of(0, 1, 2), sections.stream().map(section -> section.position).toList());
+    }
+
+    @Test
+    public void applyIncrementalUpdate_appRenamed_fallsBackToRebuild() {
+        AppInfo drive = createAppInfo("Drive");
+        loadApps(drive, createAppInfo("Gmail"));
+
+        AppInfo renamedGmail = new AppInfo(new ComponentName(mContext,
+                "com.android.launcher3.tests.Activity" + "Gmail"), "Agmail", MAIN_HANDLE,
+                new Intent());
+        renamedGmail.sectionName = "A";
+        AppInfo[] updatedApps = sortedByComponent(drive, renamedGmail);
+
+        assertFalse(mAlphabeticalAppsList.applyIncrementalUpdate(updatedApps));
+
+        when(mAllAppsStore.getApps()).thenReturn(updatedApps);
+        try (SafeCloseable c = TestUtil.overrideFlag(ENABLE_INCREMENTAL_APPS_LIST, true)) {
+            mAlphabeticalAppsList.onAppsUpdated();
+        }
+        assertEquals(List.of("Agmail", "Drive"), getAdapterItemTitles());
+    }
+
+    @Test
+    public void applyIncrementalUpdate_tooManyChanges_fallsBackToRebuild() {
+        AppInfo[] apps = loadApps(createAppInfo("Drive"));
+
+        AppInfo[] updatedApps = new AppInfo[AlphabeticalAppsList.MAX_INCREMENTAL_CHANGES + 1];
+        for (int i = 0; i < updatedApps.length; i++) {
+            updatedApps[i] = createAppInfo("App" + i);
+        }
+
+        assertFalse(mAlphabeticalAppsList.applyIncrementalUpdate(
+                sortedByComponent(Stream.concat(Stream.of(apps), Stream.of(updatedApps))
+                        .toArray(AppInfo[]::new))));
+    }
+
+    @Test
+    public void applyIncrementalUpdate_notBuiltFromStore_fallsBackToRebuild() {
+        assertFalse(mAlphabeticalAppsList.applyIncrementalUpdate(
+                sortedByComponent(createAppInfo("Drive"))));
+    }
+
+    /**
+     * Builds the lists from the provided main user apps and returns them sorted like the store.
+     */
+    private AppInfo[] loadApps(AppInfo... apps) {
+        AppInfo[] sortedApps = sortedByComponent(apps);
+        when(mAllAppsStore.getApps()).thenReturn(sortedApps);
+        mAlphabeticalAppsList.updateItemFilter(info -> info != null
+                && info.user.equals(MAIN_HANDLE));
+        return sortedApps;
+    }
+
+    private AdapterDataObserver attachAdapter() {
+        AllAppsGridAdapter<ActivityContextWrapper> adapter = new AllAppsGridAdapter<>(mContext,
+                LayoutInflater.from(mContext), mAlphabeticalAppsList, null, null);
+        AdapterDataObserver observer = mock(AdapterDataObserver.class);
+        adapter.registerAdapterDataObserver(observer);
+        mAlphabeticalAppsList.setAdapter(adapter);
+        return observer;
+    }
+
+    private List<String> getAdapterItemTitles() {
+        return mAlphabeticalAppsList.getAdapterItems().stream()
+                .map(item -> item.itemInfo.title.toString()).toList();
+    }
+
+    private AppInfo createAppInfo(String title) {
+        AppInfo appInfo = new AppInfo(new ComponentName(mContext,
+                "com.android.launcher3.tests.Activity" + title), title, MAIN_HANDLE,
+                new Intent());
+        appInfo.sectionName = title.substring(0, 1);
+        return appInfo;
+    }
+
+    private static AppInfo[] sortedByComponent(AppInfo... apps) {
+        return Stream.of(apps).sorted(AppInfo.COMPONENT_KEY_COMPARATOR).toArray(AppInfo[]::new);
+    }
+
     private int addPrivateSpaceHeader(List<BaseAllAppsAdapter.AdapterItem> adapterItemList) {
         adapterItemList.add(new BaseAllAppsAdapter.AdapterItem(VIEW_TYPE_PRIVATE_SPACE_HEADER));
         return adapterItemList.size();
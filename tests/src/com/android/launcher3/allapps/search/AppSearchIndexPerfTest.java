@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.allapps.search;
+
+import static com.android.launcher3.allapps.search.AppSearchIndexTest.createApp;
+
+import static org.junit.Assert.assertEquals;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem;
+import com.android.launcher3.model.data.AppInfo;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares {@link AppSearchIndex} with scanning all the titles, on synthetic app titles
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class AppSearchIndexPerfTest {
+
+    private static final String TAG = "AppSearchIndexPerfTest";
+
+    private static final String[] WORDS = {"Photo", "Music", "Map", "Chat", "Mail", "Note",
+            "Video", "Cloud", "Bank", "Fit", "Game", "News", "Shop", "Radio", "Weather", "Café",
+            "Smart", "Pro", "Lite", "Go", "Home", "Player", "Scanner", "Editor", "Calendar"};
+    private static final String[] QUERIES = {"photo", "calendar", "sm", "cafe editor", "zz"};
+    private static final String[] TYPO_QUERIES = {"phtoo", "calender", "waether", "plyer"};
+    private static final int ITERATIONS = 20;
+
+    @Test
+    public void search_1000Apps() {
+        measureSearch(1_000);
+    }
+
+    @Test
+    public void search_5000Apps() {
+        measureSearch(5_000);
+    }
+
+    @Test
+    public void search_20000Apps() {
+        measureSearch(20_000);
+    }
+
+    private void measureSearch(int appCount) {
+        Random random = new Random(appCount);
+        AppInfo[] apps = new AppInfo[appCount];
+        for (int i = 0; i < appCount; i++) {
+            String title = WORDS[random.nextInt(WORDS.length)]
+                    + (random.nextBoolean() ? " " : "")
+                    + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            apps[i] = createApp(title, i);
+        }
+        List<AppInfo> appList = Arrays.asList(apps);
+
+        AppSearchIndex index = new AppSearchIndex();
+        long start = SystemClock.elapsedRealtimeNanos();
+        index.setApps(apps);
+        long buildNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        long scanNanos = 0;
+        long indexNanos = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (String query : QUERIES) {
+                // Type the query one character at a time
+                for (int length = 1; length <= query.length(); length++) {
+                    String prefix = query.substring(0, length);
+
+                    start = SystemClock.elapsedRealtimeNanos();
+                    ArrayList<AdapterItem> expected =
+                            DefaultAppSearchAlgorithm.getTitleMatchResult(appList, prefix);
+                    scanNanos += SystemClock.elapsedRealtimeNanos() - start;
+
+                    start = SystemClock.elapsedRealtimeNanos();
+                    List<AppInfo> actual = index.search(prefix, 5);
+                    indexNanos += SystemClock.elapsedRealtimeNanos() - start;
+
+                    assertEquals(prefix, expected.size(), actual.size());
+                    for (int j = 0; j < actual.size(); j++) {
+                        assertEquals(prefix, expected.get(j).itemInfo, actual.get(j));
+                    }
+                }
+            }
+        }
+
+        long approximateNanos = 0;
+        int keystrokeCount = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (String query : TYPO_QUERIES) {
+                for (int length = 1; length <= query.length(); length++) {
+                    String prefix = query.substring(0, length);
+                    start = SystemClock.elapsedRealtimeNanos();
+                    index.searchApproximate(
+                            prefix, FuzzyAppSearchAlgorithm.getMaxEdits(length), 5);
+                    approximateNanos += SystemClock.elapsedRealtimeNanos() - start;
+                    keystrokeCount++;
+                }
+            }
+        }
+        assertEquals(5, index.searchApproximate("calender", 2, 5).size());
+
+        int queryCount = ITERATIONS * QUERIES.length;
+        Log.d(TAG, appCount + " apps: built index in " + buildNanos / 1_000_000 + "ms, "
+                + "scan " + scanNanos / queryCount / 1_000 + "us/query, "
+                + "index " + indexNanos / queryCount / 1_000 + "us/query, "
+                + "approximate " + approximateNanos / keystrokeCount / 1_000 + "us/keystroke");
+    }
+}
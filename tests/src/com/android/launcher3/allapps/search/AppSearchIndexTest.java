@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.allapps.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.content.Intent;
+import android.os.Process;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem;
+import com.android.launcher3.model.data.AppInfo;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for {@link AppSearchIndex}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class AppSearchIndexTest {
+
+    private static final String[] TITLES = {"YouTube", "YouTube Music", "Play Store",
+            "PlayStation App", "t-mobile", "Café Crème", "Agar.io", "Straße", "LEGO®Builder",
+            "Calculator", "Calendar", "Clock", "Camera", "Files by Google", "微信"};
+
+    private static final String[] QUERIES = {"y", "yo", "tube", "music", "play", "play s",
+            "store", "mobile", "-", "cafe", "creme", "crème", "io", "strasse", "stra", "builder",
+            "ca", "cal", "calc", "calculator", "calculators", "google", "by g", "信", "out", "e"};
+
+    private final AppSearchIndex mIndex = new AppSearchIndex();
+
+    @Test
+    public void search_sameResultsAsScan() {
+        AppInfo[] apps = createApps(TITLES);
+        mIndex.setApps(apps);
+
+        for (String query : QUERIES) {
+            assertSameResults(apps, query);
+        }
+    }
+
+    @Test
+    public void search_refinedQuery_sameResultsAsScan() {
+        AppInfo[] apps = createApps(TITLES);
+        mIndex.setApps(apps);
+
+        String query = "calculators";
+        for (int i = 1; i <= query.length(); i++) {
+            assertSameResults(apps, query.substring(0, i));
+        }
+        // Deleting characters starts over
+        assertSameResults(apps, "ca");
+    }
+
+    @Test
+    public void setApps_incrementalUpdate_indexesChangedApps() {
+        AppInfo[] apps = createApps(TITLES);
+        mIndex.setApps(apps);
+        assertEquals(0, mIndex.search("maps", 5).size());
+
+        AppInfo[] updated = Arrays.copyOf(apps, apps.length);
+        // Rename one app and replace another one
+        updated[0] = new AppInfo(apps[0].componentName, "Maps", apps[0].user, new Intent());
+        updated[1] = createApp("Music Maps", TITLES.length);
+        mIndex.setApps(updated);
+
+        assertSameResults(updated, "maps");
+        assertSameResults(updated, "you");
+        // "Straße" and "微信" can not be normalized to ASCII
+        assertEquals(TITLES.length - 2, mIndex.getIndexedCount());
+    }
+
+    @Test
+    public void setApps_removedApps_notReturned() {
+        AppInfo[] apps = createApps(TITLES);
+        mIndex.setApps(apps);
+
+        AppInfo[] updated = Arrays.copyOfRange(apps, 2, apps.length);
+        mIndex.setApps(updated);
+
+        assertEquals(0, mIndex.search("youtube", 5).size());
+        for (String query : QUERIES) {
+            assertSameResults(updated, query);
+        }
+    }
+
+    @Test
+    public void setApps_appInsertedInMiddle_resultsInAppsOrder() {
+        AppInfo[] apps = createApps(new String[] {"Calculator", "Clock", "Camera"});
+        mIndex.setApps(apps);
+
+        AppInfo[] updated = {apps[0], createApp("Calendar", 3), apps[1], apps[2]};
+        mIndex.setApps(updated);
+
+        assertSameResults(updated, "c");
+        assertEquals("Calculator, Calendar, Clock, Camera",
+                toString(mIndex.searchApproximate("cal", 1, 5)));
+    }
+
+    @Test
+    public void searchApproximate_typos_matchWithinMaxEdits() {
+        mIndex.setApps(createApps(TITLES));
+
+        assertEquals("Calculator", toString(mIndex.searchApproximate("calcualtor", 2, 5)));
+        assertEquals("YouTube Music", toString(mIndex.searchApproximate("musik", 1, 5)));
+        assertEquals("", toString(mIndex.searchApproximate("musk", 0, 5)));
+        // Too many typos
+        assertEquals("", toString(mIndex.searchApproximate("mxsxk", 1, 5)));
+    }
+
+    @Test
+    public void searchApproximate_exactMatchesRankedFirst() {
+        mIndex.setApps(createApps(new String[] {"Comera", "Pocket Camera", "Camera", "Cameras",
+                "Straße"}));
+
+        assertEquals("Camera, Cameras, Pocket Camera, Comera",
+                toString(mIndex.searchApproximate("camera", 1, 5)));
+        // Titles which are not indexed still match without typos
+        assertEquals("Straße", toString(mIndex.searchApproximate("straße", 1, 5)));
+    }
+
+    @Test
+    public void getPrefixEditDistance_bestPrefix() {
+        assertEquals(0, AppSearchIndex.getPrefixEditDistance("cal", "calculator", 0, 1));
+        assertEquals(1, AppSearchIndex.getPrefixEditDistance("cax", "calculator", 0, 1));
+        assertEquals(1, AppSearchIndex.getPrefixEditDistance("clc", "calculator", 0, 1));
+        assertEquals(0, AppSearchIndex.getPrefixEditDistance("music", "youtube music", 8, 1));
+        assertTrue(AppSearchIndex.getPrefixEditDistance("xyz", "calculator", 0, 1) > 1);
+    }
+
+    private static String toString(List<AppInfo> apps) {
+        List<String> titles = new ArrayList<>();
+        for (AppInfo app : apps) {
+            titles.add(app.title.toString());
+        }
+        return String.join(", ", titles);
+    }
+
+    private void assertSameResults(AppInfo[] apps, String query) {
+        List<AppInfo> expected = new ArrayList<>();
+        for (AdapterItem item : DefaultAppSearchAlgorithm.getTitleMatchResult(
+                Arrays.asList(apps), query)) {
+            expected.add((AppInfo) item.itemInfo);
+        }
+        assertEquals(query, expected, mIndex.search(query, 5));
+    }
+
+    static AppInfo[] createApps(String[] titles) {
+        AppInfo[] apps = new AppInfo[titles.length];
+        for (int i = 0; i < titles.length; i++) {
+            apps[i] = createApp(titles[i], i);
+        }
+        return apps;
+    }
+
+    static AppInfo createApp(String title, int id) {
+        ComponentName cn = new ComponentName("com.example.app" + id, "com.example.Activity");
+        return new AppInfo(cn, title, Process.myUserHandle(), new Intent());
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.allapps.search;
+
+import static com.android.launcher3.allapps.search.AppSearchIndexTest.createApps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.model.data.AppInfo;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link AppSearchSession}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class AppSearchSessionTest {
+
+    private static final String[] TITLES = {"Camera Pro", "Calendar", "Pocket Cal", "Cal",
+            "Calculator", "Chrome", "Call Recorder"};
+
+    private final List<Runnable> mPendingSearches = new ArrayList<>();
+    private final List<String> mResults = new ArrayList<>();
+    private final List<Boolean> mFinalFlags = new ArrayList<>();
+
+    private final AppSearchSession mSession =
+            new AppSearchSession(mPendingSearches::add, Runnable::run, 5, null);
+    private final AppInfo[] mApps = createApps(TITLES);
+
+    @Test
+    public void search_ranksExactThenTitlePrefixThenWordPrefix() {
+        search("cal");
+
+        assertEquals("Cal, Calendar, Calculator, Call Recorder, Pocket Cal", getLastResult());
+        assertTrue(mFinalFlags.get(mFinalFlags.size() - 1));
+    }
+
+    @Test
+    public void search_extendedQuery_sameResultsAsNewSearch() {
+        search("ca");
+        search("cal");
+        search("calc");
+        String refined = getLastResult();
+
+        AppSearchSession fresh = new AppSearchSession(Runnable::run, Runnable::run, 5, null);
+        fresh.search("calc", mApps, (query, apps, isFinal) -> {
+            assertEquals(refined, toString(apps));
+            mResults.add(query);
+        });
+        assertEquals("calc", mResults.get(mResults.size() - 1));
+    }
+
+    @Test
+    public void search_shorterQuery_searchesAllApps() {
+        search("calc");
+        search("c");
+
+        assertEquals("Camera Pro, Calendar, Cal, Calculator, Chrome", getLastResult());
+    }
+
+    @Test
+    public void search_newSearchBeforeRun_previousSearchCancelled() {
+        mSession.search("cam", mApps, this::onResult);
+        mSession.search("chr", mApps, this::onResult);
+        runPendingSearches();
+
+        assertEquals(1, mResults.size());
+        assertEquals("Chrome", getLastResult());
+    }
+
+    @Test
+    public void cancel_pendingSearch_noResult() {
+        mSession.search("cam", mApps, this::onResult);
+        mSession.cancel();
+        runPendingSearches();
+
+        assertTrue(mResults.isEmpty());
+    }
+
+    @Test
+    public void search_manyApps_deliversFinalResultLast() {
+        String[] titles = new String[AppSearchSession.BATCH_SIZE * 4];
+        for (int i = 0; i < titles.length; i++) {
+            titles[i] = "App " + i;
+        }
+        mSession.search("app 1", createApps(titles), this::onResult);
+        runPendingSearches();
+
+        assertTrue(mFinalFlags.get(mFinalFlags.size() - 1));
+        for (int i = 0; i < mFinalFlags.size() - 1; i++) {
+            assertFalse(mFinalFlags.get(i));
+        }
+        assertEquals("App 1, App 10, App 11, App 12, App 13", getLastResult());
+    }
+
+    private void search(String query) {
+        mSession.search(query, mApps, this::onResult);
+        runPendingSearches();
+    }
+
+    private void runPendingSearches() {
+        List<Runnable> searches = new ArrayList<>(mPendingSearches);
+        mPendingSearches.clear();
+        searches.forEach(Runnable::run);
+    }
+
+    private void onResult(String query, List<AppInfo> apps, boolean isFinal) {
+        mResults.add(toString(apps));
+        mFinalFlags.add(isFinal);
+    }
+
+    private String getLastResult() {
+        return mResults.get(mResults.size() - 1);
+    }
+
+    private static String toString(List<AppInfo> apps) {
+        List<String> titles = new ArrayList<>();
+        for (AppInfo app : apps) {
+            titles.add(app.title.toString());
+        }
+        return String.join(", ", titles);
+    }
+}
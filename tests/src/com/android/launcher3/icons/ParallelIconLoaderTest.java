@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static com.android.launcher3.icons.ParallelIconLoader.MIN_ENTRIES_PER_WORKER;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Process;
+import android.os.UserHandle;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.icons.cache.BaseIconCache.CacheEntry;
+import com.android.launcher3.icons.cache.CachingLogic;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ParallelIconLoaderTest {
+
+    private final Context mContext = getInstrumentation().getTargetContext();
+    private final ParallelIconLoader mLoader = new ParallelIconLoader(mContext);
+
+    @Test
+    public void getWorkerCount_boundedByEntries() {
+        assertEquals(0, ParallelIconLoader.getWorkerCount(0));
+        assertEquals(1, ParallelIconLoader.getWorkerCount(MIN_ENTRIES_PER_WORKER));
+        assertEquals(2, ParallelIconLoader.getWorkerCount(MIN_ENTRIES_PER_WORKER + 1));
+    }
+
+    @Test
+    public void loadEntries_loadsAllInOrder() {
+        List<String> labels = new ArrayList<>();
+        for (int i = 0; i < MIN_ENTRIES_PER_WORKER * 10 + 3; i++) {
+            labels.add("label" + i);
+        }
+
+        CacheEntry[] entries = mLoader.loadEntries(labels, new TestCachingLogic(null));
+
+        assertEquals(labels.size(), entries.length);
+        for (int i = 0; i < labels.size(); i++) {
+            assertEquals(labels.get(i), entries[i].title);
+            assertSame(BitmapInfo.LOW_RES_INFO, entries[i].bitmap);
+        }
+    }
+
+    @Test
+    public void loadEntries_failedRangeLeftEmpty() {
+        List<String> labels = new ArrayList<>();
+        for (int i = 0; i < MIN_ENTRIES_PER_WORKER * 2; i++) {
+            labels.add("label" + i);
+        }
+
+        // The last entry is in the range loaded by a worker thread
+        String failing = labels.get(labels.size() - 1);
+        CacheEntry[] entries = mLoader.loadEntries(labels, new TestCachingLogic(failing));
+
+        assertEquals(labels.get(0), entries[0].title);
+        assertNull(entries[labels.size() - 1]);
+    }
+
+    private static class TestCachingLogic implements CachingLogic<String> {
+
+        private final String mFailingLabel;
+
+        TestCachingLogic(String failingLabel) {
+            mFailingLabel = failingLabel;
+        }
+
+        @NonNull
+        @Override
+        public ComponentName getComponent(@NonNull String object) {
+            return new ComponentName("test", object);
+        }
+
+        @NonNull
+        @Override
+        public UserHandle getUser(@NonNull String object) {
+            return Process.myUserHandle();
+        }
+
+        @NonNull
+        @Override
+        public CharSequence getLabel(@NonNull String object) {
+            return object;
+        }
+
+        @NonNull
+        @Override
+        public BitmapInfo loadIcon(@NonNull Context context, @NonNull String object) {
+            if (object.equals(mFailingLabel)) {
+                throw new IllegalStateException("Failed to load " + object);
+            }
+            return BitmapInfo.LOW_RES_INFO;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons;
+
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_COMPLETE;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.graphics.Bitmap;
+import android.os.Process;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.icons.cache.BaseIconCache.CacheEntry;
+import com.android.launcher3.util.ComponentKey;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class TieredIconStoreTest {
+
+    // 10x10 ARGB_8888 bitmaps
+    private static final int ICON_SIZE_BYTES = 400;
+
+    private final TieredIconStore mStore = new TieredIconStore(ICON_SIZE_BYTES * 2);
+
+    @Test
+    public void put_overBudget_evictsLeastRecentlyUsedHighRes() {
+        ComponentKey key1 = newKey("pkg1");
+        ComponentKey key2 = newKey("pkg2");
+        ComponentKey key3 = newKey("pkg3");
+        mStore.put(key1, newEntry("one"));
+        mStore.put(key2, newEntry("two"));
+        mStore.get(key1, false);
+
+        mStore.put(key3, newEntry("three"));
+
+        assertEquals(ICON_SIZE_BYTES * 2, mStore.getHighResSizeBytes());
+        assertEquals(1, mStore.getEvictionCount());
+        assertNotNull(mStore.get(key1, false));
+        assertNull(mStore.get(key2, false));
+    }
+
+    @Test
+    public void get_evictedHighRes_returnsLowRes() {
+        ComponentKey key = newKey("pkg");
+        mStore.put(key, newEntry("title"));
+
+        mStore.onTrimMemory(TRIM_MEMORY_COMPLETE);
+
+        assertNull(mStore.get(key, false));
+        CacheEntry lowRes = mStore.get(key, true);
+        assertTrue(lowRes.bitmap.isLowRes());
+        assertEquals("title", lowRes.title);
+    }
+
+    @Test
+    public void removePackage_removesBothTiers() {
+        ComponentKey key = newKey("pkg");
+        CacheEntry other = newEntry("other");
+        mStore.put(key, newEntry("title"));
+        mStore.put(newKey("pkg.other"), other);
+
+        mStore.removePackage("pkg", Process.myUserHandle());
+
+        assertNull(mStore.get(key, true));
+        assertSame(other, mStore.get(newKey("pkg.other"), false));
+    }
+
+    private static ComponentKey newKey(String packageName) {
+        return new ComponentKey(new ComponentName(packageName, packageName + ".Activity"),
+                Process.myUserHandle());
+    }
+
+    private static CacheEntry newEntry(String title) {
+        CacheEntry entry = new CacheEntry();
+        entry.title = title;
+        entry.bitmap = BitmapInfo.of(Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888), 0);
+        return entry;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP
+import com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_APPLICATION
+import com.android.launcher3.config.FeatureFlags
+import com.android.launcher3.model.data.WorkspaceItemInfo
+import com.android.launcher3.util.TestUtil
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/** Tests for [BgDataModel.Snapshot] */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class BgDataModelSnapshotTest {
+
+    private val context = ApplicationProvider.getApplicationContext<Context>()
+    private val model = BgDataModel()
+
+    @Test
+    fun snapshot_reusedUntilModelChanges() {
+        model.addItem(context, newItem(id = 1, screenId = 0), false)
+        val snapshot = model.snapshot
+
+        assertThat(model.snapshot).isSameInstanceAs(snapshot)
+        assertThat(snapshot.generation).isEqualTo(model.generation)
+
+        model.addItem(context, newItem(id = 2, screenId = 1), false)
+
+        assertThat(model.snapshot).isNotSameInstanceAs(snapshot)
+        assertThat(model.snapshot.generation).isGreaterThan(snapshot.generation)
+        assertThat(model.snapshot.getItem(2)).isNotNull()
+    }
+
+    @Test
+    fun publishSnapshot_createsSnapshotOnceForAllChanges() {
+        TestUtil.overrideFlag(FeatureFlags.ENABLE_LOCK_FREE_MODEL_READS, true).use {
+            model.addItem(context, newItem(id = 1, screenId = 0), false)
+            model.addItem(context, newItem(id = 2, screenId = 1), false)
+
+            model.publishSnapshot()
+
+            val snapshot = model.snapshot
+            assertThat(snapshot.generation).isEqualTo(model.generation)
+            assertThat(snapshot.workspaceItems).hasSize(2)
+            model.publishSnapshot()
+            assertThat(model.snapshot).isSameInstanceAs(snapshot)
+        }
+    }
+
+    @Test
+    fun snapshot_notAffectedByLaterChanges() {
+        val item = newItem(id = 1, screenId = 0)
+        model.addItem(context, item, false)
+        val snapshot = model.snapshot
+
+        model.removeItem(context, item)
+
+        assertThat(snapshot.workspaceItems).containsExactly(item)
+        assertThat(snapshot.getItem(1)).isSameInstanceAs(item)
+        assertThat(model.snapshot.workspaceItems).isEmpty()
+    }
+
+    @Test
+    fun notifyItemsChanged_incrementsGenerationAndSnapshotsMovedItems() {
+        val item = newItem(id = 1, screenId = 0)
+        model.addItem(context, item, false)
+        val generation = model.generation
+
+        item.screenId = 3
+        model.notifyItemsChanged()
+
+        assertThat(model.generation).isGreaterThan(generation)
+        assertThat(model.snapshot.workspaceScreens.contains(3)).isTrue()
+    }
+
+    private fun newItem(id: Int, screenId: Int) =
+        WorkspaceItemInfo().apply {
+            this.id = id
+            this.itemType = ITEM_TYPE_APPLICATION
+            this.container = CONTAINER_DESKTOP
+            this.screenId = screenId
+        }
+}
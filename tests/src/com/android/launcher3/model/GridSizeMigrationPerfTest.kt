@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model
+
+import android.content.ContentValues
+import android.content.Intent
+import android.database.DatabaseUtils
+import android.database.sqlite.SQLiteDatabase
+import android.graphics.Point
+import android.os.Process
+import android.os.SystemClock
+import android.util.Log
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.LargeTest
+import com.android.launcher3.InvariantDeviceProfile
+import com.android.launcher3.LauncherSettings.Favorites.*
+import com.android.launcher3.config.FeatureFlags
+import com.android.launcher3.model.GridSizeMigrationUtil.DbReader
+import com.android.launcher3.pm.UserCache
+import com.android.launcher3.provider.LauncherDbUtils
+import com.android.launcher3.util.LauncherModelHelper
+import com.android.launcher3.util.TestUtil
+import com.google.common.truth.Truth.assertThat
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Measures [GridSizeMigrationUtil.migrate] on large synthetic layouts, with and without
+ * [FeatureFlags.ENABLE_INCREMENTAL_GRID_MIGRATION]
+ */
+@LargeTest
+@RunWith(AndroidJUnit4::class)
+class GridSizeMigrationPerfTest {
+
+    private lateinit var modelHelper: LauncherModelHelper
+    private lateinit var idp: InvariantDeviceProfile
+    private lateinit var dbHelper: DatabaseHelper
+    private lateinit var db: SQLiteDatabase
+    private var userSerial = 0L
+
+    @Before
+    fun setUp() {
+        modelHelper = LauncherModelHelper()
+        val context = modelHelper.sandboxContext
+        dbHelper =
+            DatabaseHelper(
+                context,
+                null,
+                UserCache.INSTANCE.get(context)::getSerialNumberForUser
+            ) {}
+        db = dbHelper.writableDatabase
+        idp = InvariantDeviceProfile.INSTANCE[context]
+        userSerial = UserCache.INSTANCE[context].getSerialNumberForUser(Process.myUserHandle())
+    }
+
+    @After
+    fun tearDown() {
+        modelHelper.destroy()
+    }
+
+    @Test
+    fun migrate_1000Items() = measureMigration(1_000, incremental = false)
+
+    @Test
+    fun migrate_1000Items_incremental() = measureMigration(1_000, incremental = true)
+
+    @Test
+    fun migrate_5000Items() = measureMigration(5_000, incremental = false)
+
+    @Test
+    fun migrate_5000Items_incremental() = measureMigration(5_000, incremental = true)
+
+    @Test
+    fun migrate_10000Items() = measureMigration(10_000, incremental = false)
+
+    @Test
+    fun migrate_10000Items_incremental() = measureMigration(10_000, incremental = true)
+
+    private fun measureMigration(itemCount: Int, incremental: Boolean) =
+        TestUtil.overrideFlag(FeatureFlags.ENABLE_INCREMENTAL_GRID_MIGRATION, incremental).use {
+            measureMigration(itemCount)
+        }
+
+    private fun measureMigration(itemCount: Int) {
+        LauncherDbUtils.dropTable(db, TMP_TABLE)
+        addTableToDb(db, userSerial, false, TMP_TABLE)
+        db.delete(TABLE_NAME, null, null)
+
+        // Source grid is 5x5, the target grid is 4x4 so roughly half of the items have to move
+        val packages = HashSet<String>()
+        db.beginTransaction()
+        try {
+            for (i in 0 until itemCount) {
+                val packageName = "com.android.launcher3.perf$i"
+                packages.add(packageName)
+                val cell = i % 25
+                addItem(i / 25, cell % 5, cell / 5, packageName, i + 1)
+            }
+            db.setTransactionSuccessful()
+        } finally {
+            db.endTransaction()
+        }
+
+        val context = modelHelper.sandboxContext
+        idp.numDatabaseHotseatIcons = 4
+        idp.numColumns = 4
+        idp.numRows = 4
+        val start = SystemClock.elapsedRealtime()
+        GridSizeMigrationUtil.migrate(
+            dbHelper,
+            DbReader(db, TMP_TABLE, context, packages),
+            DbReader(db, TABLE_NAME, context, packages),
+            idp.numDatabaseHotseatIcons,
+            Point(idp.numColumns, idp.numRows),
+            DeviceGridState(context),
+            DeviceGridState(idp)
+        )
+        Log.d(
+            TAG,
+            "Migrated $itemCount items in ${SystemClock.elapsedRealtime() - start}ms, incremental="
+                + FeatureFlags.ENABLE_INCREMENTAL_GRID_MIGRATION.get()
+        )
+
+        assertThat(
+                DatabaseUtils.queryNumEntries(db, TABLE_NAME, "container=$CONTAINER_DESKTOP")
+            )
+            .isEqualTo(itemCount.toLong())
+    }
+
+    private fun addItem(screen: Int, x: Int, y: Int, packageName: String, id: Int) {
+        val values = ContentValues()
+        values.put(_ID, id)
+        values.put(CONTAINER, CONTAINER_DESKTOP)
+        values.put(SCREEN, screen)
+        values.put(CELLX, x)
+        values.put(CELLY, y)
+        values.put(SPANX, 1)
+        values.put(SPANY, 1)
+        values.put(ITEM_TYPE, ITEM_TYPE_APPLICATION)
+        values.put(INTENT, Intent(Intent.ACTION_MAIN).setPackage(packageName).toUri(0))
+        db.insert(TMP_TABLE, null, values)
+    }
+
+    companion object {
+        private const val TAG = "GridSizeMigrationPerfTest"
+    }
+}
@@ -33,6 +33,7 @@ import com.android.launcher3.model.GridSizeMigrationUtil.DbReader
 import com.android.launcher3.pm.UserCache
 import com.android.launcher3.provider.LauncherDbUtils
 import com.android.launcher3.util.LauncherModelHelper
+import com.android.launcher3.util.TestUtil
 import com.google.common.truth.Truth.assertThat
 import org.junit.After
 import org.junit.Before
@@ -791,6 +792,69 @@ class GridSizeMigrationUtilTest {
         assertThat(locMap[testPackage5]).isEqualTo(0)
     }
 
+    /** Migrating to a smaller grid in place, only the items which no longer fit are moved */
+    @Test
+    @Throws(Exception::class)
+    fun migrateFromLargerGrid_incremental_onlyMovesItemsThatDoNotFit() {
+        enableNewMigrationLogic("5,5")
+
+        // Setup src grid, the first row of the first screen is used by smartspace
+        addItem(ITEM_TYPE_APPLICATION, 0, CONTAINER_DESKTOP, 2, 1, testPackage1, 5, TMP_TABLE)
+        addItem(ITEM_TYPE_APPLICATION, 0, CONTAINER_DESKTOP, 4, 1, testPackage2, 6, TMP_TABLE)
+        addItem(ITEM_TYPE_APPLICATION, 1, CONTAINER_DESKTOP, 1, 4, testPackage3, 7, TMP_TABLE)
+        addItem(ITEM_TYPE_FOLDER, 1, CONTAINER_DESKTOP, 3, 2, null, 8, TMP_TABLE)
+        addItem(ITEM_TYPE_APPLICATION, 0, 8, 0, 0, testPackage4, 9, TMP_TABLE, rank = 1)
+        addItem(ITEM_TYPE_APPLICATION, 0, 8, 0, 0, testPackage5, 10, TMP_TABLE, rank = 0)
+
+        idp.numDatabaseHotseatIcons = 4
+        idp.numColumns = 4
+        idp.numRows = 4
+        TestUtil.overrideFlag(FeatureFlags.ENABLE_INCREMENTAL_GRID_MIGRATION, true).use {
+            GridSizeMigrationUtil.migrate(
+                dbHelper,
+                DbReader(db, TMP_TABLE, context, validPackages),
+                DbReader(db, TABLE_NAME, context, validPackages),
+                idp.numDatabaseHotseatIcons,
+                Point(idp.numColumns, idp.numRows),
+                DeviceGridState(context),
+                DeviceGridState(idp)
+            )
+        }
+
+        // Package or folder -> (screen, x, y, rank)
+        val locMap = HashMap<String?, List<Int>>()
+        var folderId = -1
+        db.query(TABLE_NAME, arrayOf(_ID, ITEM_TYPE, INTENT, SCREEN, CELLX, CELLY, RANK,
+                CONTAINER), null, null, null, null, null).use { c ->
+            while (c.moveToNext()) {
+                val isFolder = c.getInt(c.getColumnIndex(ITEM_TYPE)) == ITEM_TYPE_FOLDER
+                if (isFolder) {
+                    folderId = c.getInt(c.getColumnIndex(_ID))
+                }
+                val key =
+                    if (isFolder) "folder"
+                    else Intent.parseUri(c.getString(c.getColumnIndex(INTENT)), 0).getPackage()
+                locMap[key] =
+                    listOf(
+                        c.getInt(c.getColumnIndex(SCREEN)),
+                        c.getInt(c.getColumnIndex(CELLX)),
+                        c.getInt(c.getColumnIndex(CELLY)),
+                        c.getInt(c.getColumnIndex(RANK)),
+                        c.getInt(c.getColumnIndex(CONTAINER))
+                    )
+            }
+        }
+
+        // Items which fit keep their cell and rank
+        assertThat(locMap[testPackage1]).isEqualTo(listOf(0, 2, 1, 0, CONTAINER_DESKTOP))
+        assertThat(locMap["folder"]).isEqualTo(listOf(1, 3, 2, 0, CONTAINER_DESKTOP))
+        assertThat(locMap[testPackage4]!!.subList(3, 5)).isEqualTo(listOf(1, folderId))
+        assertThat(locMap[testPackage5]!!.subList(3, 5)).isEqualTo(listOf(0, folderId))
+        // Only the items out of the new grid are moved
+        assertThat(locMap[testPackage2]!![1]).isLessThan(4)
+        assertThat(locMap[testPackage3]!![2]).isLessThan(4)
+    }
+
     private fun enableNewMigrationLogic(srcGridSize: String) {
         LauncherPrefs.get(context).putSync(WORKSPACE_SIZE.to(srcGridSize))
     }
@@ -823,9 +887,11 @@ class GridSizeMigrationUtilTest {
         y: Int,
         packageName: String?,
         id: Int,
-        tableName: String
+        tableName: String,
+        rank: Int = 0
     ): Int {
         val values = ContentValues()
+        values.put(RANK, rank)
         values.put(_ID, id)
         values.put(CONTAINER, container)
         values.put(SCREEN, screen)
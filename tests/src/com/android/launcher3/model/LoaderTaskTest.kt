@@ -10,14 +10,19 @@ import com.android.launcher3.InvariantDeviceProfile
 import com.android.launcher3.LauncherAppState
 import com.android.launcher3.LauncherModel
 import com.android.launcher3.LauncherModel.LoaderTransaction
+import com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP
+import com.android.launcher3.config.FeatureFlags
 import com.android.launcher3.icons.IconCache
 import com.android.launcher3.icons.cache.CachingLogic
 import com.android.launcher3.icons.cache.IconCacheUpdateHandler
+import com.android.launcher3.model.BaseLauncherBinder.DisjointWorkspaceBinder
 import com.android.launcher3.pm.UserCache
 import com.android.launcher3.ui.TestViewHelpers
 import com.android.launcher3.util.Executors.MODEL_EXECUTOR
+import com.android.launcher3.util.IntSet
 import com.android.launcher3.util.LauncherModelHelper.SandboxModelContext
 import com.android.launcher3.util.LooperIdleLock
+import com.android.launcher3.util.TestUtil
 import com.android.launcher3.util.UserIconInfo
 import com.google.common.truth.Truth
 import java.util.concurrent.CountDownLatch
@@ -27,9 +32,14 @@ import org.junit.Rule
 import org.junit.Test
 import org.junit.runner.RunWith
 import org.mockito.ArgumentMatchers.any
+import org.mockito.ArgumentMatchers.anyBoolean
 import org.mockito.ArgumentMatchers.anyInt
 import org.mockito.Mock
 import org.mockito.Mockito
+import org.mockito.Mockito.doAnswer
+import org.mockito.Mockito.inOrder
+import org.mockito.Mockito.mock
+import org.mockito.Mockito.never
 import org.mockito.Mockito.times
 import org.mockito.Mockito.verify
 import org.mockito.Mockito.`when`
@@ -125,6 +135,52 @@ class LoaderTaskTest {
         verify(transaction).commit()
     }
 
+    @Test
+    fun stagedLoad_bindsCurrentPagesBeforeLoadingOtherPages() =
+        with(BgDataModel()) {
+            mockMainUser()
+            val workspaceBinder = mockWorkspaceBinder(isCurrentBindValid = true)
+            val screensBoundFirst = mutableSetOf<Int>()
+            doAnswer {
+                    workspaceItems
+                        .filter { it.container == CONTAINER_DESKTOP }
+                        .forEach { screensBoundFirst.add(it.screenId) }
+                    null
+                }
+                .`when`(workspaceBinder)
+                .bindCurrentWorkspacePages(false)
+
+            TestUtil.overrideFlag(FeatureFlags.ENABLE_WORKSPACE_LOADING_OPTIMIZATION, true).use {
+                LoaderTask(app, bgAllAppsList, this, modelDelegate, launcherBinder)
+                    .runSyncOnBackgroundThread()
+            }
+
+            // Only the current page was loaded when it was bound, the other pages after that
+            Truth.assertThat(screensBoundFirst).containsExactly(0)
+            Truth.assertThat(workspaceItems.map { it.screenId }.toSet().size).isGreaterThan(1)
+            Truth.assertThat(folders.size()).isAtLeast(8)
+            with(inOrder(workspaceBinder)) {
+                verify(workspaceBinder).bindCurrentWorkspacePages(false)
+                verify(workspaceBinder).bindOtherWorkspacePages()
+            }
+            verify(launcherBinder, never()).bindWorkspace(anyBoolean(), anyBoolean())
+        }
+
+    @Test
+    fun stagedLoad_currentBindInvalid_bindsWholeWorkspaceAgain() {
+        mockMainUser()
+        val workspaceBinder = mockWorkspaceBinder(isCurrentBindValid = false)
+
+        TestUtil.overrideFlag(FeatureFlags.ENABLE_WORKSPACE_LOADING_OPTIMIZATION, true).use {
+            LoaderTask(app, bgAllAppsList, BgDataModel(), modelDelegate, launcherBinder)
+                .runSyncOnBackgroundThread()
+        }
+
+        verify(workspaceBinder).bindCurrentWorkspacePages(false)
+        verify(workspaceBinder, never()).bindOtherWorkspacePages()
+        verify(launcherBinder).bindWorkspace(true, false)
+    }
+
     @Test
     fun setsQuietModeFlagCorrectlyForWorkProfile() =
         with(BgDataModel()) {
@@ -166,6 +222,20 @@ class LoaderTaskTest {
             verify(bgAllAppsList, Mockito.never())
                 .setFlags(BgDataModel.Callbacks.FLAG_QUIET_MODE_ENABLED, true)
         }
+
+    private fun mockMainUser() {
+        val mainHandle = UserHandle.of(0)
+        `when`(userCache.userProfiles).thenReturn(arrayListOf(mainHandle))
+        `when`(userCache.getUserInfo(mainHandle)).thenReturn(UserIconInfo(mainHandle, 1))
+    }
+
+    private fun mockWorkspaceBinder(isCurrentBindValid: Boolean): DisjointWorkspaceBinder {
+        val workspaceBinder = mock(DisjointWorkspaceBinder::class.java)
+        `when`(workspaceBinder.currentScreenIds).thenReturn(IntSet.wrap(0))
+        `when`(workspaceBinder.isCurrentBindValid).thenReturn(isCurrentBindValid)
+        `when`(launcherBinder.initWorkspaceBinder(anyBoolean(), any())).thenReturn(workspaceBinder)
+        return workspaceBinder
+    }
 }
 
 private fun LoaderTask.runSyncOnBackgroundThread() {
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model
+
+import android.content.ComponentName
+import android.content.Intent
+import android.os.Process
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP
+import com.android.launcher3.LauncherSettings.Favorites.CONTAINER_HOTSEAT
+import com.android.launcher3.model.data.WorkspaceItemInfo
+import com.android.launcher3.util.PackageUserKey
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/** Tests for [ModelItemIndex] */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class ModelItemIndexTest {
+
+    private val index = ModelItemIndex()
+
+    @Test
+    fun add_indexesByContainerScreenAndPackage() {
+        val item1 = newItem(id = 1, container = CONTAINER_DESKTOP, screenId = 2, pkg = "a")
+        val item2 = newItem(id = 2, container = CONTAINER_HOTSEAT, screenId = 0, pkg = "a")
+        index.add(item1)
+        index.add(item2)
+
+        assertThat(index.getItemsInContainer(CONTAINER_HOTSEAT)).containsExactly(item2)
+        assertThat(index.getItemsOnScreen(2)).containsExactly(item1)
+        assertThat(index.getItemsForPackage(PackageUserKey("a", Process.myUserHandle())))
+            .containsExactly(item1, item2)
+        assertThat(index.screenIds.array.toArray()).asList().containsExactly(2)
+    }
+
+    @Test
+    fun add_afterMove_reindexesItem() {
+        val item = newItem(id = 1, container = CONTAINER_DESKTOP, screenId = 0, pkg = "a")
+        index.add(item)
+
+        item.screenId = 3
+        // Not re-indexed yet, the item is no longer returned for its old screen
+        assertThat(index.getItemsOnScreen(0)).isEmpty()
+
+        index.add(item)
+        assertThat(index.getItemsOnScreen(3)).containsExactly(item)
+        assertThat(index.screenIds.array.toArray()).asList().containsExactly(3)
+    }
+
+    @Test
+    fun remove_removesFromAllIndexes() {
+        val item = newItem(id = 1, container = CONTAINER_DESKTOP, screenId = 0, pkg = "a")
+        index.add(item)
+
+        index.remove(item.id)
+
+        assertThat(index.getItemsInContainer(CONTAINER_DESKTOP)).isEmpty()
+        assertThat(index.getItemsOnScreen(0)).isEmpty()
+        assertThat(index.getItemsForPackage(PackageUserKey("a", Process.myUserHandle())))
+            .isEmpty()
+    }
+
+    private fun newItem(id: Int, container: Int, screenId: Int, pkg: String) =
+        WorkspaceItemInfo().apply {
+            this.id = id
+            this.container = container
+            this.screenId = screenId
+            this.user = Process.myUserHandle()
+            this.intent = Intent(Intent.ACTION_MAIN).setComponent(ComponentName(pkg, "$pkg.Main"))
+        }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model
+
+import android.os.Handler
+import android.os.Looper
+import android.os.Process
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.android.launcher3.LauncherModel.ModelUpdateTask
+import com.android.launcher3.model.CacheDataUpdatedTask.OP_CACHE_UPDATE
+import com.android.launcher3.model.ModelUpdateCoalescer.CoalescibleTask
+import com.android.launcher3.model.PackageUpdatedTask.OP_ADD
+import com.android.launcher3.model.PackageUpdatedTask.OP_REMOVE
+import com.android.launcher3.model.PackageUpdatedTask.OP_UPDATE
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/** Tests for [ModelUpdateCoalescer] */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class ModelUpdateCoalescerTest {
+
+    private val user = Process.myUserHandle()
+    private val dispatched = ArrayList<ModelUpdateTask>()
+    private val coalescer = ModelUpdateCoalescer(Handler(Looper.getMainLooper())) {
+        dispatched.add(it)
+    }
+
+    @Test
+    fun enqueue_sameOperation_mergedIntoSingleTask() {
+        coalescer.enqueue(PackageUpdatedTask(OP_UPDATE, user, "a"))
+        coalescer.enqueue(PackageUpdatedTask(OP_UPDATE, user, "b"))
+        coalescer.enqueue(PackageUpdatedTask(OP_UPDATE, user, "a"))
+        assertThat(dispatched).isEmpty()
+
+        coalescer.flush()
+
+        assertThat(dispatched).hasSize(1)
+        assertThat((dispatched[0] as CoalescibleTask).packages).containsExactly("a", "b")
+        assertThat(coalescer.coalescedCount).isEqualTo(2)
+    }
+
+    @Test
+    fun enqueue_conflictingOperation_preservesOrder() {
+        coalescer.enqueue(PackageUpdatedTask(OP_ADD, user, "a"))
+        coalescer.enqueue(PackageUpdatedTask(OP_REMOVE, user, "a"))
+        // Can not be merged with the first add, as the remove in between targets the same package
+        coalescer.enqueue(PackageUpdatedTask(OP_ADD, user, "a"))
+        // Unrelated to the remove, merged with the first add
+        coalescer.enqueue(PackageUpdatedTask(OP_ADD, user, "b"))
+
+        coalescer.flush()
+
+        assertThat(dispatched.map { (it as CoalescibleTask).packages })
+            .containsExactly(setOf("a", "b"), setOf("a"), setOf("a"))
+            .inOrder()
+    }
+
+    @Test
+    fun enqueue_differentTaskTypes_mergedSeparately() {
+        coalescer.enqueue(CacheDataUpdatedTask(OP_CACHE_UPDATE, user, hashSetOf("a")))
+        coalescer.enqueue(PackageUpdatedTask(OP_UPDATE, user, "b"))
+        coalescer.enqueue(CacheDataUpdatedTask(OP_CACHE_UPDATE, user, hashSetOf("c")))
+
+        coalescer.flush()
+
+        assertThat(dispatched).hasSize(2)
+        assertThat((dispatched[0] as CoalescibleTask).packages).containsExactly("a", "c")
+    }
+
+    @Test
+    fun flush_returnsWhetherTasksWereDispatched() {
+        assertThat(coalescer.flush()).isFalse()
+
+        coalescer.enqueue(PackageUpdatedTask(OP_UPDATE, user, "a"))
+
+        assertThat(coalescer.flush()).isTrue()
+        assertThat(dispatched).hasSize(1)
+        assertThat(coalescer.flush()).isFalse()
+    }
+}
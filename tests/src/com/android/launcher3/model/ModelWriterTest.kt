@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model
+
+import android.content.ContentValues
+import android.content.Context
+import android.database.sqlite.SQLiteDatabase
+import android.os.SystemClock
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.android.launcher3.LauncherModel
+import com.android.launcher3.LauncherSettings.Favorites
+import com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP
+import com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_APPLICATION
+import com.android.launcher3.celllayout.CellPosMapper
+import com.android.launcher3.config.FeatureFlags
+import com.android.launcher3.model.data.WorkspaceItemInfo
+import com.android.launcher3.provider.LauncherDbUtils.SQLiteTransaction
+import com.android.launcher3.provider.LauncherDbUtils.itemIdMatch
+import com.android.launcher3.util.Executors.MODEL_EXECUTOR
+import com.android.launcher3.util.SafeCloseable
+import com.android.launcher3.util.TestUtil
+import com.google.common.truth.Truth.assertThat
+import java.util.concurrent.CountDownLatch
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.ArgumentCaptor
+import org.mockito.ArgumentMatchers.any
+import org.mockito.ArgumentMatchers.anyString
+import org.mockito.ArgumentMatchers.eq
+import org.mockito.ArgumentMatchers.isNull
+import org.mockito.Mockito.doAnswer
+import org.mockito.Mockito.inOrder
+import org.mockito.Mockito.mock
+import org.mockito.Mockito.times
+import org.mockito.Mockito.verify
+import org.mockito.Mockito.`when`
+
+/** Tests for the batched item updates of [ModelWriter] */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class ModelWriterTest {
+
+    private val context = ApplicationProvider.getApplicationContext<Context>()
+    private val bgDataModel = BgDataModel()
+    private val model = mock(LauncherModel::class.java)
+    private val dbController = mock(ModelDbController::class.java)
+    private val db = SQLiteDatabase.createInMemory(SQLiteDatabase.OpenParams.Builder().build())
+    private val modelThreadLock = CountDownLatch(1)
+
+    private lateinit var flagOverride: SafeCloseable
+    private lateinit var writer: ModelWriter
+    private var lastLoadId = 0
+
+    private val item1 = newItem(1)
+    private val item2 = newItem(2)
+
+    @Before
+    fun setUp() {
+        flagOverride = TestUtil.overrideFlag(FeatureFlags.ENABLE_BATCHED_MODEL_WRITES, true)
+        bgDataModel.lastLoadId = lastLoadId
+        bgDataModel.addItem(context, item1, false)
+        bgDataModel.addItem(context, item2, false)
+        `when`(model.lastLoadId).thenAnswer { lastLoadId }
+        `when`(model.modelDbController).thenReturn(dbController)
+        `when`(dbController.newTransaction()).thenAnswer { SQLiteTransaction(db) }
+        writer = ModelWriter(context, model, bgDataModel, false, CellPosMapper.DEFAULT, null)
+
+        // Keep the model thread busy, so that all the requests of a test are made before any of
+        // them is written
+        MODEL_EXECUTOR.execute { modelThreadLock.await() }
+    }
+
+    @After
+    fun tearDown() {
+        modelThreadLock.countDown()
+        waitForModelThread()
+        flagOverride.close()
+        db.close()
+    }
+
+    @Test
+    fun updatesOfSameItem_areCoalesced() {
+        writer.moveItemInDatabase(item1, CONTAINER_DESKTOP, 0, 1, 1)
+        writer.moveItemInDatabase(item2, CONTAINER_DESKTOP, 0, 3, 3)
+        writer.modifyItemInDatabase(item1, CONTAINER_DESKTOP, 0, 2, 2, 2, 1)
+
+        releaseModelThread()
+
+        val values = ArgumentCaptor.forClass(ContentValues::class.java)
+        verify(dbController).update(eq(Favorites.TABLE_NAME), values.capture(),
+            eq(itemIdMatch(1)), isNull())
+        assertThat(values.value.getAsInteger(Favorites.CELLX)).isEqualTo(2)
+        assertThat(values.value.getAsInteger(Favorites.SPANX)).isEqualTo(2)
+        verify(dbController).update(eq(Favorites.TABLE_NAME), any(), eq(itemIdMatch(2)), isNull())
+        verify(dbController, times(1)).newTransaction()
+    }
+
+    @Test
+    fun otherTask_flushesPendingUpdatesFirst() {
+        writer.moveItemInDatabase(item1, CONTAINER_DESKTOP, 0, 1, 1)
+        writer.deleteItemFromDatabase(item2, "test")
+        writer.moveItemInDatabase(item1, CONTAINER_DESKTOP, 0, 2, 2)
+
+        releaseModelThread()
+
+        val values = ArgumentCaptor.forClass(ContentValues::class.java)
+        with(inOrder(dbController)) {
+            verify(dbController).update(eq(Favorites.TABLE_NAME), values.capture(),
+                eq(itemIdMatch(1)), isNull())
+            verify(dbController).delete(eq(Favorites.TABLE_NAME), eq(itemIdMatch(2)), isNull())
+            verify(dbController).update(eq(Favorites.TABLE_NAME), values.capture(),
+                eq(itemIdMatch(1)), isNull())
+        }
+        assertThat(values.allValues.map { it.getAsInteger(Favorites.CELLX) })
+            .containsExactly(1, 2)
+            .inOrder()
+    }
+
+    @Test
+    fun pendingUpdates_writtenBeforeModelReloads() {
+        var updatesBeforeReload = 0
+        doAnswer {
+                updatesBeforeReload++
+                0
+            }
+            .`when`(dbController)
+            .update(anyString(), any(), anyString(), isNull())
+
+        writer.moveItemInDatabase(item1, CONTAINER_DESKTOP, 0, 1, 1)
+        // Same as LauncherModel.startLoader, the pending updates are flushed before the loader is
+        // posted, and the loader bumps the load id on the model thread
+        writer.flushPendingUpdates()
+        var updatesWhenReloading = -1
+        MODEL_EXECUTOR.execute {
+            updatesWhenReloading = updatesBeforeReload
+            lastLoadId++
+        }
+        writer.moveItemInDatabase(item1, CONTAINER_DESKTOP, 0, 2, 2)
+
+        releaseModelThread()
+
+        assertThat(updatesWhenReloading).isEqualTo(1)
+    }
+
+    @Test
+    fun updatesWithinBatchWindow_writtenTogetherOnIdleModelThread() {
+        modelThreadLock.countDown()
+        writer.moveItemInDatabase(item1, CONTAINER_DESKTOP, 0, 1, 1)
+        waitForModelThread()
+        writer.moveItemInDatabase(item2, CONTAINER_DESKTOP, 0, 3, 3)
+
+        SystemClock.sleep(ModelWriter.BATCH_WINDOW_MS * 2)
+        waitForModelThread()
+
+        verify(dbController).update(eq(Favorites.TABLE_NAME), any(), eq(itemIdMatch(1)), isNull())
+        verify(dbController).update(eq(Favorites.TABLE_NAME), any(), eq(itemIdMatch(2)), isNull())
+        verify(dbController, times(1)).newTransaction()
+    }
+
+    @Test
+    fun pendingUpdates_droppedAfterModelReloaded() {
+        writer.moveItemInDatabase(item1, CONTAINER_DESKTOP, 0, 1, 1)
+        lastLoadId++
+
+        releaseModelThread()
+
+        verify(dbController, times(0)).update(anyString(), any(), anyString(), isNull())
+    }
+
+    private fun releaseModelThread() {
+        // Write the pending updates without waiting for the batch window
+        writer.flushPendingUpdates()
+        modelThreadLock.countDown()
+        waitForModelThread()
+    }
+
+    private fun waitForModelThread() {
+        MODEL_EXECUTOR.submit {}.get()
+    }
+
+    private fun newItem(id: Int) =
+        WorkspaceItemInfo().apply {
+            this.id = id
+            this.itemType = ITEM_TYPE_APPLICATION
+            this.container = CONTAINER_DESKTOP
+        }
+}
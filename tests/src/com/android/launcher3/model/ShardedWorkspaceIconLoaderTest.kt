@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP
+import com.android.launcher3.LauncherSettings.Favorites.CONTAINER_HOTSEAT
+import com.android.launcher3.model.data.FolderInfo
+import com.android.launcher3.model.data.IconRequestInfo
+import com.android.launcher3.model.data.WorkspaceItemInfo
+import com.android.launcher3.util.IntSparseArrayMap
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/** Tests for [ShardedWorkspaceIconLoader] */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class ShardedWorkspaceIconLoaderTest {
+
+    private val folders = IntSparseArrayMap<FolderInfo>()
+
+    @Test
+    fun shardKey_desktopItem_usesScreenId() {
+        val item = newItem(id = 1, container = CONTAINER_DESKTOP, screenId = 3)
+
+        assertThat(ShardedWorkspaceIconLoader.getShardKey(item, folders)).isEqualTo(3)
+    }
+
+    @Test
+    fun shardKey_hotseatItem_usesContainer() {
+        val item = newItem(id = 1, container = CONTAINER_HOTSEAT, screenId = 2)
+
+        assertThat(ShardedWorkspaceIconLoader.getShardKey(item, folders))
+            .isEqualTo(CONTAINER_HOTSEAT)
+    }
+
+    @Test
+    fun shardKey_folderItem_usesParentScreen() {
+        val folder =
+            FolderInfo().apply {
+                id = 10
+                container = CONTAINER_DESKTOP
+                screenId = 5
+            }
+        folders.put(folder.id, folder)
+        val item = newItem(id = 1, container = folder.id, screenId = 0)
+
+        assertThat(ShardedWorkspaceIconLoader.getShardKey(item, folders)).isEqualTo(5)
+    }
+
+    @Test
+    fun shardKey_orphanFolderItem_usesNoShard() {
+        val item = newItem(id = 1, container = 42, screenId = 0)
+
+        assertThat(ShardedWorkspaceIconLoader.getShardKey(item, folders))
+            .isEqualTo(ShardedWorkspaceIconLoader.NO_SHARD)
+    }
+
+    @Test
+    fun partition_keepsOrderWithinShardsAndHotseatFirst() {
+        val requests =
+            listOf(
+                    newItem(id = 1, container = CONTAINER_DESKTOP, screenId = 1),
+                    newItem(id = 2, container = CONTAINER_HOTSEAT, screenId = 0),
+                    newItem(id = 3, container = CONTAINER_DESKTOP, screenId = 0),
+                    newItem(id = 4, container = CONTAINER_DESKTOP, screenId = 1)
+                )
+                .map { IconRequestInfo(it, null, false) }
+
+        val shards = ShardedWorkspaceIconLoader.partition(requests, folders)
+
+        assertThat(shards.keys).containsExactly(CONTAINER_HOTSEAT, 0, 1).inOrder()
+        assertThat(shards[1]!!.map { it.itemInfo.id }).containsExactly(1, 4).inOrder()
+    }
+
+    private fun newItem(id: Int, container: Int, screenId: Int) =
+        WorkspaceItemInfo().apply {
+            this.id = id
+            this.container = container
+            this.screenId = screenId
+        }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.provider;
+
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_APPWIDGET;
+import static com.android.launcher3.provider.LauncherDbUtils.tableExists;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.LauncherSettings.Favorites;
+import com.android.launcher3.model.ModelDbController;
+import com.android.launcher3.util.IntArray;
+import com.android.launcher3.util.LauncherModelHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for {@link RestoreJournal}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class RestoreJournalTest {
+
+    private static final long PROFILE_ID = 0;
+
+    private LauncherModelHelper mModelHelper;
+    private SQLiteDatabase mDb;
+    private RestoreJournal mJournal;
+
+    @Before
+    public void setup() {
+        mModelHelper = new LauncherModelHelper();
+        mDb = new ModelDbController(mModelHelper.sandboxContext).getDb();
+        mJournal = new RestoreJournal(mDb);
+    }
+
+    @After
+    public void teardown() {
+        mModelHelper.destroy();
+    }
+
+    @Test
+    public void markStepDone_isVisibleToNewJournal() {
+        assertThat(mJournal.isStepDone("step")).isFalse();
+
+        mJournal.markStepDone("step");
+
+        assertThat(new RestoreJournal(mDb).isStepDone("step")).isTrue();
+    }
+
+    @Test
+    public void applyWidgetIds_remapsInBatchesAndReportsMissing() {
+        int count = RestoreJournal.BATCH_SIZE * 2 + 1;
+        int[] oldIds = new int[count + 1];
+        int[] newIds = new int[count + 1];
+        int[] states = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            addWidget(i + 1, i + 1);
+            oldIds[i] = i + 1;
+            newIds[i] = i + 1001;
+        }
+        // A remap for a widget which is not in the database
+        oldIds[count] = 5000;
+        newIds[count] = 6000;
+
+        mJournal.stageWidgetIds(oldIds, newIds, states);
+        assertThat(mJournal.hasPendingWidgetIds()).isTrue();
+
+        IntArray missingOldIds = new IntArray();
+        IntArray missingNewIds = new IntArray();
+        int applied = mJournal.applyWidgetIds(PROFILE_ID, missingOldIds, missingNewIds);
+
+        assertThat(applied).isEqualTo(count + 1);
+        assertThat(missingOldIds.toArray()).asList().containsExactly(5000);
+        assertThat(missingNewIds.toArray()).asList().containsExactly(6000);
+        assertThat(mJournal.hasPendingWidgetIds()).isFalse();
+        try (Cursor c = mDb.query(Favorites.TABLE_NAME, new String[] {Favorites.APPWIDGET_ID},
+                Favorites.APPWIDGET_ID + " > 1000", null, null, null, null)) {
+            assertThat(c.getCount()).isEqualTo(count);
+        }
+    }
+
+    @Test
+    public void clear_dropsJournalTables() {
+        mJournal.clear();
+
+        assertThat(tableExists(mDb, RestoreJournal.STEPS_TABLE)).isFalse();
+        assertThat(tableExists(mDb, RestoreJournal.WIDGETS_TABLE)).isFalse();
+    }
+
+    private void addWidget(int id, int appWidgetId) {
+        ContentValues values = new ContentValues();
+        values.put(Favorites._ID, id);
+        values.put(Favorites.ITEM_TYPE, ITEM_TYPE_APPWIDGET);
+        values.put(Favorites.APPWIDGET_ID, appWidgetId);
+        values.put(Favorites.RESTORED, 1);
+        values.put(Favorites.PROFILE_ID, PROFILE_ID);
+        mDb.insert(Favorites.TABLE_NAME, null, values);
+    }
+}
@@ -16,6 +16,7 @@
 package com.android.launcher3.search;
 
 import static com.android.launcher3.search.StringMatcherUtility.getListOfBreakpoints;
+import static com.android.launcher3.search.StringMatcherUtility.getMatchStartPositions;
 import static com.android.launcher3.search.StringMatcherUtility.matches;
 
 import static org.junit.Assert.assertEquals;
@@ -233,4 +234,22 @@ public class StringMatcherUtilityTest {
         assertEquals(IntArray.wrap(5,9,15),
                 getListOfBreakpoints("System UWB Field Test", MATCHER));
     }
+
+    @Test
+    public void testMatchStartPositions() {
+        assertEquals(IntArray.wrap(), getMatchStartPositions("", MATCHER));
+        assertEquals(IntArray.wrap(0, 6), getMatchStartPositions("white cow", MATCHER));
+        assertEquals(IntArray.wrap(0, 5), getMatchStartPositions("whiteCow", MATCHER));
+        assertEquals(IntArray.wrap(0, 1, 2), getMatchStartPositions("t-mobile", MATCHER));
+        assertEquals(IntArray.wrap(0), getMatchStartPositions("whitecow", MATCHER));
+        assertEquals(IntArray.wrap(0, 6), getMatchStartPositions("white cow", MATCHER_SPACE));
+
+        // Every start position is accepted by matches
+        String target = "System UWB Field Test";
+        IntArray positions = getMatchStartPositions(target, MATCHER);
+        for (int i = 0; i < positions.size(); i++) {
+            int start = positions.get(i);
+            assertTrue(matches(target.substring(start, start + 1).toLowerCase(), target, MATCHER));
+        }
+    }
 }
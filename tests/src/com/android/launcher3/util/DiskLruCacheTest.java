@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.DataInputStream;
+import java.io.File;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class DiskLruCacheTest {
+
+    private static final String FILE_PREFIX = "test_";
+    private static final int FILE_VERSION = 1;
+    private static final long MAX_BYTES = 1000;
+    private static final int CONTENT_BYTES = 100;
+
+    private File mDir;
+
+    @Before
+    public void setUp() {
+        mDir = new File(getApplicationContext().getCacheDir(), "disk_lru_cache_test");
+        deleteDir();
+    }
+
+    @After
+    public void tearDown() {
+        deleteDir();
+    }
+
+    @Test
+    public void read_newInstance_returnsWrittenContent() {
+        assertTrue(newCache(FILE_VERSION).write("key", out -> out.writeUTF("content")));
+
+        assertEquals("content", newCache(FILE_VERSION).read("key", DataInputStream::readUTF));
+    }
+
+    @Test
+    public void read_otherFileVersion_returnsNull() {
+        newCache(FILE_VERSION).write("key", out -> out.writeUTF("content"));
+
+        assertNull(newCache(FILE_VERSION + 1).read("key", DataInputStream::readUTF));
+    }
+
+    @Test
+    public void write_overMaxBytes_deletesLeastRecentlyUsedFiles() {
+        DiskLruCache cache = newCache(FILE_VERSION);
+        // With the version and the key, each file takes 110 bytes
+        int count = 9;
+        for (int i = 0; i < count; i++) {
+            writeContent(cache, "key" + i);
+            // Last modified times have a resolution of a second on some file systems
+            new File(mDir, FILE_PREFIX + Integer.toHexString(("key" + i).hashCode()))
+                    .setLastModified(1000L * (i + 1));
+        }
+        // Reading a file makes it the most recently used
+        readContent(cache, "key0");
+
+        writeContent(cache, "key" + count);
+
+        assertTrue(cache.getSizeBytes() <= MAX_BYTES);
+        assertEquals(CONTENT_BYTES, (int) readContent(cache, "key0"));
+        assertEquals(CONTENT_BYTES, (int) readContent(cache, "key" + count));
+        assertNull(readContent(cache, "key1"));
+    }
+
+    private DiskLruCache newCache(int fileVersion) {
+        return new DiskLruCache(mDir, FILE_PREFIX, fileVersion, MAX_BYTES);
+    }
+
+    private static void writeContent(DiskLruCache cache, String key) {
+        cache.write(key, out -> out.write(new byte[CONTENT_BYTES]));
+    }
+
+    private static Integer readContent(DiskLruCache cache, String key) {
+        return cache.read(key, in -> in.skipBytes(CONTENT_BYTES));
+    }
+
+    private void deleteDir() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.util.LabelComparator.SortKey;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Tests for {@link LabelComparator}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class LabelComparatorTest {
+
+    private static final List<String> LABELS = Arrays.asList("zebra", "Éclair", "eclair",
+            "#hashtag", "2048", "Apple", "apple", "", "Ärger", "b", "_underscore");
+
+    private final LabelComparator mComparator = new LabelComparator();
+
+    @Test
+    public void getSortKey_sortsLikeComparator() {
+        List<String> expected = new ArrayList<>(LABELS);
+        expected.sort(mComparator);
+
+        List<String> actual = new ArrayList<>(LABELS);
+        actual.sort(Comparator.comparing((String label) -> mComparator.getSortKey(label, null)));
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void getSortKey_sameLabel_reusesCachedKey() {
+        SortKey key = mComparator.getSortKey("Calendar", null);
+
+        assertSame(key, mComparator.getSortKey("Calendar", key));
+    }
+
+    @Test
+    public void getSortKey_labelChanged_createsNewKey() {
+        SortKey key = mComparator.getSortKey("Calendar", null);
+
+        assertNotSame(key, mComparator.getSortKey("Calculator", key));
+    }
+}
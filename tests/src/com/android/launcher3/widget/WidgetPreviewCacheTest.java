@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.ActivityInfo;
+import android.content.pm.ApplicationInfo;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.util.Size;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class WidgetPreviewCacheTest {
+
+    private static final int MAX_MEMORY_BYTES = 1024 * 1024;
+    private static final long MAX_DISK_BYTES = 64 * 1024;
+
+    private File mDir;
+
+    @Before
+    public void setUp() {
+        mDir = new File(getApplicationContext().getCacheDir(), "widget_preview_cache_test");
+        deleteDir();
+    }
+
+    @After
+    public void tearDown() {
+        deleteDir();
+    }
+
+    @Test
+    public void put_availableInMemory() {
+        WidgetPreviewCache cache = newCache();
+        Bitmap preview = newPreview(Color.RED);
+
+        cache.put("memoryKey", "key", preview);
+
+        assertEquals(preview, cache.getFromMemory("memoryKey"));
+    }
+
+    @Test
+    public void get_afterMemoryCleared_loadsFromDisk() {
+        newCache().put("memoryKey", "key", newPreview(Color.RED));
+
+        WidgetPreviewCache cache = newCache();
+        assertNull(cache.getFromMemory("memoryKey"));
+        Bitmap preview = cache.get("memoryKey", "key");
+
+        assertNotNull(preview);
+        assertEquals(40, preview.getWidth());
+        assertEquals(20, preview.getHeight());
+        assertEquals(preview, cache.getFromMemory("memoryKey"));
+    }
+
+    @Test
+    public void get_differentKey_returnsNull() {
+        WidgetPreviewCache cache = newCache();
+        cache.put("memoryKey", "key", newPreview(Color.RED));
+        cache.clearMemory();
+
+        assertNull(cache.get("memoryKey", "otherKey"));
+    }
+
+    @Test
+    public void get_staleMemoryEntry_removesItFromMemory() {
+        WidgetPreviewCache cache = newCache();
+        cache.put("memoryKey", "key", newPreview(Color.RED));
+
+        assertNull(cache.get("memoryKey", "otherKey"));
+        assertNull(cache.getFromMemory("memoryKey"));
+    }
+
+    @Test
+    public void validateMemory_staleEntry_removesItFromMemory() {
+        WidgetPreviewCache cache = newCache();
+        Bitmap preview = newPreview(Color.RED);
+        cache.put("memoryKey", "key", preview);
+
+        cache.validateMemory("memoryKey", "key");
+        assertEquals(preview, cache.getFromMemory("memoryKey"));
+        cache.validateMemory("memoryKey", "otherKey");
+        assertNull(cache.getFromMemory("memoryKey"));
+    }
+
+    @Test
+    public void put_overDiskBudget_trimsFilesExceptNewest() {
+        WidgetPreviewCache cache = newCache();
+        for (int i = 0; i < 200; i++) {
+            cache.put("memoryKey" + i, "key" + i, newNoisyPreview(i));
+        }
+
+        assertTrue(cache.getDiskSizeBytes() <= MAX_DISK_BYTES);
+        cache.clearMemory();
+        assertNotNull(cache.get("memoryKey199", "key199"));
+    }
+
+    @Test
+    public void getKey_nightModeChanged_returnsDifferentKey() {
+        Context context = getApplicationContext();
+        LauncherAppWidgetProviderInfo info = newProviderInfo(context.getApplicationInfo());
+        Configuration config = new Configuration(context.getResources().getConfiguration());
+        config.uiMode = (config.uiMode & ~Configuration.UI_MODE_NIGHT_MASK)
+                | ((config.uiMode & Configuration.UI_MODE_NIGHT_YES) != 0
+                        ? Configuration.UI_MODE_NIGHT_NO : Configuration.UI_MODE_NIGHT_YES);
+        Size previewSize = new Size(40, 20);
+
+        String key = WidgetPreviewCache.getKey(context, info, previewSize);
+
+        assertNotNull(key);
+        assertEquals(key, WidgetPreviewCache.getKey(context, info, previewSize));
+        assertNotEquals(key, WidgetPreviewCache.getKey(
+                context.createConfigurationContext(config), info, previewSize));
+    }
+
+    @Test
+    public void getKey_unknownPackage_returnsNull() {
+        ApplicationInfo appInfo = new ApplicationInfo(getApplicationContext().getApplicationInfo());
+        appInfo.packageName = "com.android.launcher3.tests.unknown";
+
+        assertNull(WidgetPreviewCache.getKey(getApplicationContext(), newProviderInfo(appInfo),
+                new Size(40, 20)));
+    }
+
+    private static LauncherAppWidgetProviderInfo newProviderInfo(ApplicationInfo appInfo) {
+        LauncherAppWidgetProviderInfo info = new LauncherAppWidgetProviderInfo();
+        info.provider = new ComponentName(appInfo.packageName, "Provider");
+        info.providerInfo = new ActivityInfo();
+        info.providerInfo.packageName = appInfo.packageName;
+        info.providerInfo.applicationInfo = appInfo;
+        return info;
+    }
+
+    private WidgetPreviewCache newCache() {
+        return new WidgetPreviewCache(mDir, MAX_MEMORY_BYTES, MAX_DISK_BYTES);
+    }
+
+    private static Bitmap newPreview(int color) {
+        Bitmap preview = Bitmap.createBitmap(40, 20, Bitmap.Config.ARGB_8888);
+        preview.eraseColor(color);
+        return preview;
+    }
+
+    private static Bitmap newNoisyPreview(int seed) {
+        Bitmap preview = newPreview(Color.WHITE);
+        for (int x = 0; x < preview.getWidth(); x++) {
+            for (int y = 0; y < preview.getHeight(); y++) {
+                preview.setPixel(x, y, (x * 31 + y * 17 + seed) * 0x9E3779B1 | 0xFF000000);
+            }
+        }
+        return preview;
+    }
+
+    private void deleteDir() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget.picker;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static com.android.launcher3.config.FeatureFlags.ENABLE_PRECOMPUTED_WIDGET_TABLES;
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+import android.appwidget.AppWidgetProviderInfo;
+import android.content.ComponentName;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.UserHandle;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.DeviceProfile;
+import com.android.launcher3.InvariantDeviceProfile;
+import com.android.launcher3.icons.BitmapInfo;
+import com.android.launcher3.icons.ComponentWithLabel;
+import com.android.launcher3.icons.IconCache;
+import com.android.launcher3.model.WidgetItem;
+import com.android.launcher3.model.data.PackageItemInfo;
+import com.android.launcher3.util.ActivityContextWrapper;
+import com.android.launcher3.util.SafeCloseable;
+import com.android.launcher3.util.TestUtil;
+import com.android.launcher3.util.WidgetUtils;
+import com.android.launcher3.widget.LauncherAppWidgetProviderInfo;
+import com.android.launcher3.widget.WidgetManagerHelper;
+import com.android.launcher3.widget.model.WidgetsListContentEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public final class WidgetsListTableLayoutsTest {
+    private static final String TEST_PACKAGE = "com.google.test";
+    private static final int CELL_PADDING = 0;
+
+    private Context mContext;
+    private DeviceProfile mDeviceProfile;
+    private InvariantDeviceProfile mTestProfile;
+    private SafeCloseable mFlagOverride;
+    private WidgetsListTableLayouts mTableLayouts;
+    private WidgetsListContentEntry mEntry;
+
+    @Mock
+    private IconCache mIconCache;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        Context appContext = getApplicationContext();
+        mDeviceProfile = InvariantDeviceProfile.INSTANCE.get(appContext)
+                .getDeviceProfile(appContext).copy(appContext);
+        mContext = new ActivityContextWrapper(appContext) {
+            @Override
+            public DeviceProfile getDeviceProfile() {
+                return mDeviceProfile;
+            }
+        };
+        mTestProfile = new InvariantDeviceProfile();
+        mTestProfile.numRows = 5;
+        mTestProfile.numColumns = 5;
+        doAnswer(invocation -> {
+            ComponentWithLabel componentWithLabel = (ComponentWithLabel) invocation.getArgument(0);
+            return componentWithLabel.getComponent().getShortClassName();
+        }).when(mIconCache).getTitleNoCache(any());
+
+        mFlagOverride = TestUtil.overrideFlag(ENABLE_PRECOMPUTED_WIDGET_TABLES, true);
+        // Compute the tables on the calling thread, they are still published on the main thread
+        mTableLayouts = new WidgetsListTableLayouts(mContext, CELL_PADDING, Runnable::run);
+        mEntry = generateSampleAppWithWidgets(/* numOfWidgets= */ 3);
+    }
+
+    @After
+    public void tearDown() {
+        mFlagOverride.close();
+    }
+
+    @Test
+    public void precompute_tableReusedOnGetRows() throws Exception {
+        mTableLayouts.precompute(List.of(mEntry));
+        waitForMainThread();
+
+        assertThat(mTableLayouts.hasTable(mEntry)).isTrue();
+        List<ArrayList<WidgetItem>> rows = mTableLayouts.getRows(mEntry);
+        assertThat(mTableLayouts.getRows(mEntry)).isSameInstanceAs(rows);
+        assertThat(rows.stream().mapToInt(List::size).sum()).isEqualTo(3);
+    }
+
+    @Test
+    public void precompute_entryCopiedWithSameMaxSpanSize_tableReused() throws Exception {
+        // The adapter precomputes and binds different copies of its entries
+        int maxSpanSize = mEntry.getMaxSpanSize() / 2;
+        mTableLayouts.precompute(List.of(mEntry.withMaxSpanSize(maxSpanSize)));
+        waitForMainThread();
+
+        assertThat(mTableLayouts.hasTable(mEntry.withMaxSpanSize(maxSpanSize))).isTrue();
+    }
+
+    @Test
+    public void getRows_deviceProfileChanged_recomputesTable() throws Exception {
+        mTableLayouts.precompute(List.of(mEntry));
+        waitForMainThread();
+        List<ArrayList<WidgetItem>> rows = mTableLayouts.getRows(mEntry);
+
+        mDeviceProfile = mDeviceProfile.copy(getApplicationContext());
+
+        assertThat(mTableLayouts.hasTable(mEntry)).isFalse();
+        assertThat(mTableLayouts.getRows(mEntry)).isNotSameInstanceAs(rows);
+        assertThat(mTableLayouts.hasTable(mEntry)).isTrue();
+    }
+
+    @Test
+    public void getRows_maxSpanSizeChanged_recomputesTable() throws Exception {
+        mTableLayouts.precompute(List.of(mEntry));
+        waitForMainThread();
+        List<ArrayList<WidgetItem>> rows = mTableLayouts.getRows(mEntry);
+
+        WidgetsListContentEntry narrowerEntry = mEntry.withMaxSpanSize(mEntry.getMaxSpanSize() / 2);
+
+        assertThat(mTableLayouts.hasTable(narrowerEntry)).isFalse();
+        assertThat(mTableLayouts.getRows(narrowerEntry)).isNotSameInstanceAs(rows);
+        assertThat(mTableLayouts.hasTable(narrowerEntry)).isTrue();
+        assertThat(mTableLayouts.hasTable(mEntry)).isFalse();
+    }
+
+    @Test
+    public void precompute_newerPrecompute_replacesTables() throws Exception {
+        WidgetsListContentEntry otherEntry = generateSampleAppWithWidgets(/* numOfWidgets= */ 2);
+        mTableLayouts.precompute(List.of(mEntry));
+        mTableLayouts.precompute(List.of(otherEntry));
+        waitForMainThread();
+
+        assertThat(mTableLayouts.hasTable(mEntry)).isFalse();
+        assertThat(mTableLayouts.hasTable(otherEntry)).isTrue();
+    }
+
+    private static void waitForMainThread() throws Exception {
+        MAIN_EXECUTOR.submit(() -> { }).get();
+    }
+
+    private WidgetsListContentEntry generateSampleAppWithWidgets(int numOfWidgets) {
+        PackageItemInfo appInfo = new PackageItemInfo(TEST_PACKAGE, UserHandle.CURRENT);
+        appInfo.title = "Test app";
+        appInfo.bitmap = BitmapInfo.of(Bitmap.createBitmap(10, 10, Bitmap.Config.ALPHA_8), 0);
+
+        return new WidgetsListContentEntry(appInfo,
+                /* titleSectionName= */ "",
+                generateWidgetItems(numOfWidgets),
+                mDeviceProfile.availableWidthPx);
+    }
+
+    private List<WidgetItem> generateWidgetItems(int numOfWidgets) {
+        WidgetManagerHelper widgetManager = new WidgetManagerHelper(mContext);
+        ArrayList<WidgetItem> widgetItems = new ArrayList<>();
+        for (int i = 0; i < numOfWidgets; i++) {
+            ComponentName cn = ComponentName.createRelative(TEST_PACKAGE, ".SampleWidget" + i);
+            AppWidgetProviderInfo widgetInfo = WidgetUtils.createAppWidgetProviderInfo(cn);
+
+            widgetItems.add(new WidgetItem(
+                    LauncherAppWidgetProviderInfo.fromProviderInfo(mContext, widgetInfo),
+                    mTestProfile, mIconCache, mContext, widgetManager));
+        }
+        return widgetItems;
+    }
+}
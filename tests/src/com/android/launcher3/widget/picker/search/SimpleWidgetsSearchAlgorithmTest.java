@@ -19,11 +19,13 @@ package com.android.launcher3.widget.picker.search;
 import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
 
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.SEARCH_EXECUTOR;
 import static com.android.launcher3.util.WidgetUtils.createAppWidgetProviderInfo;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.matches;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
@@ -168,6 +170,23 @@ public class SimpleWidgetsSearchAlgorithmTest {
                 matches("Ca"), argThat(a -> a != null && !a.isEmpty()));
     }
 
+    @Test
+    public void doSearch_widgetsChangedSinceIndexed_searchesIndexOfCurrentWidgets()
+            throws Exception {
+        List<WidgetsListBaseEntry> allWidgets = List.of(mCalendarHeaderEntry,
+                mCalendarContentEntry, mCameraHeaderEntry, mCameraContentEntry);
+        doReturn(new WidgetsSearchIndex(List.of())).when(mDataProvider).getWidgetsSearchIndex();
+        doReturn(allWidgets).when(mDataProvider).getAllWidgets();
+
+        MAIN_EXECUTOR.submit(() -> mSimpleWidgetsSearchAlgorithm.doSearch("Ca", mSearchCallback))
+                .get();
+        SEARCH_EXECUTOR.submit(() -> { }).get();
+        MAIN_EXECUTOR.submit(() -> { }).get();
+
+        verify(mSearchCallback).onSearchResult(
+                matches("Ca"), eq(new WidgetsSearchIndex(allWidgets).search("Ca")));
+    }
+
     private WidgetsListHeaderEntry createWidgetsHeaderEntry(String packageName, String appName,
             int numOfWidgets) {
         List<WidgetItem> widgetItems = generateWidgetItems(packageName, numOfWidgets);
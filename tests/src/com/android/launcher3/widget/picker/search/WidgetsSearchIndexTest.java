@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget.picker.search;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static com.android.launcher3.util.WidgetUtils.createAppWidgetProviderInfo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Process;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.InvariantDeviceProfile;
+import com.android.launcher3.icons.BitmapInfo;
+import com.android.launcher3.icons.ComponentWithLabel;
+import com.android.launcher3.icons.IconCache;
+import com.android.launcher3.model.WidgetItem;
+import com.android.launcher3.model.data.PackageItemInfo;
+import com.android.launcher3.widget.LauncherAppWidgetProviderInfo;
+import com.android.launcher3.widget.model.WidgetsListBaseEntry;
+import com.android.launcher3.widget.model.WidgetsListContentEntry;
+import com.android.launcher3.widget.model.WidgetsListHeaderEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link WidgetsSearchIndex}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class WidgetsSearchIndexTest {
+
+    @Mock private IconCache mIconCache;
+
+    private Context mContext;
+    private InvariantDeviceProfile mTestProfile;
+    private List<WidgetsListBaseEntry> mEntries;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        // Widgets are labelled with their class name
+        doAnswer(invocation -> ((ComponentWithLabel) invocation.getArgument(0))
+                .getComponent().getClassName()).when(mIconCache).getTitleNoCache(any());
+        mContext = getApplicationContext();
+        mTestProfile = new InvariantDeviceProfile();
+        mTestProfile.numRows = 5;
+        mTestProfile.numColumns = 5;
+
+        mEntries = new ArrayList<>();
+        addApp("com.example.clock", "Clock", "World clock", "Alarms");
+        addApp("com.example.calendar", "Calendar", "Agenda", "Month");
+        addApp("com.example.weather", "Weather", "Forecast", "Alarm clock");
+        addApp("com.example.meteo", "Météo", "Prévisions");
+        addApp("com.example.notes", "笔记", "便签");
+    }
+
+    @Test
+    public void search_appNameMatch_returnsAllWidgetsOfApp() {
+        assertEquals("Calendar[Agenda, Month]", search(new WidgetsSearchIndex(mEntries), "cal"));
+    }
+
+    @Test
+    public void search_labelMatch_returnsMatchingWidgetsOnly() {
+        assertEquals("Clock[Alarms], Weather[Alarm clock]",
+                search(new WidgetsSearchIndex(mEntries), "alarm"));
+    }
+
+    @Test
+    public void search_ranksAppNamesBeforeLabels() {
+        assertEquals("Clock[World clock, Alarms], Weather[Alarm clock]",
+                search(new WidgetsSearchIndex(mEntries), "clock"));
+        assertEquals("Weather[Forecast, Alarm clock]",
+                search(new WidgetsSearchIndex(mEntries), "weather"));
+    }
+
+    @Test
+    public void search_multipleWords_matchesAcrossWords() {
+        assertEquals("Weather[Alarm clock]", search(new WidgetsSearchIndex(mEntries), "alarm c"));
+    }
+
+    @Test
+    public void search_refinedQueries_sameResultsAsNewIndex() {
+        WidgetsSearchIndex index = new WidgetsSearchIndex(mEntries);
+        search(index, "a");
+        search(index, "al");
+        String refined = search(index, "ala");
+
+        assertEquals(search(new WidgetsSearchIndex(mEntries), "ala"), refined);
+        assertEquals("Calendar[Agenda]", search(index, "ag"));
+    }
+
+    @Test
+    public void search_accentsIgnored() {
+        assertEquals("Météo[Prévisions]", search(new WidgetsSearchIndex(mEntries), "meteo"));
+        assertEquals("Météo[Prévisions]", search(new WidgetsSearchIndex(mEntries), "previ"));
+    }
+
+    @Test
+    public void search_unindexedText_matchesWithoutIndex() {
+        WidgetsSearchIndex index = new WidgetsSearchIndex(mEntries);
+
+        assertEquals("笔记[便签]", search(index, "笔"));
+        assertEquals("笔记[便签]", search(index, "便"));
+    }
+
+    @Test
+    public void search_noMatch_noResults() {
+        WidgetsSearchIndex index = new WidgetsSearchIndex(mEntries);
+
+        assertTrue(index.search("xyz").isEmpty());
+        assertTrue(index.search("lock").isEmpty());
+    }
+
+    private void addApp(String packageName, String appName, String... labels) {
+        List<WidgetItem> items = new ArrayList<>();
+        for (String label : labels) {
+            items.add(new WidgetItem(LauncherAppWidgetProviderInfo.fromProviderInfo(mContext,
+                    createAppWidgetProviderInfo(new ComponentName(packageName, label))),
+                    mTestProfile, mIconCache, mContext));
+        }
+        PackageItemInfo pInfo = new PackageItemInfo(packageName, Process.myUserHandle());
+        pInfo.title = appName;
+        pInfo.bitmap = BitmapInfo.of(Bitmap.createBitmap(10, 10, Bitmap.Config.ALPHA_8), 0);
+        mEntries.add(WidgetsListHeaderEntry.create(pInfo, /* titleSectionName= */ "", items));
+        mEntries.add(new WidgetsListContentEntry(pInfo, /* titleSectionName= */ "", items));
+    }
+
+    /** Returns the results of {@param query} as "App[label, label], App[label]". */
+    private static String search(WidgetsSearchIndex index, String query) {
+        List<String> apps = new ArrayList<>();
+        List<WidgetsListBaseEntry> results = index.search(query);
+        for (int i = 0; i < results.size(); i += 2) {
+            WidgetsListBaseEntry header = results.get(i);
+            assertTrue(header instanceof WidgetsListHeaderEntry);
+            assertEquals(header.mWidgets, results.get(i + 1).mWidgets);
+            List<String> labels = new ArrayList<>();
+            for (WidgetItem item : header.mWidgets) {
+                labels.add(item.label);
+            }
+            apps.add(header.mPkgItem.title + "[" + String.join(", ", labels) + "]");
+        }
+        return String.join(", ", apps);
+    }
+}
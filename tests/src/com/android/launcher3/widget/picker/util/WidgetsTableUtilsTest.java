@@ -32,6 +32,7 @@ import android.content.pm.PackageManager;
 import android.graphics.Point;
 import android.graphics.drawable.Drawable;
 import android.os.UserHandle;
+import android.util.Size;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.filters.SmallTest;
@@ -198,6 +199,22 @@ public final class WidgetsTableUtilsTest {
         assertThat(widgetItemInTable.get(2)).containsExactly(mWidget2x4, mWidget2x2);
     }
 
+    @Test
+    public void groupWidgetItemsIntoTableWithReordering_sizeProvider_usesProvidedSizes() {
+        List<WidgetItem> widgetItems = List.of(mWidget4x4, mWidget2x3, mWidget1x1, mWidget2x4,
+                mWidget2x2);
+
+        List<ArrayList<WidgetItem>> widgetItemInTable =
+                WidgetsTableUtils.groupWidgetItemsUsingRowPxWithReordering(widgetItems,
+                        item -> new Size(50, 50), 220, 0);
+
+        // All items are 50px wide, at most 4 fit in a row of 220px
+        assertThat(widgetItemInTable).hasSize(2);
+        assertThat(widgetItemInTable.get(0))
+                .containsExactly(mWidget1x1, mWidget2x2, mWidget2x3, mWidget2x4);
+        assertThat(widgetItemInTable.get(1)).containsExactly(mWidget4x4);
+    }
+
     private void initDP() {
         DeviceProfile dp = LauncherAppState.getIDP(mContext)
                 .getDeviceProfile(mContext).copy(mContext);